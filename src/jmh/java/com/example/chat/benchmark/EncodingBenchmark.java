@@ -0,0 +1,107 @@
+package com.example.chat.benchmark;
+
+import com.example.chat.benchmark.support.Fixtures;
+import com.example.chat.common.model.Message;
+import com.example.chat.common.packet.WsResponse;
+import com.example.chat.handler.codec.EventEncoder;
+import com.example.chat.repository.IdGenerator;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.web.socket.TextMessage;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 出站帧编码：ObjectMapper 序列化 WsResponse（单条推送 / 一页历史），以及 EventEncoder 手写编码单条推送
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EncodingBenchmark {
+
+    @Param({"16", "256", "4096"})
+    public int contentLength;
+
+    private ObjectMapper objectMapper;
+    private EventEncoder eventEncoder;
+    private Message message;
+    private WsResponse event;
+    private WsResponse historyPage;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        objectMapper = Fixtures.MAPPER;
+        IdGenerator ids = Fixtures.idGenerator();
+
+        eventEncoder = Fixtures.inject(new EventEncoder(), "objectMapper", objectMapper);
+        eventEncoder.init();
+        message = message(ids.nextId());
+        event = WsResponse.builder().type("EVENT_CHAT_MSG").data(message).build();
+
+        List<Message> messages = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            messages.add(message(ids.nextId()));
+        }
+        Map<String, Object> data = new HashMap<>();
+        data.put("messages", messages);
+        data.put("hasMore", true);
+        data.put("nextBeforeId", messages.get(0).getMsgId());
+        historyPage = WsResponse.builder().type("SUCCESS").data(data).build();
+    }
+
+    private Message message(long id) {
+        Message msg = Message.builder()
+                .msgId(Long.toString(id))
+                .fromUser("alice")
+                .toUser("g1")
+                .isGroup(true)
+                .content("x".repeat(contentLength))
+                .timestamp(IdGenerator.timestampOf(id))
+                .atUsers(List.of("bob"))
+                .build();
+        msg.getReadBy().add("bob");
+        msg.getReactions().computeIfAbsent("like", k -> new HashSet<>()).add("bob");
+        return msg;
+    }
+
+    @Benchmark
+    public String eventAsString() throws JsonProcessingException {
+        return objectMapper.writeValueAsString(event);
+    }
+
+    @Benchmark
+    public byte[] eventAsBytes() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(event);
+    }
+
+    @Benchmark
+    public TextMessage eventViaEncoder() throws IOException {
+        return eventEncoder.chatMessage(message);
+    }
+
+    @Benchmark
+    public String historyPageAsString() throws JsonProcessingException {
+        return objectMapper.writeValueAsString(historyPage);
+    }
+}
@@ -0,0 +1,87 @@
+package com.example.chat.benchmark;
+
+import com.example.chat.benchmark.support.BenchSession;
+import com.example.chat.benchmark.support.Fixtures;
+import com.example.chat.common.packet.WsRequest;
+import com.example.chat.common.packet.params.ChatMsgParams;
+import com.example.chat.handler.action.impl.Send_GroupHandler;
+import com.example.chat.repository.DataCenter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * SEND_GROUP 扇出：全部成员在线，测一次保存 + 一次序列化 + 推给所有在线成员的总代价
+ *
+ * chatExecutor 换成调用者线程直接执行，测到的是扇出本身的 CPU 开销，不含线程池调度。
+ * 每次调用都会新增一条消息，每轮迭代后清空消息存储，避免堆持续增长干扰测量。
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GroupFanOutBenchmark {
+
+    @Param({"100", "1000", "10000"})
+    public int members;
+
+    private Send_GroupHandler handler;
+    private BenchSession sender;
+    private WsRequest<ChatMsgParams> request;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Fixtures.silence();
+        Fixtures.resetDataCenter();
+
+        sender = Fixtures.login("owner");
+        List<String> names = new ArrayList<>();
+        for (int i = 0; i < members; i++) {
+            String username = "member" + i;
+            Fixtures.login(username);
+            names.add(username);
+        }
+        Fixtures.group("g1", "owner", names);
+
+        Executor direct = Runnable::run;
+        handler = new Send_GroupHandler();
+        Fixtures.inject(handler, "objectMapper", Fixtures.MAPPER);
+        Fixtures.inject(handler, "messageService", Fixtures.messageService(Fixtures.idGenerator()));
+        Fixtures.inject(handler, "chatExecutor", direct);
+        Fixtures.inject(handler, "chunkSize", 64);
+        Fixtures.inject(handler, "eventEncoder", Fixtures.eventEncoder());
+        Fixtures.inject(handler, "eventSequencer", Fixtures.eventSequencer());
+
+        request = Fixtures.request("SEND_GROUP", ChatMsgParams.class,
+                Map.of("targetUser", "g1", "content", "hello everyone"));
+    }
+
+    @TearDown(Level.Iteration)
+    public void clearHistory() {
+        DataCenter.MSG_HISTORY.clear();
+    }
+
+    @Benchmark
+    public long sendToGroup() {
+        handler.handle(sender, request);
+        return DataCenter.MSG_HISTORY.size();
+    }
+}
@@ -0,0 +1,125 @@
+package com.example.chat.benchmark;
+
+import com.example.chat.benchmark.support.BenchSession;
+import com.example.chat.benchmark.support.Fixtures;
+import com.example.chat.common.model.Message;
+import com.example.chat.common.packet.WsRequest;
+import com.example.chat.common.packet.params.HistoryParams;
+import com.example.chat.handler.action.impl.Get_HistoryHandler;
+import com.example.chat.repository.DataCenter;
+import com.example.chat.repository.IdGenerator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.util.FileSystemUtils;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * GET_HISTORY 翻页：当前用户参与 PEERS 个私聊和 GROUPS 个群，消息均匀分布在这些会话里
+ *
+ * firstPage 取最新一页（热层），deepPage 从中间的消息ID往前翻（消息量超过热层上限时落在冷层）。
+ * 热层上限固定为 HOT_LIMIT 条，1000 万条时大部分消息在 mmap 冷段中。
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+public class HistoryPagingBenchmark {
+
+    private static final String USER = "alice";
+    private static final int PEERS = 50;
+    private static final int GROUPS = 10;
+    private static final long HOT_LIMIT = 1_000_000;
+
+    @Param({"10000", "1000000", "10000000"})
+    public int messageCount;
+
+    private Path coldDir;
+    private Get_HistoryHandler handler;
+    private BenchSession session;
+    private WsRequest<HistoryParams> firstPage;
+    private WsRequest<HistoryParams> deepPage;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        Fixtures.silence();
+        Fixtures.resetDataCenter();
+        coldDir = Files.createTempDirectory("bench-cold");
+        DataCenter.MSG_HISTORY.open(HOT_LIMIT, 0, coldDir, 64 << 20);
+
+        handler = Fixtures.inject(new Get_HistoryHandler(), "objectMapper", Fixtures.MAPPER);
+        session = Fixtures.login(USER);
+
+        List<String> conversations = new ArrayList<>();
+        for (int i = 0; i < PEERS; i++) {
+            conversations.add("peer" + i);
+        }
+        for (int i = 0; i < GROUPS; i++) {
+            String groupId = "g" + i;
+            Fixtures.group(groupId, USER, List.of("peer" + i));
+            conversations.add(groupId);
+        }
+
+        // 直接写存储和索引，跳过 MessageService 的日志与 WAL，加快造数
+        IdGenerator ids = Fixtures.idGenerator();
+        long middleId = 0;
+        for (int i = 0; i < messageCount; i++) {
+            long id = ids.nextId();
+            String target = conversations.get(i % conversations.size());
+            boolean group = target.startsWith("g");
+            Message msg = Message.builder()
+                    .msgId(Long.toString(id))
+                    .fromUser(group || i % 2 == 0 ? USER : target)
+                    .toUser(group || i % 2 == 0 ? target : USER)
+                    .isGroup(group)
+                    .content("history message #" + i)
+                    .timestamp(IdGenerator.timestampOf(id))
+                    .build();
+            DataCenter.MSG_HISTORY.put(id, msg);
+            DataCenter.CONVERSATIONS.add(msg);
+            if (i == messageCount / 2) {
+                middleId = id;
+            }
+        }
+
+        firstPage = Fixtures.request("GET_HISTORY", HistoryParams.class, Map.of());
+        deepPage = Fixtures.request("GET_HISTORY", HistoryParams.class, Map.of("beforeId", Long.toString(middleId)));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws IOException {
+        DataCenter.MSG_HISTORY.clear();
+        FileSystemUtils.deleteRecursively(coldDir);
+    }
+
+    @Benchmark
+    public long firstPage() {
+        handler.handle(session, firstPage);
+        return session.getSentBytes();
+    }
+
+    @Benchmark
+    public long deepPage() {
+        handler.handle(session, deepPage);
+        return session.getSentBytes();
+    }
+}
@@ -0,0 +1,92 @@
+package com.example.chat.benchmark;
+
+import com.example.chat.benchmark.support.BenchSession;
+import com.example.chat.benchmark.support.Fixtures;
+import com.example.chat.common.model.Message;
+import com.example.chat.common.packet.WsRequest;
+import com.example.chat.common.packet.params.ReactParams;
+import com.example.chat.handler.action.impl.Msg_ReactHandler;
+import com.example.chat.service.impl.MessageServiceImpl;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * MSG_REACT 争用：多个线程反复对同一条群消息点赞/取消（processReaction 锁在消息对象上）
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(8)
+public class ReactionBenchmark {
+
+    // 预先登录的用户数，需不少于线程数
+    private static final int USERS = 64;
+
+    private Msg_ReactHandler handler;
+    private Message message;
+    private final AtomicInteger nextUser = new AtomicInteger();
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        Fixtures.silence();
+        Fixtures.resetDataCenter();
+
+        List<String> members = new ArrayList<>();
+        for (int i = 0; i < USERS; i++) {
+            String username = "user" + i;
+            Fixtures.login(username);
+            members.add(username);
+        }
+        Fixtures.group("g1", "user0", members);
+
+        MessageServiceImpl messageService = Fixtures.messageService(Fixtures.idGenerator());
+        message = messageService.processAndSaveMsg("user0", "g1", "react to me", true, List.of());
+
+        handler = new Msg_ReactHandler();
+        Fixtures.inject(handler, "objectMapper", Fixtures.MAPPER);
+        Fixtures.inject(handler, "messageService", messageService);
+        Fixtures.inject(handler, "eventEncoder", Fixtures.eventEncoder());
+        Fixtures.inject(handler, "eventSequencer", Fixtures.eventSequencer());
+    }
+
+    /**
+     * 每个线程以不同的用户身份操作
+     */
+    @State(Scope.Thread)
+    public static class Reactor {
+        private BenchSession session;
+        private WsRequest<ReactParams> request;
+
+        @Setup(Level.Trial)
+        public void setUp(ReactionBenchmark bench) {
+            String username = "user" + bench.nextUser.getAndIncrement();
+            session = new BenchSession(username);
+            request = Fixtures.request("MSG_REACT", ReactParams.class, Map.of("msgId", bench.message.getMsgId(), "reactType", "like"));
+        }
+    }
+
+    @Benchmark
+    public long toggleLike(Reactor reactor) {
+        handler.handle(reactor.session, reactor.request);
+        return reactor.session.getSentBytes();
+    }
+}
@@ -0,0 +1,84 @@
+package com.example.chat.benchmark;
+
+import com.example.chat.benchmark.support.Fixtures;
+import com.example.chat.common.packet.WsRequest;
+import com.example.chat.common.packet.params.ChatMsgParams;
+import com.example.chat.handler.HandlerRegistry;
+import com.example.chat.handler.RequestDecoder;
+import com.example.chat.handler.action.impl.Send_PrivateHandler;
+import com.example.chat.metrics.DispatchMetrics;
+import com.fasterxml.jackson.databind.JsonNode;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 入站帧解码：旧路径（整帧建 JsonNode 树，处理器再逐个取字段）对比 RequestDecoder 流式绑定参数类型
+ * 配合 -prof gc 看 gc.alloc.rate.norm（每次操作分配的字节数）
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RequestDecodeBenchmark {
+
+    @Param({"16", "256", "4096"})
+    public int contentLength;
+
+    private String frame;
+    private RequestDecoder decoder;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        HandlerRegistry registry = new HandlerRegistry();
+        Fixtures.inject(registry, "dispatchMetrics", new DispatchMetrics());
+        Fixtures.inject(registry, "objectMapper", Fixtures.MAPPER);
+        registry.registerHandler("SEND_PRIVATE", new Send_PrivateHandler());
+
+        decoder = new RequestDecoder();
+        Fixtures.inject(decoder, "jsonMapper", Fixtures.MAPPER);
+        Fixtures.inject(decoder, "handlerRegistry", registry);
+
+        frame = "{\"action\":\"SEND_PRIVATE\",\"params\":{\"targetUser\":\"bob\",\"content\":\""
+                + "x".repeat(contentLength) + "\",\"atUsers\":[\"bob\"]}}";
+    }
+
+    @Benchmark
+    public void tree(Blackhole bh) throws IOException {
+        JsonNode root = Fixtures.MAPPER.readTree(frame);
+        bh.consume(root.get("action").asText());
+        JsonNode params = root.get("params");
+        bh.consume(params.get("targetUser").asText());
+        bh.consume(params.get("content").asText());
+        for (JsonNode atUser : params.get("atUsers")) {
+            bh.consume(atUser.asText());
+        }
+    }
+
+    @Benchmark
+    public void streaming(Blackhole bh) throws IOException {
+        WsRequest<Object> request = decoder.decode(frame);
+        ChatMsgParams params = (ChatMsgParams) request.getParams();
+        bh.consume(request.getAction());
+        bh.consume(params.getTargetUser());
+        bh.consume(params.getContent());
+        for (String atUser : params.getAtUsers()) {
+            bh.consume(atUser);
+        }
+    }
+}
@@ -0,0 +1,119 @@
+package com.example.chat.benchmark;
+
+import com.example.chat.benchmark.support.Fixtures;
+import com.example.chat.common.model.Message;
+import com.example.chat.common.packet.WsRequest;
+import com.example.chat.handler.HandlerRegistry;
+import com.example.chat.handler.RequestDecoder;
+import com.example.chat.handler.action.impl.Send_PrivateHandler;
+import com.example.chat.handler.codec.BinaryProtocol;
+import com.example.chat.handler.codec.EventEncoder;
+import com.example.chat.metrics.DispatchMetrics;
+import com.example.chat.repository.IdGenerator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * JSON 文本协议与 chat.cbor 二进制协议对比：出站 EVENT_CHAT_MSG 的编码、入站 SEND_PRIVATE 的解码
+ * 每帧字节数在 Setup 时打印（JMH 输出里的 "# frame bytes" 行）
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class WireFormatBenchmark {
+
+    @Param({"16", "256"})
+    public int contentLength;
+
+    // 已读人数，同时也是点赞人数；readBy / reactions 越大，字段名和引号的开销占比越小
+    @Param({"0", "50"})
+    public int readers;
+
+    private EventEncoder eventEncoder;
+    private RequestDecoder decoder;
+    private Message message;
+    private String requestJson;
+    private byte[] requestCbor;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        eventEncoder = Fixtures.inject(new EventEncoder(), "objectMapper", Fixtures.MAPPER);
+        eventEncoder.init();
+
+        HandlerRegistry registry = new HandlerRegistry();
+        Fixtures.inject(registry, "dispatchMetrics", new DispatchMetrics());
+        Fixtures.inject(registry, "objectMapper", Fixtures.MAPPER);
+        registry.registerHandler("SEND_PRIVATE", new Send_PrivateHandler());
+        decoder = new RequestDecoder();
+        Fixtures.inject(decoder, "jsonMapper", Fixtures.MAPPER);
+        Fixtures.inject(decoder, "handlerRegistry", registry);
+
+        IdGenerator ids = Fixtures.idGenerator();
+        long id = ids.nextId();
+        message = Message.builder()
+                .msgId(Long.toString(id))
+                .fromUser("alice")
+                .toUser("g1")
+                .isGroup(true)
+                .content("x".repeat(contentLength))
+                .timestamp(IdGenerator.timestampOf(id))
+                .atUsers(List.of("bob"))
+                .build();
+        for (int i = 0; i < readers; i++) {
+            message.getReadBy().add("user" + i);
+            message.getReactions().computeIfAbsent("like", k -> ConcurrentHashMap.newKeySet()).add("user" + i);
+        }
+
+        requestJson = "{\"action\":\"SEND_PRIVATE\",\"params\":{\"targetUser\":\"bob\",\"content\":\""
+                + "x".repeat(contentLength) + "\",\"atUsers\":[\"bob\"]}}";
+        requestCbor = BinaryProtocol.transcode(requestJson);
+
+        String event = eventEncoder.chatMessage(message).getPayload();
+        System.out.printf("# frame bytes: EVENT_CHAT_MSG json=%d cbor=%d, SEND_PRIVATE json=%d cbor=%d%n",
+                event.getBytes(StandardCharsets.UTF_8).length, BinaryProtocol.transcode(event).length,
+                requestJson.getBytes(StandardCharsets.UTF_8).length, requestCbor.length);
+    }
+
+    @Benchmark
+    public String encodeJson() throws IOException {
+        return eventEncoder.chatMessage(message).getPayload();
+    }
+
+    /**
+     * 服务端对 chat.cbor 会话的实际路径：先编码为 JSON，入队时转码为 CBOR
+     */
+    @Benchmark
+    public byte[] encodeCbor() throws IOException {
+        return BinaryProtocol.transcode(eventEncoder.chatMessage(message).getPayload());
+    }
+
+    @Benchmark
+    public WsRequest<Object> decodeJson() throws IOException {
+        return decoder.decode(requestJson);
+    }
+
+    @Benchmark
+    public WsRequest<Object> decodeCbor() throws IOException {
+        return decoder.decode(ByteBuffer.wrap(requestCbor));
+    }
+}
@@ -0,0 +1,118 @@
+package com.example.chat.benchmark.support;
+
+import org.springframework.http.HttpHeaders;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.WebSocketExtension;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.security.Principal;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 基准测试用的假会话：不做任何 IO，只累计写出的字节数，避免发送本身成为被测对象
+ */
+public class BenchSession implements WebSocketSession {
+
+    private static final AtomicInteger SEQ = new AtomicInteger();
+
+    private final String id = "bench-" + SEQ.incrementAndGet();
+    private final Map<String, Object> attributes = new ConcurrentHashMap<>();
+    private volatile long sentBytes;
+
+    public BenchSession(String username) {
+        attributes.put("username", username);
+    }
+
+    public long getSentBytes() {
+        return sentBytes;
+    }
+
+    @Override
+    public String getId() {
+        return id;
+    }
+
+    @Override
+    public URI getUri() {
+        return null;
+    }
+
+    @Override
+    public HttpHeaders getHandshakeHeaders() {
+        return new HttpHeaders();
+    }
+
+    @Override
+    public Map<String, Object> getAttributes() {
+        return attributes;
+    }
+
+    @Override
+    public Principal getPrincipal() {
+        return null;
+    }
+
+    @Override
+    public InetSocketAddress getLocalAddress() {
+        return null;
+    }
+
+    @Override
+    public InetSocketAddress getRemoteAddress() {
+        return null;
+    }
+
+    @Override
+    public String getAcceptedProtocol() {
+        return null;
+    }
+
+    @Override
+    public void setTextMessageSizeLimit(int messageSizeLimit) {
+    }
+
+    @Override
+    public int getTextMessageSizeLimit() {
+        return Integer.MAX_VALUE;
+    }
+
+    @Override
+    public void setBinaryMessageSizeLimit(int messageSizeLimit) {
+    }
+
+    @Override
+    public int getBinaryMessageSizeLimit() {
+        return Integer.MAX_VALUE;
+    }
+
+    @Override
+    public List<WebSocketExtension> getExtensions() {
+        return Collections.emptyList();
+    }
+
+    @Override
+    public void sendMessage(WebSocketMessage<?> message) {
+        // 多线程基准下这里的计数不精确，只用于防止发送被 JIT 消除
+        sentBytes += message.getPayloadLength();
+    }
+
+    @Override
+    public boolean isOpen() {
+        return true;
+    }
+
+    @Override
+    public void close() {
+    }
+
+    @Override
+    public void close(CloseStatus status) {
+    }
+}
@@ -0,0 +1,140 @@
+package com.example.chat.benchmark.support;
+
+import com.example.chat.common.model.Group;
+import com.example.chat.common.model.User;
+import com.example.chat.common.packet.WsRequest;
+import com.example.chat.handler.codec.EventEncoder;
+import com.example.chat.handler.session.EventSequencer;
+import com.example.chat.repository.DataCenter;
+import com.example.chat.repository.IdGenerator;
+import com.example.chat.repository.persistence.WriteAheadLog;
+import com.example.chat.service.impl.MessageServiceImpl;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.lang.reflect.Field;
+import java.util.Map;
+
+/**
+ * 基准测试的公共装配：不启动 Spring，直接 new 出被测对象并用反射注入依赖
+ *
+ * 每个 JMH fork 是独立的 JVM，DataCenter 的静态状态在 fork 之间互不影响，
+ * 同一 fork 内由各基准的 @Setup 负责清理。
+ */
+public final class Fixtures {
+
+    public static final ObjectMapper MAPPER = new ObjectMapper();
+
+    private Fixtures() {
+    }
+
+    /**
+     * 处理器里的 System.out 日志会淹没测量结果，基准期间全部丢弃
+     */
+    public static void silence() {
+        System.setOut(new PrintStream(OutputStream.nullOutputStream()));
+    }
+
+    public static void resetDataCenter() {
+        DataCenter.ONLINE_USERS.clear();
+        DataCenter.USERS.clear();
+        DataCenter.GROUPS.clear();
+        DataCenter.MSG_HISTORY.clear();
+    }
+
+    public static IdGenerator idGenerator() {
+        IdGenerator generator = new IdGenerator();
+        generator.init();
+        return generator;
+    }
+
+    /**
+     * WAL 默认关闭，这样测到的是内存路径本身
+     */
+    public static MessageServiceImpl messageService(IdGenerator idGenerator) {
+        MessageServiceImpl service = new MessageServiceImpl();
+        inject(service, "writeAheadLog", new WriteAheadLog());
+        inject(service, "idGenerator", idGenerator);
+        return service;
+    }
+
+    public static EventEncoder eventEncoder() {
+        EventEncoder encoder = inject(new EventEncoder(), "objectMapper", MAPPER);
+        encoder.init();
+        return encoder;
+    }
+
+    /**
+     * 与默认配置一致；BenchSession 不是 ManagedSession，事件直接以 JSON 带 seq 写出
+     */
+    public static EventSequencer eventSequencer() {
+        EventSequencer sequencer = new EventSequencer();
+        inject(sequencer, "maxEvents", 256);
+        inject(sequencer, "retainSec", 120L);
+        sequencer.init();
+        return sequencer;
+    }
+
+    /**
+     * 把 value 注入 target 类层次上所有名为 name 的字段（子类可能遮蔽父类的同名字段）
+     */
+    public static <T> T inject(T target, String name, Object value) {
+        boolean found = false;
+        for (Class<?> c = target.getClass(); c != null; c = c.getSuperclass()) {
+            try {
+                Field field = c.getDeclaredField(name);
+                field.setAccessible(true);
+                field.set(target, value);
+                found = true;
+            } catch (NoSuchFieldException ignored) {
+            } catch (IllegalAccessException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+        if (!found) {
+            throw new IllegalArgumentException(target.getClass().getSimpleName() + " 没有字段 " + name);
+        }
+        return target;
+    }
+
+    /**
+     * 注册一个在线用户并返回其会话
+     */
+    public static BenchSession login(String username) {
+        User user = new User(username);
+        user.setUsername(username);
+        DataCenter.USERS.put(username, user);
+        BenchSession session = new BenchSession(username);
+        DataCenter.ONLINE_USERS.put(username, session);
+        return session;
+    }
+
+    /**
+     * 创建群并维护两个群索引，与 createGroup 的路径一致
+     */
+    public static Group group(String groupId, String owner, Iterable<String> members) {
+        Group group = new Group();
+        group.setGroupId(groupId);
+        group.setGroupName(groupId);
+        group.setOwner(owner);
+        group.getMembers().add(owner);
+        for (String member : members) {
+            group.getMembers().add(member);
+        }
+        Group old = DataCenter.GROUPS.put(groupId, group);
+        DataCenter.USER_GROUPS.groupPut(group, old);
+        DataCenter.ONLINE_MEMBERS.groupAdded(group);
+        return group;
+    }
+
+    /**
+     * 构造已解码的请求，params 按处理器的参数类型绑定，与 RequestDecoder 的结果一致
+     */
+    public static <P> WsRequest<P> request(String action, Class<P> type, Map<String, ?> params) {
+        WsRequest<P> request = new WsRequest<>();
+        request.setAction(action);
+        request.setParams(MAPPER.convertValue(params, type));
+        return request;
+    }
+}
@@ -0,0 +1,50 @@
+package com.chatroom.client;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.util.ByteArrayBuilder;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.ByteBuffer;
+
+/**
+ * chat.cbor 子协议的编解码：在 JSON 文本与 CBOR 字节之间按 token 转换
+ * 客户端其余部分仍用 Gson 处理 JSON，启用二进制协议时只在收发的边界上转换
+ */
+final class CborCodec {
+
+    /** 与服务端 BinaryProtocol.SUBPROTOCOL 一致 */
+    static final String SUBPROTOCOL = "chat.cbor";
+
+    private static final JsonFactory JSON = new JsonFactory();
+    private static final CBORFactory CBOR = new CBORFactory();
+
+    private CborCodec() {
+    }
+
+    static byte[] encode(String json) throws IOException {
+        try (ByteArrayBuilder out = new ByteArrayBuilder(json.length());
+             JsonParser parser = JSON.createParser(json);
+             JsonGenerator generator = CBOR.createGenerator(out)) {
+            parser.nextToken();
+            generator.copyCurrentStructure(parser);
+            generator.flush();
+            return out.toByteArray();
+        }
+    }
+
+    static String decode(ByteBuffer bytes) throws IOException {
+        byte[] data = new byte[bytes.remaining()];
+        bytes.get(data);
+        StringWriter out = new StringWriter(data.length * 2);
+        try (JsonParser parser = CBOR.createParser(data);
+             JsonGenerator generator = JSON.createGenerator(out)) {
+            parser.nextToken();
+            generator.copyCurrentStructure(parser);
+        }
+        return out.toString();
+    }
+}
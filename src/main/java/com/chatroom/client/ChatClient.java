@@ -8,10 +8,15 @@ import com.google.gson.JsonElement;
 import com.google.gson.JsonObject;
 import com.google.gson.reflect.TypeToken;
 import org.java_websocket.client.WebSocketClient;
+import org.java_websocket.drafts.Draft_6455;
+import org.java_websocket.extensions.permessage_deflate.PerMessageDeflateExtension;
 import org.java_websocket.handshake.ServerHandshake;
+import org.java_websocket.protocols.IProtocol;
+import org.java_websocket.protocols.Protocol;
 
 import java.lang.reflect.Type;
 import java.net.URI;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.Executors;
@@ -21,6 +26,9 @@ import java.util.concurrent.TimeUnit;
 /**
  * WebSocket 聊天客户端核心类
  * 基于 API 文档 v2.0 实现
+ * 可选使用二进制子协议 chat.cbor（帧内容为 CBOR），服务端不支持时自动退回 JSON 文本帧
+ * 握手时请求 permessage-deflate 压缩，服务端不支持时按未压缩收发
+ * 记录收到的最后一个事件序号并定期 ACK，断线重连时带上它，服务端只重放缺失的事件
  */
 public class ChatClient {
     private WebSocketClient wsClient;
@@ -28,15 +36,30 @@ public class ChatClient {
     private ChatEventListener eventListener;
     private String currentUsername;
     private String currentPassword;
+    private volatile String resumeToken; // 服务端签发的续传令牌，重连握手时出示以免去密码校验
     private boolean isConnected = false;
     private ScheduledExecutorService heartbeatExecutor;
     private ScheduledExecutorService reconnectExecutor;
     private final String serverUrl;
+    private final boolean preferBinary;
+    private volatile boolean binary; // 本次连接是否协商成了 chat.cbor
     private static final int HEARTBEAT_INTERVAL = 30; // 30秒心跳
     private static final int RECONNECT_DELAY = 3; // 3秒后重连
+    private static final int DEFLATE_THRESHOLD = 1024; // 小于该字节数的帧不压缩
+    private static final int ACK_EVERY = 32; // 每收到这么多个事件 ACK 一次，心跳时也会 ACK
+    private long lastSeq = -1; // 收到的最后一个事件序号，-1 表示尚未登录
+    private long ackedSeq = -1;
 
     public ChatClient(String serverUrl) {
+        this(serverUrl, false);
+    }
+
+    /**
+     * @param preferBinary 是否请求 chat.cbor 二进制子协议
+     */
+    public ChatClient(String serverUrl, boolean preferBinary) {
         this.serverUrl = serverUrl;
+        this.preferBinary = preferBinary;
     }
 
     /**
@@ -52,9 +75,16 @@ public class ChatClient {
     public void connect() {
         try {
             URI serverUri = new URI(serverUrl);
-            wsClient = new WebSocketClient(serverUri) {
+            // 同时列出空协议，服务端不支持 chat.cbor 时握手仍能成功
+            List<IProtocol> protocols = preferBinary
+                    ? List.of(new Protocol(CborCodec.SUBPROTOCOL), new Protocol(""))
+                    : List.of(new Protocol(""));
+            PerMessageDeflateExtension deflate = new PerMessageDeflateExtension();
+            deflate.setThreshold(DEFLATE_THRESHOLD);
+            WebSocketClient client = new WebSocketClient(serverUri, new Draft_6455(List.of(deflate), protocols)) {
                 @Override
                 public void onOpen(ServerHandshake handshake) {
+                    binary = CborCodec.SUBPROTOCOL.equals(handshake.getFieldValue("Sec-WebSocket-Protocol"));
                     isConnected = true;
                     System.out.println("连接已建立");
                     if (eventListener != null) {
@@ -67,6 +97,15 @@ public class ChatClient {
                     handleMessage(message);
                 }
 
+                @Override
+                public void onMessage(ByteBuffer bytes) {
+                    try {
+                        handleMessage(CborCodec.decode(bytes));
+                    } catch (Exception e) {
+                        System.err.println("解析二进制消息失败: " + e.getMessage());
+                    }
+                }
+
                 @Override
                 public void onClose(int code, String reason, boolean remote) {
                     isConnected = false;
@@ -84,7 +123,11 @@ public class ChatClient {
                     ex.printStackTrace();
                 }
             };
-
+            // 重连时出示续传令牌；令牌失效时服务端仍按随后 LOGIN 中的密码校验
+            if (currentUsername != null && resumeToken != null) {
+                client.addHeader("X-Resume-Token", resumeToken);
+            }
+            wsClient = client;
             wsClient.connect();
         } catch (Exception e) {
             System.err.println("连接失败: " + e.getMessage());
@@ -107,6 +150,13 @@ public class ChatClient {
             JsonElement dataElement = response.getData();
             JsonObject data = response.getDataAsObject();
 
+            if (!trackSeq(type, response.getSeq(), data)) {
+                return; // 续传时重放的重复事件
+            }
+            if (response.getResumeToken() != null) {
+                resumeToken = response.getResumeToken();
+            }
+
             switch (type) {
                 case EventTypeConstants.LOGIN_RESP:
                     handleLoginResp(data);
@@ -114,6 +164,9 @@ public class ChatClient {
                 case EventTypeConstants.EVENT_CHAT_MSG:
                     handleChatMessage(data);
                     break;
+                case EventTypeConstants.EVENT_OFFLINE_MSGS:
+                    handleOfflineMessages(dataElement);
+                    break;
                 case EventTypeConstants.ONLINE_LIST:
                     handleOnlineList(dataElement);
                     break;
@@ -135,6 +188,11 @@ public class ChatClient {
                 case EventTypeConstants.SYS_NOTICE:
                     handleSystemNotice(dataElement);
                     break;
+                case EventTypeConstants.EVENT_RESYNC:
+                    handleResync();
+                    break;
+                case EventTypeConstants.EVENT_RESUME_TOKEN:
+                    break; // 令牌已在上面记下
                 case EventTypeConstants.ERROR:
                     handleError(response);
                     break;
@@ -147,6 +205,60 @@ public class ChatClient {
         }
     }
 
+    /**
+     * 维护事件序号
+     * @return false 表示该事件已经收到过，应丢弃
+     */
+    private synchronized boolean trackSeq(String type, Long seq, JsonObject data) {
+        if (EventTypeConstants.EVENT_RESYNC.equals(type)) {
+            // 服务端已无法补齐缺口（或服务端重启过），以服务端当前序号为新起点
+            if (data != null && data.has("seq")) {
+                lastSeq = data.get("seq").getAsLong();
+                ackedSeq = lastSeq;
+            }
+            return true;
+        }
+        if (seq == null) {
+            return true;
+        }
+        if (EventTypeConstants.LOGIN_RESP.equals(type)) {
+            lastSeq = Math.max(lastSeq, seq);
+            ackedSeq = Math.max(ackedSeq, seq);
+            return true;
+        }
+        if (seq <= lastSeq) {
+            return false;
+        }
+        lastSeq = seq;
+        if (lastSeq - ackedSeq >= ACK_EVERY) {
+            sendAck();
+        }
+        return true;
+    }
+
+    /**
+     * 确认已收到的事件，服务端据此释放重放缓冲
+     */
+    private synchronized void sendAck() {
+        if (lastSeq <= ackedSeq) {
+            return;
+        }
+        ackedSeq = lastSeq;
+        JsonObject params = new JsonObject();
+        params.addProperty("seq", lastSeq);
+        sendRequest(new ClientRequest(ActionConstants.ACK, params));
+    }
+
+    /**
+     * 重放缺口无法补齐：提示用户并重新拉取历史消息
+     */
+    private void handleResync() {
+        if (eventListener != null) {
+            eventListener.onSystemNotice("断线期间的部分消息未能补发，已重新加载历史记录");
+        }
+        getHistory(null);
+    }
+
     /**
      * 处理登录响应
      */
@@ -170,6 +282,17 @@ public class ChatClient {
         }
     }
 
+    /**
+     * 处理离线消息：逐条按新消息通知
+     */
+    private void handleOfflineMessages(JsonElement dataElement) {
+        if (dataElement != null && dataElement.isJsonArray()) {
+            for (JsonElement element : dataElement.getAsJsonArray()) {
+                handleChatMessage(element.getAsJsonObject());
+            }
+        }
+    }
+
     /**
      * 处理在线列表
      */
@@ -314,7 +437,11 @@ public class ChatClient {
 
         try {
             String json = gson.toJson(request);
-            wsClient.send(json);
+            if (binary) {
+                wsClient.send(CborCodec.encode(json));
+            } else {
+                wsClient.send(json);
+            }
         } catch (Exception e) {
             System.err.println("发送消息失败: " + e.getMessage());
             e.printStackTrace();
@@ -327,6 +454,25 @@ public class ChatClient {
      * @param password 密码（可为空，新用户自动注册）
      */
     public void login(String username, String password) {
+        synchronized (this) {
+            lastSeq = -1;
+            ackedSeq = -1;
+        }
+        sendLogin(username, password, null);
+    }
+
+    /**
+     * 重连后重新登录，带上最后收到的事件序号
+     */
+    private void resume(String username, String password) {
+        long seq;
+        synchronized (this) {
+            seq = lastSeq;
+        }
+        sendLogin(username, password, seq >= 0 ? seq : null);
+    }
+
+    private void sendLogin(String username, String password, Long seq) {
         this.currentUsername = username;
         this.currentPassword = password;
         JsonObject params = new JsonObject();
@@ -334,6 +480,9 @@ public class ChatClient {
         if (password != null && !password.isEmpty()) {
             params.addProperty("password", password);
         }
+        if (seq != null) {
+            params.addProperty("lastSeq", seq);
+        }
 
         ClientRequest request = new ClientRequest(ActionConstants.LOGIN, params);
         sendRequest(request);
@@ -386,6 +535,22 @@ public class ChatClient {
         sendRequest(request);
     }
 
+    /**
+     * 创建群聊，自己成为群主
+     * @param groupName 群名称
+     * @param members 初始成员用户名列表（可为空）
+     */
+    public void createGroup(String groupName, List<String> members) {
+        JsonObject params = new JsonObject();
+        params.addProperty("groupName", groupName);
+        if (members != null && !members.isEmpty()) {
+            params.add("members", gson.toJsonTree(members));
+        }
+
+        ClientRequest request = new ClientRequest(ActionConstants.CREATE_GROUP, params);
+        sendRequest(request);
+    }
+
     /**
      * 撤回消息（2分钟内）
      * @param msgId 消息ID
@@ -503,7 +668,10 @@ public class ChatClient {
         }
         heartbeatExecutor = Executors.newSingleThreadScheduledExecutor();
         heartbeatExecutor.scheduleAtFixedRate(
-            this::sendHeartbeat,
+            () -> {
+                sendHeartbeat();
+                sendAck();
+            },
             HEARTBEAT_INTERVAL,
             HEARTBEAT_INTERVAL,
             TimeUnit.SECONDS
@@ -534,7 +702,7 @@ public class ChatClient {
             if (currentUsername != null) {
                 try {
                     Thread.sleep(1000); // 等待连接建立
-                    login(currentUsername, currentPassword);
+                    resume(currentUsername, currentPassword);
                 } catch (InterruptedException e) {
                     Thread.currentThread().interrupt();
                 }
@@ -547,6 +715,7 @@ public class ChatClient {
      */
     public void disconnect() {
         stopHeartbeat();
+        resumeToken = null; // 主动断开，令牌不再使用
         if (reconnectExecutor != null) {
             reconnectExecutor.shutdown();
         }
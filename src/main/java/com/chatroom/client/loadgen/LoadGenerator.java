@@ -0,0 +1,312 @@
+package com.chatroom.client.loadgen;
+
+import com.example.chat.metrics.LatencyHistogram;
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 无界面压测工具：在一个 JVM 里模拟成千上万个聊天用户
+ *
+ * 1. 按场景文件在 rampUpSec 内逐步建立连接并登录，再由各群第一个成员创建群。
+ * 2. 压测阶段按 sendRate 匀速发私聊/群聊消息，收到消息的用户按比例回已读、点赞，并按 churnPerMin 随机断线重连。
+ * 3. 消息内容里带着发送时刻，接收方算出端到端投递延迟，最终输出 p50/p99/p999、吞吐量和错误数。
+ *
+ * 用法：java -cp <classpath> com.chatroom.client.loadgen.LoadGenerator [scenario.json]
+ */
+public class LoadGenerator {
+
+    static final Gson GSON = new Gson();
+
+    // 发送调度的时间片
+    private static final long TICK_MS = 10;
+
+    private final Scenario scenario;
+    private final LoadStats stats = new LoadStats();
+    // 建连阶段心跳线程会并发读取
+    private final List<SimulatedUser> users = new CopyOnWriteArrayList<>();
+
+    private ExecutorService ioExecutor;
+    private ScheduledExecutorService scheduler;
+    private HttpClient client;
+    private URI uri;
+    private long startNanos;
+
+    // 发送配额的小数部分，只在调度线程中访问
+    private double sendBudget;
+
+    public LoadGenerator(Scenario scenario) {
+        this.scenario = scenario;
+    }
+
+    public static void main(String[] args) throws Exception {
+        Scenario scenario = Scenario.load(args.length > 0 ? args[0] : null);
+        Map<String, Object> report = new LoadGenerator(scenario).run();
+        System.exit(((Number) report.get("connectFailures")).longValue() == scenario.getUsers() ? 1 : 0);
+    }
+
+    Scenario getScenario() {
+        return scenario;
+    }
+
+    LoadStats getStats() {
+        return stats;
+    }
+
+    /**
+     * 执行完整的压测流程
+     *
+     * @return 最终汇总结果
+     */
+    public Map<String, Object> run() throws Exception {
+        System.out.println("=== 压测开始: " + scenario.getUrl() + " ===");
+        System.out.println(scenario);
+
+        AtomicInteger seq = new AtomicInteger();
+        ioExecutor = Executors.newFixedThreadPool(scenario.getIoThreads(), r -> {
+            Thread t = new Thread(r, "LoadGen-IO-" + seq.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        scheduler = Executors.newScheduledThreadPool(2, r -> {
+            Thread t = new Thread(r, "LoadGen-Scheduler");
+            t.setDaemon(true);
+            return t;
+        });
+        client = HttpClient.newBuilder().executor(ioExecutor).build();
+        uri = URI.create(scenario.getUrl());
+
+        try {
+            // 心跳从建连开始就要发，每秒轮到 1/heartbeatSec 的用户，避免所有心跳挤在同一时刻
+            if (scenario.getHeartbeatSec() > 0) {
+                scheduler.scheduleAtFixedRate(this::heartbeat, 1, 1, TimeUnit.SECONDS);
+            }
+            rampUp();
+            setUpGroups();
+
+            // 压测阶段重新计时，只统计压测期间的吞吐
+            startNanos = System.nanoTime();
+            scheduler.scheduleAtFixedRate(this::guarded, TICK_MS, TICK_MS, TimeUnit.MILLISECONDS);
+            if (scenario.getChurnPerMin() > 0) {
+                long periodMs = Math.max(1, (long) (60_000 / scenario.getChurnPerMin()));
+                scheduler.scheduleAtFixedRate(this::churn, periodMs, periodMs, TimeUnit.MILLISECONDS);
+            }
+            long reportMs = TimeUnit.SECONDS.toMillis(Math.max(1, scenario.getReportIntervalSec()));
+            scheduler.scheduleAtFixedRate(this::printProgress, reportMs, reportMs, TimeUnit.MILLISECONDS);
+
+            Thread.sleep(TimeUnit.SECONDS.toMillis(scenario.getDurationSec()));
+            scheduler.shutdownNow();
+
+            // 等待在途消息送达，吞吐按压测时长计算
+            Thread.sleep(TimeUnit.SECONDS.toMillis(scenario.getDrainSec()));
+            Map<String, Object> report = stats.summary(scenario.getDurationSec());
+            printReport(report);
+            return report;
+        } finally {
+            scheduler.shutdownNow();
+            List<CompletableFuture<Void>> closing = new ArrayList<>();
+            for (SimulatedUser user : users) {
+                closing.add(user.close());
+            }
+            try {
+                CompletableFuture.allOf(closing.toArray(new CompletableFuture[0])).get(5, TimeUnit.SECONDS);
+            } catch (Exception ignored) {
+            }
+            ioExecutor.shutdownNow();
+        }
+    }
+
+    // ================= 各阶段 =================
+
+    /**
+     * 在 rampUpSec 内均匀地建立全部连接并登录
+     */
+    private void rampUp() throws InterruptedException {
+        int total = scenario.getUsers();
+        long intervalNanos = total > 0 ? TimeUnit.SECONDS.toNanos(scenario.getRampUpSec()) / total : 0;
+        long begin = System.nanoTime();
+        List<CompletableFuture<Void>> logins = new ArrayList<>(total);
+        for (int i = 0; i < total; i++) {
+            SimulatedUser user = new SimulatedUser(scenario.getUserPrefix() + i, this);
+            users.add(user);
+            logins.add(user.connect(client, uri));
+
+            long waitNanos = begin + intervalNanos * (i + 1) - System.nanoTime();
+            if (waitNanos > 0) {
+                TimeUnit.NANOSECONDS.sleep(waitNanos);
+            }
+        }
+        try {
+            CompletableFuture.allOf(logins.toArray(new CompletableFuture[0])).get(30, TimeUnit.SECONDS);
+        } catch (Exception ignored) {
+            // 失败的连接已计入统计
+        }
+        System.out.println("连接建立完成: 在线 " + onlineCount() + "/" + total
+                + ", 连接失败 " + stats.connectFailures.sum() + ", 登录失败 " + stats.loginFailures.sum());
+    }
+
+    /**
+     * 第 g 个群的成员为序号 g*groupSize 起连续 groupSize 个用户（超出用户数时回绕），第一个成员任群主
+     */
+    private void setUpGroups() {
+        int total = users.size();
+        int size = Math.min(scenario.getGroupSize(), total);
+        if (total == 0 || size == 0) {
+            return;
+        }
+        String runTag = Long.toString(System.currentTimeMillis(), 36);
+        int created = 0;
+        for (int g = 0; g < scenario.getGroups(); g++) {
+            List<SimulatedUser> members = new ArrayList<>(size);
+            for (int k = 0; k < size; k++) {
+                members.add(users.get((g * size + k) % total));
+            }
+            SimulatedUser owner = members.get(0);
+            if (!owner.isOnline()) {
+                System.err.println("群主不在线，跳过第 " + g + " 个群");
+                continue;
+            }
+            List<String> names = new ArrayList<>(size - 1);
+            for (SimulatedUser member : members.subList(1, size)) {
+                names.add(member.getName());
+            }
+            try {
+                String groupId = owner.createGroup("loadgen-" + runTag + "-" + g, names).get(10, TimeUnit.SECONDS);
+                for (SimulatedUser member : members) {
+                    member.getGroupIds().add(groupId);
+                }
+                created++;
+            } catch (Exception e) {
+                System.err.println("创建第 " + g + " 个群失败: " + e.getMessage());
+            }
+        }
+        System.out.println("群创建完成: " + created + "/" + scenario.getGroups());
+    }
+
+    private void guarded() {
+        try {
+            tick();
+        } catch (RuntimeException e) {
+            // 调度任务抛出异常会被静默取消，这里必须吞掉
+            System.err.println("发送调度异常: " + e.getMessage());
+        }
+    }
+
+    /**
+     * 每个时间片按速率发出对应数量的消息
+     */
+    private void tick() {
+        sendBudget += scenario.getSendRate() * TICK_MS / 1000.0;
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        while (sendBudget >= 1) {
+            sendBudget--;
+            SimulatedUser sender = randomOnlineUser(random);
+            if (sender == null) {
+                return;
+            }
+            List<String> groups = sender.getGroupIds();
+            if (!groups.isEmpty() && random.nextDouble() < scenario.getGroupRatio()) {
+                sender.sendGroup(groups.get(random.nextInt(groups.size())));
+            } else {
+                SimulatedUser target = randomOnlineUser(random);
+                if (target != null && target != sender) {
+                    sender.sendPrivate(target.getName());
+                }
+            }
+        }
+    }
+
+    /**
+     * 给本秒轮到的在线用户发心跳
+     */
+    private void heartbeat() {
+        int period = scenario.getHeartbeatSec();
+        int slot = (int) (TimeUnit.NANOSECONDS.toSeconds(System.nanoTime()) % period);
+        for (int i = slot; i < users.size(); i += period) {
+            SimulatedUser user = users.get(i);
+            if (user.isOnline()) {
+                user.sendHeartbeat();
+            }
+        }
+    }
+
+    /**
+     * 随机挑一个在线用户断开并重连
+     */
+    private void churn() {
+        SimulatedUser user = randomOnlineUser(ThreadLocalRandom.current());
+        if (user == null) {
+            return;
+        }
+        stats.reconnects.increment();
+        user.close().thenCompose(v -> user.connect(client, uri))
+                .exceptionally(e -> null);
+    }
+
+    private SimulatedUser randomOnlineUser(ThreadLocalRandom random) {
+        if (users.isEmpty()) {
+            return null;
+        }
+        // 多试几次，掉线用户占比不高时足够
+        for (int i = 0; i < 8; i++) {
+            SimulatedUser user = users.get(random.nextInt(users.size()));
+            if (user.isOnline()) {
+                return user;
+            }
+        }
+        return null;
+    }
+
+    private int onlineCount() {
+        int n = 0;
+        for (SimulatedUser user : users) {
+            if (user.isOnline()) {
+                n++;
+            }
+        }
+        return n;
+    }
+
+    // ================= 输出 =================
+
+    private void printProgress() {
+        double elapsed = (System.nanoTime() - startNanos) / 1e9;
+        LatencyHistogram latency = stats.latency;
+        System.out.printf("[%6.1fs] 在线 %d, 已发 %d (%.0f/s), 已送达 %d (%.0f/s), p50 %.2fms, p99 %.2fms, p999 %.2fms, 错误 %d%n",
+                elapsed, onlineCount(), stats.getSent(), stats.getSent() / elapsed,
+                stats.delivered.sum(), stats.delivered.sum() / elapsed,
+                latency.quantile(0.5) / 1e6, latency.quantile(0.99) / 1e6, latency.quantile(0.999) / 1e6,
+                stats.getErrors());
+    }
+
+    private void printReport(Map<String, Object> report) throws IOException {
+        String json = new GsonBuilder().setPrettyPrinting().create().toJson(report);
+        System.out.println("=== 压测结果 ===");
+        System.out.println(json);
+        if (scenario.getReportFile() != null) {
+            Path path = Path.of(scenario.getReportFile());
+            if (path.getParent() != null) {
+                Files.createDirectories(path.getParent());
+            }
+            Files.writeString(path, json, StandardCharsets.UTF_8);
+            System.out.println("结果已保存到 " + path.toAbsolutePath());
+        }
+    }
+}
@@ -0,0 +1,82 @@
+package com.chatroom.client.loadgen;
+
+import com.example.chat.metrics.LatencyHistogram;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 压测计数器，所有字段都可以多线程并发累加
+ */
+public class LoadStats {
+
+    // 连接
+    final LongAdder connected = new LongAdder();
+    final LongAdder connectFailures = new LongAdder();
+    final LongAdder loginFailures = new LongAdder();
+    final LongAdder disconnects = new LongAdder();
+    final LongAdder reconnects = new LongAdder();
+
+    // 发送
+    final LongAdder sentPrivate = new LongAdder();
+    final LongAdder sentGroup = new LongAdder();
+    final LongAdder sentRead = new LongAdder();
+    final LongAdder sentReact = new LongAdder();
+    final LongAdder sendFailures = new LongAdder();
+    final LongAdder backlogSkips = new LongAdder();
+
+    // 接收
+    final LongAdder acks = new LongAdder();
+    final LongAdder delivered = new LongAdder();
+    final LongAdder serverErrors = new LongAdder();
+
+    // 端到端投递延迟（纳秒）：发送方发出 -> 接收方收到 EVENT_CHAT_MSG
+    final LatencyHistogram latency = new LatencyHistogram();
+
+    public long getSent() {
+        return sentPrivate.sum() + sentGroup.sum();
+    }
+
+    public long getErrors() {
+        return connectFailures.sum() + loginFailures.sum() + sendFailures.sum() + serverErrors.sum();
+    }
+
+    /**
+     * 汇总为有序 Map，既用于打印也用于写 JSON 报告
+     */
+    public Map<String, Object> summary(double elapsedSec) {
+        Map<String, Object> m = new LinkedHashMap<>();
+        m.put("elapsedSec", round(elapsedSec));
+        m.put("connected", connected.sum());
+        m.put("connectFailures", connectFailures.sum());
+        m.put("loginFailures", loginFailures.sum());
+        m.put("disconnects", disconnects.sum());
+        m.put("reconnects", reconnects.sum());
+        m.put("sentPrivate", sentPrivate.sum());
+        m.put("sentGroup", sentGroup.sum());
+        m.put("sentRead", sentRead.sum());
+        m.put("sentReact", sentReact.sum());
+        m.put("sendFailures", sendFailures.sum());
+        m.put("backlogSkips", backlogSkips.sum());
+        m.put("acks", acks.sum());
+        m.put("delivered", delivered.sum());
+        m.put("serverErrors", serverErrors.sum());
+        m.put("sendPerSec", round(getSent() / elapsedSec));
+        m.put("deliveredPerSec", round(delivered.sum() / elapsedSec));
+
+        Map<String, Object> lat = new LinkedHashMap<>();
+        lat.put("count", latency.getCount());
+        lat.put("meanMs", round(latency.getCount() == 0 ? 0 : latency.getSum() / 1e6 / latency.getCount()));
+        lat.put("p50Ms", round(latency.quantile(0.5) / 1e6));
+        lat.put("p99Ms", round(latency.quantile(0.99) / 1e6));
+        lat.put("p999Ms", round(latency.quantile(0.999) / 1e6));
+        lat.put("maxMs", round(latency.getMax() / 1e6));
+        m.put("latency", lat);
+        return m;
+    }
+
+    private static double round(double v) {
+        return Math.round(v * 1000) / 1000.0;
+    }
+}
@@ -0,0 +1,166 @@
+package com.chatroom.client.loadgen;
+
+import com.google.gson.Gson;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+/**
+ * 压测场景，从 JSON 文件读取，未给出的字段使用下面的默认值
+ * 示例见 resources/loadgen/scenario.json
+ */
+public class Scenario {
+    // 服务器地址
+    private String url = "ws://localhost:8080/chat";
+
+    // 用户：名称为 userPrefix + 序号，首次登录即自动注册
+    private int users = 1000;
+    private String userPrefix = "lg";
+    private String password = "loadgen";
+
+    // 群：每个群 groupSize 人，成员按序号轮流分配
+    private int groups = 10;
+    private int groupSize = 50;
+
+    // 时间（秒）：在 rampUpSec 内逐步建立全部连接，然后压测 durationSec，最后等待 drainSec 收齐在途消息
+    private int rampUpSec = 10;
+    private int durationSec = 60;
+    private int drainSec = 3;
+
+    // 全体用户每秒发送的消息总数，其中 groupRatio 比例为群消息
+    private double sendRate = 500;
+    private double groupRatio = 0.5;
+
+    // 收到一条消息后回已读 / 点赞的概率
+    private double readRatio = 0.2;
+    private double reactRatio = 0.05;
+
+    // 每分钟随机断开并重连的用户数
+    private double churnPerMin = 0;
+
+    // 心跳周期（秒），与客户端一致；不发心跳的连接会被服务端当作死连接回收
+    private int heartbeatSec = 30;
+
+    // 消息内容长度（字节）
+    private int messageBytes = 64;
+
+    // 单个用户未发完的帧超过这个数时跳过本次发送，避免压测端自己堆积
+    private int maxPendingSends = 256;
+
+    // 处理收发的线程数，0 表示 CPU 核数
+    private int ioThreads = 0;
+
+    // 进度输出间隔；reportFile 非空时最终结果另存为 JSON
+    private int reportIntervalSec = 5;
+    private String reportFile;
+
+    /**
+     * @param path 场景文件路径，为 null 时使用 classpath 中的示例场景
+     */
+    public static Scenario load(String path) throws IOException {
+        Gson gson = new Gson();
+        if (path != null) {
+            try (Reader reader = Files.newBufferedReader(Path.of(path), StandardCharsets.UTF_8)) {
+                return gson.fromJson(reader, Scenario.class);
+            }
+        }
+        try (InputStream in = Scenario.class.getResourceAsStream("/loadgen/scenario.json")) {
+            if (in == null) {
+                return new Scenario();
+            }
+            return gson.fromJson(new InputStreamReader(in, StandardCharsets.UTF_8), Scenario.class);
+        }
+    }
+
+    public String getUrl() {
+        return url;
+    }
+
+    public int getUsers() {
+        return users;
+    }
+
+    public String getUserPrefix() {
+        return userPrefix;
+    }
+
+    public String getPassword() {
+        return password;
+    }
+
+    public int getGroups() {
+        return groups;
+    }
+
+    public int getGroupSize() {
+        return groupSize;
+    }
+
+    public int getRampUpSec() {
+        return rampUpSec;
+    }
+
+    public int getDurationSec() {
+        return durationSec;
+    }
+
+    public int getDrainSec() {
+        return drainSec;
+    }
+
+    public double getSendRate() {
+        return sendRate;
+    }
+
+    public double getGroupRatio() {
+        return groupRatio;
+    }
+
+    public double getReadRatio() {
+        return readRatio;
+    }
+
+    public double getReactRatio() {
+        return reactRatio;
+    }
+
+    public double getChurnPerMin() {
+        return churnPerMin;
+    }
+
+    public int getHeartbeatSec() {
+        return heartbeatSec;
+    }
+
+    public int getMessageBytes() {
+        return messageBytes;
+    }
+
+    public int getMaxPendingSends() {
+        return maxPendingSends;
+    }
+
+    public int getIoThreads() {
+        return ioThreads > 0 ? ioThreads : Runtime.getRuntime().availableProcessors();
+    }
+
+    public int getReportIntervalSec() {
+        return reportIntervalSec;
+    }
+
+    public String getReportFile() {
+        return reportFile;
+    }
+
+    @Override
+    public String toString() {
+        return "用户数=" + users + ", 群数=" + groups + "x" + groupSize + "人, 发送速率=" + sendRate + "/s (群消息占 "
+                + groupRatio + "), 已读=" + readRatio + ", 点赞=" + reactRatio + ", 重连=" + churnPerMin
+                + "/min, 时长=" + durationSec + "s";
+    }
+}
@@ -0,0 +1,312 @@
+package com.chatroom.client.loadgen;
+
+import com.chatroom.client.model.ActionConstants;
+import com.chatroom.client.model.EventTypeConstants;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.WebSocket;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 一个模拟用户：一条 WebSocket 连接，协议与 ChatClient 相同
+ *
+ * 基于 JDK 的 java.net.http.WebSocket，所有连接共用一个 HttpClient 和少量 IO 线程，
+ * 不像 Java-WebSocket 那样每个连接占用独立线程，单个 JVM 可以撑起数千个会话。
+ * JDK WebSocket 不允许并发 sendText，所以每个用户的发送串成一条 Future 链。
+ */
+class SimulatedUser {
+
+    // 压测消息的内容前缀，后面跟发送时的 System.nanoTime()，接收方据此计算延迟
+    static final String MARKER = "lg|";
+
+    private final String name;
+    private final LoadGenerator generator;
+    private final LoadStats stats;
+
+    // 所在的群 ID
+    private final List<String> groupIds = new CopyOnWriteArrayList<>();
+
+    private volatile WebSocket ws;
+    private volatile boolean online;
+    private volatile boolean closing;
+    private volatile CompletableFuture<Void> loginFuture;
+    private volatile CompletableFuture<JsonObject> pendingSuccess;
+
+    // 以下字段由 this 的锁保护
+    private CompletableFuture<WebSocket> sendChain = CompletableFuture.completedFuture(null);
+    private final AtomicInteger pendingSends = new AtomicInteger();
+
+    SimulatedUser(String name, LoadGenerator generator) {
+        this.name = name;
+        this.generator = generator;
+        this.stats = generator.getStats();
+    }
+
+    String getName() {
+        return name;
+    }
+
+    boolean isOnline() {
+        return online;
+    }
+
+    List<String> getGroupIds() {
+        return groupIds;
+    }
+
+    /**
+     * 建立连接并登录，登录成功（收到 LOGIN_RESP）后完成
+     */
+    CompletableFuture<Void> connect(HttpClient client, URI uri) {
+        closing = false;
+        CompletableFuture<Void> login = new CompletableFuture<>();
+        loginFuture = login;
+        client.newWebSocketBuilder()
+                .connectTimeout(Duration.ofSeconds(10))
+                .buildAsync(uri, new Listener())
+                .whenComplete((socket, e) -> {
+                    if (e != null) {
+                        stats.connectFailures.increment();
+                        login.completeExceptionally(e);
+                        return;
+                    }
+                    stats.connected.increment();
+                    synchronized (this) {
+                        ws = socket;
+                        sendChain = CompletableFuture.completedFuture(socket);
+                        pendingSends.set(0);
+                    }
+                    JsonObject params = new JsonObject();
+                    params.addProperty("username", name);
+                    params.addProperty("password", generator.getScenario().getPassword());
+                    send(ActionConstants.LOGIN, params);
+                });
+        return login;
+    }
+
+    /**
+     * 主动断开（模拟用户掉线），不计入异常断开
+     */
+    CompletableFuture<Void> close() {
+        closing = true;
+        online = false;
+        WebSocket socket = ws;
+        if (socket == null) {
+            return CompletableFuture.completedFuture(null);
+        }
+        return socket.sendClose(WebSocket.NORMAL_CLOSURE, "bye")
+                .handle((w, e) -> {
+                    socket.abort();
+                    return null;
+                });
+    }
+
+    /**
+     * 创建群并等待服务端返回群 ID
+     */
+    CompletableFuture<String> createGroup(String groupName, List<String> members) {
+        CompletableFuture<JsonObject> result = new CompletableFuture<>();
+        pendingSuccess = result;
+        JsonObject params = new JsonObject();
+        params.addProperty("groupName", groupName);
+        params.add("members", LoadGenerator.GSON.toJsonTree(members));
+        send(ActionConstants.CREATE_GROUP, params);
+        return result.thenApply(data -> data.get("groupId").getAsString());
+    }
+
+    void sendPrivate(String target) {
+        JsonObject params = new JsonObject();
+        params.addProperty("targetUser", target);
+        params.addProperty("content", newContent());
+        if (send(ActionConstants.SEND_PRIVATE, params)) {
+            stats.sentPrivate.increment();
+        }
+    }
+
+    void sendGroup(String groupId) {
+        JsonObject params = new JsonObject();
+        params.addProperty("targetUser", groupId);
+        params.addProperty("content", newContent());
+        if (send(ActionConstants.SEND_GROUP, params)) {
+            stats.sentGroup.increment();
+        }
+    }
+
+    void sendHeartbeat() {
+        send(ActionConstants.HEARTBEAT, new JsonObject());
+    }
+
+    // ================= 内部实现 =================
+
+    private String newContent() {
+        StringBuilder sb = new StringBuilder(MARKER).append(System.nanoTime()).append('|');
+        while (sb.length() < generator.getScenario().getMessageBytes()) {
+            sb.append('x');
+        }
+        return sb.toString();
+    }
+
+    /**
+     * 发送一帧；连接未建立或本用户积压过多时放弃
+     *
+     * @return 是否已放入发送链
+     */
+    private boolean send(String action, JsonObject params) {
+        JsonObject request = new JsonObject();
+        request.addProperty("action", action);
+        request.add("params", params);
+        String json = LoadGenerator.GSON.toJson(request);
+
+        synchronized (this) {
+            WebSocket socket = ws;
+            if (socket == null || closing) {
+                return false;
+            }
+            if (pendingSends.get() >= generator.getScenario().getMaxPendingSends()) {
+                stats.backlogSkips.increment();
+                return false;
+            }
+            pendingSends.incrementAndGet();
+            // 前一帧失败不影响后面的帧
+            sendChain = sendChain
+                    .exceptionally(e -> socket)
+                    .thenCompose(w -> socket.sendText(json, true))
+                    .whenComplete((w, e) -> {
+                        pendingSends.decrementAndGet();
+                        if (e != null && !closing) {
+                            stats.sendFailures.increment();
+                        }
+                    });
+            return true;
+        }
+    }
+
+    private void onFrame(String text) {
+        JsonObject response = JsonParser.parseString(text).getAsJsonObject();
+        String type = response.has("type") ? response.get("type").getAsString() : "";
+        JsonElement data = response.get("data");
+
+        switch (type) {
+            case EventTypeConstants.LOGIN_RESP:
+                online = true;
+                loginFuture.complete(null);
+                break;
+            case EventTypeConstants.EVENT_CHAT_MSG:
+                onChatMessage(data.getAsJsonObject());
+                break;
+            case "SUCCESS":
+                stats.acks.increment();
+                CompletableFuture<JsonObject> pending = pendingSuccess;
+                if (pending != null && data != null && data.isJsonObject()
+                        && data.getAsJsonObject().has("groupId") && data.getAsJsonObject().has("groupName")) {
+                    pendingSuccess = null;
+                    pending.complete(data.getAsJsonObject());
+                }
+                break;
+            case EventTypeConstants.ERROR:
+                stats.serverErrors.increment();
+                String msg = response.has("msg") ? response.get("msg").getAsString() : "";
+                if (!loginFuture.isDone()) {
+                    stats.loginFailures.increment();
+                    loginFuture.completeExceptionally(new IllegalStateException(name + " 登录失败: " + msg));
+                }
+                CompletableFuture<JsonObject> failed = pendingSuccess;
+                if (failed != null) {
+                    pendingSuccess = null;
+                    failed.completeExceptionally(new IllegalStateException(msg));
+                }
+                break;
+            default:
+                // 已读/反应/心跳等事件只需收下
+        }
+    }
+
+    private void onChatMessage(JsonObject msg) {
+        String content = msg.has("content") ? msg.get("content").getAsString() : "";
+        if (!content.startsWith(MARKER) || name.equals(msg.get("fromUser").getAsString())) {
+            return;
+        }
+        int end = content.indexOf('|', MARKER.length());
+        long sentAt = Long.parseLong(content.substring(MARKER.length(), end));
+        stats.latency.record(System.nanoTime() - sentAt);
+        stats.delivered.increment();
+
+        // 按比例回已读 / 点赞
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        String msgId = msg.get("msgId").getAsString();
+        if (random.nextDouble() < generator.getScenario().getReadRatio()) {
+            JsonObject params = new JsonObject();
+            params.addProperty("msgId", msgId);
+            if (send(ActionConstants.MSG_READ, params)) {
+                stats.sentRead.increment();
+            }
+        }
+        if (random.nextDouble() < generator.getScenario().getReactRatio()) {
+            JsonObject params = new JsonObject();
+            params.addProperty("msgId", msgId);
+            params.addProperty("reactType", "like");
+            if (send(ActionConstants.MSG_REACT, params)) {
+                stats.sentReact.increment();
+            }
+        }
+    }
+
+    private void onClosed() {
+        online = false;
+        if (!closing) {
+            stats.disconnects.increment();
+        }
+        CompletableFuture<Void> login = loginFuture;
+        if (login != null && !login.isDone()) {
+            login.completeExceptionally(new IllegalStateException(name + " 连接已断开"));
+        }
+    }
+
+    /**
+     * JDK WebSocket 回调：同一连接的回调不会并发，文本帧可能分片到达
+     */
+    private class Listener implements WebSocket.Listener {
+        private final StringBuilder partial = new StringBuilder();
+
+        @Override
+        public CompletionStage<?> onText(WebSocket webSocket, CharSequence data, boolean last) {
+            partial.append(data);
+            if (last) {
+                String text = partial.toString();
+                partial.setLength(0);
+                try {
+                    onFrame(text);
+                } catch (RuntimeException e) {
+                    System.err.println("解析服务端消息失败: " + e.getMessage());
+                }
+            }
+            webSocket.request(1);
+            return null;
+        }
+
+        @Override
+        public CompletionStage<?> onClose(WebSocket webSocket, int statusCode, String reason) {
+            if (webSocket == ws) {
+                onClosed();
+            }
+            return null;
+        }
+
+        @Override
+        public void onError(WebSocket webSocket, Throwable error) {
+            if (webSocket == ws) {
+                onClosed();
+            }
+        }
+    }
+}
@@ -8,6 +8,7 @@ public class ActionConstants {
     public static final String LOGOUT = "LOGOUT";
     public static final String SEND_PRIVATE = "SEND_PRIVATE";
     public static final String SEND_GROUP = "SEND_GROUP";
+    public static final String CREATE_GROUP = "CREATE_GROUP";
     public static final String RECALL_MSG = "RECALL_MSG";
     public static final String GET_ONLINE = "GET_ONLINE";
     public static final String GET_HISTORY = "GET_HISTORY";
@@ -15,6 +16,7 @@ public class ActionConstants {
     public static final String TYPING_START = "TYPING_START";
     public static final String MSG_REACT = "MSG_REACT";
     public static final String HEARTBEAT = "HEARTBEAT";
+    public static final String ACK = "ACK";
     // 管理员指令
     public static final String KICK_USER = "KICK_USER";
     public static final String MUTE_USER = "MUTE_USER";
@@ -6,6 +6,7 @@ package com.chatroom.client.model;
 public class EventTypeConstants {
     public static final String LOGIN_RESP = "LOGIN_RESP";
     public static final String EVENT_CHAT_MSG = "EVENT_CHAT_MSG";
+    public static final String EVENT_OFFLINE_MSGS = "EVENT_OFFLINE_MSGS";
     public static final String ONLINE_LIST = "ONLINE_LIST";
     public static final String HISTORY_LIST = "HISTORY_LIST";
     public static final String EVENT_MSG_RECALLED = "EVENT_MSG_RECALLED";
@@ -13,6 +14,8 @@ public class EventTypeConstants {
     public static final String EVENT_MSG_REACT = "EVENT_MSG_REACT";
     public static final String EVENT_TYPING = "EVENT_TYPING";
     public static final String SYS_NOTICE = "SYS_NOTICE";
+    public static final String EVENT_RESYNC = "EVENT_RESYNC";
+    public static final String EVENT_RESUME_TOKEN = "EVENT_RESUME_TOKEN";
     public static final String ERROR = "ERROR";
 }
 
@@ -11,6 +11,8 @@ public class ServerResponse {
     private int code;
     private String msg;
     private JsonElement data; // 支持对象和数组
+    private Long seq; // 事件序号，只有可靠事件和 LOGIN_RESP 带
+    private String resumeToken; // 续传令牌，LOGIN_RESP 和 EVENT_RESUME_TOKEN 带
 
     public ServerResponse() {
     }
@@ -47,6 +49,22 @@ public class ServerResponse {
         this.data = data;
     }
 
+    public Long getSeq() {
+        return seq;
+    }
+
+    public void setSeq(Long seq) {
+        this.seq = seq;
+    }
+
+    public String getResumeToken() {
+        return resumeToken;
+    }
+
+    public void setResumeToken(String resumeToken) {
+        this.resumeToken = resumeToken;
+    }
+
     /**
      * 获取 data 作为 JsonObject（如果 data 是对象）
      */
@@ -598,7 +598,7 @@ public class ChatClientGUI extends JFrame {
     public static void main(String[] args) {
         // 设置系统外观
         try {
-            UIManager.setLookAndFeel(UIManager.getSystemLookAndFeel());
+            UIManager.setLookAndFeel(UIManager.getSystemLookAndFeelClassName());
         } catch (Exception e) {
             e.printStackTrace();
         }
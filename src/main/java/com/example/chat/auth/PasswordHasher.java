@@ -0,0 +1,175 @@
+package com.example.chat.auth;
+
+import com.example.chat.logging.ChatLog;
+import com.example.chat.metrics.LatencyHistogram;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.crypto.bcrypt.BCryptPasswordEncoder;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+
+/**
+ * 密码哈希与校验（BCrypt），在独立的有界线程池上执行
+ *
+ * 1. BCrypt 每次几十毫秒的 CPU，放在 WebSocket 容器线程上，登录高峰会拖住所有连接的消息处理；
+ *    这里固定线程数、固定队列长度，登录再多也只是登录变慢，聊天流量不受影响。
+ * 2. 准入控制：队列满时立即拒绝（"登录繁忙"）；排队超过 max-wait-ms 的任务出队时直接放弃，
+ *    客户端多半已超时重试，不再为它消耗 CPU。
+ * 3. 旧数据中的明文密码和低于当前 cost 的哈希在校验通过时顺带重新哈希，由调用方写回。
+ * 4. 记录排队时间和哈希耗时的直方图，供 /metrics 输出。
+ */
+@Component
+public class PasswordHasher {
+
+    private static final ChatLog LOG = ChatLog.of("auth");
+
+    // BCrypt 的 log2 轮数，每加 1 耗时翻倍
+    @Value("${chat.auth.bcrypt-cost:10}")
+    private int cost;
+
+    // 哈希线程数，0 表示 CPU 核数的一半（至少 1 个）
+    @Value("${chat.auth.hash-threads:0}")
+    private int threads;
+
+    @Value("${chat.auth.hash-queue:256}")
+    private int queueCapacity;
+
+    @Value("${chat.auth.hash-max-wait-ms:5000}")
+    private long maxWaitMs;
+
+    private BCryptPasswordEncoder encoder;
+    private ThreadPoolExecutor executor;
+    private long maxWaitNanos;
+
+    private final LatencyHistogram queueWait = new LatencyHistogram();
+    private final LatencyHistogram hashTime = new LatencyHistogram();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder expired = new LongAdder();
+
+    @PostConstruct
+    public void init() {
+        encoder = new BCryptPasswordEncoder(cost);
+        int size = threads > 0 ? threads : Math.max(1, Runtime.getRuntime().availableProcessors() / 2);
+        AtomicInteger seq = new AtomicInteger();
+        executor = new ThreadPoolExecutor(size, size, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(Math.max(1, queueCapacity)), r -> {
+                    Thread t = new Thread(r, "Password-" + seq.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                }, new ThreadPoolExecutor.AbortPolicy());
+        maxWaitNanos = TimeUnit.MILLISECONDS.toNanos(maxWaitMs);
+        LOG.info("密码哈希线程池已启动", "threads", size, "queue", queueCapacity, "cost", cost);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    /**
+     * 哈希一个新密码（注册时）
+     */
+    public CompletableFuture<String> encode(String raw) {
+        return submit(() -> encoder.encode(raw));
+    }
+
+    /**
+     * 校验密码；通过且存储的是明文或低 cost 哈希时，一并给出新哈希
+     */
+    public CompletableFuture<Result> verify(String raw, String stored) {
+        return submit(() -> {
+            if (stored == null) {
+                return new Result(false, null);
+            }
+            if (!isHashed(stored)) {
+                // 旧数据中的明文密码
+                boolean matches = MessageDigest.isEqual(
+                        raw.getBytes(StandardCharsets.UTF_8), stored.getBytes(StandardCharsets.UTF_8));
+                return new Result(matches, matches ? encoder.encode(raw) : null);
+            }
+            if (!encoder.matches(raw, stored)) {
+                return new Result(false, null);
+            }
+            return new Result(true, encoder.upgradeEncoding(stored) ? encoder.encode(raw) : null);
+        });
+    }
+
+    public int getQueued() {
+        return executor.getQueue().size();
+    }
+
+    public int getActive() {
+        return executor.getActiveCount();
+    }
+
+    public long getRejected() {
+        return rejected.sum();
+    }
+
+    public long getExpired() {
+        return expired.sum();
+    }
+
+    public LatencyHistogram getQueueWait() {
+        return queueWait;
+    }
+
+    public LatencyHistogram getHashTime() {
+        return hashTime;
+    }
+
+    /**
+     * @param matches  密码是否正确
+     * @param upgraded 需要写回的新哈希；不需要升级时为 null
+     */
+    public record Result(boolean matches, String upgraded) {
+    }
+
+    // ================= 内部实现 =================
+
+    private static boolean isHashed(String stored) {
+        return stored.length() == 60 && stored.startsWith("$2");
+    }
+
+    private <T> CompletableFuture<T> submit(Supplier<T> task) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        long enqueued = System.nanoTime();
+        try {
+            executor.execute(() -> {
+                long start = System.nanoTime();
+                queueWait.record(start - enqueued);
+                if (start - enqueued > maxWaitNanos) {
+                    expired.increment();
+                    future.completeExceptionally(new IllegalStateException("登录超时，请稍后重试"));
+                    return;
+                }
+                T result;
+                try {
+                    result = task.get();
+                } catch (RuntimeException e) {
+                    hashTime.record(System.nanoTime() - start);
+                    future.completeExceptionally(e);
+                    return;
+                }
+                // 先记耗时再完成，调用方拿到结果时统计已经可见
+                hashTime.record(System.nanoTime() - start);
+                future.complete(result);
+            });
+        } catch (RejectedExecutionException e) {
+            rejected.increment();
+            future.completeExceptionally(new IllegalStateException("登录繁忙，请稍后重试"));
+        }
+        return future;
+    }
+}
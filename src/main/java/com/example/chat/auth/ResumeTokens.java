@@ -0,0 +1,200 @@
+package com.example.chat.auth;
+
+import com.example.chat.logging.ChatLog;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.WebSocketSession;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 续传令牌：登录成功后签发，断线重连时在握手中出示即可免去密码校验
+ *
+ * 1. 格式为 base64url(用户名).签发时刻(毫秒，36 进制).base64url(HMAC-SHA256)，不在服务端保存，
+ *    校验只需一次 HMAC 和常量时间比较，网络抖动后大量客户端同时重连也不会压到密码校验上。
+ * 2. 有效期为 ttl-sec，从签发时刻算起；连接期间由心跳在过半时换发新令牌（见 HeartbeatHandler）。
+ * 3. 管理员踢人时调用 revoke，该用户此前签发的令牌全部作废。
+ * 4. 未配置 secret 时启动时随机生成，服务重启后旧令牌失效，客户端回退到密码登录。
+ */
+@Component
+public class ResumeTokens {
+
+    private static final ChatLog LOG = ChatLog.of("auth");
+
+    // 会话属性：当前令牌的签发时刻
+    public static final String ISSUED_AT = "resumeIssuedAt";
+
+    private static final String ALGORITHM = "HmacSHA256";
+    private static final Base64.Encoder ENCODER = Base64.getUrlEncoder().withoutPadding();
+    private static final Base64.Decoder DECODER = Base64.getUrlDecoder();
+
+    @Value("${chat.auth.resume-secret:}")
+    private String secret;
+
+    @Value("${chat.auth.resume-ttl-sec:600}")
+    private long ttlSec;
+
+    private SecretKeySpec key;
+    private long ttlMillis;
+
+    // Mac 不是线程安全的，每个线程一个
+    private final ThreadLocal<Mac> macs = ThreadLocal.withInitial(this::newMac);
+
+    // 用户名 -> 该时刻及之前签发的令牌作废
+    private final Map<String, Long> revokedBefore = new ConcurrentHashMap<>();
+
+    private final LongAdder issued = new LongAdder();
+    private final LongAdder accepted = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+
+    @PostConstruct
+    public void init() {
+        byte[] bytes;
+        if (secret == null || secret.isBlank()) {
+            bytes = new byte[32];
+            new SecureRandom().nextBytes(bytes);
+            LOG.warn("未配置 chat.auth.resume-secret，使用随机密钥，重启后续传令牌失效");
+        } else {
+            bytes = secret.getBytes(StandardCharsets.UTF_8);
+        }
+        key = new SecretKeySpec(bytes, ALGORITHM);
+        ttlMillis = TimeUnit.SECONDS.toMillis(ttlSec);
+    }
+
+    /**
+     * 为会话上登录的用户签发一个新令牌，签发时刻记在会话属性里供换发时判断
+     */
+    public String issue(WebSocketSession session, String username) {
+        long now = System.currentTimeMillis();
+        session.getAttributes().put(ISSUED_AT, now);
+        return issue(username, now);
+    }
+
+    /**
+     * 会话上的令牌已签发超过有效期的一半时换发
+     *
+     * @return 新令牌；还不需要换发时返回 null
+     */
+    public String renew(WebSocketSession session, String username) {
+        Object issuedAt = session.getAttributes().get(ISSUED_AT);
+        if (!(issuedAt instanceof Long at) || System.currentTimeMillis() - at <= ttlMillis / 2) {
+            return null;
+        }
+        return issue(session, username);
+    }
+
+    String issue(String username, long issuedAt) {
+        String body = ENCODER.encodeToString(username.getBytes(StandardCharsets.UTF_8))
+                + '.' + Long.toString(issuedAt, 36);
+        issued.increment();
+        return body + '.' + ENCODER.encodeToString(sign(body));
+    }
+
+    /**
+     * 校验令牌
+     *
+     * @return 令牌所属的用户名；格式错误、签名不符、过期或已作废时返回 null
+     */
+    public String verify(String token) {
+        String username = parse(token, System.currentTimeMillis());
+        if (username == null) {
+            rejected.increment();
+        } else {
+            accepted.increment();
+        }
+        return username;
+    }
+
+    /**
+     * 作废该用户此前签发的所有令牌
+     */
+    public void revoke(String username) {
+        revokedBefore.put(username, System.currentTimeMillis());
+    }
+
+    public long getIssued() {
+        return issued.sum();
+    }
+
+    public long getAccepted() {
+        return accepted.sum();
+    }
+
+    public long getRejected() {
+        return rejected.sum();
+    }
+
+    // ================= 内部实现 =================
+
+    String parse(String token, long now) {
+        if (token == null) {
+            return null;
+        }
+        int sig = token.lastIndexOf('.');
+        int dot = token.indexOf('.');
+        if (dot <= 0 || sig <= dot) {
+            return null;
+        }
+        String body = token.substring(0, sig);
+        byte[] expected;
+        byte[] actual;
+        try {
+            expected = sign(body);
+            actual = DECODER.decode(token.substring(sig + 1));
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+        if (!MessageDigest.isEqual(expected, actual)) {
+            return null;
+        }
+        // 签名正确，以下字段都由本服务写入
+        long issuedAt = issuedAt(token);
+        if (now - issuedAt >= ttlMillis || issuedAt > now + ttlMillis) {
+            return null;
+        }
+        String username = new String(DECODER.decode(token.substring(0, dot)), StandardCharsets.UTF_8);
+        Long revoked = revokedBefore.get(username);
+        if (revoked != null && issuedAt <= revoked) {
+            return null;
+        }
+        return username;
+    }
+
+    private static long issuedAt(String token) {
+        int end = token.lastIndexOf('.');
+        int start = token.lastIndexOf('.', end - 1);
+        if (start < 0) {
+            return 0;
+        }
+        try {
+            return Long.parseLong(token.substring(start + 1, end), 36);
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+
+    private byte[] sign(String body) {
+        return macs.get().doFinal(body.getBytes(StandardCharsets.US_ASCII));
+    }
+
+    private Mac newMac() {
+        try {
+            Mac mac = Mac.getInstance(ALGORITHM);
+            mac.init(key);
+            return mac;
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("初始化 " + ALGORITHM + " 失败", e);
+        }
+    }
+}
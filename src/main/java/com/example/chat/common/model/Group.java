@@ -2,6 +2,8 @@ package com.example.chat.common.model;
 
 import lombok.Data;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.CopyOnWriteArrayList;
 
 @Data
@@ -9,8 +11,9 @@ public class Group {
     private String groupId;
     private String groupName;
     private String owner;
-    // 线程安全的 List，适合读多写少
-    private List<String> members = new CopyOnWriteArrayList<>();
+    // 成员：并发哈希集合，万人群的 contains / 加人 / 踢人都是 O(1)，不再整体复制数组
+    private Set<String> members = ConcurrentHashMap.newKeySet();
+    // 管理员人数很少，线程安全的 List 即可
     private List<String> admins = new CopyOnWriteArrayList<>();
 
     public boolean isOwner(String userId) {
@@ -21,7 +24,7 @@ public class Group {
         return isOwner(userId) || admins.contains(userId);
     }
 
-    public List<String> getMembers() {
+    public Set<String> getMembers() {
         return members;
     }
 
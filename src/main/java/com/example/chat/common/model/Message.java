@@ -1,7 +1,9 @@
 package com.example.chat.common.model;
 
+import lombok.AllArgsConstructor;
 import lombok.Builder;
 import lombok.Data;
+import lombok.NoArgsConstructor;
 
 import java.util.List;
 import java.util.Map;
@@ -10,6 +12,8 @@ import java.util.concurrent.ConcurrentHashMap;
 
 @Data
 @Builder // Lombok 注解：允许使用 .builder().build() 方式快速构建对象
+@NoArgsConstructor // 供 Jackson 反序列化（日志回放）使用
+@AllArgsConstructor
 public class Message {
     private String msgId;
     private String fromUser;
@@ -1,10 +1,15 @@
 package com.example.chat.common.packet;
 
-import com.fasterxml.jackson.databind.JsonNode;
 import lombok.Data;
 
+/**
+ * 客户端请求
+ *
+ * params 由 RequestDecoder 按 action 直接绑定为该指令的参数类型（见 common.packet.params），
+ * 不再经过 JsonNode 树；没有声明参数类型的处理器收到的仍是 JsonNode。
+ */
 @Data
-public class WsRequest {
+public class WsRequest<P> {
     private String action;      // 指令: LOGIN, SEND_PRIVATE 等
-    private JsonNode params;    // 具体参数（比如用户名、内容）
-}
\ No newline at end of file
+    private P params;           // 具体参数（比如用户名、内容）
+}
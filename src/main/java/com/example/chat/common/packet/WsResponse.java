@@ -1,5 +1,6 @@
 package com.example.chat.common.packet;
 
+import com.fasterxml.jackson.annotation.JsonInclude;
 import lombok.Builder;
 import lombok.Data;
 
@@ -12,6 +13,10 @@ public class WsResponse {
     @Builder.Default
     private String msg = "ok";
     private Object data;    // 业务数据
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private Long seq;       // 事件序号，只有 LOGIN_RESP 带（续传起点，见 EventSequencer）
+    @JsonInclude(JsonInclude.Include.NON_NULL)
+    private String resumeToken; // 续传令牌，LOGIN_RESP 和 EVENT_RESUME_TOKEN 带（见 ResumeTokens）
 
     // 快速报错的工具方法
     public static WsResponse error(String msg) {
@@ -0,0 +1,11 @@
+package com.example.chat.common.packet.params;
+
+import lombok.Data;
+
+/**
+ * ACK 参数：确认收到 seq 及之前的所有事件
+ */
+@Data
+public class AckParams {
+    private Long seq;
+}
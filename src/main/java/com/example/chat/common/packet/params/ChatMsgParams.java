@@ -0,0 +1,15 @@
+package com.example.chat.common.packet.params;
+
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * SEND_PRIVATE / SEND_GROUP 参数
+ */
+@Data
+public class ChatMsgParams {
+    private String targetUser;      // 私聊为用户名，群聊为群ID
+    private String content;
+    private List<String> atUsers;   // 可选，@ 的用户
+}
@@ -0,0 +1,14 @@
+package com.example.chat.common.packet.params;
+
+import lombok.Data;
+
+import java.util.List;
+
+/**
+ * CREATE_GROUP 参数
+ */
+@Data
+public class CreateGroupParams {
+    private String groupName;
+    private List<String> members;   // 可选，不含群主
+}
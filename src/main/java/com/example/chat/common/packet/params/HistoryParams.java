@@ -0,0 +1,12 @@
+package com.example.chat.common.packet.params;
+
+import lombok.Data;
+
+/**
+ * GET_HISTORY 参数，两个游标都可选
+ */
+@Data
+public class HistoryParams {
+    private String beforeId;    // 消息ID游标，优先使用
+    private Long beforeTime;    // 兼容旧客户端的时间戳游标
+}
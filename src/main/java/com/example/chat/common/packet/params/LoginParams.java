@@ -0,0 +1,13 @@
+package com.example.chat.common.packet.params;
+
+import lombok.Data;
+
+/**
+ * LOGIN 参数
+ */
+@Data
+public class LoginParams {
+    private String username;
+    private String password;
+    private Long lastSeq;   // 断线重连时带上收到的最后一个事件序号，首次登录不传
+}
@@ -0,0 +1,11 @@
+package com.example.chat.common.packet.params;
+
+import lombok.Data;
+
+/**
+ * 只针对一条消息的指令参数：MSG_READ / RECALL_MSG
+ */
+@Data
+public class MsgIdParams {
+    private String msgId;
+}
@@ -0,0 +1,12 @@
+package com.example.chat.common.packet.params;
+
+import lombok.Data;
+
+/**
+ * MSG_REACT 参数
+ */
+@Data
+public class ReactParams {
+    private String msgId;
+    private String reactType;
+}
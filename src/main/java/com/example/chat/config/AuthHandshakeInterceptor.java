@@ -1,18 +1,41 @@
 package com.example.chat.config;
 
+import com.example.chat.auth.ResumeTokens;
+import com.example.chat.logging.ChatLog;
+import com.example.chat.ratelimit.HandshakeGuard;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.server.ServerHttpRequest;
 import org.springframework.http.server.ServerHttpResponse;
 import org.springframework.http.server.ServletServerHttpRequest;
 import org.springframework.web.socket.WebSocketHandler;
 import org.springframework.web.socket.server.HandshakeInterceptor;
+import org.springframework.web.util.UriComponentsBuilder;
 
 import java.util.Map;
 
 /**
  * 握手拦截器：在 WebSocket 连接建立之前执行
+ *
+ * 客户端 IP 先经过 HandshakeGuard（黑白名单、建连速率、单 IP 并发数），被拒绝时直接回 403/429/503，不升级。
+ * 断线重连的客户端可以在请求头 X-Resume-Token（浏览器可用查询参数 resume）中出示续传令牌，
+ * 校验通过后把用户名记入会话属性 resumeUser，随后的 LOGIN 不再校验密码（见 LoginHandler）。
+ * 令牌无效不拒绝握手，客户端照常用密码登录。
  */
 public class AuthHandshakeInterceptor implements HandshakeInterceptor {
 
+    private static final ChatLog LOG = ChatLog.of("conn");
+
+    public static final String RESUME_HEADER = "X-Resume-Token";
+    public static final String RESUME_USER = "resumeUser";
+
+    private final ResumeTokens resumeTokens;
+    private final HandshakeGuard handshakeGuard;
+
+    public AuthHandshakeInterceptor(ResumeTokens resumeTokens, HandshakeGuard handshakeGuard) {
+        this.resumeTokens = resumeTokens;
+        this.handshakeGuard = handshakeGuard;
+    }
+
     /**
      * 握手前 (Before Handshake)
      * 返回 true = 允许连接；返回 false = 拒绝连接
@@ -26,16 +49,31 @@ public class AuthHandshakeInterceptor implements HandshakeInterceptor {
             ServletServerHttpRequest servletRequest = (ServletServerHttpRequest) request;
             String ipAddress = servletRequest.getServletRequest().getRemoteAddr();
 
-            // 模拟黑名单逻辑
-            if ("192.168.1.100".equals(ipAddress)) {
-                System.out.println("拦截黑名单 IP: " + ipAddress);
+            // 黑白名单与建连限流
+            HttpStatus rejected = handshakeGuard.admit(ipAddress);
+            if (rejected != null) {
+                response.setStatusCode(rejected);
                 return false; // ⛔️ 拒绝连接
             }
 
             // 2. 将 IP 存入 WebSocket 的 Session 属性 (上下文)
             // 这样你在 ChatHandler 里就能通过 session.getAttributes().get("clientIp") 拿到了
             attributes.put("clientIp", ipAddress);
-            System.out.println("访客 IP 已记录: " + ipAddress);
+            LOG.info("访客 IP 已记录", "ip", ipAddress);
+        }
+
+        // 3. 续传令牌：只做一次 HMAC 校验
+        String token = request.getHeaders().getFirst(RESUME_HEADER);
+        if (token == null) {
+            token = UriComponentsBuilder.fromUri(request.getURI()).build().getQueryParams().getFirst("resume");
+        }
+        if (token != null) {
+            String username = resumeTokens.verify(token);
+            if (username != null) {
+                attributes.put(RESUME_USER, username);
+            } else {
+                LOG.info("续传令牌无效，回退到密码登录");
+            }
         }
 
         return true; // ✅ 放行
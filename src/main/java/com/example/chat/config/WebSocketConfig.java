@@ -1,11 +1,19 @@
 package com.example.chat.config;
 
+import com.example.chat.auth.ResumeTokens;
 import com.example.chat.handler.ChatHandler;
+import com.example.chat.handler.codec.FrameCompression;
+import com.example.chat.ratelimit.HandshakeGuard;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.http.server.ServerHttpRequest;
+import org.springframework.web.socket.WebSocketExtension;
 import org.springframework.web.socket.config.annotation.EnableWebSocket;
 import org.springframework.web.socket.config.annotation.WebSocketConfigurer;
 import org.springframework.web.socket.config.annotation.WebSocketHandlerRegistry;
+import org.springframework.web.socket.server.support.DefaultHandshakeHandler;
+
+import java.util.List;
 
 @Configuration
 @EnableWebSocket
@@ -14,12 +22,37 @@ public class WebSocketConfig implements WebSocketConfigurer {
     @Autowired
     private ChatHandler chatHandler;
 
+    @Autowired
+    private FrameCompression frameCompression;
+
+    @Autowired
+    private ResumeTokens resumeTokens;
+
+    @Autowired
+    private HandshakeGuard handshakeGuard;
+
     @Override
     public void registerWebSocketHandlers(WebSocketHandlerRegistry registry) {
         // 核心：把 /chat 路径绑定到你的 Handler
         // setAllowedOrigins("*") 允许所有跨域，方便测试
         registry.addHandler(chatHandler, "/chat")
+                .setHandshakeHandler(new HandshakeHandler())
                 .setAllowedOrigins("*")
-                .addInterceptors(new AuthHandshakeInterceptor());
+                .addInterceptors(new AuthHandshakeInterceptor(resumeTokens, handshakeGuard));
+    }
+
+    /**
+     * 关闭帧压缩时不协商 permessage-deflate，其余扩展照常
+     */
+    private class HandshakeHandler extends DefaultHandshakeHandler {
+        @Override
+        protected List<WebSocketExtension> filterRequestedExtensions(ServerHttpRequest request,
+                List<WebSocketExtension> requested, List<WebSocketExtension> supported) {
+            List<WebSocketExtension> result = super.filterRequestedExtensions(request, requested, supported);
+            if (frameCompression.isEnabled()) {
+                return result;
+            }
+            return result.stream().filter(e -> !"permessage-deflate".equals(e.getName())).toList();
+        }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,23 @@
+package com.example.chat.controller;
+
+import com.example.chat.metrics.PrometheusExporter;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+/**
+ * Prometheus 抓取接口
+ */
+@RestController
+public class MetricsController {
+
+    private static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+
+    @Autowired
+    private PrometheusExporter prometheusExporter;
+
+    @GetMapping(value = "/metrics", produces = CONTENT_TYPE)
+    public String metrics() {
+        return prometheusExporter.scrape();
+    }
+}
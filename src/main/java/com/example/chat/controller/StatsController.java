@@ -0,0 +1,37 @@
+package com.example.chat.controller;
+
+import com.example.chat.repository.DataCenter;
+import com.example.chat.repository.MessageStoreStats;
+import com.example.chat.repository.persistence.PersistenceStats;
+import com.example.chat.repository.persistence.Snapshotter;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+/**
+ * 运行状态查询接口
+ */
+@RestController
+@RequestMapping("/stats")
+public class StatsController {
+
+    @Autowired
+    private Snapshotter snapshotter;
+
+    /**
+     * 消息存储的冷热分布、命中与淘汰计数
+     */
+    @GetMapping("/message-store")
+    public MessageStoreStats messageStore() {
+        return DataCenter.MSG_HISTORY.getStats();
+    }
+
+    /**
+     * WAL、快照大小与耗时、最近一次启动恢复的耗时
+     */
+    @GetMapping("/persistence")
+    public PersistenceStats persistence() {
+        return snapshotter.getStats();
+    }
+}
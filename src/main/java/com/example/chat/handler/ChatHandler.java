@@ -3,28 +3,48 @@ package com.example.chat.handler;
 import com.example.chat.common.packet.WsRequest;
 import com.example.chat.common.packet.WsResponse;
 import com.example.chat.handler.action.ActionHandler;
+import com.example.chat.handler.action.impl.HeartbeatHandler;
+import com.example.chat.handler.codec.BinaryProtocol;
+import com.example.chat.handler.session.EventSequencer;
+import com.example.chat.handler.session.IdleReaper;
+import com.example.chat.handler.session.ManagedSession;
+import com.example.chat.handler.session.SessionRegistry;
+import com.example.chat.logging.ChatLog;
+import com.example.chat.metrics.DispatchMetrics;
+import com.example.chat.ratelimit.DispatchLimiter;
+import com.example.chat.ratelimit.HandshakeGuard;
 import com.example.chat.repository.DataCenter;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
+import org.springframework.web.socket.BinaryMessage;
 import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.SubProtocolCapable;
 import org.springframework.web.socket.TextMessage;
 import org.springframework.web.socket.WebSocketSession;
-import org.springframework.web.socket.handler.TextWebSocketHandler;
+import org.springframework.web.socket.handler.AbstractWebSocketHandler;
 
 import java.io.IOException;
+import java.util.List;
 
 /**
  * Refactored WebSocket 主处理器.
  *
  * 这个类的职责被大大简化，现在只负责：
  * 1. 管理 WebSocket 的生命周期 (连接建立/关闭).
- * 2. 解析传入的文本消息.
+ * 2. 解析传入的文本消息（由 RequestDecoder 流式解码，params 直接绑定为指令的参数类型）.
  * 3. 执行中央认证检查.
  * 4. 使用 HandlerRegistry 将消息路由到对应的 ActionHandler (策略模式).
+ * 5. 每个连接在 SessionRegistry 中包装为带发送队列的会话，交给 Handler 的都是包装后的会话.
+ * 6. 心跳帧直接扫描原始文本识别，跳过 JSON 解析；任何入站帧都会刷新会话的最后活跃时间.
+ * 7. 默认收发 JSON 文本帧；握手协商了 chat.cbor 子协议的连接收发 CBOR 二进制帧（见 BinaryProtocol），分发逻辑相同.
+ * 8. 分发前按用户名和 IP 限流（见 DispatchLimiter），超限的请求不进入处理器.
  */
 @Component
-public class ChatHandler extends TextWebSocketHandler {
+public class ChatHandler extends AbstractWebSocketHandler implements SubProtocolCapable {
+
+    private static final ChatLog LOG = ChatLog.of("conn");
 
     @Autowired
     private HandlerRegistry handlerRegistry;
@@ -32,54 +52,176 @@ public class ChatHandler extends TextWebSocketHandler {
     @Autowired
     private ObjectMapper jsonMapper;
 
+    @Autowired
+    private RequestDecoder requestDecoder;
+
+    @Autowired
+    private SessionRegistry sessionRegistry;
+
+    @Autowired
+    private DispatchMetrics dispatchMetrics;
+
+    @Autowired
+    private IdleReaper idleReaper;
+
+    @Autowired
+    private EventSequencer eventSequencer;
+
+    @Autowired
+    private DispatchLimiter dispatchLimiter;
+
+    @Autowired
+    private HandshakeGuard handshakeGuard;
+
+    // 注册表中的心跳处理器（已带计时包装），快速路径直接调用，省去按 action 查找
+    private ActionHandler<Object> heartbeatHandler;
+
+    @PostConstruct
+    public void init() {
+        heartbeatHandler = handlerRegistry.getHandler("HEARTBEAT");
+    }
+
+    /**
+     * 可协商的子协议；客户端不请求时使用默认的 JSON 文本协议
+     */
+    @Override
+    public List<String> getSubProtocols() {
+        return List.of(BinaryProtocol.SUBPROTOCOL);
+    }
+
     @Override
     public void afterConnectionEstablished(WebSocketSession session) throws Exception {
+        idleReaper.watch(sessionRegistry.register(session));
         String ip = (String) session.getAttributes().get("clientIp");
-        System.out.println("新连接接入: " + session.getId() + ", IP: " + ip);
+        handshakeGuard.opened(ip);
+        LOG.info("新连接接入", "sessionId", session.getId(), "ip", ip);
     }
 
     @Override
-    public void afterConnectionClosed(WebSocketSession session, CloseStatus status) throws Exception {
+    public void afterConnectionClosed(WebSocketSession rawSession, CloseStatus status) throws Exception {
+        WebSocketSession session = sessionRegistry.wrap(rawSession);
+        sessionRegistry.unregister(rawSession);
+        handshakeGuard.closed((String) rawSession.getAttributes().get("clientIp"));
         String username = (String) session.getAttributes().get("username");
+        // 只移除自己这条连接：被顶号的旧连接关闭时，不能把新登录的会话一起删掉
+        if (username != null && DataCenter.ONLINE_USERS.remove(username, session)) {
+            DataCenter.ONLINE_MEMBERS.userOffline(username);
+            LOG.info("用户下线", "user", username, "status", status.getCode());
+        }
+        // 被空闲回收、踢下线的连接已不在 ONLINE_USERS 中，同样转为可续传
         if (username != null) {
-            DataCenter.ONLINE_USERS.remove(username);
-            System.out.println("用户下线: " + username + ", Status: " + status);
+            eventSequencer.detach(username, session);
+        }
+    }
+
+    @Override
+    protected void handleTextMessage(WebSocketSession rawSession, TextMessage message) {
+        WebSocketSession session = accept(rawSession);
+        String payload = message.getPayload();
+        if (heartbeatHandler != null && HeartbeatHandler.isHeartbeat(payload)) {
+            if (admit(session, "HEARTBEAT")) {
+                heartbeatHandler.handle(session, null);
+            }
+            return;
         }
+        WsRequest<Object> request;
+        try {
+            request = requestDecoder.decode(payload);
+        } catch (IOException e) {
+            malformed(session, e, "JSON 格式错误");
+            return;
+        }
+        dispatch(session, request);
     }
 
     @Override
-    protected void handleTextMessage(WebSocketSession session, TextMessage message) {
+    protected void handleBinaryMessage(WebSocketSession rawSession, BinaryMessage message) {
+        WebSocketSession session = accept(rawSession);
+        WsRequest<Object> request;
         try {
-            WsRequest request = jsonMapper.readValue(message.getPayload(), WsRequest.class);
-            String action = request.getAction();
+            request = requestDecoder.decode(message.getPayload());
+        } catch (IOException e) {
+            malformed(session, e, "CBOR 格式错误");
+            return;
+        }
+        dispatch(session, request);
+    }
 
-            if (action == null) {
-                sendError(session, "无效的指令: Action 为空");
+    /**
+     * 取得包装后的会话，并刷新最后活跃时间
+     */
+    private WebSocketSession accept(WebSocketSession rawSession) {
+        WebSocketSession session = sessionRegistry.wrap(rawSession);
+        if (session instanceof ManagedSession managed) {
+            managed.touch();
+        }
+        return session;
+    }
+
+    private void dispatch(WebSocketSession session, WsRequest<Object> request) {
+        String action = request.getAction();
+
+        if (!admit(session, action)) {
+            return;
+        }
+
+        if (action == null) {
+            sendError(session, "无效的指令: Action 为空");
+            return;
+        }
+
+        // 中央认证检查：除了登录和心跳，其他所有操作都需要认证
+        if (!"LOGIN".equals(action) && !"HEARTBEAT".equals(action)) {
+            if (session.getAttributes().get("username") == null) {
+                sendError(session, "请先登录 (LOGIN)！");
                 return;
             }
+        }
 
-            // 中央认证检查：除了登录和心跳，其他所有操作都需要认证
-            if (!"LOGIN".equals(action) && !"HEARTBEAT".equals(action)) {
-                if (session.getAttributes().get("username") == null) {
-                    sendError(session, "请先登录 (LOGIN)！");
-                    return;
-                }
-            }
+        // 从注册表查找对应的处理器
+        ActionHandler<Object> handler = handlerRegistry.getHandler(action);
 
-            // 从注册表查找对应的处理器
-            ActionHandler handler = handlerRegistry.getHandler(action);
+        if (handler != null) {
+            // 找到处理器，执行 handle 方法
+            handler.handle(session, request);
+        } else {
+            // 未找到处理器
+            sendError(session, "未知指令: " + action);
+        }
+    }
 
-            if (handler != null) {
-                // 找到处理器，执行 handle 方法
-                handler.handle(session, request);
-            } else {
-                // 未找到处理器
-                sendError(session, "未知指令: " + action);
-            }
-        } catch (IOException e) {
-            e.printStackTrace();
-            sendError(session, "JSON 格式错误");
+    /**
+     * 限流检查；超限时按结果回复错误或断开连接
+     *
+     * @return 是否放行
+     */
+    private boolean admit(WebSocketSession session, String action) {
+        DispatchLimiter.Verdict verdict = dispatchLimiter.check(session, action);
+        switch (verdict) {
+            case ALLOW:
+                return true;
+            case THROTTLE:
+                sendError(session, "请求过于频繁，请稍后再试");
+                return false;
+            case DISCONNECT:
+                try {
+                    session.close(CloseStatus.POLICY_VIOLATION.withReason("请求过于频繁"));
+                } catch (IOException e) {
+                    LOG.error("断开连接失败", e, "sessionId", session.getId());
+                }
+                return false;
+            default:
+                return false;
+        }
+    }
+
+    private void malformed(WebSocketSession session, IOException e, String errorMsg) {
+        dispatchMetrics.recordMalformedFrame();
+        if (!admit(session, null)) {
+            return;
         }
+        LOG.warn("无法解析的请求", "sessionId", session.getId(), "error", e.getMessage());
+        sendError(session, errorMsg);
     }
 
     /**
@@ -93,7 +235,7 @@ public class ChatHandler extends TextWebSocketHandler {
             String json = jsonMapper.writeValueAsString(response);
             session.sendMessage(new TextMessage(json));
         } catch (IOException e) {
-            e.printStackTrace();
+            LOG.error("发送错误响应失败", e);
         }
     }
 }
@@ -1,7 +1,14 @@
 package com.example.chat.handler;
 
 import com.example.chat.handler.action.ActionHandler;
+import com.example.chat.metrics.DispatchMetrics;
+import com.example.chat.metrics.InstrumentedActionHandler;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.ResolvableType;
 import org.springframework.stereotype.Component;
 
 import jakarta.annotation.PostConstruct;
@@ -10,15 +17,26 @@ import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Handler 注册表 - 负责管理所有的 ActionHandler
+ * 注册时统一包装为 {@link InstrumentedActionHandler}，每次分发都会计时、计数
+ * 同时按处理器声明的参数类型 P 为每个指令缓存一个 ObjectReader，供 {@link RequestDecoder} 直接绑定 params
  */
 @Component
 public class HandlerRegistry {
     
-    private final Map<String, ActionHandler> handlerMap = new ConcurrentHashMap<>();
+    private final Map<String, ActionHandler<?>> handlerMap = new ConcurrentHashMap<>();
+
+    // Key: action，Value: 绑定 params 的 reader；参数类型为 Void 的指令没有条目
+    private final Map<String, ObjectReader> readerMap = new ConcurrentHashMap<>();
     
     // 通过自动注入所有实现了 ActionHandler 接口的 Bean
     @Autowired(required = false)
-    private Map<String, ActionHandler> actionHandlerBeans;
+    private Map<String, ActionHandler<?>> actionHandlerBeans;
+
+    @Autowired
+    private DispatchMetrics dispatchMetrics;
+
+    @Autowired
+    private ObjectMapper objectMapper;
     
     /**
      * 初始化注册表，自动注册所有 ActionHandler
@@ -41,24 +59,57 @@ public class HandlerRegistry {
      * @param action 指令名称
      * @param handler 处理器实例
      */
-    public void registerHandler(String action, ActionHandler handler) {
-        handlerMap.put(action.toUpperCase(), handler);
+    public void registerHandler(String action, ActionHandler<?> handler) {
+        String key = action.toUpperCase();
+        handlerMap.put(key, instrument(handler, dispatchMetrics, key));
+
+        // 从 extends BaseActionHandler<P> 上解析 P；lambda 等解析不出时退回 JsonNode
+        Class<?> paramsType = ResolvableType.forClass(handler.getClass())
+                .as(ActionHandler.class).getGeneric(0).resolve(JsonNode.class);
+        if (paramsType == Void.class) {
+            readerMap.remove(key);
+        } else {
+            readerMap.put(key, objectMapper.readerFor(paramsType)
+                    .without(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES));
+        }
     }
     
     /**
      * 根据 action 获取处理器
+     * 处理器收到的 params 一定是 {@link #getReader} 绑定出来的类型，所以这里按 Object 返回
      * @param action 指令名称
      * @return 对应的处理器，找不到返回 null
      */
-    public ActionHandler getHandler(String action) {
-        return handlerMap.get(action.toUpperCase());
+    @SuppressWarnings("unchecked")
+    public ActionHandler<Object> getHandler(String action) {
+        ActionHandler<?> handler = handlerMap.get(action);
+        if (handler == null) {
+            // 客户端基本都发大写，只有未命中时才转换
+            handler = handlerMap.get(action.toUpperCase());
+        }
+        if (handler == null) {
+            dispatchMetrics.recordUnknownAction();
+        }
+        return (ActionHandler<Object>) handler;
+    }
+
+    /**
+     * 取得指令的参数 reader；未知指令或不读参数的指令返回 null
+     */
+    public ObjectReader getReader(String action) {
+        ObjectReader reader = readerMap.get(action);
+        return reader != null ? reader : readerMap.get(action.toUpperCase());
     }
     
     /**
      * 获取所有已注册的处理器
      * @return 处理器映射表
      */
-    public Map<String, ActionHandler> getAllHandlers() {
+    public Map<String, ActionHandler<?>> getAllHandlers() {
         return new ConcurrentHashMap<>(handlerMap);
     }
+
+    private static <P> ActionHandler<P> instrument(ActionHandler<P> handler, DispatchMetrics metrics, String action) {
+        return new InstrumentedActionHandler<>(handler, metrics.forAction(action));
+    }
 }
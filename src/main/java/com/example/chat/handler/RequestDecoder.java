@@ -0,0 +1,102 @@
+package com.example.chat.handler;
+
+import com.example.chat.common.packet.WsRequest;
+import com.example.chat.handler.codec.BinaryProtocol;
+import com.fasterxml.jackson.core.JsonParseException;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.ObjectReader;
+import com.fasterxml.jackson.databind.util.TokenBuffer;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * 请求解码器：流式读取请求帧，params 直接绑定为该指令的参数类型
+ *
+ * 1. 先读到 action，再用 HandlerRegistry 中缓存的 ObjectReader 从同一个 JsonParser 上绑定 params，
+ *    不再先构建整棵 JsonNode 树再由处理器逐个取字段。
+ * 2. params 出现在 action 之前时（字段顺序不受约束），先把 params 的 token 暂存进 TokenBuffer，读完再绑定。
+ * 3. 未知指令和不读参数的指令直接跳过 params。
+ * 4. JSON 文本帧与 CBOR 二进制帧（{@link BinaryProtocol}）只是解析器不同，之后的读取逻辑完全一样。
+ */
+@Component
+public class RequestDecoder {
+
+    @Autowired
+    private ObjectMapper jsonMapper;
+
+    @Autowired
+    private HandlerRegistry handlerRegistry;
+
+    /**
+     * @return 解码后的请求，action 可能为 null
+     * @throws IOException JSON 格式错误，或 params 与指令的参数类型不符
+     */
+    public WsRequest<Object> decode(String payload) throws IOException {
+        try (JsonParser parser = jsonMapper.createParser(payload)) {
+            return decode(parser);
+        }
+    }
+
+    /**
+     * 解码 CBOR 二进制帧
+     */
+    public WsRequest<Object> decode(ByteBuffer payload) throws IOException {
+        try (JsonParser parser = BinaryProtocol.createParser(payload)) {
+            return decode(parser);
+        }
+    }
+
+    private WsRequest<Object> decode(JsonParser parser) throws IOException {
+        if (parser.nextToken() != JsonToken.START_OBJECT) {
+            throw new JsonParseException(parser, "请求必须是对象");
+        }
+        WsRequest<Object> request = new WsRequest<>();
+        TokenBuffer pending = null;
+
+        JsonToken token;
+        while ((token = parser.nextToken()) == JsonToken.FIELD_NAME) {
+            String field = parser.currentName();
+            parser.nextToken();
+            if ("action".equals(field)) {
+                request.setAction(parser.getValueAsString());
+                parser.skipChildren();
+            } else if ("params".equals(field)) {
+                if (request.getAction() != null) {
+                    request.setParams(readParams(request.getAction(), parser));
+                } else {
+                    pending = jsonMapper.readValue(parser, TokenBuffer.class);
+                }
+            } else {
+                parser.skipChildren();
+            }
+        }
+        if (token != JsonToken.END_OBJECT) {
+            throw new JsonParseException(parser, "请求不完整");
+        }
+
+        if (pending != null && request.getAction() != null) {
+            try (JsonParser buffered = pending.asParser(parser.getCodec())) {
+                buffered.nextToken();
+                request.setParams(readParams(request.getAction(), buffered));
+            }
+        }
+        return request;
+    }
+
+    /**
+     * parser 停在 params 的第一个 token 上
+     */
+    private Object readParams(String action, JsonParser parser) throws IOException {
+        ObjectReader reader = handlerRegistry.getReader(action);
+        if (reader == null || parser.currentToken() == JsonToken.VALUE_NULL) {
+            parser.skipChildren();
+            return null;
+        }
+        return reader.readValue(parser);
+    }
+}
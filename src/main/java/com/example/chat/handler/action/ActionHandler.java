@@ -4,12 +4,14 @@ import com.example.chat.common.packet.WsRequest;
 import org.springframework.web.socket.WebSocketSession;
 /**
  * ActionHandler 接口 - 策略模式的核心接口
+ *
+ * @param <P> params 绑定的类型，HandlerRegistry 按它为每个指令缓存 ObjectReader；不读参数的指令用 Void
  */
-public interface ActionHandler {
+public interface ActionHandler<P> {
     /**
      * 处理具体的 WebSocket 请求
      * @param session WebSocket 会话
      * @param request 请求数据
      */
-    void handle(WebSocketSession session, WsRequest request);
-}
\ No newline at end of file
+    void handle(WebSocketSession session, WsRequest<P> request);
+}
@@ -1,6 +1,10 @@
 package com.example.chat.handler.action;
 
 import com.example.chat.common.packet.WsResponse;
+import com.example.chat.handler.session.Delivery;
+import com.example.chat.handler.session.ManagedSession;
+import com.example.chat.logging.ChatLog;
+import com.example.chat.metrics.InstrumentedActionHandler;
 import com.example.chat.repository.DataCenter;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -11,8 +15,12 @@ import java.io.IOException;
 
 /**
  * 所有 ActionHandler 的基类，提供公共方法
+ *
+ * @param <P> 参数类型，子类在 extends 时写明即可，HandlerRegistry 会据此解析
  */
-public abstract class BaseActionHandler implements ActionHandler {
+public abstract class BaseActionHandler<P> implements ActionHandler<P> {
+
+    private static final ChatLog LOG = ChatLog.of("handler");
     
     @Autowired
     protected ObjectMapper objectMapper;
@@ -26,14 +34,32 @@ public abstract class BaseActionHandler implements ActionHandler {
             String json = objectMapper.writeValueAsString(response);
             session.sendMessage(new TextMessage(json));
         } catch (IOException e) {
-            e.printStackTrace();
+            LOG.error("发送响应失败", e, "type", response.getType());
         }
     }
     
+    /**
+     * 推送帧给其他用户的会话
+     * 会话自带发送队列，入队后立即返回，不会被慢客户端阻塞
+     */
+    protected void push(WebSocketSession target, TextMessage frame, Delivery delivery) {
+        if (target == null || !target.isOpen()) return;
+        if (target instanceof ManagedSession managed) {
+            managed.send(frame, delivery);
+            return;
+        }
+        try {
+            target.sendMessage(frame);
+        } catch (IOException e) {
+            LOG.error("推送失败", e, "sessionId", target.getId());
+        }
+    }
+
     /**
      * 发送错误信息
      */
     protected void sendError(WebSocketSession session, String errorMsg) {
+        InstrumentedActionHandler.markError();
         sendResponse(session, WsResponse.error(errorMsg));
     }
     
@@ -0,0 +1,67 @@
+package com.example.chat.handler.action;
+
+import com.example.chat.common.model.Message;
+import com.example.chat.handler.codec.EventEncoder;
+import com.example.chat.handler.session.EventSequencer;
+import com.example.chat.logging.ChatLog;
+import com.example.chat.repository.DataCenter;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 离线消息投递：取走 OFFLINE_INBOX 中的消息，合并为一帧 EVENT_OFFLINE_MSGS 推送
+ *
+ * 登录成功后由 LoginHandler 调用；发送方在存入收件箱后若发现接收者恰好上线，也会调用一次，
+ * 收件箱的 drain 是原子的，两边最多只有一方取到消息。
+ * 这一帧作为可靠事件编号（见 EventSequencer），投递后立即断线也能在续传时重放。
+ */
+@Component
+public class OfflineDelivery {
+
+    private static final ChatLog LOG = ChatLog.of("msg.offline");
+
+    @Autowired
+    private EventEncoder eventEncoder;
+
+    @Autowired
+    private EventSequencer eventSequencer;
+
+    /**
+     * @return 推送的消息条数
+     */
+    public int deliver(String username) {
+        long[] ids = DataCenter.OFFLINE_INBOX.drain(username);
+        if (ids.length == 0) {
+            return 0;
+        }
+        List<Message> messages = new ArrayList<>(ids.length);
+        for (long id : ids) {
+            Message message = DataCenter.MSG_HISTORY.get(id);
+            if (message != null) { // 已撤回的跳过
+                messages.add(message);
+            }
+        }
+        if (messages.isEmpty()) {
+            return 0;
+        }
+        boolean sent;
+        try {
+            sent = eventSequencer.send(username, eventEncoder.offlineMessages(messages));
+        } catch (Exception e) {
+            LOG.error("推送离线消息失败", e, "to", username, "count", messages.size());
+            sent = false;
+        }
+        if (!sent) {
+            // 对方又已下线：放回收件箱，下次登录再投递
+            for (long id : ids) {
+                DataCenter.OFFLINE_INBOX.offer(username, id);
+            }
+            return 0;
+        }
+        LOG.info("离线消息已投递", "to", username, "count", messages.size());
+        return messages.size();
+    }
+}
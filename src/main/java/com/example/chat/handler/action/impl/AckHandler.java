@@ -0,0 +1,35 @@
+package com.example.chat.handler.action.impl;
+
+import com.example.chat.common.packet.WsRequest;
+import com.example.chat.common.packet.params.AckParams;
+import com.example.chat.handler.action.BaseActionHandler;
+import com.example.chat.handler.session.EventSequencer;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.WebSocketSession;
+
+/**
+ * 事件确认处理器：释放该用户重放缓冲中已确认的事件
+ * 客户端会定期发送，为节省流量不回复
+ */
+@Component
+public class AckHandler extends BaseActionHandler<AckParams> {
+
+    @Autowired
+    private EventSequencer eventSequencer;
+
+    @Override
+    public void handle(WebSocketSession session, WsRequest<AckParams> request) {
+        String username = getCurrentUser(session);
+        if (username == null) {
+            sendError(session, "请先登录");
+            return;
+        }
+        AckParams params = request.getParams();
+        if (params == null || params.getSeq() == null) {
+            sendError(session, "参数错误：缺少 seq");
+            return;
+        }
+        eventSequencer.ack(username, params.getSeq());
+    }
+}
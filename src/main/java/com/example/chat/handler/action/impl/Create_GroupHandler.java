@@ -0,0 +1,65 @@
+package com.example.chat.handler.action.impl;
+
+import com.example.chat.common.model.Group;
+import com.example.chat.common.packet.WsRequest;
+import com.example.chat.common.packet.params.CreateGroupParams;
+import com.example.chat.handler.action.BaseActionHandler;
+import com.example.chat.service.UserService;
+import com.example.chat.logging.ChatLog;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 创建群组处理器
+ * 当前用户成为群主，members 中的用户直接成为群成员
+ */
+@Component
+public class Create_GroupHandler extends BaseActionHandler<CreateGroupParams> {
+
+    private static final ChatLog LOG = ChatLog.of("group");
+
+    @Autowired
+    private UserService userService;
+
+    @Override
+    public void handle(WebSocketSession session, WsRequest<CreateGroupParams> request) {
+        try {
+            String owner = getCurrentUser(session);
+            if (owner == null) {
+                sendError(session, "请先登录");
+                return;
+            }
+
+            CreateGroupParams params = request.getParams();
+            if (params == null || params.getGroupName() == null) {
+                sendError(session, "参数错误：缺少 groupName");
+                return;
+            }
+
+            String groupName = params.getGroupName().trim();
+
+            List<String> members = params.getMembers() != null ? params.getMembers() : new ArrayList<>();
+
+            Group group;
+            try {
+                group = userService.createGroup(groupName, owner, members);
+            } catch (IllegalArgumentException e) {
+                sendError(session, e.getMessage());
+                return;
+            }
+
+            sendSuccess(session, group);
+
+            LOG.info("群组创建成功", "groupId", group.getGroupId(), "owner", owner,
+                    "members", group.getMembers().size());
+
+        } catch (Exception e) {
+            sendError(session, "创建群组失败: " + e.getMessage());
+            LOG.error("创建群组失败", e);
+        }
+    }
+}
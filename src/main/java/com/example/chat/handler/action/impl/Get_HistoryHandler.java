@@ -1,26 +1,30 @@
 package com.example.chat.handler.action.impl;
 
 import com.example.chat.common.packet.WsRequest;
+import com.example.chat.common.packet.params.HistoryParams;
 import com.example.chat.common.model.Message;
 import com.example.chat.handler.action.BaseActionHandler;
+import com.example.chat.repository.ConversationIndex;
 import com.example.chat.repository.DataCenter;
-import com.fasterxml.jackson.databind.JsonNode;
+import com.example.chat.repository.IdGenerator;
+import com.example.chat.logging.ChatLog;
 import org.springframework.stereotype.Component;
 import org.springframework.web.socket.WebSocketSession;
 
 import java.util.*;
-import java.util.stream.Collectors;
 
 /**
  * 获取历史消息处理器
  */
 @Component
-public class Get_HistoryHandler extends BaseActionHandler {
+public class Get_HistoryHandler extends BaseActionHandler<HistoryParams> {
+
+    private static final ChatLog LOG = ChatLog.of("history");
 
     private static final int PAGE_SIZE = 20;
 
     @Override
-    public void handle(WebSocketSession session, WsRequest request) {
+    public void handle(WebSocketSession session, WsRequest<HistoryParams> request) {
         try {
             String currentUser = getCurrentUser(session);
             if (currentUser == null) {
@@ -28,60 +32,49 @@ public class Get_HistoryHandler extends BaseActionHandler {
                 return;
             }
 
-            // 获取参数
-            JsonNode params = request.getParams();
-            Long beforeTime = params != null && params.has("beforeTime")
-                    ? params.get("beforeTime").asLong()
-                    : null;
-
-            // 收集所有相关消息
-            List<Message> allMessages = new ArrayList<>();
-
-            // 1. 私聊消息（自己发送或接收的）
-            DataCenter.MSG_HISTORY.values().forEach(msg -> {
-                if (!msg.isGroup()) {
-                    if (msg.getFromUser().equals(currentUser) ||
-                            msg.getToUser().equals(currentUser)) {
-                        allMessages.add(msg);
-                    }
+            // 获取参数：优先使用消息ID游标 beforeId，兼容旧的 beforeTime
+            HistoryParams params = request.getParams();
+            Long beforeId = null;
+            if (params != null && params.getBeforeId() != null) {
+                long id = IdGenerator.parse(params.getBeforeId());
+                if (id < 0) {
+                    sendError(session, "参数错误: beforeId 无效");
+                    return;
                 }
-            });
+                beforeId = id;
+            } else if (params != null && params.getBeforeTime() != null) {
+                beforeId = IdGenerator.minIdAt(params.getBeforeTime());
+            }
 
-            // 2. 群聊消息（自己所在的群组）
-            DataCenter.GROUPS.forEach((groupId, group) -> {
-                if (group.getMembers().contains(currentUser)) {
-                    DataCenter.MSG_HISTORY.values().forEach(msg -> {
-                        if (msg.isGroup() && msg.getToUser().equals(groupId)) {
-                            allMessages.add(msg);
-                        }
-                    });
-                }
-            });
+            // 收集当前用户参与的会话（群通过反向索引获得）
+            List<String> conversationKeys = new ArrayList<>(
+                    DataCenter.CONVERSATIONS.privateConversationsOf(currentUser));
+            for (String groupId : DataCenter.USER_GROUPS.groupsOf(currentUser)) {
+                conversationKeys.add(ConversationIndex.groupKey(groupId));
+            }
 
-            // 过滤、排序、分页
-            List<Message> filtered = allMessages.stream()
-                    .filter(msg -> beforeTime == null || msg.getTimestamp() < beforeTime)
-                    .sorted(Comparator.comparing(Message::getTimestamp).reversed())
-                    .limit(PAGE_SIZE)
-                    .sorted(Comparator.comparing(Message::getTimestamp))
-                    .collect(Collectors.toList());
+            // 在各会话上多路归并取最新的一页（新 -> 旧），再转为按时间正序返回
+            List<Message> filtered = DataCenter.CONVERSATIONS.pageBefore(conversationKeys, beforeId, PAGE_SIZE);
+            Collections.reverse(filtered);
 
             // 构造响应数据
             Map<String, Object> responseData = new HashMap<>();
             responseData.put("messages", filtered);
             responseData.put("hasMore", filtered.size() == PAGE_SIZE);
             if (!filtered.isEmpty()) {
-                responseData.put("nextBeforeTime", filtered.get(filtered.size() - 1).getTimestamp());
+                // 下一页从本页最早的一条之前开始
+                responseData.put("nextBeforeId", filtered.get(0).getMsgId());
+                responseData.put("nextBeforeTime", filtered.get(0).getTimestamp());
             }
 
             sendSuccess(session, responseData);
 
-            System.out.println("历史消息获取成功: 用户[" + currentUser + "], 返回消息数: " + filtered.size() + ", 是否有更多: "
-                    + (filtered.size() == PAGE_SIZE));
+            LOG.info("历史消息获取成功", "user", currentUser, "count", filtered.size(),
+                    "hasMore", filtered.size() == PAGE_SIZE);
 
         } catch (Exception e) {
             sendError(session, "获取历史消息失败: " + e.getMessage());
-            e.printStackTrace();
+            LOG.error("获取历史消息失败", e);
         }
     }
 }
@@ -1,24 +1,130 @@
 package com.example.chat.handler.action.impl;
 
+import com.example.chat.auth.ResumeTokens;
 import com.example.chat.common.packet.WsRequest;
 import com.example.chat.handler.action.BaseActionHandler;
 import com.example.chat.common.packet.WsResponse;
+import com.example.chat.handler.session.Delivery;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
+import org.springframework.web.socket.TextMessage;
 import org.springframework.web.socket.WebSocketSession;
 
 /**
  * 心跳处理器
+ *
+ * 1. pong 帧在启动时编码一次，之后所有连接共用同一个 TextMessage，不再每次构建、序列化 WsResponse。
+ * 2. ChatHandler 先用 {@link #isHeartbeat} 直接扫描原始帧，命中时跳过 Jackson 解析和注册表查找，
+ *    request 此时为 null。
+ * 3. 已登录会话的续传令牌签发超过有效期一半时，随 pong 之后推送一个新令牌（EVENT_RESUME_TOKEN）。
  */
 @Component
-public class HeartbeatHandler extends BaseActionHandler {
-    
-    @Override
-    public void handle(WebSocketSession session, WsRequest request) {
-        // 心跳包只需要简单响应，不需要业务逻辑
+public class HeartbeatHandler extends BaseActionHandler<Void> {
+
+    // 超过这个长度的帧不可能是心跳，直接走普通解析
+    private static final int MAX_FRAME_LENGTH = 128;
+
+    private TextMessage pong;
+
+    @Autowired
+    private ResumeTokens resumeTokens;
+
+    @PostConstruct
+    public void init() throws JsonProcessingException {
         WsResponse response = WsResponse.builder()
                 .type("HEARTBEAT_RESP")
                 .msg("pong")
                 .build();
-        sendResponse(session, response);
+        pong = new TextMessage(objectMapper.writeValueAsString(response));
+    }
+
+    @Override
+    public void handle(WebSocketSession session, WsRequest<Void> request) {
+        // 心跳包只需要简单响应，不需要业务逻辑；队列积压时丢掉 pong 无妨，其他帧同样能证明连接存活
+        push(session, pong, Delivery.DROPPABLE);
+
+        String username = getCurrentUser(session);
+        String token = username == null ? null : resumeTokens.renew(session, username);
+        if (token != null) {
+            sendResponse(session, WsResponse.builder()
+                    .type("EVENT_RESUME_TOKEN")
+                    .resumeToken(token)
+                    .build());
+        }
+    }
+
+    /**
+     * 判断原始帧是否为心跳请求，不分配对象
+     * 只识别 {"action":"HEARTBEAT"} 及带空 params（{} 或 null）的形式，其余一律返回 false 交给普通路径，
+     * 所以判断失误只会变慢，不会把别的请求当成心跳。
+     */
+    public static boolean isHeartbeat(String s) {
+        if (s.length() > MAX_FRAME_LENGTH) {
+            return false;
+        }
+        int i = skipWs(s, 0);
+        if (!at(s, i, '{')) {
+            return false;
+        }
+        i = skipWs(s, i + 1);
+        boolean action = false;
+        while (true) {
+            if (s.startsWith("\"action\"", i)) {
+                i = skipWs(s, i + 8);
+                if (!at(s, i, ':')) {
+                    return false;
+                }
+                i = skipWs(s, i + 1);
+                if (!s.startsWith("\"HEARTBEAT\"", i)) {
+                    return false;
+                }
+                i += 11;
+                action = true;
+            } else if (s.startsWith("\"params\"", i)) {
+                i = skipWs(s, i + 8);
+                if (!at(s, i, ':')) {
+                    return false;
+                }
+                i = skipWs(s, i + 1);
+                if (at(s, i, '{')) {
+                    i = skipWs(s, i + 1);
+                    if (!at(s, i, '}')) {
+                        return false;
+                    }
+                    i++;
+                } else if (s.startsWith("null", i)) {
+                    i += 4;
+                } else {
+                    return false;
+                }
+            } else {
+                return false;
+            }
+            i = skipWs(s, i);
+            if (at(s, i, ',')) {
+                i = skipWs(s, i + 1);
+            } else if (at(s, i, '}')) {
+                return action && skipWs(s, i + 1) == s.length();
+            } else {
+                return false;
+            }
+        }
+    }
+
+    private static boolean at(String s, int i, char c) {
+        return i < s.length() && s.charAt(i) == c;
+    }
+
+    private static int skipWs(String s, int i) {
+        while (i < s.length()) {
+            char c = s.charAt(i);
+            if (c != ' ' && c != '\t' && c != '\n' && c != '\r') {
+                break;
+            }
+            i++;
+        }
+        return i;
     }
 }
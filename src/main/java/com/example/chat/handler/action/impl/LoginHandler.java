@@ -1,18 +1,23 @@
 package com.example.chat.handler.action.impl;
 
+import com.example.chat.auth.ResumeTokens;
 import com.example.chat.common.packet.WsRequest;
+import com.example.chat.common.packet.params.LoginParams;
 import com.example.chat.common.packet.WsResponse;
 import com.example.chat.common.model.User;
+import com.example.chat.config.AuthHandshakeInterceptor;
 import com.example.chat.handler.action.BaseActionHandler;
-import com.example.chat.repository.DataCenter;
+import com.example.chat.handler.action.OfflineDelivery;
+import com.example.chat.handler.session.EventSequencer;
 import com.example.chat.service.UserService;
-import com.fasterxml.jackson.databind.JsonNode;
+import com.example.chat.logging.ChatLog;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.stereotype.Component;
 import org.springframework.web.socket.WebSocketSession;
-import org.springframework.web.socket.TextMessage;
 
-import java.io.IOException;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.Executor;
 
 /**
  * 登录处理器
@@ -21,96 +26,124 @@ import java.io.IOException;
  * 2. 老用户验证密码
  * 3. 管理员自动识别
  * 4. 多端顶号处理
+ * 5. 推送离线期间收到的私聊消息（合并为一帧）
+ * 6. 断线重连时按 lastSeq 重放缺失的事件（见 EventSequencer）
+ * 7. 签发续传令牌；握手时出示了有效令牌的重连跳过密码校验（见 ResumeTokens）
+ * 8. 密码哈希与校验在 PasswordHasher 的独立线程池上进行，不占用 WebSocket 容器线程
  */
 @Component
-public class LoginHandler extends BaseActionHandler {
+public class LoginHandler extends BaseActionHandler<LoginParams> {
+
+    private static final ChatLog LOG = ChatLog.of("auth");
     
     @Autowired
     private UserService userService;
     
+    @Autowired
+    private OfflineDelivery offlineDelivery;
+    
+    @Autowired
+    private EventSequencer eventSequencer;
+    
+    @Autowired
+    private ResumeTokens resumeTokens;
+    
+    @Autowired
+    @Qualifier("chatExecutor")
+    private Executor chatExecutor;
+    
     @Override
-    public void handle(WebSocketSession session, WsRequest request) {
+    public void handle(WebSocketSession session, WsRequest<LoginParams> request) {
         try {
-            JsonNode params = request.getParams();
+            LoginParams params = request.getParams();
             
             // 1. 参数校验
-            if (params == null || !params.has("username") || !params.has("password")) {
+            if (params == null || params.getUsername() == null) {
                 sendError(session, "参数错误：缺少 username 或 password");
                 return;
             }
             
-            String username = params.get("username").asText();
-            String password = params.get("password").asText();
+            String username = params.getUsername();
+            String password = params.getPassword();
             
-            if (username == null || username.trim().isEmpty()) {
+            if (username.trim().isEmpty()) {
                 sendError(session, "用户名不能为空");
                 return;
             }
             
-            if (password == null || password.trim().isEmpty()) {
+            // 握手时令牌校验通过且用户名一致才免密；只用一次，之后的 LOGIN 照常校验
+            boolean resumed = username.equals(session.getAttributes().remove(AuthHandshakeInterceptor.RESUME_USER));
+            
+            if (!resumed && (password == null || password.trim().isEmpty())) {
                 sendError(session, "密码不能为空");
                 return;
             }
             
-            // 2. 调用UserService登录
+            // 2. 续传直接上线；否则先在密码线程池上校验，完成后回到 chatExecutor 继续
+            if (resumed) {
+                online(session, username, params.getLastSeq(), true);
+                return;
+            }
+            userService.authenticate(username, password).whenCompleteAsync((user, error) -> {
+                if (error != null) {
+                    Throwable cause = error instanceof CompletionException && error.getCause() != null
+                            ? error.getCause() : error;
+                    if (!(cause instanceof IllegalArgumentException || cause instanceof IllegalStateException)) {
+                        LOG.error("登录失败", cause);
+                    }
+                    sendError(session, cause.getMessage());
+                    return;
+                }
+                online(session, username, params.getLastSeq(), false);
+            }, chatExecutor);
+            
+        } catch (Exception e) {
+            sendError(session, "登录失败: " + e.getMessage());
+            LOG.error("登录失败", e);
+        }
+    }
+    
+    /**
+     * 密码校验通过（或凭续传令牌）后上线
+     */
+    private void online(WebSocketSession session, String username, Long lastSeq, boolean resumed) {
+        // 排队校验期间连接可能已经断开
+        if (!session.isOpen()) {
+            return;
+        }
+        try {
+            // 3. 多端顶号与加入在线列表，在session中保存用户名，用于后续认证
             User user;
             try {
-                user = userService.login(username, password);
+                user = userService.online(username, session);
             } catch (IllegalArgumentException e) {
                 sendError(session, e.getMessage());
                 return;
             }
-            
-            // 3. 处理多端顶号
-            handleMultiDeviceLogin(username, session);
-            
-            // 4. 将用户加入在线列表
-            DataCenter.ONLINE_USERS.put(username, session);
-            
-            // 5. 在session中保存用户名，用于后续认证
             session.getAttributes().put("username", username);
             
-            // 6. 构建登录成功响应
+            // 4. 绑定事件序号；重连时缺失的事件在这里重放，排在登录响应之前
+            long seq = eventSequencer.attach(username, session, lastSeq);
+            
+            // 5. 构建登录成功响应，带上当前序号作为客户端的起点，以及新的续传令牌
+            String token = resumeTokens.issue(session, username);
             WsResponse response = WsResponse.builder()
                     .type("LOGIN_RESP")
                     .data(user)  // User对象的password字段会自动被@JsonIgnore过滤
+                    .seq(seq)
+                    .resumeToken(token)
                     .build();
             
             sendResponse(session, response);
             
-            System.out.println("用户登录成功: " + username + ", 角色: " + user.getRole());
+            // 6. 登录响应之后推送离线消息
+            int offline = offlineDelivery.deliver(username);
+            
+            LOG.info("用户登录成功", "user", username, "role", user.getRole(), "resumed", resumed, "offline", offline);
             
         } catch (Exception e) {
             sendError(session, "登录失败: " + e.getMessage());
-            e.printStackTrace();
-        }
-    }
-    
-    /**
-     * 处理多端顶号
-     * 如果用户已在线，则关闭旧连接
-     */
-    private void handleMultiDeviceLogin(String username, WebSocketSession newSession) {
-        WebSocketSession oldSession = DataCenter.ONLINE_USERS.get(username);
-        
-        if (oldSession != null && oldSession.isOpen()) {
-            try {
-                // 发送被顶号通知
-                WsResponse kickOutResponse = WsResponse.builder()
-                        .type("SYS_NOTICE")
-                        .code(400)
-                        .msg("您的账号在另一地点登录，您已被强制下线")
-                        .build();
-                
-                String json = objectMapper.writeValueAsString(kickOutResponse);
-                oldSession.sendMessage(new TextMessage(json));
-                oldSession.close();
-                
-                System.out.println("用户被顶号: " + username);
-                
-            } catch (IOException e) {
-                e.printStackTrace();
-            }
+            LOG.error("登录失败", e);
         }
     }
 }
@@ -1,14 +1,16 @@
 package com.example.chat.handler.action.impl;
 
 import com.example.chat.common.packet.WsRequest;
-import com.example.chat.common.packet.WsResponse;
+import com.example.chat.common.packet.params.ReactParams;
 import com.example.chat.common.model.Message;
-import com.example.chat.common.model.Group;
 import com.example.chat.handler.action.BaseActionHandler;
+import com.example.chat.handler.codec.EventEncoder;
+import com.example.chat.handler.session.Delivery;
+import com.example.chat.handler.session.EventSequencer;
 import com.example.chat.repository.DataCenter;
-import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.example.chat.repository.IdGenerator;
+import com.example.chat.service.MessageService;
+import com.example.chat.logging.ChatLog;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 import org.springframework.web.socket.WebSocketSession;
@@ -23,10 +25,18 @@ import java.util.concurrent.ConcurrentHashMap;
  * 支持添加/取消反应
  */
 @Component
-public class Msg_ReactHandler extends BaseActionHandler {
+public class Msg_ReactHandler extends BaseActionHandler<ReactParams> {
+
+    private static final ChatLog LOG = ChatLog.of("msg.react");
+
+    @Autowired
+    private MessageService messageService;
+
+    @Autowired
+    private EventEncoder eventEncoder;
 
     @Autowired
-    private ObjectMapper objectMapper;
+    private EventSequencer eventSequencer;
 
     // 支持的默认反应类型
     private static final Set<String> DEFAULT_REACT_TYPES = new HashSet<String>() {
@@ -41,19 +51,19 @@ public class Msg_ReactHandler extends BaseActionHandler {
     };
 
     @Override
-    public void handle(WebSocketSession session, WsRequest request) {
+    public void handle(WebSocketSession session, WsRequest<ReactParams> request) {
         try {
             String operator = getCurrentUser(session);
-            JsonNode params = request.getParams();
+            ReactParams params = request.getParams();
 
             // 1. 参数校验
-            if (params == null || !params.has("msgId") || !params.has("reactType")) {
+            if (params == null || params.getMsgId() == null || params.getReactType() == null) {
                 sendError(session, "参数错误：缺少 msgId 或 reactType");
                 return;
             }
 
-            String msgId = params.get("msgId").asText();
-            String reactType = params.get("reactType").asText().toLowerCase();
+            String msgId = params.getMsgId();
+            String reactType = params.getReactType().toLowerCase();
 
             if (msgId == null || msgId.trim().isEmpty()) {
                 sendError(session, "消息ID不能为空");
@@ -73,7 +83,7 @@ public class Msg_ReactHandler extends BaseActionHandler {
             }
 
             // 2. 获取消息
-            Message message = DataCenter.MSG_HISTORY.get(msgId);
+            Message message = DataCenter.MSG_HISTORY.get(IdGenerator.parse(msgId));
             if (message == null) {
                 sendError(session, "消息不存在");
                 return;
@@ -85,29 +95,30 @@ public class Msg_ReactHandler extends BaseActionHandler {
                 return;
             }
 
-            // 4. 处理反应（线程安全）
-            boolean isAdd = processReaction(message, operator, reactType);
-
-            // 5. 获取当前反应计数
-            int count = getReactionCount(message, reactType);
+            // 4. 处理反应并取当前计数（同一条消息的修改串行执行，冷层消息会被写回）
+            Reaction reaction = messageService.updateMessage(msgId, current -> {
+                boolean added = processReaction(current, operator, reactType);
+                return new Reaction(added, getReactionCount(current, reactType));
+            });
+            if (reaction == null) {
+                sendError(session, "消息不存在");
+                return;
+            }
+            boolean isAdd = reaction.isAdd();
+            int count = reaction.count();
 
             // 6. 广播反应事件
             broadcastReactionEvent(message, operator, reactType, isAdd, count);
 
             // 7. 返回成功响应
-            ObjectNode responseData = objectMapper.createObjectNode();
-            responseData.put("msgId", msgId);
-            responseData.put("reactType", reactType);
-            responseData.put("isAdd", isAdd);
-            responseData.put("count", count);
-            sendSuccess(session, responseData);
+            push(session, eventEncoder.reactAck(msgId, reactType, isAdd, count), Delivery.RELIABLE);
 
-            System.out.println("消息反应处理成功: 消息[" + msgId + "], 用户[" + operator + "], 反应类型[" + reactType + "], 操作["
-                    + (isAdd ? "添加" : "取消") + "], 当前总数: " + count);
+            LOG.info("消息反应处理成功", "msgId", msgId, "operator", operator, "reactType", reactType,
+                    "isAdd", isAdd, "count", count);
 
         } catch (Exception e) {
             sendError(session, "处理反应失败: " + e.getMessage());
-            e.printStackTrace();
+            LOG.error("处理反应失败", e);
         }
     }
 
@@ -134,46 +145,44 @@ public class Msg_ReactHandler extends BaseActionHandler {
         }
 
         // 如果是群聊消息，必须是群成员
-        Group group = DataCenter.GROUPS.get(message.getToUser());
-        if (group != null) {
-            return group.getMembers().contains(operator);
-        }
-
-        return false;
+        return DataCenter.USER_GROUPS.isMember(operator, message.getToUser());
     }
 
     /**
-     * 处理反应逻辑（线程安全）
-     * 
+     * 处理反应逻辑，在 MessageService.updateMessage 持有的消息锁内执行
+     *
      * @return true=添加反应, false=取消反应
      */
     private boolean processReaction(Message message, String operator, String reactType) {
-        // 同步操作确保线程安全
-        synchronized (message) {
-            Set<String> reactors = message.getReactions().computeIfAbsent(
-                    reactType, k -> ConcurrentHashMap.newKeySet());
-
-            boolean isAdd;
-            if (reactors.contains(operator)) {
-                // 已存在，移除（取消反应）
-                reactors.remove(operator);
-                isAdd = false;
-
-                // 如果该类型没有用户了，清理空集合
-                if (reactors.isEmpty()) {
-                    message.getReactions().remove(reactType);
-                }
-            } else {
-                // 先移除用户的其他反应（一个用户对一条消息只能有一种反应）
-                removeUserFromOtherReactions(message, operator);
-
-                // 添加新反应
-                reactors.add(operator);
-                isAdd = true;
+        Set<String> reactors = message.getReactions().computeIfAbsent(
+                reactType, k -> ConcurrentHashMap.newKeySet());
+
+        boolean isAdd;
+        if (reactors.contains(operator)) {
+            // 已存在，移除（取消反应）
+            reactors.remove(operator);
+            isAdd = false;
+
+            // 如果该类型没有用户了，清理空集合
+            if (reactors.isEmpty()) {
+                message.getReactions().remove(reactType);
             }
+        } else {
+            // 先移除用户的其他反应（一个用户对一条消息只能有一种反应）
+            removeUserFromOtherReactions(message, operator);
 
-            return isAdd;
+            // 添加新反应
+            reactors.add(operator);
+            isAdd = true;
         }
+
+        return isAdd;
+    }
+
+    /**
+     * 一次反应操作的结果
+     */
+    private record Reaction(boolean isAdd, int count) {
     }
 
     /**
@@ -202,37 +211,18 @@ public class Msg_ReactHandler extends BaseActionHandler {
     private void broadcastReactionEvent(Message message, String operator,
             String reactType, boolean isAdd, int count) {
         try {
-            // 构建事件数据
-            ObjectNode eventData = objectMapper.createObjectNode();
-            eventData.put("msgId", message.getMsgId());
-            eventData.put("reactType", reactType);
-            eventData.put("operator", operator);
-            eventData.put("isAdd", isAdd);
-            eventData.put("count", count);
-
-            // 构建事件响应
-            WsResponse event = WsResponse.builder()
-                    .type("EVENT_MSG_REACT")
-                    .data(eventData)
-                    .build();
-
-            String eventJson = objectMapper.writeValueAsString(event);
+            TextMessage frame = eventEncoder.msgReact(message.getMsgId(), reactType, operator, isAdd, count);
 
             // 确定广播范围
             Set<String> receivers = determineReceivers(message, operator);
 
             // 广播给相关用户
             for (String receiver : receivers) {
-                WebSocketSession receiverSession = DataCenter.ONLINE_USERS.get(receiver);
-                if (receiverSession != null && receiverSession.isOpen()) {
-                    synchronized (receiverSession) {
-                        receiverSession.sendMessage(new TextMessage(eventJson));
-                    }
-                }
+                eventSequencer.send(receiver, frame);
             }
 
         } catch (Exception e) {
-            e.printStackTrace();
+            LOG.error("广播反应事件失败", e);
         }
     }
 
@@ -249,11 +239,9 @@ public class Msg_ReactHandler extends BaseActionHandler {
         receivers.add(message.getFromUser());
 
         if (message.isGroup()) {
-            // 群聊：广播给所有在线群成员
-            Group group = DataCenter.GROUPS.get(message.getToUser());
-            if (group != null) {
-                receivers.addAll(group.getMembers());
-            }
+            // 群聊：广播给所有在线群成员，以及续传窗口内的成员
+            receivers.addAll(DataCenter.ONLINE_MEMBERS.of(message.getToUser()));
+            receivers.addAll(eventSequencer.detachedMembers(message.getToUser()));
         } else {
             // 私聊：只包括发送者和接收者
             receivers.add(message.getToUser());
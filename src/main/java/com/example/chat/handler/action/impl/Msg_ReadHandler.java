@@ -1,13 +1,15 @@
 package com.example.chat.handler.action.impl;
 
 import com.example.chat.common.packet.WsRequest;
-import com.example.chat.common.packet.WsResponse;
+import com.example.chat.common.packet.params.MsgIdParams;
 import com.example.chat.common.model.Message;
 import com.example.chat.handler.action.BaseActionHandler;
+import com.example.chat.handler.codec.EventEncoder;
+import com.example.chat.handler.session.Delivery;
 import com.example.chat.repository.DataCenter;
-import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
-import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.example.chat.repository.IdGenerator;
+import com.example.chat.service.MessageService;
+import com.example.chat.logging.ChatLog;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 import org.springframework.web.socket.TextMessage;
@@ -16,27 +18,32 @@ import org.springframework.web.socket.WebSocketSession;
 import java.util.Set;
 
 @Component("MSG_READ")
-public class Msg_ReadHandler extends BaseActionHandler {
+public class Msg_ReadHandler extends BaseActionHandler<MsgIdParams> {
+
+    private static final ChatLog LOG = ChatLog.of("msg.read");
+
+    @Autowired
+    private MessageService messageService;
 
     @Autowired
-    private ObjectMapper objectMapper;
+    private EventEncoder eventEncoder;
 
     @Override
-    public void handle(WebSocketSession session, WsRequest request) {
+    public void handle(WebSocketSession session, WsRequest<MsgIdParams> request) {
         try {
             String reader = getCurrentUser(session);
-            JsonNode params = request.getParams();
+            MsgIdParams params = request.getParams();
 
             // 1. 参数校验
-            if (params == null || !params.has("msgId") || params.get("msgId").isNull()) {
+            if (params == null || params.getMsgId() == null) {
                 sendError(session, "参数错误: 缺少msgId");
                 return;
             }
 
-            String msgId = params.get("msgId").asText();
+            String msgId = params.getMsgId();
 
             // 2. 获取消息
-            Message message = DataCenter.MSG_HISTORY.get(msgId);
+            Message message = DataCenter.MSG_HISTORY.get(IdGenerator.parse(msgId));
             if (message == null) {
                 sendError(session, "消息不存在: " + msgId);
                 return;
@@ -46,32 +53,33 @@ public class Msg_ReadHandler extends BaseActionHandler {
             // 检查：如果消息不是发给当前用户的，不能标记已读
             if (!message.getToUser().equals(reader) && !message.getFromUser().equals(reader)) {
                 // 如果是群消息，检查用户是否在群里
-                if (message.isGroup()) {
-                } else {
+                if (!message.isGroup() || !DataCenter.USER_GROUPS.isMember(reader, message.getToUser())) {
                     sendError(session, "无权标记此消息已读");
                     return;
                 }
             }
 
-            // 4. 标记已读（去重）
+            // 4. 标记已读（去重）；检查与添加在消息锁内完成，冷层消息会被写回
             Set<String> readBy = message.getReadBy();
-            boolean firstTimeRead = !readBy.contains(reader);
-
-            if (firstTimeRead) {
-                readBy.add(reader);
-
-                // 5. 广播已读事件给消息发送者
-                broadcastReadEvent(message, reader);
+            if (!readBy.contains(reader)) {
+                Message updated = messageService.updateMessage(msgId,
+                        current -> current.getReadBy().add(reader) ? current : null);
+                message = updated != null ? updated : message;
+
+                // 5. 首次已读时广播已读事件给消息发送者
+                if (updated != null) {
+                    broadcastReadEvent(updated, reader);
+                }
             }
 
             // 6. 返回成功响应
             sendSuccess(session, "已读标记成功");
 
-            System.out.println("消息已读标记成功: 消息[" + msgId + "], 标记用户: " + reader + ", 已读人数: "
-                    + (message != null ? message.getReadBy().size() : 0));
+            LOG.info("消息已读标记成功", "msgId", msgId, "reader", reader,
+                    "readCount", message != null ? message.getReadBy().size() : 0);
 
         } catch (Exception e) {
-            e.printStackTrace();
+            LOG.error("标记已读失败", e);
             sendError(session, "标记已读失败: " + e.getMessage());
         }
     }
@@ -81,32 +89,17 @@ public class Msg_ReadHandler extends BaseActionHandler {
      */
     private void broadcastReadEvent(Message message, String reader) {
         try {
-            // 构建事件数据
-            ObjectNode eventData = objectMapper.createObjectNode();
-            eventData.put("msgId", message.getMsgId());
-            eventData.put("reader", reader);
-            eventData.put("readCount", message.getReadBy().size());
-
-            // 构建事件响应
-            WsResponse event = WsResponse.builder()
-                    .type("EVENT_MSG_READ")
-                    .data(eventData)
-                    .build();
-
-            String eventJson = objectMapper.writeValueAsString(event);
+            TextMessage frame = eventEncoder.msgRead(message.getMsgId(), reader, message.getReadBy().size());
 
             // 发送给消息的发送者
             String sender = message.getFromUser();
             WebSocketSession senderSession = DataCenter.ONLINE_USERS.get(sender);
 
-            if (senderSession != null && senderSession.isOpen()) {
-                synchronized (senderSession) {
-                    senderSession.sendMessage(new TextMessage(eventJson));
-                }
-            }
+            // 已读状态可被后续回执覆盖，慢客户端队列满时允许丢弃
+            push(senderSession, frame, Delivery.DROPPABLE);
 
         } catch (Exception e) {
-            e.printStackTrace();
+            LOG.error("推送已读回执失败", e);
         }
     }
 }
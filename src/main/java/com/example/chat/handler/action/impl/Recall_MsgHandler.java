@@ -1,14 +1,17 @@
 package com.example.chat.handler.action.impl;
 
 import com.example.chat.common.packet.WsRequest;
+import com.example.chat.common.packet.params.MsgIdParams;
 import com.example.chat.common.packet.WsResponse;
 import com.example.chat.common.model.Message;
 import com.example.chat.common.model.Group;
 import com.example.chat.common.model.User;
 import com.example.chat.handler.action.BaseActionHandler;
+import com.example.chat.handler.session.EventSequencer;
 import com.example.chat.repository.DataCenter;
+import com.example.chat.repository.IdGenerator;
 import com.example.chat.service.MessageService;
-import com.fasterxml.jackson.databind.JsonNode;
+import com.example.chat.logging.ChatLog;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.fasterxml.jackson.databind.node.ObjectNode;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -28,16 +31,21 @@ import java.util.concurrent.ConcurrentHashMap;
  * 撤回时间限制：2分钟
  */
 @Component
-public class Recall_MsgHandler extends BaseActionHandler {
+public class Recall_MsgHandler extends BaseActionHandler<MsgIdParams> {
+
+    private static final ChatLog LOG = ChatLog.of("msg.recall");
     
     @Autowired
     private MessageService messageService;
     
+    @Autowired
+    private EventSequencer eventSequencer;
+    
     @Autowired
     private ObjectMapper objectMapper;
     
     @Override
-    public void handle(WebSocketSession session, WsRequest request) {
+    public void handle(WebSocketSession session, WsRequest<MsgIdParams> request) {
         try {
             String operator = getCurrentUser(session);
             if (operator == null) {
@@ -45,15 +53,15 @@ public class Recall_MsgHandler extends BaseActionHandler {
                 return;
             }
             
-            JsonNode params = request.getParams();
+            MsgIdParams params = request.getParams();
             
             // 1. 参数校验
-            if (params == null || !params.has("msgId")) {
+            if (params == null || params.getMsgId() == null) {
                 sendError(session, "参数错误：缺少 msgId");
                 return;
             }
             
-            String msgId = params.get("msgId").asText();
+            String msgId = params.getMsgId();
             
             if (msgId == null || msgId.trim().isEmpty()) {
                 sendError(session, "消息ID不能为空");
@@ -61,7 +69,7 @@ public class Recall_MsgHandler extends BaseActionHandler {
             }
             
             // 2. 获取消息（在撤回前先获取消息信息，用于广播）
-            Message message = DataCenter.MSG_HISTORY.get(msgId);
+            Message message = DataCenter.MSG_HISTORY.get(IdGenerator.parse(msgId));
             if (message == null) {
                 sendError(session, "消息不存在或已被撤回");
                 return;
@@ -86,11 +94,11 @@ public class Recall_MsgHandler extends BaseActionHandler {
             responseData.put("message", "消息撤回成功");
             sendSuccess(session, responseData);
             
-            System.out.println("消息撤回成功: " + operator + " 撤回了消息 " + msgId);
+            LOG.info("消息撤回成功", "operator", operator, "msgId", msgId);
             
         } catch (Exception e) {
             sendError(session, "撤回消息失败: " + e.getMessage());
-            e.printStackTrace();
+            LOG.error("撤回消息失败", e);
         }
     }
     
@@ -170,28 +178,22 @@ public class Recall_MsgHandler extends BaseActionHandler {
                     .data(eventData)
                     .build();
             
-            String eventJson = objectMapper.writeValueAsString(event);
+            TextMessage frame = new TextMessage(objectMapper.writeValueAsString(event));
             
             // 确定广播范围
             Set<String> receivers = determineRecallEventReceivers(recalledMessage, operator);
             
             // 广播给相关用户
             for (String receiver : receivers) {
-                WebSocketSession receiverSession = DataCenter.ONLINE_USERS.get(receiver);
-                if (receiverSession != null && receiverSession.isOpen()) {
-                    synchronized (receiverSession) {
-                        receiverSession.sendMessage(new TextMessage(eventJson));
-                    }
-                }
+                eventSequencer.send(receiver, frame);
             }
             
             // 记录日志
-            System.out.println("广播撤回事件: 消息 " + recalledMessage.getMsgId() + 
-                             " 被 " + operator + " 撤回，通知了 " + receivers.size() + " 个用户");
+            LOG.info("广播撤回事件", "msgId", recalledMessage.getMsgId(), "operator", operator,
+                    "receivers", receivers.size());
             
         } catch (Exception e) {
-            e.printStackTrace();
-            System.err.println("广播撤回事件失败: " + e.getMessage());
+            LOG.error("广播撤回事件失败", e);
         }
     }
     
@@ -209,11 +211,9 @@ public class Recall_MsgHandler extends BaseActionHandler {
         }
         
         if (recalledMessage.isGroup()) {
-            // 群聊：广播给所有在线群成员
-            Group group = DataCenter.GROUPS.get(recalledMessage.getToUser());
-            if (group != null) {
-                receivers.addAll(group.getMembers());
-            }
+            // 群聊：广播给所有在线群成员，以及续传窗口内的成员
+            receivers.addAll(DataCenter.ONLINE_MEMBERS.of(recalledMessage.getToUser()));
+            receivers.addAll(eventSequencer.detachedMembers(recalledMessage.getToUser()));
         } else {
             // 私聊：包括发送者和接收者
             receivers.add(recalledMessage.getFromUser());
@@ -223,8 +223,8 @@ public class Recall_MsgHandler extends BaseActionHandler {
         // 移除操作者（避免重复通知，因为操作者已经通过成功响应知道了）
         receivers.remove(operator);
         
-        // 确保接收者在线
-        receivers.removeIf(user -> !DataCenter.ONLINE_USERS.containsKey(user));
+        // 确保接收者在线（或断线后仍可续传）
+        receivers.removeIf(user -> !eventSequencer.isReachable(user));
         
         return receivers;
     }
@@ -0,0 +1,145 @@
+package com.example.chat.handler.action.impl;
+
+import com.example.chat.common.model.Group;
+import com.example.chat.common.model.Message;
+import com.example.chat.common.model.User;
+import com.example.chat.common.packet.WsRequest;
+import com.example.chat.common.packet.params.ChatMsgParams;
+import com.example.chat.handler.action.BaseActionHandler;
+import com.example.chat.handler.codec.EventEncoder;
+import com.example.chat.handler.session.EventSequencer;
+import com.example.chat.repository.DataCenter;
+import com.example.chat.service.MessageService;
+import com.example.chat.logging.ChatLog;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+
+/**
+ * 发送群聊消息处理器
+ *
+ * 1. 消息只保存一次，EVENT_CHAT_MSG 帧只编码一次（见 EventEncoder），所有接收者共用同一个 TextMessage。
+ * 2. 先给发送者回 SUCCESS，再把在线成员分片交给 chatExecutor 并行入队，回执不等最慢的接收者；
+ *    真正的写出由每个会话自己的发送队列完成。
+ * 3. 刚断线、仍在续传窗口内的成员也会收到编号并进入重放缓冲（见 EventSequencer），重连后补发。
+ */
+@Component
+public class Send_GroupHandler extends BaseActionHandler<ChatMsgParams> {
+
+    private static final ChatLog LOG = ChatLog.of("msg.group");
+
+    @Autowired
+    private MessageService messageService;
+
+    @Autowired
+    private EventEncoder eventEncoder;
+
+    @Autowired
+    private EventSequencer eventSequencer;
+
+    @Autowired
+    @Qualifier("chatExecutor")
+    private Executor chatExecutor;
+
+    // 每个推送任务负责的接收者数量
+    @Value("${chat.group.fanout-chunk-size:64}")
+    private int chunkSize;
+
+    @Override
+    public void handle(WebSocketSession session, WsRequest<ChatMsgParams> request) {
+        try {
+            String fromUser = getCurrentUser(session);
+            if (fromUser == null) {
+                sendError(session, "请先登录");
+                return;
+            }
+
+            ChatMsgParams params = request.getParams();
+            if (params == null || params.getTargetUser() == null || params.getContent() == null) {
+                sendError(session, "参数错误：缺少 targetUser 或 content");
+                return;
+            }
+
+            String groupId = params.getTargetUser();
+            String content = params.getContent().trim();
+
+            if (content.isEmpty()) {
+                sendError(session, "消息内容不能为空");
+                return;
+            }
+
+            Group group = DataCenter.GROUPS.get(groupId);
+            if (group == null) {
+                sendError(session, "群组不存在: " + groupId);
+                return;
+            }
+            if (!group.getMembers().contains(fromUser)) {
+                sendError(session, "您不是该群成员");
+                return;
+            }
+            User sender = DataCenter.USERS.get(fromUser);
+            if (sender != null && sender.isMuted()) {
+                sendError(session, "您已被禁言");
+                return;
+            }
+
+            // 提取 @ 列表
+            List<String> atUsers = params.getAtUsers() != null ? params.getAtUsers() : new ArrayList<>();
+
+            // 创建并保存消息（只保存一次）
+            Message message = messageService.processAndSaveMsg(fromUser, groupId, content, true, atUsers);
+
+            // 先回执发送者
+            sendSuccess(session, message);
+
+            // 推送帧只编码一次
+            TextMessage frame = eventEncoder.chatMessage(message);
+
+            int recipients = fanOut(group, fromUser, frame);
+
+            LOG.info("群聊消息", "from", fromUser, "groupId", groupId, "msgId", message.getMsgId(),
+                    "recipients", recipients);
+
+        } catch (Exception e) {
+            sendError(session, "发送失败: " + e.getMessage());
+            LOG.error("群聊消息发送失败", e);
+        }
+    }
+
+    /**
+     * 把同一帧分片并行推送给在线成员（不含发送者），只遍历在线成员集合和续传窗口内的成员
+     *
+     * @return 接收者数量
+     */
+    private int fanOut(Group group, String fromUser, TextMessage frame) {
+        List<String> targets = new ArrayList<>();
+        for (String member : DataCenter.ONLINE_MEMBERS.of(group.getGroupId())) {
+            if (!member.equals(fromUser)) {
+                targets.add(member);
+            }
+        }
+        for (String member : eventSequencer.detachedMembers(group.getGroupId())) {
+            if (!member.equals(fromUser)) {
+                targets.add(member);
+            }
+        }
+
+        int chunk = Math.max(1, chunkSize);
+        for (int from = 0; from < targets.size(); from += chunk) {
+            List<String> slice = targets.subList(from, Math.min(from + chunk, targets.size()));
+            chatExecutor.execute(() -> {
+                for (String target : slice) {
+                    eventSequencer.send(target, frame);
+                }
+            });
+        }
+        return targets.size();
+    }
+}
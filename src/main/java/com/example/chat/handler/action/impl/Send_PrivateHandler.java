@@ -1,13 +1,16 @@
 package com.example.chat.handler.action.impl;
 
 import com.example.chat.common.packet.WsRequest;
+import com.example.chat.common.packet.params.ChatMsgParams;
 import com.example.chat.common.model.Message;
-import com.example.chat.common.packet.WsResponse;
 import com.example.chat.handler.action.BaseActionHandler;
+import com.example.chat.handler.action.OfflineDelivery;
+import com.example.chat.handler.codec.EventEncoder;
+import com.example.chat.handler.session.EventSequencer;
 import com.example.chat.repository.DataCenter;
+import com.example.chat.repository.IdGenerator;
 import com.example.chat.service.MessageService;
-import com.fasterxml.jackson.databind.JsonNode;
-import com.fasterxml.jackson.databind.ObjectMapper;
+import com.example.chat.logging.ChatLog;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 import org.springframework.web.socket.WebSocketSession;
@@ -17,18 +20,27 @@ import java.util.List;
 
 /**
  * 发送私聊消息处理器
+ * 接收者不在线时消息存入离线收件箱（见 OfflineInbox），对方登录后一次推送
  */
 @Component
-public class Send_PrivateHandler extends BaseActionHandler {
+public class Send_PrivateHandler extends BaseActionHandler<ChatMsgParams> {
+
+    private static final ChatLog LOG = ChatLog.of("msg.private");
     
     @Autowired
     private MessageService messageService;
     
     @Autowired
-    private ObjectMapper objectMapper;
+    private EventEncoder eventEncoder;
+    
+    @Autowired
+    private OfflineDelivery offlineDelivery;
+    
+    @Autowired
+    private EventSequencer eventSequencer;
     
     @Override
-    public void handle(WebSocketSession session, WsRequest request) {
+    public void handle(WebSocketSession session, WsRequest<ChatMsgParams> request) {
         try {
             String fromUser = getCurrentUser(session);
             if (fromUser == null) {
@@ -36,67 +48,67 @@ public class Send_PrivateHandler extends BaseActionHandler {
                 return;
             }
             
-            JsonNode params = request.getParams();
-            if (params == null || !params.has("targetUser") || !params.has("content")) {
+            ChatMsgParams params = request.getParams();
+            if (params == null || params.getTargetUser() == null || params.getContent() == null) {
                 sendError(session, "参数错误：缺少 targetUser 或 content");
                 return;
             }
             
-            String toUser = params.get("targetUser").asText();
-            String content = params.get("content").asText().trim();
+            String toUser = params.getTargetUser();
+            String content = params.getContent().trim();
             
             if (content.isEmpty()) {
                 sendError(session, "消息内容不能为空");
                 return;
             }
             
-            // 检查目标用户是否在线
-            if (!DataCenter.ONLINE_USERS.containsKey(toUser)) {
-                sendError(session, "用户 " + toUser + " 不在线");
+            // 检查目标用户是否存在（不在线也可以发，先存入离线收件箱）
+            if (!DataCenter.USERS.containsKey(toUser)) {
+                sendError(session, "用户 " + toUser + " 不存在");
                 return;
             }
             
             // 提取 @ 列表
-            List<String> atUsers = new ArrayList<>();
-            if (params.has("atUsers") && params.get("atUsers").isArray()) {
-                for (JsonNode atUser : params.get("atUsers")) {
-                    atUsers.add(atUser.asText());
-                }
-            }
+            List<String> atUsers = params.getAtUsers() != null ? params.getAtUsers() : new ArrayList<>();
             
             // 创建并保存消息
             Message message = messageService.processAndSaveMsg(fromUser, toUser, content, false, atUsers);
             
-            // 发送给接收者
-            sendToUser(toUser, message);
+            // 发送给接收者，不在线则存入离线收件箱
+            boolean online = sendToUser(toUser, message);
             
             // 发送回执给发送者
             sendSuccess(session, message);
             
-            System.out.println("私聊消息: " + fromUser + " -> " + toUser + ": " + content);
+            LOG.info("私聊消息", "from", fromUser, "to", toUser, "msgId", message.getMsgId(), "online", online,
+                    "content", content);
             
         } catch (Exception e) {
             sendError(session, "发送失败: " + e.getMessage());
-            e.printStackTrace();
+            LOG.error("私聊消息发送失败", e);
         }
     }
     
     /**
-     * 发送消息给指定用户
+     * 发送消息给指定用户；不在线（含断线续传窗口内）的一律进离线收件箱，收件箱不受续传窗口时长限制
+     *
+     * @return 接收者是否在线
      */
-    private void sendToUser(String username, Message message) {
+    private boolean sendToUser(String username, Message message) {
         WebSocketSession targetSession = DataCenter.ONLINE_USERS.get(username);
         if (targetSession != null && targetSession.isOpen()) {
             try {
-                WsResponse response = WsResponse.builder()
-                        .type("EVENT_CHAT_MSG")
-                        .data(message)
-                        .build();
-                String json = objectMapper.writeValueAsString(response);
-                targetSession.sendMessage(new org.springframework.web.socket.TextMessage(json));
+                eventSequencer.send(username, eventEncoder.chatMessage(message));
             } catch (Exception e) {
-                e.printStackTrace();
+                LOG.error("推送私聊消息失败", e, "to", username);
             }
+            return true;
+        }
+        DataCenter.OFFLINE_INBOX.offer(username, IdGenerator.parse(message.getMsgId()));
+        // 存入期间对方恰好登录完成、已经取过收件箱时，由这里补投
+        if (DataCenter.ONLINE_USERS.containsKey(username)) {
+            offlineDelivery.deliver(username);
         }
+        return false;
     }
 }
@@ -0,0 +1,159 @@
+package com.example.chat.handler.codec;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.util.ByteArrayBuilder;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import org.springframework.web.socket.BinaryMessage;
+import org.springframework.web.socket.TextMessage;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+
+/**
+ * 二进制子协议 chat.cbor：与 JSON 文本协议语义完全相同，只是帧改用 CBOR 编码、以二进制帧传输
+ *
+ * 1. 客户端握手时在 Sec-WebSocket-Protocol 中请求 chat.cbor 才启用，不请求时仍是默认的 JSON 文本帧。
+ * 2. 入站：RequestDecoder 直接从 CBOR 解析器读取，与 JSON 共用同一套 ObjectReader。
+ * 3. 出站：服务端各处仍只生成 JSON 文本帧，在 ManagedSession 入队时按 token 转码为 CBOR，不经过对象模型。
+ *    群推送时同一帧会发给很多会话，每个线程记住上一次转码的帧，同一帧只转码一次。
+ */
+public final class BinaryProtocol {
+
+    public static final String SUBPROTOCOL = "chat.cbor";
+
+    private static final JsonFactory JSON = new JsonFactory();
+    private static final CBORFactory CBOR = new CBORFactory();
+
+    // 超过这个长度的帧转码后丢弃线程内缓冲，避免长期占用
+    private static final int MAX_RETAINED_CHARS = 64 * 1024;
+
+    // 每个线程上一次转码的帧及复用的缓冲；只持有一帧，不会无限增长
+    private static final ThreadLocal<Memo> LAST = ThreadLocal.withInitial(Memo::new);
+
+    private BinaryProtocol() {
+    }
+
+    /**
+     * 把 JSON 文本帧转为 CBOR 二进制帧
+     * 返回的 BinaryMessage 每次都是新的（ByteBuffer 的读取位置会被发送过程改变），底层字节数组可共享
+     */
+    public static BinaryMessage toBinary(TextMessage frame) {
+        return new BinaryMessage(cached(frame));
+    }
+
+    /**
+     * 转为 CBOR 并在最前面插入 seq 字段，与 EventEncoder.withSeq 对应
+     * 转码结果仍按帧缓存，同一事件发给多个用户时只转码一次，每个用户只多一次字节拷贝
+     */
+    public static BinaryMessage toBinary(TextMessage frame, long seq) {
+        byte[] body = cached(frame);
+        // copyCurrentStructure 写出的是不定长 map (0xBF ... 0xFF)，可以直接在开头插入键值对
+        if (body.length == 0 || (body[0] & 0xFF) != 0xBF) {
+            throw new IllegalStateException("CBOR 帧不是不定长 map");
+        }
+        byte[] out = new byte[4 + unsignedSize(seq) + body.length];
+        int pos = 0;
+        out[pos++] = (byte) 0xBF;
+        out[pos++] = 0x63; // 长度为 3 的文本串
+        out[pos++] = 's';
+        out[pos++] = 'e';
+        out[pos++] = 'q';
+        pos = writeUnsigned(out, pos, seq);
+        System.arraycopy(body, 1, out, pos, body.length - 1);
+        return new BinaryMessage(out);
+    }
+
+    private static byte[] cached(TextMessage frame) {
+        Memo memo = LAST.get();
+        if (memo.text != frame) {
+            memo.bytes = transcode(frame.getPayload());
+            memo.text = frame;
+        }
+        return memo.bytes;
+    }
+
+    /**
+     * CBOR 无符号整数（主类型 0）编码后的字节数，按值选最短编码
+     */
+    private static int unsignedSize(long value) {
+        if (value < 24) {
+            return 1;
+        } else if (value < 0x100) {
+            return 2;
+        } else if (value < 0x10000) {
+            return 3;
+        } else if (value < 0x100000000L) {
+            return 5;
+        }
+        return 9;
+    }
+
+    private static int writeUnsigned(byte[] out, int pos, long value) {
+        int bytes = unsignedSize(value) - 1;
+        switch (bytes) {
+            case 0 -> {
+                out[pos++] = (byte) value;
+                return pos;
+            }
+            case 1 -> out[pos++] = 0x18;
+            case 2 -> out[pos++] = 0x19;
+            case 4 -> out[pos++] = 0x1A;
+            default -> out[pos++] = 0x1B;
+        }
+        for (int i = bytes - 1; i >= 0; i--) {
+            out[pos++] = (byte) (value >>> (i * 8));
+        }
+        return pos;
+    }
+
+    /**
+     * JSON 文本 -> CBOR 字节，按 token 逐个复制；输入字符和输出字节都用线程内复用的缓冲
+     */
+    public static byte[] transcode(String json) {
+        Memo memo = LAST.get();
+        int length = json.length();
+        if (memo.chars.length < length) {
+            memo.chars = new char[Math.max(length, memo.chars.length << 1)];
+        }
+        json.getChars(0, length, memo.chars, 0);
+        ByteArrayBuilder out = memo.out;
+        out.reset();
+        try (JsonParser parser = JSON.createParser(memo.chars, 0, length);
+             JsonGenerator generator = CBOR.createGenerator(out)) {
+            parser.nextToken();
+            generator.copyCurrentStructure(parser);
+            generator.flush();
+            byte[] bytes = out.toByteArray();
+            if (length > MAX_RETAINED_CHARS) {
+                LAST.remove();
+            }
+            return bytes;
+        } catch (IOException e) {
+            LAST.remove();
+            // 输入是服务端自己生成的 JSON，失败说明有 bug
+            throw new UncheckedIOException("CBOR 转码失败", e);
+        }
+    }
+
+    /**
+     * 创建读取 CBOR 帧的解析器
+     */
+    public static JsonParser createParser(ByteBuffer payload) throws IOException {
+        if (payload.hasArray()) {
+            return CBOR.createParser(payload.array(), payload.arrayOffset() + payload.position(), payload.remaining());
+        }
+        byte[] bytes = new byte[payload.remaining()];
+        payload.duplicate().get(bytes);
+        return CBOR.createParser(bytes);
+    }
+
+    private static final class Memo {
+        private TextMessage text;
+        private byte[] bytes;
+        private char[] chars = new char[1024];
+        private final ByteArrayBuilder out = new ByteArrayBuilder(1024);
+    }
+}
@@ -0,0 +1,294 @@
+package com.example.chat.handler.codec;
+
+import com.example.chat.common.model.Message;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.TextMessage;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 热点推送事件的手写编码器：EVENT_CHAT_MSG / EVENT_MSG_READ / EVENT_MSG_REACT / EVENT_OFFLINE_MSGS 及点赞回执
+ *
+ * 1. 不再构建 WsResponse / ObjectNode 再交给 ObjectMapper 反射序列化，而是用 JsonGenerator 按固定字段顺序直接写出。
+ * 2. 每个线程持有一个可复用的字符缓冲和挂在它上面的 JsonGenerator，编码一帧只分配最终的 String。
+ * 3. 输出与 ObjectMapper 序列化 WsResponse 的结果逐字节一致（字段顺序、null、转义都相同），
+ *    由 EventEncoderTest 对照校验；Message 增删字段时必须同步修改 {@link #writeMessage}。
+ */
+@Component
+public class EventEncoder {
+
+    // 单帧超过这个大小时用完即丢弃缓冲，避免每个线程长期占着一大块内存
+    private static final int MAX_RETAINED_CHARS = 64 * 1024;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    private ThreadLocal<Slot> slots;
+
+    @PostConstruct
+    public void init() {
+        slots = ThreadLocal.withInitial(this::newSlot);
+    }
+
+    /**
+     * 聊天消息推送，与 WsResponse{type=EVENT_CHAT_MSG, data=message} 一致
+     */
+    public TextMessage chatMessage(Message message) throws IOException {
+        Slot slot = begin("EVENT_CHAT_MSG");
+        try {
+            writeMessage(slot.gen, message);
+            return end(slot);
+        } catch (IOException | RuntimeException e) {
+            slots.remove();
+            throw e;
+        }
+    }
+
+    /**
+     * 离线消息批量推送：data = [message, ...]，与 WsResponse{type=EVENT_OFFLINE_MSGS, data=messages} 一致
+     */
+    public TextMessage offlineMessages(List<Message> messages) throws IOException {
+        Slot slot = begin("EVENT_OFFLINE_MSGS");
+        try {
+            JsonGenerator g = slot.gen;
+            g.writeStartArray();
+            for (Message message : messages) {
+                writeMessage(g, message);
+            }
+            g.writeEndArray();
+            return end(slot);
+        } catch (IOException | RuntimeException e) {
+            slots.remove();
+            throw e;
+        }
+    }
+
+    /**
+     * 已读回执推送：data = {msgId, reader, readCount}
+     */
+    public TextMessage msgRead(String msgId, String reader, int readCount) throws IOException {
+        Slot slot = begin("EVENT_MSG_READ");
+        try {
+            JsonGenerator g = slot.gen;
+            g.writeStartObject();
+            g.writeStringField("msgId", msgId);
+            g.writeStringField("reader", reader);
+            g.writeNumberField("readCount", readCount);
+            g.writeEndObject();
+            return end(slot);
+        } catch (IOException | RuntimeException e) {
+            slots.remove();
+            throw e;
+        }
+    }
+
+    /**
+     * 反应事件推送：data = {msgId, reactType, operator, isAdd, count}
+     */
+    public TextMessage msgReact(String msgId, String reactType, String operator, boolean isAdd, int count)
+            throws IOException {
+        Slot slot = begin("EVENT_MSG_REACT");
+        try {
+            JsonGenerator g = slot.gen;
+            g.writeStartObject();
+            g.writeStringField("msgId", msgId);
+            g.writeStringField("reactType", reactType);
+            g.writeStringField("operator", operator);
+            g.writeBooleanField("isAdd", isAdd);
+            g.writeNumberField("count", count);
+            g.writeEndObject();
+            return end(slot);
+        } catch (IOException | RuntimeException e) {
+            slots.remove();
+            throw e;
+        }
+    }
+
+    /**
+     * 反应操作的 SUCCESS 回执：data = {msgId, reactType, isAdd, count}
+     */
+    public TextMessage reactAck(String msgId, String reactType, boolean isAdd, int count) throws IOException {
+        Slot slot = begin("SUCCESS");
+        try {
+            JsonGenerator g = slot.gen;
+            g.writeStartObject();
+            g.writeStringField("msgId", msgId);
+            g.writeStringField("reactType", reactType);
+            g.writeBooleanField("isAdd", isAdd);
+            g.writeNumberField("count", count);
+            g.writeEndObject();
+            return end(slot);
+        } catch (IOException | RuntimeException e) {
+            slots.remove();
+            throw e;
+        }
+    }
+
+    /**
+     * 在事件帧最前面插入 seq 字段：{"seq":N,"type":...}，见 EventSequencer
+     * 同一事件发给多个用户时共用编码结果，每个用户只多一次字符串拼接
+     */
+    public static TextMessage withSeq(TextMessage frame, long seq) {
+        String payload = frame.getPayload();
+        StringBuilder sb = new StringBuilder(payload.length() + 28);
+        sb.append("{\"seq\":").append(seq).append(',').append(payload, 1, payload.length());
+        return new TextMessage(sb.toString());
+    }
+
+    // ================= 内部实现 =================
+
+    /**
+     * 写出 WsResponse 的固定头部，停在 data 的值之前
+     */
+    private Slot begin(String type) throws IOException {
+        Slot slot = slots.get();
+        JsonGenerator g = slot.gen;
+        g.writeStartObject();
+        g.writeStringField("type", type);
+        g.writeNumberField("code", 200);
+        g.writeStringField("msg", "ok");
+        g.writeFieldName("data");
+        return slot;
+    }
+
+    private TextMessage end(Slot slot) throws IOException {
+        slot.gen.writeEndObject();
+        slot.gen.flush();
+        String json = slot.out.toString();
+        if (slot.out.capacity() > MAX_RETAINED_CHARS) {
+            slots.remove();
+        } else {
+            slot.out.reset();
+        }
+        return new TextMessage(json);
+    }
+
+    /**
+     * 字段顺序与 Jackson 对 Message 的默认顺序一致：按声明顺序，isGroup 的 getter 是 isGroup()，属性名为 group，排在最后
+     */
+    private static void writeMessage(JsonGenerator g, Message m) throws IOException {
+        g.writeStartObject();
+        g.writeStringField("msgId", m.getMsgId());
+        g.writeStringField("fromUser", m.getFromUser());
+        g.writeStringField("toUser", m.getToUser());
+        g.writeStringField("content", m.getContent());
+        g.writeFieldName("timestamp");
+        if (m.getTimestamp() == null) {
+            g.writeNull();
+        } else {
+            g.writeNumber(m.getTimestamp());
+        }
+        g.writeStringField("quoteId", m.getQuoteId());
+        g.writeStringField("quoteContent", m.getQuoteContent());
+        g.writeFieldName("atUsers");
+        writeStrings(g, m.getAtUsers());
+        g.writeFieldName("readBy");
+        writeStrings(g, m.getReadBy());
+        g.writeFieldName("reactions");
+        Map<String, Set<String>> reactions = m.getReactions();
+        if (reactions == null) {
+            g.writeNull();
+        } else {
+            g.writeStartObject();
+            for (Map.Entry<String, Set<String>> e : reactions.entrySet()) {
+                g.writeFieldName(e.getKey());
+                writeStrings(g, e.getValue());
+            }
+            g.writeEndObject();
+        }
+        g.writeBooleanField("group", m.isGroup());
+        g.writeEndObject();
+    }
+
+    private static void writeStrings(JsonGenerator g, Collection<String> values) throws IOException {
+        if (values == null) {
+            g.writeNull();
+            return;
+        }
+        g.writeStartArray();
+        for (String value : values) {
+            g.writeString(value);
+        }
+        g.writeEndArray();
+    }
+
+    private Slot newSlot() {
+        try {
+            CharBuffer out = new CharBuffer();
+            JsonGenerator gen = objectMapper.getFactory().createGenerator(out);
+            // 同一个 generator 连续写多个根对象，默认会在中间插入空格
+            gen.setRootValueSeparator(null);
+            return new Slot(out, gen);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private record Slot(CharBuffer out, JsonGenerator gen) {
+    }
+
+    /**
+     * 可重置的字符缓冲，只在所属线程内使用，不加锁
+     */
+    private static final class CharBuffer extends Writer {
+        private char[] buf = new char[1024];
+        private int count;
+
+        @Override
+        public void write(char[] cbuf, int off, int len) {
+            ensure(len);
+            System.arraycopy(cbuf, off, buf, count, len);
+            count += len;
+        }
+
+        @Override
+        public void write(int c) {
+            ensure(1);
+            buf[count++] = (char) c;
+        }
+
+        @Override
+        public void write(String str, int off, int len) {
+            ensure(len);
+            str.getChars(off, off + len, buf, count);
+            count += len;
+        }
+
+        @Override
+        public void flush() {
+        }
+
+        @Override
+        public void close() {
+        }
+
+        @Override
+        public String toString() {
+            return new String(buf, 0, count);
+        }
+
+        int capacity() {
+            return buf.length;
+        }
+
+        void reset() {
+            count = 0;
+        }
+
+        private void ensure(int len) {
+            if (count + len > buf.length) {
+                buf = Arrays.copyOf(buf, Math.max(buf.length << 1, count + len));
+            }
+        }
+    }
+}
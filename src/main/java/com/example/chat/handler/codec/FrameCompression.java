@@ -0,0 +1,84 @@
+package com.example.chat.handler.codec;
+
+import jakarta.annotation.PostConstruct;
+import org.apache.tomcat.websocket.PerMessageDeflate;
+import org.apache.tomcat.websocket.TransformationFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * WebSocket 帧压缩（permessage-deflate）的配置与统计
+ *
+ * 1. 启动时用 ThresholdDeflate 替换 Tomcat 注册的 permessage-deflate 实现，
+ *    客户端在握手中请求该扩展即协商成功，不请求时行为不变。
+ * 2. 关闭时由 WebSocketConfig 的握手处理器把该扩展从协商结果中去掉。
+ * 3. 只统计出站消息：压缩前后字节数之比即压缩率，耗时为 Deflater 占用的 CPU 时间。
+ */
+@Component
+public class FrameCompression {
+
+    @Value("${chat.ws.deflate.enabled:true}")
+    private boolean enabled;
+
+    // 小于该字节数的消息不压缩
+    @Value("${chat.ws.deflate.min-bytes:1024}")
+    private int minBytes;
+
+    private final LongAdder compressedMessages = new LongAdder();
+    private final LongAdder skippedMessages = new LongAdder();
+    private final LongAdder bytesIn = new LongAdder();
+    private final LongAdder bytesOut = new LongAdder();
+    private final LongAdder deflateNanos = new LongAdder();
+
+    @PostConstruct
+    public void init() {
+        if (enabled) {
+            TransformationFactory.getInstance().registerExtension(PerMessageDeflate.NAME,
+                    (preferences, isServer) -> new ThresholdDeflate(
+                            PerMessageDeflate.BUILDER.build(preferences, isServer), minBytes, this));
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public long getCompressedMessages() {
+        return compressedMessages.sum();
+    }
+
+    public long getSkippedMessages() {
+        return skippedMessages.sum();
+    }
+
+    public long getBytesIn() {
+        return bytesIn.sum();
+    }
+
+    public long getBytesOut() {
+        return bytesOut.sum();
+    }
+
+    public long getDeflateNanos() {
+        return deflateNanos.sum();
+    }
+
+    // ================= 供 ThresholdDeflate 使用 =================
+
+    void recordCompressed(boolean fin, long in, long out, long nanos) {
+        if (fin) {
+            compressedMessages.increment();
+        }
+        bytesIn.add(in);
+        bytesOut.add(out);
+        deflateNanos.add(nanos);
+    }
+
+    void recordSkipped(boolean fin) {
+        if (fin) {
+            skippedMessages.increment();
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package com.example.chat.handler.codec;
+
+import jakarta.websocket.Extension;
+import org.apache.tomcat.websocket.MessagePart;
+import org.apache.tomcat.websocket.Transformation;
+import org.apache.tomcat.websocket.TransformationResult;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 包装 Tomcat 自带的 permessage-deflate：小于阈值的消息不压缩，并统计压缩前后字节数和耗时
+ *
+ * 1. 协商、入站解压、控制帧都原样交给 Tomcat 的实现。
+ * 2. 是否压缩按整条消息决定：消息第一个分片即是最后一个分片且小于阈值时，RSV1 保持 0 直接发出。
+ *    RFC 7692 允许同一连接上压缩与不压缩的消息混发；未压缩的消息不进入 LZ77 窗口，
+ *    两端的上下文接管（context takeover）仍保持一致。
+ * 3. 一个连接一个实例，发送由连接自己的锁串行化，这里的状态不需要同步。
+ */
+class ThresholdDeflate implements Transformation {
+
+    private final Transformation deflate;
+    private final int minBytes;
+    private final FrameCompression stats;
+
+    private Transformation next;
+
+    // 当前消息是否绕过压缩；消息被分片时由第一个分片决定，直到 fin
+    private boolean bypass;
+    private boolean inMessage;
+
+    ThresholdDeflate(Transformation deflate, int minBytes, FrameCompression stats) {
+        this.deflate = deflate;
+        this.minBytes = minBytes;
+        this.stats = stats;
+    }
+
+    @Override
+    public void setNext(Transformation t) {
+        next = t;
+        deflate.setNext(t);
+    }
+
+    @Override
+    public boolean validateRsvBits(int i) {
+        return deflate.validateRsvBits(i);
+    }
+
+    @Override
+    public Extension getExtensionResponse() {
+        return deflate.getExtensionResponse();
+    }
+
+    @Override
+    public TransformationResult getMoreData(byte opCode, boolean fin, int rsv, ByteBuffer dest) throws IOException {
+        return deflate.getMoreData(opCode, fin, rsv, dest);
+    }
+
+    @Override
+    public boolean validateRsv(int rsv, byte opCode) {
+        return deflate.validateRsv(rsv, opCode);
+    }
+
+    @Override
+    public List<MessagePart> sendMessagePart(List<MessagePart> messageParts) throws IOException {
+        List<MessagePart> result = new ArrayList<>(messageParts.size());
+        for (MessagePart part : messageParts) {
+            // 控制帧（opCode 最高位为 1）不压缩也不计入统计
+            if ((part.getOpCode() & 0x08) != 0) {
+                result.addAll(passThrough(List.of(part)));
+                continue;
+            }
+            int size = part.getPayload().remaining();
+            if (!inMessage) {
+                bypass = part.isFin() && size < minBytes;
+            }
+            inMessage = !part.isFin();
+
+            if (bypass) {
+                stats.recordSkipped(part.isFin());
+                result.addAll(passThrough(List.of(part)));
+            } else {
+                long start = System.nanoTime();
+                List<MessagePart> compressed = deflate.sendMessagePart(List.of(part));
+                long nanos = System.nanoTime() - start;
+                stats.recordCompressed(part.isFin(), size, payloadBytes(compressed), nanos);
+                result.addAll(compressed);
+            }
+        }
+        return result;
+    }
+
+    @Override
+    public void close() {
+        deflate.close();
+    }
+
+    private List<MessagePart> passThrough(List<MessagePart> parts) throws IOException {
+        return next == null ? parts : next.sendMessagePart(parts);
+    }
+
+    private static long payloadBytes(List<MessagePart> parts) {
+        long bytes = 0;
+        for (MessagePart part : parts) {
+            if ((part.getOpCode() & 0x08) == 0) {
+                bytes += part.getPayload().remaining();
+            }
+        }
+        return bytes;
+    }
+}
@@ -0,0 +1,11 @@
+package com.example.chat.handler.session;
+
+/**
+ * 出站帧的投递级别，决定发送队列溢出时的处理方式
+ */
+public enum Delivery {
+    // 聊天消息、撤回、回执等：不能丢，队列溢出说明客户端跟不上，直接断开让它重连补数据
+    RELIABLE,
+    // 正在输入、在线状态、已读等可被后续状态覆盖的通知：溢出时丢弃最旧的同类帧
+    DROPPABLE
+}
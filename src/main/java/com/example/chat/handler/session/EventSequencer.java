@@ -0,0 +1,317 @@
+package com.example.chat.handler.session;
+
+import com.example.chat.common.model.Group;
+import com.example.chat.handler.codec.EventEncoder;
+import com.example.chat.logging.ChatLog;
+import com.example.chat.repository.DataCenter;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 事件序号与断线重放
+ *
+ * 1. 每个用户一条单调递增的事件序号，推送给用户的可靠事件（新消息、撤回、反应、离线消息）都带 seq 字段；
+ *    可丢弃的帧（已读回执、输入状态、心跳）和请求的直接响应不编号。
+ * 2. 已编号的事件留在该用户的重放缓冲里，直到客户端 ACK 或超出条数上限；缓冲只保存共用的事件帧引用，
+ *    seq 在入队时才插入（见 ManagedSession#sendEvent），不会为每个用户复制一份事件。
+ * 3. 连接断开后缓冲继续保留 retain-sec 秒，期间发给该用户的事件照常编号入缓冲；
+ *    客户端重连时在 LOGIN 中带上 lastSeq，只重放缺失的区间；区间已被淘汰时推送 EVENT_RESYNC 让客户端拉历史。
+ * 4. 编号、入缓冲、入发送队列在同一把锁内完成，同一用户的事件在队列中严格按 seq 排列，重放也不会与新事件交错。
+ */
+@Component
+public class EventSequencer {
+
+    private static final ChatLog LOG = ChatLog.of("conn.resume");
+
+    private static final long SWEEP_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(1);
+
+    @Value("${chat.replay.max-events:256}")
+    private int maxEvents;
+
+    @Value("${chat.replay.retain-sec:120}")
+    private long retainSec;
+
+    // Key: 用户名；登录过的用户才有，只保存序号和少量帧引用
+    private final Map<String, Stream> streams = new ConcurrentHashMap<>();
+
+    // 已断开但仍可续传的用户 (Key: 用户名，Value: 断开时刻 System.nanoTime())
+    private final Map<String, Long> detached = new ConcurrentHashMap<>();
+
+    private long retainNanos;
+    private volatile long lastSweepNanos = System.nanoTime();
+
+    private final LongAdder replayedEvents = new LongAdder();
+    private final LongAdder resyncs = new LongAdder();
+
+    @PostConstruct
+    public void init() {
+        retainNanos = TimeUnit.SECONDS.toNanos(retainSec);
+        maxEvents = Math.max(1, maxEvents);
+    }
+
+    /**
+     * 登录成功后调用：绑定新连接，按 lastSeq 重放缺失的事件
+     *
+     * @param lastSeq 客户端收到的最后一个序号，首次登录传 null
+     * @return 当前序号，随登录响应返回给客户端作为起点
+     */
+    public long attach(String username, WebSocketSession session, Long lastSeq) {
+        Stream stream = streams.computeIfAbsent(username, k -> new Stream());
+        synchronized (stream) {
+            detached.remove(username);
+            stream.session = session;
+            if (lastSeq == null) {
+                // 新客户端没有任何状态，旧事件无需重放
+                stream.clear();
+                return stream.lastSeq;
+            }
+            if (lastSeq >= stream.firstSeq() - 1 && lastSeq <= stream.lastSeq) {
+                int replayed = 0;
+                for (long seq = lastSeq + 1; seq <= stream.lastSeq; seq++) {
+                    send(session, stream.get(seq), seq);
+                    replayed++;
+                }
+                replayedEvents.add(replayed);
+                LOG.info("断线续传", "user", username, "lastSeq", lastSeq, "replayed", replayed);
+            } else {
+                resyncs.increment();
+                LOG.info("续传区间已淘汰", "user", username, "lastSeq", lastSeq, "firstSeq", stream.firstSeq());
+                pushResync(session, lastSeq, stream.lastSeq);
+                stream.clear();
+            }
+            return stream.lastSeq;
+        }
+    }
+
+    /**
+     * 连接关闭时调用；只有仍绑定在这条连接上才转为可续传状态（被顶号的旧连接关闭时不处理）
+     * 按会话 id 比较：空闲回收后关闭回调拿到的是底层连接而不是 ManagedSession，同一条连接 id 相同
+     */
+    public void detach(String username, WebSocketSession session) {
+        Stream stream = streams.get(username);
+        if (stream == null) {
+            return;
+        }
+        synchronized (stream) {
+            if (stream.session == null || !stream.session.getId().equals(session.getId())) {
+                return;
+            }
+            stream.session = null;
+            detached.put(username, System.nanoTime());
+        }
+        expire();
+    }
+
+    /**
+     * 给用户推送一个可靠事件：编号、入缓冲，在线时入发送队列
+     *
+     * @return 是否送达或已缓冲等待续传
+     */
+    public boolean send(String username, TextMessage event) {
+        Stream stream = streams.get(username);
+        if (stream == null) {
+            if (!DataCenter.ONLINE_USERS.containsKey(username)) {
+                return false;
+            }
+            stream = streams.computeIfAbsent(username, k -> new Stream());
+        }
+        synchronized (stream) {
+            // 刚登录、还没 attach 时发给 ONLINE_USERS 中的新连接；续传时重放的重复事件由客户端按 seq 去重
+            WebSocketSession target = stream.session != null ? stream.session : DataCenter.ONLINE_USERS.get(username);
+            if (target == null && !resumable(username)) {
+                return false;
+            }
+            long seq = stream.append(event, maxEvents);
+            if (target != null) {
+                send(target, event, seq);
+            }
+            return true;
+        }
+    }
+
+    /**
+     * 客户端确认收到 seq 及之前的所有事件，释放缓冲
+     */
+    public void ack(String username, long seq) {
+        Stream stream = streams.get(username);
+        if (stream != null) {
+            synchronized (stream) {
+                stream.trim(seq);
+            }
+        }
+    }
+
+    /**
+     * 已断开但仍可续传的群成员，群推送时需要一并编号入缓冲
+     */
+    public List<String> detachedMembers(String groupId) {
+        if (detached.isEmpty()) {
+            return List.of();
+        }
+        expire();
+        List<String> members = new ArrayList<>();
+        Group group = DataCenter.GROUPS.get(groupId);
+        if (group == null) {
+            return members;
+        }
+        // 从较小的一边遍历；刚重新登录、已在 ONLINE_USERS 中的用户走在线推送，这里跳过
+        if (group.getMembers().size() < detached.size()) {
+            for (String username : group.getMembers()) {
+                if (detached.containsKey(username) && !DataCenter.ONLINE_USERS.containsKey(username)) {
+                    members.add(username);
+                }
+            }
+        } else {
+            for (String username : detached.keySet()) {
+                if (DataCenter.USER_GROUPS.isMember(username, groupId) && !DataCenter.ONLINE_USERS.containsKey(username)) {
+                    members.add(username);
+                }
+            }
+        }
+        return members;
+    }
+
+    /**
+     * 用户在线，或断开后仍在续传窗口内
+     */
+    public boolean isReachable(String username) {
+        return DataCenter.ONLINE_USERS.containsKey(username) || resumable(username);
+    }
+
+    public int getDetached() {
+        return detached.size();
+    }
+
+    public long getBufferedEvents() {
+        long total = 0;
+        for (Stream stream : streams.values()) {
+            total += stream.size;
+        }
+        return total;
+    }
+
+    public long getReplayedEvents() {
+        return replayedEvents.sum();
+    }
+
+    public long getResyncs() {
+        return resyncs.sum();
+    }
+
+    // ================= 内部实现 =================
+
+    private boolean resumable(String username) {
+        Long since = detached.get(username);
+        return since != null && System.nanoTime() - since < retainNanos;
+    }
+
+    /**
+     * 清理超出续传窗口的用户：释放缓冲，保留序号以保证单调递增
+     * 每秒最多扫描一次，大量连接同时断开时不会变成平方复杂度
+     */
+    private void expire() {
+        long now = System.nanoTime();
+        if (now - lastSweepNanos < SWEEP_INTERVAL_NANOS) {
+            return;
+        }
+        lastSweepNanos = now;
+        detached.forEach((username, since) -> {
+            if (now - since >= retainNanos && detached.remove(username, since)) {
+                Stream stream = streams.get(username);
+                if (stream != null) {
+                    synchronized (stream) {
+                        if (stream.session == null) {
+                            stream.clear();
+                        }
+                    }
+                }
+            }
+        });
+    }
+
+    private static void send(WebSocketSession session, TextMessage event, long seq) {
+        if (session instanceof ManagedSession managed) {
+            managed.sendEvent(event, seq);
+            return;
+        }
+        try {
+            session.sendMessage(EventEncoder.withSeq(event, seq));
+        } catch (IOException e) {
+            LOG.error("推送事件失败", e, "sessionId", session.getId(), "seq", seq);
+        }
+    }
+
+    private static void pushResync(WebSocketSession session, long lastSeq, long currentSeq) {
+        String json = "{\"type\":\"EVENT_RESYNC\",\"code\":200,\"msg\":\"ok\",\"data\":{\"lastSeq\":" + lastSeq
+                + ",\"seq\":" + currentSeq + "}}";
+        try {
+            session.sendMessage(new TextMessage(json));
+        } catch (IOException e) {
+            LOG.error("推送 EVENT_RESYNC 失败", e, "sessionId", session.getId());
+        }
+    }
+
+    /**
+     * 单个用户的序号与重放缓冲（环形数组，seq 连续，只需记住第一条的序号）
+     * 由自身的锁保护
+     */
+    private static final class Stream {
+        private WebSocketSession session;
+        private long lastSeq;
+        private TextMessage[] events = new TextMessage[8];
+        private int head;
+        private volatile int size;
+
+        long firstSeq() {
+            return lastSeq - size + 1;
+        }
+
+        TextMessage get(long seq) {
+            return events[(head + (int) (seq - firstSeq())) % events.length];
+        }
+
+        long append(TextMessage event, int max) {
+            while (size >= max) {
+                events[head] = null;
+                head = (head + 1) % events.length;
+                size--;
+            }
+            if (size == events.length) {
+                TextMessage[] grown = new TextMessage[Math.min(max, events.length << 1)];
+                for (int i = 0; i < size; i++) {
+                    grown[i] = events[(head + i) % events.length];
+                }
+                events = grown;
+                head = 0;
+            }
+            events[(head + size) % events.length] = event;
+            size++;
+            return ++lastSeq;
+        }
+
+        void trim(long ackSeq) {
+            while (size > 0 && firstSeq() <= ackSeq) {
+                events[head] = null;
+                head = (head + 1) % events.length;
+                size--;
+            }
+        }
+
+        void clear() {
+            events = new TextMessage[8];
+            head = 0;
+            size = 0;
+        }
+    }
+}
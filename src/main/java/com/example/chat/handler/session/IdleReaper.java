@@ -0,0 +1,132 @@
+package com.example.chat.handler.session;
+
+import com.example.chat.logging.ChatLog;
+import com.example.chat.repository.DataCenter;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 空闲连接回收：客户端消失却没发关闭帧时，连接会一直留在 ONLINE_USERS 里继续接收推送
+ *
+ * 1. 所有连接挂在同一个 {@link TimingWheel} 上，只有一个全局驱动线程，没有每连接的定时任务。
+ * 2. 收到入站帧只更新 ManagedSession 的最后活跃时间，不动时间轮；
+ *    定时器到期时再看最后活跃时间，没超时就按它续期，超时（连续 max-missed 个心跳周期无任何帧）才断开。
+ * 3. 断开时先清理在线状态并转为可续传（见 EventSequencer#detach），再关闭底层连接，不依赖关闭回调及时到达。
+ */
+@Component
+public class IdleReaper {
+
+    private static final ChatLog LOG = ChatLog.of("conn.idle");
+
+    @Value("${chat.idle.enabled:true}")
+    private boolean enabled;
+
+    // 客户端心跳周期
+    @Value("${chat.idle.heartbeat-interval-sec:30}")
+    private long heartbeatIntervalSec;
+
+    // 连续错过多少个心跳周期判定为死连接
+    @Value("${chat.idle.max-missed:3}")
+    private int maxMissed;
+
+    @Value("${chat.idle.tick-ms:1000}")
+    private long tickMs;
+
+    @Value("${chat.idle.wheel-size:512}")
+    private int wheelSize;
+
+    @Autowired
+    private SessionRegistry sessionRegistry;
+
+    @Autowired
+    private EventSequencer eventSequencer;
+
+    private TimingWheel<ManagedSession> wheel;
+    private ScheduledExecutorService ticker;
+    private long timeoutNanos;
+
+    private final LongAdder reaped = new LongAdder();
+
+    @PostConstruct
+    public void init() {
+        timeoutNanos = TimeUnit.SECONDS.toNanos(heartbeatIntervalSec * maxMissed);
+        wheel = new TimingWheel<>(wheelSize, TimeUnit.MILLISECONDS.toNanos(tickMs), System.nanoTime());
+        if (!enabled) {
+            return;
+        }
+        ticker = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "Idle-Reaper");
+            t.setDaemon(true);
+            return t;
+        });
+        ticker.scheduleAtFixedRate(this::tick, tickMs, tickMs, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (ticker != null) {
+            ticker.shutdownNow();
+        }
+    }
+
+    /**
+     * 连接建立时调用
+     */
+    public void watch(ManagedSession session) {
+        if (enabled) {
+            wheel.schedule(session, session.getLastSeenNanos() + timeoutNanos);
+        }
+    }
+
+    public int getWatched() {
+        return wheel.size();
+    }
+
+    public long getReaped() {
+        return reaped.sum();
+    }
+
+    private void tick() {
+        try {
+            wheel.advance(System.nanoTime(), this::onExpire);
+        } catch (RuntimeException e) {
+            // 调度任务抛出异常会被静默取消，这里必须吞掉
+            LOG.error("空闲检测异常", e);
+        }
+    }
+
+    private long onExpire(ManagedSession session, long nowNanos) {
+        if (!session.isOpen()) {
+            return -1; // 已正常关闭，移出时间轮
+        }
+        long deadline = session.getLastSeenNanos() + timeoutNanos;
+        if (deadline > nowNanos) {
+            return deadline;
+        }
+        reap(session, nowNanos);
+        return -1;
+    }
+
+    private void reap(ManagedSession session, long nowNanos) {
+        reaped.increment();
+        String username = (String) session.getAttributes().get("username");
+        LOG.warn("回收空闲连接", "sessionId", session.getId(), "user", username,
+                "idleSec", TimeUnit.NANOSECONDS.toSeconds(nowNanos - session.getLastSeenNanos()));
+        // 只移除自己这条连接，与 ChatHandler.afterConnectionClosed 一致
+        if (username != null && DataCenter.ONLINE_USERS.remove(username, session)) {
+            DataCenter.ONLINE_MEMBERS.userOffline(username);
+        }
+        if (username != null) {
+            eventSequencer.detach(username, session);
+        }
+        sessionRegistry.disconnectIdle(session);
+    }
+}
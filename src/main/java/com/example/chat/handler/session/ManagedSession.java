@@ -0,0 +1,274 @@
+package com.example.chat.handler.session;
+
+import com.example.chat.handler.codec.BinaryProtocol;
+import com.example.chat.handler.codec.EventEncoder;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.WebSocketSessionDecorator;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.Iterator;
+
+/**
+ * 带独立发送队列的会话
+ *
+ * 1. sendMessage() 只是入队，立即返回；由 SessionRegistry 的出站线程池按顺序真正写出，
+ *    同一会话同一时刻只有一个线程在写，不会再出现并发发送的 IllegalStateException。
+ * 2. 队列有帧数和字节数上限：溢出时先丢最旧的 DROPPABLE 帧，仍放不下 RELIABLE 帧就断开连接。
+ * 3. 单次发送超过时间上限（客户端不读数据）时断开：下一次入队时检查，SessionRegistry 的看门狗也定期检查，
+ *    不让慢客户端拖住出站线程。
+ * 4. 协商了二进制子协议（chat.cbor）的会话，文本帧在入队时转为 CBOR 二进制帧，调用方无需区分。
+ * 5. 带序号的事件（见 EventSequencer）在入队时才插入 seq，编码结果在所有接收者之间共用。
+ * 思路参考 Spring 的 ConcurrentWebSocketSessionDecorator，区别是按帧区分溢出策略、由独立线程写出。
+ */
+public class ManagedSession extends WebSocketSessionDecorator {
+
+    // 每轮最多连续写出的帧数，写完重新排队，避免一个会话占住线程
+    private static final int DRAIN_BATCH = 64;
+
+    private final SessionRegistry registry;
+
+    // 是否协商了 chat.cbor 子协议
+    private final boolean binary;
+
+    // 以下字段由 queue 的锁保护
+    private final Deque<Frame> queue = new ArrayDeque<>();
+    private int bufferedBytes;
+    private boolean scheduled;
+    private long droppedFrames;
+    // 已丢弃全部待发帧并进入断开流程
+    private boolean discarded;
+
+    private volatile boolean closed;
+    private volatile boolean sending;
+    private volatile long sendStartNanos;
+
+    // 最近一次收到客户端帧（含心跳）的时间，System.nanoTime()
+    private volatile long lastSeenNanos = System.nanoTime();
+
+    ManagedSession(WebSocketSession delegate, SessionRegistry registry) {
+        super(delegate);
+        this.registry = registry;
+        this.binary = BinaryProtocol.SUBPROTOCOL.equals(delegate.getAcceptedProtocol());
+    }
+
+    /**
+     * 收到客户端的任意帧时调用
+     */
+    public void touch() {
+        lastSeenNanos = System.nanoTime();
+    }
+
+    public long getLastSeenNanos() {
+        return lastSeenNanos;
+    }
+
+    @Override
+    public void sendMessage(WebSocketMessage<?> message) {
+        send(message, Delivery.RELIABLE);
+    }
+
+    /**
+     * 按指定投递级别入队
+     */
+    public void send(WebSocketMessage<?> message, Delivery delivery) {
+        if (binary && message instanceof TextMessage text) {
+            message = BinaryProtocol.toBinary(text);
+        }
+        enqueue(message, delivery);
+    }
+
+    /**
+     * 按 RELIABLE 入队一个带序号的事件
+     */
+    public void sendEvent(TextMessage event, long seq) {
+        enqueue(binary ? BinaryProtocol.toBinary(event, seq) : EventEncoder.withSeq(event, seq), Delivery.RELIABLE);
+    }
+
+    /**
+     * 等队列中已有的帧发完再关闭
+     */
+    @Override
+    public void close(CloseStatus status) {
+        synchronized (queue) {
+            if (closed) {
+                return;
+            }
+            queue.addLast(new Frame(null, status, Delivery.RELIABLE, 0));
+            closed = true; // 之后的帧不再接收
+            schedule();
+        }
+    }
+
+    @Override
+    public void close() {
+        close(CloseStatus.NORMAL);
+    }
+
+    @Override
+    public boolean isOpen() {
+        return !closed && getDelegate().isOpen();
+    }
+
+    public int getQueuedFrames() {
+        synchronized (queue) {
+            return queue.size();
+        }
+    }
+
+    public int getBufferedBytes() {
+        synchronized (queue) {
+            return bufferedBytes;
+        }
+    }
+
+    public long getDroppedFrames() {
+        synchronized (queue) {
+            return droppedFrames;
+        }
+    }
+
+    /**
+     * 连接已关闭，丢弃未发送的帧
+     */
+    void discard() {
+        synchronized (queue) {
+            discardLocked();
+        }
+    }
+
+    /**
+     * 看门狗调用：当前这次发送已超过时间上限时丢弃待发帧
+     *
+     * @return 是否需要断开；同一会话只返回一次 true
+     */
+    boolean expireStuckSend(long nowNanos) {
+        if (!sending || nowNanos - sendStartNanos <= registry.getSendTimeLimitNanos()) {
+            return false;
+        }
+        synchronized (queue) {
+            if (discarded) {
+                return false;
+            }
+            discardLocked();
+            return true;
+        }
+    }
+
+    /**
+     * 出站线程调用：按顺序写出队列中的帧
+     */
+    void drain() {
+        for (int i = 0; i < DRAIN_BATCH; i++) {
+            Frame frame;
+            synchronized (queue) {
+                frame = queue.pollFirst();
+                if (frame == null) {
+                    scheduled = false;
+                    return;
+                }
+                bufferedBytes -= frame.size;
+            }
+            sendStartNanos = System.nanoTime();
+            sending = true;
+            try {
+                if (frame.closeStatus != null) {
+                    getDelegate().close(frame.closeStatus);
+                } else {
+                    getDelegate().sendMessage(frame.message);
+                }
+            } catch (Exception e) {
+                boolean first;
+                synchronized (queue) {
+                    first = !discarded;
+                    discardLocked();
+                    scheduled = false;
+                }
+                // 看门狗已经断开过的会话，发送被中断时不再重复处理
+                if (first) {
+                    registry.disconnectSlow(this, "发送失败: " + e.getMessage());
+                }
+                return;
+            } finally {
+                sending = false;
+            }
+        }
+        // 本轮配额用完，重新排队让其他会话先写
+        registry.submit(this);
+    }
+
+    // ================= 内部实现 =================
+
+    private void enqueue(WebSocketMessage<?> message, Delivery delivery) {
+        String overflow = null;
+        synchronized (queue) {
+            if (closed) {
+                return;
+            }
+            if (sending && System.nanoTime() - sendStartNanos > registry.getSendTimeLimitNanos()) {
+                overflow = "发送超时";
+            } else {
+                Frame frame = new Frame(message, null, delivery, message.getPayloadLength());
+                queue.addLast(frame);
+                bufferedBytes += frame.size;
+                if (overLimit() && !dropDroppable()) {
+                    overflow = "发送队列溢出";
+                } else {
+                    schedule();
+                }
+            }
+            if (overflow != null) {
+                discardLocked();
+            }
+        }
+        if (overflow != null) {
+            registry.disconnectSlow(this, overflow);
+        }
+    }
+
+    /**
+     * 调用方必须持有 queue 的锁
+     */
+    private void schedule() {
+        if (!scheduled) {
+            scheduled = true;
+            registry.submit(this);
+        }
+    }
+
+    private boolean overLimit() {
+        return queue.size() > registry.getMaxQueueFrames() || bufferedBytes > registry.getBufferSizeLimit();
+    }
+
+    /**
+     * 从最旧的开始丢 DROPPABLE 帧，直到回到上限以内
+     *
+     * @return 是否回到了上限以内
+     */
+    private boolean dropDroppable() {
+        Iterator<Frame> it = queue.iterator();
+        while (overLimit() && it.hasNext()) {
+            Frame frame = it.next();
+            if (frame.delivery == Delivery.DROPPABLE) {
+                it.remove();
+                bufferedBytes -= frame.size;
+                droppedFrames++;
+                registry.recordDropped();
+            }
+        }
+        return !overLimit();
+    }
+
+    private void discardLocked() {
+        discarded = true;
+        closed = true;
+        queue.clear();
+        bufferedBytes = 0;
+    }
+
+    private record Frame(WebSocketMessage<?> message, CloseStatus closeStatus, Delivery delivery, int size) {
+    }
+}
@@ -0,0 +1,207 @@
+package com.example.chat.handler.session;
+
+import com.example.chat.logging.ChatLog;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jakarta.websocket.Session;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.adapter.NativeWebSocketSession;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 会话注册表：为每个连接创建 {@link ManagedSession}，并提供共享的出站线程池
+ *
+ * 1. 出站线程做的是阻塞写，客户端不读数据时会被卡住。单次发送的时长有两道限制：
+ *    Tomcat 会话的阻塞发送超时设为 send-time-limit-ms；看门狗线程定期检查正在发送的会话，
+ *    超时的直接断开，不等下一次入队。
+ * 2. 关闭连接在独立的关闭线程池里做，关闭本身可能等待卡住的发送，不能排在出站线程池后面。
+ */
+@Component
+public class SessionRegistry {
+
+    private static final ChatLog LOG = ChatLog.of("outbound");
+
+    // Tomcat 读取的会话属性：阻塞发送的超时时间（毫秒，Long）
+    private static final String TOMCAT_BLOCKING_SEND_TIMEOUT = "org.apache.tomcat.websocket.BLOCKING_SEND_TIMEOUT";
+
+    @Value("${chat.outbound.max-queue-frames:1000}")
+    private int maxQueueFrames;
+
+    @Value("${chat.outbound.buffer-size-kb:1024}")
+    private int bufferSizeKb;
+
+    @Value("${chat.outbound.send-time-limit-ms:10000}")
+    private long sendTimeLimitMs;
+
+    // 出站线程数，0 表示 CPU 核数 * 2
+    @Value("${chat.outbound.threads:0}")
+    private int threads;
+
+    @Value("${chat.outbound.close-threads:2}")
+    private int closeThreads;
+
+    // Key: 原始 Session ID
+    private final Map<String, ManagedSession> sessions = new ConcurrentHashMap<>();
+
+    private ExecutorService executor;
+    private ExecutorService closer;
+    private ScheduledExecutorService watchdog;
+    private long sendTimeLimitNanos;
+
+    private final LongAdder droppedFrames = new LongAdder();
+    private final LongAdder slowDisconnects = new LongAdder();
+
+    @PostConstruct
+    public void init() {
+        int size = threads > 0 ? threads : Runtime.getRuntime().availableProcessors() * 2;
+        AtomicInteger seq = new AtomicInteger();
+        executor = Executors.newFixedThreadPool(size, r -> {
+            Thread t = new Thread(r, "Outbound-" + seq.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        AtomicInteger closeSeq = new AtomicInteger();
+        closer = Executors.newFixedThreadPool(Math.max(1, closeThreads), r -> {
+            Thread t = new Thread(r, "Outbound-Close-" + closeSeq.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        sendTimeLimitNanos = TimeUnit.MILLISECONDS.toNanos(sendTimeLimitMs);
+        // 检查周期取时间上限的 1/4，限制在 50ms ~ 1s
+        long periodMs = Math.max(50, Math.min(1000, sendTimeLimitMs / 4));
+        watchdog = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "Outbound-Watchdog");
+            t.setDaemon(true);
+            return t;
+        });
+        watchdog.scheduleWithFixedDelay(this::checkStuckSends, periodMs, periodMs, TimeUnit.MILLISECONDS);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        watchdog.shutdownNow();
+        executor.shutdownNow();
+        closer.shutdownNow();
+    }
+
+    /**
+     * 连接建立时调用
+     */
+    public ManagedSession register(WebSocketSession session) {
+        if (session instanceof NativeWebSocketSession nativeSession) {
+            Session tomcat = nativeSession.getNativeSession(Session.class);
+            if (tomcat != null) {
+                tomcat.getUserProperties().put(TOMCAT_BLOCKING_SEND_TIMEOUT, sendTimeLimitMs);
+            }
+        }
+        ManagedSession managed = new ManagedSession(session, this);
+        sessions.put(session.getId(), managed);
+        return managed;
+    }
+
+    /**
+     * 取得原始会话对应的包装；未注册时原样返回
+     */
+    public WebSocketSession wrap(WebSocketSession session) {
+        ManagedSession managed = sessions.get(session.getId());
+        return managed != null ? managed : session;
+    }
+
+    /**
+     * 连接关闭时调用
+     */
+    public void unregister(WebSocketSession session) {
+        ManagedSession managed = sessions.remove(session.getId());
+        if (managed != null) {
+            managed.discard();
+        }
+    }
+
+    public int size() {
+        return sessions.size();
+    }
+
+    public long getDroppedFrames() {
+        return droppedFrames.sum();
+    }
+
+    public long getSlowDisconnects() {
+        return slowDisconnects.sum();
+    }
+
+    // ================= 供 ManagedSession 使用 =================
+
+    int getMaxQueueFrames() {
+        return maxQueueFrames;
+    }
+
+    int getBufferSizeLimit() {
+        return bufferSizeKb * 1024;
+    }
+
+    long getSendTimeLimitNanos() {
+        return sendTimeLimitNanos;
+    }
+
+    void submit(ManagedSession session) {
+        executor.execute(session::drain);
+    }
+
+    void recordDropped() {
+        droppedFrames.increment();
+    }
+
+    /**
+     * 断开跟不上的客户端；关闭动作可能被卡住的发送阻塞，所以放到关闭线程里做
+     */
+    void disconnectSlow(ManagedSession session, String reason) {
+        slowDisconnects.increment();
+        LOG.warn("断开慢客户端", "user", session.getAttributes().get("username"), "reason", reason);
+        closeAsync(session);
+    }
+
+    /**
+     * 断开长时间没有任何入站帧的连接：丢弃待发帧并直接关闭底层连接
+     */
+    void disconnectIdle(ManagedSession session) {
+        unregister(session.getDelegate());
+        closeAsync(session);
+    }
+
+    /**
+     * 看门狗：正在发送且超过时间上限的会话直接断开，释放被卡住的出站线程
+     */
+    private void checkStuckSends() {
+        try {
+            long now = System.nanoTime();
+            for (ManagedSession session : sessions.values()) {
+                if (session.expireStuckSend(now)) {
+                    disconnectSlow(session, "发送超时");
+                }
+            }
+        } catch (RuntimeException e) {
+            // 调度任务抛出异常会被静默取消，这里必须吞掉
+            LOG.error("出站看门狗异常", e);
+        }
+    }
+
+    private void closeAsync(ManagedSession session) {
+        closer.execute(() -> {
+            try {
+                session.getDelegate().close(CloseStatus.SESSION_NOT_RELIABLE);
+            } catch (Exception ignored) {
+            }
+        });
+    }
+}
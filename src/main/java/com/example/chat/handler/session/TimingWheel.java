@@ -0,0 +1,111 @@
+package com.example.chat.handler.session;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 哈希时间轮：wheelSize 个槽，每槽对应一个 tick，超出一圈的定时器记录剩余圈数
+ *
+ * 1. schedule() 可在任意线程调用，只是放入无锁收件箱，O(1)。
+ * 2. advance() 只由一个驱动线程调用：先把收件箱里的定时器放进槽位，再处理到期的槽。
+ * 3. 到期回调返回新的截止时间即可原地续期（不新建对象），返回负数表示移除。
+ * 精度为一个 tick：定时器最多晚一个 tick 触发，不会提前。
+ */
+class TimingWheel<T> {
+
+    /**
+     * 到期回调
+     */
+    interface Handler<T> {
+        /**
+         * @return 新的截止时间 (System.nanoTime())，负数表示不再需要
+         */
+        long onExpire(T item, long nowNanos);
+    }
+
+    private final int mask;
+    private final long tickNanos;
+    private final long startNanos;
+    private final List<Entry<T>>[] slots;
+    private final Queue<Entry<T>> inbox = new ConcurrentLinkedQueue<>();
+    private final AtomicInteger size = new AtomicInteger();
+
+    // 下一个要处理的 tick，只由驱动线程访问
+    private long currentTick;
+
+    @SuppressWarnings("unchecked")
+    TimingWheel(int wheelSize, long tickNanos, long startNanos) {
+        int n = Integer.highestOneBit(Math.max(2, wheelSize - 1)) << 1;
+        this.mask = n - 1;
+        this.tickNanos = tickNanos;
+        this.startNanos = startNanos;
+        this.slots = new List[n];
+        for (int i = 0; i < n; i++) {
+            slots[i] = new ArrayList<>();
+        }
+    }
+
+    void schedule(T item, long deadlineNanos) {
+        size.incrementAndGet();
+        inbox.offer(new Entry<>(item, deadlineNanos));
+    }
+
+    /**
+     * 处理截至 nowNanos 已经完整走过的所有 tick
+     *
+     * @return 本次触发的回调数
+     */
+    int advance(long nowNanos, Handler<T> handler) {
+        Entry<T> entry;
+        while ((entry = inbox.poll()) != null) {
+            place(entry);
+        }
+        int fired = 0;
+        while (startNanos + (currentTick + 1) * tickNanos <= nowNanos) {
+            long tick = currentTick++;
+            int idx = (int) (tick & mask);
+            List<Entry<T>> bucket = slots[idx];
+            slots[idx] = new ArrayList<>();
+            for (Entry<T> e : bucket) {
+                if (e.rounds > 0) {
+                    e.rounds--;
+                    slots[idx].add(e);
+                    continue;
+                }
+                fired++;
+                long next = handler.onExpire(e.item, nowNanos);
+                if (next < 0) {
+                    size.decrementAndGet();
+                } else {
+                    e.deadlineNanos = next;
+                    place(e);
+                }
+            }
+        }
+        return fired;
+    }
+
+    int size() {
+        return size.get();
+    }
+
+    private void place(Entry<T> e) {
+        long tick = Math.max(currentTick, (e.deadlineNanos - startNanos) / tickNanos);
+        e.rounds = (tick - currentTick) / slots.length;
+        slots[(int) (tick & mask)].add(e);
+    }
+
+    private static final class Entry<T> {
+        private final T item;
+        private long deadlineNanos;
+        private long rounds;
+
+        private Entry(T item, long deadlineNanos) {
+            this.item = item;
+            this.deadlineNanos = deadlineNanos;
+        }
+    }
+}
@@ -0,0 +1,234 @@
+package com.example.chat.logging;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * 异步、可采样的结构化日志门面，用来替代热路径上的 System.out.println
+ *
+ * 1. 业务线程只把事件放进无锁环形队列，格式化和写出由后台线程完成；队列满时丢弃并计数，绝不阻塞。
+ * 2. 按分类配置 INFO 的采样率（chat.log.sample-rates），WARN / ERROR 不采样。
+ * 3. 字段以 key / value 交替传入，输出为 "事件 key=value ..."；命中 chat.log.redact-keys 的字段
+ *    （默认 content、quoteContent）只输出长度，消息正文不会进入日志。
+ * 最终写出仍交给 SLF4J（logger 名为 chat.分类），输出位置和格式沿用 Spring Boot 的日志配置。
+ *
+ * 用法：private static final ChatLog LOG = ChatLog.of("msg.private");
+ *       LOG.info("私聊消息", "from", fromUser, "to", toUser, "content", content);
+ */
+public final class ChatLog {
+
+    private static final Map<String, ChatLog> LOGS = new ConcurrentHashMap<>();
+
+    private static volatile LogRing ring = new LogRing(8192);
+    private static volatile double defaultSampleRate = 1.0;
+    private static volatile Map<String, Double> sampleRates = Map.of();
+    private static volatile Set<String> redactKeys = Set.of("content", "quoteContent");
+
+    private static final LongAdder dropped = new LongAdder();
+    private static final LongAdder sampledOut = new LongAdder();
+    private static volatile Thread writer;
+    private static volatile boolean running;
+
+    private final String category;
+    private final Logger logger;
+    private volatile double sampleRate;
+
+    private ChatLog(String category) {
+        this.category = category;
+        this.logger = LoggerFactory.getLogger("chat." + category);
+        this.sampleRate = rateFor(category);
+    }
+
+    /**
+     * 取得某个分类的日志对象，通常保存在 static final 字段中
+     */
+    public static ChatLog of(String category) {
+        ChatLog log = LOGS.computeIfAbsent(category, ChatLog::new);
+        ensureWriter();
+        return log;
+    }
+
+    /**
+     * 由 LoggingConfig 在启动时调用，之后创建的和已存在的分类都使用新配置
+     */
+    public static synchronized void configure(int ringSize, double defaultRate, Map<String, Double> rates,
+                                              Set<String> redacted) {
+        if (ringSize != ring.capacity()) {
+            stop();
+            ring = new LogRing(ringSize);
+        }
+        defaultSampleRate = defaultRate;
+        sampleRates = Map.copyOf(rates);
+        redactKeys = Set.copyOf(redacted);
+        for (ChatLog log : LOGS.values()) {
+            log.sampleRate = rateFor(log.category);
+        }
+        ensureWriter();
+    }
+
+    /**
+     * 停止后台线程，停止前写完队列中剩余的日志
+     */
+    public static synchronized void stop() {
+        Thread t = writer;
+        if (t == null) {
+            return;
+        }
+        running = false;
+        LockSupport.unpark(t);
+        try {
+            t.join(2000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        writer = null;
+    }
+
+    public static long getDropped() {
+        return dropped.sum();
+    }
+
+    public static long getSampledOut() {
+        return sampledOut.sum();
+    }
+
+    // ================= 记录 =================
+
+    /**
+     * 按分类采样率记录
+     */
+    public void info(String event, Object... fields) {
+        double rate = sampleRate;
+        if (rate < 1.0 && (rate <= 0 || ThreadLocalRandom.current().nextDouble() >= rate)) {
+            sampledOut.increment();
+            return;
+        }
+        enqueue(LogEvent.Level.INFO, event, null, fields);
+    }
+
+    public void warn(String event, Object... fields) {
+        enqueue(LogEvent.Level.WARN, event, null, fields);
+    }
+
+    public void error(String event, Throwable error, Object... fields) {
+        enqueue(LogEvent.Level.ERROR, event, error, fields);
+    }
+
+    private void enqueue(LogEvent.Level level, String event, Throwable error, Object[] fields) {
+        if (!ring.offer(new LogEvent(this, level, event, error, fields))) {
+            dropped.increment();
+        }
+    }
+
+    // ================= 后台写出 =================
+
+    private static double rateFor(String category) {
+        // 先找完整分类，再逐级找父分类：msg.private -> msg
+        String key = category;
+        while (true) {
+            Double rate = sampleRates.get(key);
+            if (rate != null) {
+                return rate;
+            }
+            int dot = key.lastIndexOf('.');
+            if (dot < 0) {
+                return defaultSampleRate;
+            }
+            key = key.substring(0, dot);
+        }
+    }
+
+    private static synchronized void ensureWriter() {
+        if (writer != null) {
+            return;
+        }
+        running = true;
+        Thread t = new Thread(ChatLog::writeLoop, "ChatLog-Writer");
+        t.setDaemon(true);
+        writer = t;
+        t.start();
+    }
+
+    private static void writeLoop() {
+        LogRing r = ring;
+        StringBuilder sb = new StringBuilder(256);
+        long reportedDrops = 0;
+        while (true) {
+            LogEvent event = r.poll();
+            if (event == null) {
+                long drops = dropped.sum();
+                if (drops != reportedDrops) {
+                    LoggerFactory.getLogger("chat.log").warn("日志队列已满，累计丢弃 {} 条", drops);
+                    reportedDrops = drops;
+                }
+                if (!running) {
+                    return;
+                }
+                LockSupport.parkNanos(1_000_000L);
+                continue;
+            }
+            try {
+                write(event, sb);
+            } catch (RuntimeException e) {
+                // 某个字段的 toString() 出错不能拖垮写出线程
+                LoggerFactory.getLogger("chat.log").warn("日志格式化失败: {}", e.toString());
+            }
+        }
+    }
+
+    private static void write(LogEvent event, StringBuilder sb) {
+        Logger logger = event.log().logger;
+        sb.setLength(0);
+        sb.append(event.event());
+        Object[] fields = event.fields();
+        Set<String> redacted = redactKeys;
+        for (int i = 0; i + 1 < fields.length; i += 2) {
+            String key = String.valueOf(fields[i]);
+            sb.append(' ').append(key).append('=');
+            Object value = fields[i + 1];
+            if (value != null && redacted.contains(key)) {
+                sb.append("<").append(value.toString().length()).append(" chars>");
+            } else {
+                appendValue(sb, value);
+            }
+        }
+        String line = sb.toString();
+        switch (event.level()) {
+            case INFO -> logger.info(line);
+            case WARN -> logger.warn(line, event.error());
+            case ERROR -> logger.error(line, event.error());
+        }
+    }
+
+    private static void appendValue(StringBuilder sb, Object value) {
+        String s = String.valueOf(value);
+        boolean quote = s.isEmpty();
+        for (int i = 0; i < s.length() && !quote; i++) {
+            char c = s.charAt(i);
+            quote = Character.isWhitespace(c) || c == '=' || c == '"';
+        }
+        if (!quote) {
+            sb.append(s);
+            return;
+        }
+        sb.append('"');
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c == '"' || c == '\\') {
+                sb.append('\\');
+            } else if (c == '\n') {
+                sb.append("\\n");
+                continue;
+            }
+            sb.append(c);
+        }
+        sb.append('"');
+    }
+}
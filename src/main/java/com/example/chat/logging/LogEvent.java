@@ -0,0 +1,13 @@
+package com.example.chat.logging;
+
+/**
+ * 一条待写出的日志，格式化推迟到后台线程
+ *
+ * @param fields 交替排列的 key / value
+ */
+record LogEvent(ChatLog log, Level level, String event, Throwable error, Object[] fields) {
+
+    enum Level {
+        INFO, WARN, ERROR
+    }
+}
@@ -0,0 +1,73 @@
+package com.example.chat.logging;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 有界多生产者单消费者无锁环形队列
+ *
+ * 每个槽位带一个序号：序号 == 位置 表示空闲可写，序号 == 位置 + 1 表示已写好可读。
+ * 生产者 CAS 抢占写位置，队列满时直接返回 false（调用方丢弃日志），不阻塞业务线程。
+ */
+class LogRing {
+
+    private final int mask;
+    private final LogEvent[] events;
+    private final AtomicLongArray sequences;
+    private final AtomicLong tail = new AtomicLong();
+
+    // 只有消费者线程访问
+    private long head;
+
+    LogRing(int capacity) {
+        int size = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+        this.mask = size - 1;
+        this.events = new LogEvent[size];
+        this.sequences = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++) {
+            sequences.set(i, i);
+        }
+    }
+
+    /**
+     * @return 队列已满时返回 false
+     */
+    boolean offer(LogEvent event) {
+        long pos = tail.get();
+        while (true) {
+            int idx = (int) (pos & mask);
+            long diff = sequences.get(idx) - pos;
+            if (diff == 0) {
+                if (tail.compareAndSet(pos, pos + 1)) {
+                    events[idx] = event;
+                    sequences.lazySet(idx, pos + 1); // 发布：写入对消费者可见
+                    return true;
+                }
+                pos = tail.get();
+            } else if (diff < 0) {
+                return false;
+            } else {
+                pos = tail.get();
+            }
+        }
+    }
+
+    /**
+     * 仅由消费者线程调用，队列为空时返回 null
+     */
+    LogEvent poll() {
+        int idx = (int) (head & mask);
+        if (sequences.get(idx) != head + 1) {
+            return null;
+        }
+        LogEvent event = events[idx];
+        events[idx] = null;
+        sequences.lazySet(idx, head + events.length); // 槽位留给下一圈
+        head++;
+        return event;
+    }
+
+    int capacity() {
+        return events.length;
+    }
+}
@@ -0,0 +1,58 @@
+package com.example.chat.logging;
+
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 按配置初始化 {@link ChatLog}
+ */
+@Component
+public class LoggingConfig {
+
+    @Value("${chat.log.ring-size:8192}")
+    private int ringSize;
+
+    @Value("${chat.log.default-sample-rate:1.0}")
+    private double defaultSampleRate;
+
+    // 形如 msg.read:0.01,msg.react:0.1；分类未配置时沿用父分类，再沿用默认值
+    @Value("${chat.log.sample-rates:}")
+    private String sampleRates;
+
+    @Value("${chat.log.redact-keys:content,quoteContent}")
+    private String redactKeys;
+
+    @PostConstruct
+    public void init() {
+        Map<String, Double> rates = new HashMap<>();
+        for (String entry : sampleRates.split(",")) {
+            if (entry.isBlank()) {
+                continue;
+            }
+            int colon = entry.lastIndexOf(':');
+            if (colon <= 0) {
+                throw new IllegalArgumentException("chat.log.sample-rates 格式错误: " + entry);
+            }
+            rates.put(entry.substring(0, colon).trim(), Double.parseDouble(entry.substring(colon + 1).trim()));
+        }
+        Set<String> redacted = new HashSet<>();
+        for (String key : redactKeys.split(",")) {
+            if (!key.isBlank()) {
+                redacted.add(key.trim());
+            }
+        }
+        ChatLog.configure(ringSize, defaultSampleRate, rates, redacted);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        ChatLog.stop();
+    }
+}
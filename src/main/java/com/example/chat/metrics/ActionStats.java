@@ -0,0 +1,54 @@
+package com.example.chat.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 单个 action 的调用统计
+ */
+public class ActionStats {
+
+    private final String action;
+    private final LongAdder calls = new LongAdder();
+    private final LongAdder errors = new LongAdder();
+    private final AtomicLong inFlight = new AtomicLong();
+    private final LatencyHistogram latency = new LatencyHistogram();
+
+    ActionStats(String action) {
+        this.action = action;
+    }
+
+    void begin() {
+        inFlight.incrementAndGet();
+    }
+
+    void end(long elapsedNanos) {
+        inFlight.decrementAndGet();
+        calls.increment();
+        latency.record(elapsedNanos);
+    }
+
+    void error() {
+        errors.increment();
+    }
+
+    public String getAction() {
+        return action;
+    }
+
+    public long getCalls() {
+        return calls.sum();
+    }
+
+    public long getErrors() {
+        return errors.sum();
+    }
+
+    public long getInFlight() {
+        return inFlight.get();
+    }
+
+    public LatencyHistogram getLatency() {
+        return latency;
+    }
+}
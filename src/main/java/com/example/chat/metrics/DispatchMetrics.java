@@ -0,0 +1,47 @@
+package com.example.chat.metrics;
+
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 消息分发指标：每个 action 的调用数、错误数、处理中数量和延迟分布
+ */
+@Component
+public class DispatchMetrics {
+
+    // Key: action 名称（大写）
+    private final Map<String, ActionStats> actions = new ConcurrentHashMap<>();
+
+    private final LongAdder unknownActions = new LongAdder();
+    private final LongAdder malformedFrames = new LongAdder();
+
+    /**
+     * 取得（必要时创建）某个 action 的统计对象，注册处理器时调用一次
+     */
+    public ActionStats forAction(String action) {
+        return actions.computeIfAbsent(action, ActionStats::new);
+    }
+
+    public void recordUnknownAction() {
+        unknownActions.increment();
+    }
+
+    public void recordMalformedFrame() {
+        malformedFrames.increment();
+    }
+
+    public Map<String, ActionStats> getActions() {
+        return actions;
+    }
+
+    public long getUnknownActions() {
+        return unknownActions.sum();
+    }
+
+    public long getMalformedFrames() {
+        return malformedFrames.sum();
+    }
+}
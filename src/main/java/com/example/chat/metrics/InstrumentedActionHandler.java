@@ -0,0 +1,57 @@
+package com.example.chat.metrics;
+
+import com.example.chat.common.packet.WsRequest;
+import com.example.chat.handler.action.ActionHandler;
+import org.springframework.web.socket.WebSocketSession;
+
+/**
+ * 给 ActionHandler 套上计时与计数，由 HandlerRegistry 在注册时包装
+ *
+ * 统计对象在注册时就已查好，handle() 期间只做原子加和直方图记录，不分配对象。
+ * 处理器大多自己捕获异常再 sendError，所以错误既包括抛出的异常，
+ * 也包括处理期间同一线程上发出的 ERROR 响应（见 {@link #markError()}）。
+ */
+public class InstrumentedActionHandler<P> implements ActionHandler<P> {
+
+    // 当前线程正在处理的 action；用 set(null) 而不是 remove()，避免反复创建 ThreadLocal 条目
+    private static final ThreadLocal<ActionStats> CURRENT = new ThreadLocal<>();
+
+    private final ActionHandler<P> delegate;
+    private final ActionStats stats;
+
+    public InstrumentedActionHandler(ActionHandler<P> delegate, ActionStats stats) {
+        this.delegate = delegate;
+        this.stats = stats;
+    }
+
+    /**
+     * 处理器发出错误响应时调用；不在分发线程上（例如推送线程）时忽略
+     */
+    public static void markError() {
+        ActionStats current = CURRENT.get();
+        if (current != null) {
+            current.error();
+        }
+    }
+
+    public ActionHandler<P> getDelegate() {
+        return delegate;
+    }
+
+    @Override
+    public void handle(WebSocketSession session, WsRequest<P> request) {
+        ActionStats outer = CURRENT.get();
+        CURRENT.set(stats);
+        stats.begin();
+        long start = System.nanoTime();
+        try {
+            delegate.handle(session, request);
+        } catch (RuntimeException | Error e) {
+            stats.error();
+            throw e;
+        } finally {
+            stats.end(System.nanoTime() - start);
+            CURRENT.set(outer);
+        }
+    }
+}
@@ -0,0 +1,88 @@
+package com.example.chat.metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 无锁延迟直方图（单位：纳秒），记录路径不分配对象
+ *
+ * 0 ~ 63 纳秒每个值一个桶；更大的值按 2 的幂分段，每段再等分 32 个子桶（HDR 风格的对数-线性分桶），
+ * 相对误差不超过 1/32，最多覆盖约 18 分钟，内存固定不随样本数增长。
+ * 压测工具（com.chatroom.client.loadgen）统计端到端延迟时也用它。
+ */
+public class LatencyHistogram {
+
+    private static final int LINEAR = 64;
+    private static final int SUB_BITS = 5;
+    private static final int SUB_BUCKETS = 1 << SUB_BITS;
+    private static final int MIN_EXP = 6;
+    private static final int MAX_EXP = 40;
+    private static final int BUCKETS = LINEAR + (MAX_EXP - MIN_EXP + 1) * SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+    private final LongAdder total = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+    private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+    public void record(long nanos) {
+        long v = Math.max(0, nanos);
+        counts.incrementAndGet(indexOf(v));
+        total.increment();
+        sum.add(v);
+        max.accumulate(v);
+    }
+
+    public long getCount() {
+        return total.sum();
+    }
+
+    public long getSum() {
+        return sum.sum();
+    }
+
+    public long getMax() {
+        return max.get();
+    }
+
+    /**
+     * @param quantile 0 ~ 1，例如 0.999
+     * @return 不小于该分位样本的桶上界（纳秒），没有样本时返回 0
+     */
+    public long quantile(double quantile) {
+        long n = total.sum();
+        if (n == 0) {
+            return 0;
+        }
+        long rank = Math.max(1, (long) Math.ceil(quantile * n));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += counts.get(i);
+            if (seen >= rank) {
+                return Math.min(upperBound(i), getMax());
+            }
+        }
+        return getMax();
+    }
+
+    static int indexOf(long v) {
+        if (v < LINEAR) {
+            return (int) v;
+        }
+        int exp = 63 - Long.numberOfLeadingZeros(v);
+        if (exp > MAX_EXP) {
+            return BUCKETS - 1;
+        }
+        int sub = (int) ((v >>> (exp - SUB_BITS)) & (SUB_BUCKETS - 1));
+        return LINEAR + (exp - MIN_EXP) * SUB_BUCKETS + sub;
+    }
+
+    static long upperBound(int index) {
+        if (index < LINEAR) {
+            return index;
+        }
+        int exp = (index - LINEAR) / SUB_BUCKETS + MIN_EXP;
+        int sub = (index - LINEAR) % SUB_BUCKETS;
+        return ((SUB_BUCKETS + sub + 1L) << (exp - SUB_BITS)) - 1;
+    }
+}
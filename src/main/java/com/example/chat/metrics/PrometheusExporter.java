@@ -0,0 +1,220 @@
+package com.example.chat.metrics;
+
+import com.example.chat.auth.PasswordHasher;
+import com.example.chat.auth.ResumeTokens;
+import com.example.chat.handler.codec.FrameCompression;
+import com.example.chat.handler.session.EventSequencer;
+import com.example.chat.handler.session.IdleReaper;
+import com.example.chat.handler.session.SessionRegistry;
+import com.example.chat.ratelimit.DispatchLimiter;
+import com.example.chat.ratelimit.HandshakeGuard;
+import com.example.chat.ratelimit.IpAccessList;
+import com.example.chat.repository.DataCenter;
+import com.example.chat.repository.MessageStoreStats;
+import com.example.chat.repository.persistence.PersistenceStats;
+import com.example.chat.repository.persistence.RecoveryStats;
+import com.example.chat.repository.persistence.Snapshotter;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 把运行指标输出为 Prometheus 文本格式 (text/plain; version=0.0.4)
+ *
+ * 延迟以 summary 输出 p50/p99/p999（秒），分位数在抓取时从直方图计算，记录路径不受影响。
+ */
+@Component
+public class PrometheusExporter {
+
+    private static final double[] QUANTILES = {0.5, 0.99, 0.999};
+
+    @Autowired
+    private DispatchMetrics dispatchMetrics;
+
+    @Autowired
+    private SessionRegistry sessionRegistry;
+
+    @Autowired
+    private IdleReaper idleReaper;
+
+    @Autowired
+    private FrameCompression frameCompression;
+
+    @Autowired
+    private EventSequencer eventSequencer;
+
+    @Autowired
+    private ResumeTokens resumeTokens;
+
+    @Autowired
+    private PasswordHasher passwordHasher;
+
+    @Autowired
+    private DispatchLimiter dispatchLimiter;
+
+    @Autowired
+    private HandshakeGuard handshakeGuard;
+
+    @Autowired
+    private IpAccessList ipAccessList;
+
+    @Autowired
+    private Snapshotter snapshotter;
+
+    public String scrape() {
+        StringBuilder sb = new StringBuilder(4096);
+        List<ActionStats> actions = new ArrayList<>(dispatchMetrics.getActions().values());
+        actions.sort((a, b) -> a.getAction().compareTo(b.getAction()));
+
+        // ===== 分发 =====
+        header(sb, "chat_action_requests_total", "counter", "已处理完成的请求数");
+        for (ActionStats stats : actions) {
+            sample(sb, "chat_action_requests_total", stats.getAction(), stats.getCalls());
+        }
+        header(sb, "chat_action_errors_total", "counter", "处理失败（抛出异常或返回 ERROR）的请求数");
+        for (ActionStats stats : actions) {
+            sample(sb, "chat_action_errors_total", stats.getAction(), stats.getErrors());
+        }
+        header(sb, "chat_action_in_flight", "gauge", "正在处理中的请求数");
+        for (ActionStats stats : actions) {
+            sample(sb, "chat_action_in_flight", stats.getAction(), stats.getInFlight());
+        }
+        header(sb, "chat_action_latency_seconds", "summary", "处理耗时");
+        for (ActionStats stats : actions) {
+            LatencyHistogram latency = stats.getLatency();
+            for (double q : QUANTILES) {
+                sb.append("chat_action_latency_seconds{action=\"").append(stats.getAction())
+                        .append("\",quantile=\"").append(q).append("\"} ")
+                        .append(seconds(latency.quantile(q))).append('\n');
+            }
+            sample(sb, "chat_action_latency_seconds_sum", stats.getAction(), seconds(latency.getSum()));
+            sample(sb, "chat_action_latency_seconds_count", stats.getAction(), latency.getCount());
+        }
+        header(sb, "chat_action_latency_max_seconds", "gauge", "启动以来的最大处理耗时");
+        for (ActionStats stats : actions) {
+            sample(sb, "chat_action_latency_max_seconds", stats.getAction(), seconds(stats.getLatency().getMax()));
+        }
+        gauge(sb, "chat_unknown_actions_total", "counter", "未知 action 的请求数", dispatchMetrics.getUnknownActions());
+        gauge(sb, "chat_malformed_frames_total", "counter", "无法解析的入站帧数", dispatchMetrics.getMalformedFrames());
+
+        // ===== 入站限流 =====
+        gauge(sb, "chat_ratelimit_user_throttled_total", "counter", "超出用户限额被丢弃的请求数",
+                dispatchLimiter.getUserThrottled());
+        gauge(sb, "chat_ratelimit_ip_throttled_total", "counter", "超出 IP 限额被丢弃的请求数",
+                dispatchLimiter.getIpThrottled());
+        gauge(sb, "chat_ratelimit_disconnects_total", "counter", "连续超限被断开的连接数", dispatchLimiter.getDisconnects());
+        gauge(sb, "chat_ratelimit_tracked_users", "gauge", "限流器中跟踪的用户数", dispatchLimiter.getTrackedUsers());
+        gauge(sb, "chat_ratelimit_tracked_ips", "gauge", "限流器中跟踪的 IP 数", dispatchLimiter.getTrackedIps());
+
+        // ===== 握手准入 =====
+        gauge(sb, "chat_firewall_rules", "gauge", "生效的 IP 黑白名单规则数", ipAccessList.getRules());
+        gauge(sb, "chat_firewall_reloads_total", "counter", "规则文件重新加载次数", ipAccessList.getReloads());
+        gauge(sb, "chat_handshake_blocked_total", "counter", "命中黑名单被拒绝的握手数", handshakeGuard.getBlocked());
+        gauge(sb, "chat_handshake_ip_limited_total", "counter", "超出单 IP 建连速率被拒绝的握手数",
+                handshakeGuard.getIpLimited());
+        gauge(sb, "chat_handshake_global_limited_total", "counter", "超出全局建连速率被拒绝的握手数",
+                handshakeGuard.getGlobalLimited());
+        gauge(sb, "chat_handshake_too_many_connections_total", "counter", "单 IP 并发连接数已满被拒绝的握手数",
+                handshakeGuard.getTooManyConnections());
+        gauge(sb, "chat_handshake_tracked_ips", "gauge", "有活跃连接的 IP 数", handshakeGuard.getTrackedIps());
+
+        // ===== 连接与出站 =====
+        gauge(sb, "chat_sessions", "gauge", "当前连接数", sessionRegistry.size());
+        gauge(sb, "chat_online_users", "gauge", "当前登录用户数", DataCenter.ONLINE_USERS.size());
+        gauge(sb, "chat_outbound_dropped_frames_total", "counter", "队列溢出丢弃的可丢弃帧数",
+                sessionRegistry.getDroppedFrames());
+        gauge(sb, "chat_outbound_slow_disconnects_total", "counter", "因发送跟不上被断开的连接数",
+                sessionRegistry.getSlowDisconnects());
+        gauge(sb, "chat_idle_watched_sessions", "gauge", "空闲检测时间轮中的连接数", idleReaper.getWatched());
+        gauge(sb, "chat_idle_reaped_total", "counter", "因长时间无入站帧被回收的连接数", idleReaper.getReaped());
+
+        // ===== 断线续传 =====
+        gauge(sb, "chat_replay_detached_users", "gauge", "已断开但仍在续传窗口内的用户数", eventSequencer.getDetached());
+        gauge(sb, "chat_replay_buffered_events", "gauge", "重放缓冲中尚未确认的事件数", eventSequencer.getBufferedEvents());
+        gauge(sb, "chat_replay_replayed_events_total", "counter", "重连时重放的事件数", eventSequencer.getReplayedEvents());
+        gauge(sb, "chat_replay_resyncs_total", "counter", "续传区间已淘汰、要求客户端重新拉取的次数",
+                eventSequencer.getResyncs());
+
+        // ===== 续传令牌 =====
+        gauge(sb, "chat_auth_resume_tokens_issued_total", "counter", "签发（含换发）的续传令牌数", resumeTokens.getIssued());
+        gauge(sb, "chat_auth_resume_accepted_total", "counter", "凭续传令牌免密重连的次数", resumeTokens.getAccepted());
+        gauge(sb, "chat_auth_resume_rejected_total", "counter", "无效、过期或已作废的续传令牌数", resumeTokens.getRejected());
+
+        // ===== 密码哈希线程池 =====
+        gauge(sb, "chat_auth_hash_queued", "gauge", "排队等待哈希的登录数", passwordHasher.getQueued());
+        gauge(sb, "chat_auth_hash_active", "gauge", "正在哈希的登录数", passwordHasher.getActive());
+        gauge(sb, "chat_auth_hash_rejected_total", "counter", "队列已满被拒绝的登录数", passwordHasher.getRejected());
+        gauge(sb, "chat_auth_hash_expired_total", "counter", "排队超时被放弃的登录数", passwordHasher.getExpired());
+        summary(sb, "chat_auth_hash_queue_wait_seconds", "哈希任务的排队时间", passwordHasher.getQueueWait());
+        summary(sb, "chat_auth_hash_seconds", "单次哈希或校验的耗时", passwordHasher.getHashTime());
+
+        // ===== 帧压缩 (压缩率 = out / in) =====
+        gauge(sb, "chat_ws_deflate_compressed_messages_total", "counter", "压缩后发出的消息数",
+                frameCompression.getCompressedMessages());
+        gauge(sb, "chat_ws_deflate_skipped_messages_total", "counter", "低于阈值未压缩的消息数",
+                frameCompression.getSkippedMessages());
+        gauge(sb, "chat_ws_deflate_in_bytes_total", "counter", "压缩前字节数", frameCompression.getBytesIn());
+        gauge(sb, "chat_ws_deflate_out_bytes_total", "counter", "压缩后字节数", frameCompression.getBytesOut());
+        header(sb, "chat_ws_deflate_cpu_seconds_total", "counter", "压缩耗时");
+        sb.append("chat_ws_deflate_cpu_seconds_total ").append(seconds(frameCompression.getDeflateNanos())).append('\n');
+
+        // ===== 消息存储 =====
+        MessageStoreStats store = DataCenter.MSG_HISTORY.getStats();
+        gauge(sb, "chat_message_store_hot_messages", "gauge", "热层消息数", store.getHotMessages());
+        gauge(sb, "chat_message_store_cold_messages", "gauge", "冷层消息数", store.getColdMessages());
+        gauge(sb, "chat_message_store_evictions_total", "counter", "换出到冷层的消息数", store.getEvictions());
+        gauge(sb, "chat_inbox_pending_messages", "gauge", "离线收件箱中待投递的消息数", DataCenter.OFFLINE_INBOX.pending());
+        gauge(sb, "chat_inbox_dropped_total", "counter", "离线收件箱已满被丢弃的消息数", DataCenter.OFFLINE_INBOX.dropped());
+
+        // ===== 持久化 =====
+        PersistenceStats persistence = snapshotter.getStats();
+        RecoveryStats recovery = persistence.getRecovery();
+        gauge(sb, "chat_wal_last_lsn", "gauge", "最近一次分配的 LSN", persistence.getLastLsn());
+        gauge(sb, "chat_recovery_snapshot_lsn", "gauge", "启动时加载的快照 LSN，0 表示没有快照", recovery.getSnapshotLsn());
+        gauge(sb, "chat_recovery_replayed_records", "gauge", "启动时回放的日志条数", recovery.getReplayedRecords());
+        gauge(sb, "chat_recovery_snapshot_load_seconds", "gauge", "启动时加载快照的耗时", recovery.getSnapshotLoadMillis() / 1e3);
+        gauge(sb, "chat_recovery_replay_seconds", "gauge", "启动时回放日志的耗时", recovery.getReplayMillis() / 1e3);
+        gauge(sb, "chat_recovery_seconds", "gauge", "启动恢复总耗时", recovery.getTotalMillis() / 1e3);
+        gauge(sb, "chat_snapshots_total", "counter", "启动以来生成的快照数", persistence.getSnapshotCount());
+        gauge(sb, "chat_snapshot_last_lsn", "gauge", "最近一次快照的 LSN", persistence.getLastSnapshotLsn());
+        gauge(sb, "chat_snapshot_last_bytes", "gauge", "最近一次快照的大小", persistence.getLastSnapshotBytes());
+        gauge(sb, "chat_snapshot_last_duration_seconds", "gauge", "最近一次快照的耗时",
+                persistence.getLastSnapshotMillis() / 1e3);
+        return sb.toString();
+    }
+
+    private static void header(StringBuilder sb, String name, String type, String help) {
+        sb.append("# HELP ").append(name).append(' ').append(help).append('\n');
+        sb.append("# TYPE ").append(name).append(' ').append(type).append('\n');
+    }
+
+    private static void sample(StringBuilder sb, String name, String action, Object value) {
+        sb.append(name).append("{action=\"").append(action).append("\"} ").append(value).append('\n');
+    }
+
+    private static void gauge(StringBuilder sb, String name, String type, String help, long value) {
+        header(sb, name, type, help);
+        sb.append(name).append(' ').append(value).append('\n');
+    }
+
+    private static void gauge(StringBuilder sb, String name, String type, String help, double value) {
+        header(sb, name, type, help);
+        sb.append(name).append(' ').append(value).append('\n');
+    }
+
+    private static void summary(StringBuilder sb, String name, String help, LatencyHistogram latency) {
+        header(sb, name, "summary", help);
+        for (double q : QUANTILES) {
+            sb.append(name).append("{quantile=\"").append(q).append("\"} ")
+                    .append(seconds(latency.quantile(q))).append('\n');
+        }
+        sb.append(name).append("_sum ").append(seconds(latency.getSum())).append('\n');
+        sb.append(name).append("_count ").append(latency.getCount()).append('\n');
+    }
+
+    private static double seconds(long nanos) {
+        return nanos / 1e9;
+    }
+}
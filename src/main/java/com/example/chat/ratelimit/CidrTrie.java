@@ -0,0 +1,197 @@
+package com.example.chat.ratelimit;
+
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+import java.util.regex.Pattern;
+
+/**
+ * CIDR 前缀树（路径压缩的二叉 trie），按最长前缀匹配查找地址对应的值
+ *
+ * 1. IPv4 与 IPv6 共用一棵树：IPv4 地址映射为 ::ffff:a.b.c.d，前缀长度加 96。
+ * 2. 地址存成两个 long，节点只在分叉处或有值处出现；每层比较一次掩码，查找最多下降前缀长度层。
+ * 3. 建好后只读，多线程并发查找无需同步；规则变更时整棵重建再替换引用（见 IpAccessList）。
+ *
+ * @param <V> 前缀对应的值
+ */
+public class CidrTrie<V> {
+
+    private static final long IPV4_MAPPED = 0x0000_FFFF_0000_0000L;
+    private static final Pattern IPV4 = Pattern.compile("\\d{1,3}(\\.\\d{1,3}){3}");
+
+    private final Node<V> root = new Node<>(0, 0, 0);
+    private int size;
+
+    /**
+     * 加入一个前缀；同一前缀重复加入时后者覆盖前者
+     *
+     * @param cidr 如 10.0.0.0/8、2001:db8::/32，不带长度时视为单个地址
+     */
+    public void put(String cidr, V value) {
+        int slash = cidr.indexOf('/');
+        long[] addr = parse(slash < 0 ? cidr : cidr.substring(0, slash));
+        int max = addr[2] == 4 ? 32 : 128;
+        int len = max;
+        if (slash >= 0) {
+            try {
+                len = Integer.parseInt(cidr.substring(slash + 1).trim());
+            } catch (NumberFormatException e) {
+                throw new IllegalArgumentException("前缀长度错误: " + cidr);
+            }
+            if (len < 0 || len > max) {
+                throw new IllegalArgumentException("前缀长度错误: " + cidr);
+            }
+        }
+        put(addr[0], addr[1], len + (128 - max), value);
+    }
+
+    /**
+     * 最长前缀匹配
+     *
+     * @param ip 地址字面量（如 getRemoteAddr() 的结果）
+     * @return 匹配到的最长前缀的值；没有匹配或地址无法解析时返回 null
+     */
+    public V match(String ip) {
+        long[] addr;
+        try {
+            addr = parse(ip);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+        return match(addr[0], addr[1]);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    // ================= 内部实现 =================
+
+    private void put(long hi, long lo, int len, V value) {
+        hi &= hiMask(len);
+        lo &= loMask(len);
+        Node<V> node = root;
+        while (true) {
+            if (node.len == len) {
+                if (node.value == null) {
+                    size++;
+                }
+                node.value = value;
+                return;
+            }
+            int bit = bitAt(hi, lo, node.len);
+            Node<V> child = node.children[bit];
+            if (child == null) {
+                node.children[bit] = leaf(hi, lo, len, value);
+                return;
+            }
+            int common = Math.min(commonPrefix(child.hi, child.lo, hi, lo), Math.min(child.len, len));
+            if (common == child.len) {
+                node = child;
+                continue;
+            }
+            // 在 common 处分叉：插入一个中间节点
+            Node<V> mid = new Node<>(hi & hiMask(common), lo & loMask(common), common);
+            mid.children[bitAt(child.hi, child.lo, common)] = child;
+            if (common == len) {
+                mid.value = value;
+                size++;
+            } else {
+                mid.children[bitAt(hi, lo, common)] = leaf(hi, lo, len, value);
+            }
+            node.children[bit] = mid;
+            return;
+        }
+    }
+
+    private Node<V> leaf(long hi, long lo, int len, V value) {
+        Node<V> leaf = new Node<>(hi, lo, len);
+        leaf.value = value;
+        size++;
+        return leaf;
+    }
+
+    private V match(long hi, long lo) {
+        Node<V> node = root;
+        V best = root.value;
+        while (node.len < 128) {
+            Node<V> child = node.children[bitAt(hi, lo, node.len)];
+            if (child == null
+                    || ((child.hi ^ hi) & hiMask(child.len)) != 0
+                    || ((child.lo ^ lo) & loMask(child.len)) != 0) {
+                break;
+            }
+            node = child;
+            if (node.value != null) {
+                best = node.value;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * 解析地址字面量，不做 DNS 查询
+     *
+     * @return {hi, lo, 4 或 6}
+     */
+    static long[] parse(String ip) {
+        String s = ip.trim();
+        boolean literal = s.indexOf(':') >= 0 || IPV4.matcher(s).matches();
+        if (!literal) {
+            throw new IllegalArgumentException("不是 IP 地址: " + ip);
+        }
+        byte[] bytes;
+        try {
+            bytes = InetAddress.getByName(s).getAddress();
+        } catch (UnknownHostException e) {
+            throw new IllegalArgumentException("不是 IP 地址: " + ip);
+        }
+        // ::ffff:a.b.c.d 会被 InetAddress 解析为 IPv4 地址，同样按 IPv4 规则匹配
+        if (bytes.length == 4) {
+            long v4 = ((bytes[0] & 0xFFL) << 24) | ((bytes[1] & 0xFFL) << 16) | ((bytes[2] & 0xFFL) << 8) | (bytes[3] & 0xFFL);
+            return new long[]{0, IPV4_MAPPED | v4, 4};
+        }
+        long hi = 0;
+        long lo = 0;
+        for (int i = 0; i < 8; i++) {
+            hi = (hi << 8) | (bytes[i] & 0xFFL);
+            lo = (lo << 8) | (bytes[i + 8] & 0xFFL);
+        }
+        return new long[]{hi, lo, 6};
+    }
+
+    private static int bitAt(long hi, long lo, int i) {
+        return (int) (i < 64 ? (hi >>> (63 - i)) & 1 : (lo >>> (127 - i)) & 1);
+    }
+
+    private static int commonPrefix(long hi1, long lo1, long hi2, long lo2) {
+        long x = hi1 ^ hi2;
+        if (x != 0) {
+            return Long.numberOfLeadingZeros(x);
+        }
+        long y = lo1 ^ lo2;
+        return y != 0 ? 64 + Long.numberOfLeadingZeros(y) : 128;
+    }
+
+    private static long hiMask(int len) {
+        return len >= 64 ? -1L : len == 0 ? 0 : -1L << (64 - len);
+    }
+
+    private static long loMask(int len) {
+        return len <= 64 ? 0 : len == 128 ? -1L : -1L << (128 - len);
+    }
+
+    private static final class Node<V> {
+        final long hi;
+        final long lo;
+        final int len;
+        @SuppressWarnings("unchecked")
+        final Node<V>[] children = new Node[2];
+        V value;
+
+        Node(long hi, long lo, int len) {
+            this.hi = hi;
+            this.lo = lo;
+            this.len = len;
+        }
+    }
+}
@@ -0,0 +1,198 @@
+package com.example.chat.ratelimit;
+
+import com.example.chat.logging.ChatLog;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 入站请求限流：分发前按用户名和客户端 IP 各取一次令牌（见 Gcra）
+ *
+ * 1. 每个 action 的令牌消耗可配置，GET_HISTORY 这类重请求比心跳贵；未配置的按 default-cost。
+ *    消耗不能超过任何一个桶的容量，否则该 action 永远取不到令牌，启动时校验。
+ * 2. 未登录的连接只有 IP 桶；同一 IP 下的所有连接共用一个 IP 桶，换连接不能绕过。
+ *    先扣用户桶，用户桶放行后才扣 IP 桶，IP 桶拒绝时退还用户桶：已被限流的用户继续刷屏
+ *    不会耗光共用的 IP 桶，同一 NAT / 代理后面的其他用户不受影响。
+ * 3. 超限的请求直接丢弃：连续超限的第一帧回一个 ERROR，之后不再回复，避免错误响应本身被放大；
+ *    连续超限 disconnect-after 帧后断开连接。取到令牌即清零。
+ * 4. 桶已满的 key 每 10 秒清理一次，内存只与近期活跃的用户和 IP 数有关。
+ * 5. ip.exempt 中的地址不做 IP 限流（默认本机，压测工具和反向代理的连接都来自同一地址），用户限流照常。
+ */
+@Component
+public class DispatchLimiter {
+
+    private static final ChatLog LOG = ChatLog.of("ratelimit");
+
+    private static final long SWEEP_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(10);
+
+    // 会话属性：连续超限的帧数
+    private static final String STRIKES = "rateStrikes";
+
+    /**
+     * 限流结果
+     */
+    public enum Verdict {
+        // 放行
+        ALLOW,
+        // 丢弃，并回复一个 ERROR
+        THROTTLE,
+        // 静默丢弃
+        DROP,
+        // 丢弃并断开连接
+        DISCONNECT
+    }
+
+    @Value("${chat.ratelimit.enabled:true}")
+    private boolean enabled;
+
+    @Value("${chat.ratelimit.user.rate:20}")
+    private double userRate;
+
+    @Value("${chat.ratelimit.user.burst:40}")
+    private double userBurst;
+
+    @Value("${chat.ratelimit.ip.rate:60}")
+    private double ipRate;
+
+    @Value("${chat.ratelimit.ip.burst:120}")
+    private double ipBurst;
+
+    @Value("${chat.ratelimit.ip.exempt:127.0.0.1,0:0:0:0:0:0:0:1}")
+    private String ipExempt;
+
+    @Value("${chat.ratelimit.default-cost:1}")
+    private int defaultCost;
+
+    // 格式：ACTION:消耗,ACTION:消耗
+    @Value("${chat.ratelimit.costs:}")
+    private String costsSpec;
+
+    // 0 表示只丢弃不断开
+    @Value("${chat.ratelimit.disconnect-after:50}")
+    private int disconnectAfter;
+
+    private Gcra users;
+    private Gcra ips;
+    private Map<String, Integer> costs;
+    private Set<String> exempt;
+    private volatile long lastSweepNanos = System.nanoTime();
+
+    private final LongAdder userThrottled = new LongAdder();
+    private final LongAdder ipThrottled = new LongAdder();
+    private final LongAdder disconnects = new LongAdder();
+
+    @PostConstruct
+    public void init() {
+        users = new Gcra(userRate, userBurst);
+        ips = new Gcra(ipRate, ipBurst);
+        Map<String, Integer> parsed = new HashMap<>();
+        for (String entry : costsSpec.split(",")) {
+            if (entry.isBlank()) {
+                continue;
+            }
+            int colon = entry.indexOf(':');
+            if (colon < 0) {
+                throw new IllegalArgumentException("chat.ratelimit.costs 格式错误: " + entry);
+            }
+            parsed.put(entry.substring(0, colon).trim(), Integer.parseInt(entry.substring(colon + 1).trim()));
+        }
+        costs = Map.copyOf(parsed);
+        checkCost("chat.ratelimit.default-cost", defaultCost);
+        costs.forEach((action, cost) -> checkCost("chat.ratelimit.costs " + action, cost));
+        Set<String> addresses = new HashSet<>();
+        for (String ip : ipExempt.split(",")) {
+            if (!ip.isBlank()) {
+                addresses.add(ip.trim());
+            }
+        }
+        exempt = Set.copyOf(addresses);
+    }
+
+    /**
+     * 分发一个请求之前调用
+     *
+     * @param action 已解码的 action；无法解码的帧传 null，按 default-cost 计
+     */
+    public Verdict check(WebSocketSession session, String action) {
+        if (!enabled) {
+            return Verdict.ALLOW;
+        }
+        long now = System.nanoTime();
+        if (now - lastSweepNanos > SWEEP_INTERVAL_NANOS) {
+            lastSweepNanos = now;
+            users.sweep(now);
+            ips.sweep(now);
+        }
+        int cost = action == null ? defaultCost : costs.getOrDefault(action, defaultCost);
+
+        Map<String, Object> attributes = session.getAttributes();
+        String ip = (String) attributes.get("clientIp");
+        String username = (String) attributes.get("username");
+        boolean allowed;
+        boolean userCharged = username != null;
+        if (userCharged && !users.tryAcquire(username, cost, now)) {
+            userThrottled.increment();
+            allowed = false;
+        } else if (ip != null && !exempt.contains(ip) && !ips.tryAcquire(ip, cost, now)) {
+            ipThrottled.increment();
+            if (userCharged) {
+                users.refund(username, cost);
+            }
+            allowed = false;
+        } else {
+            allowed = true;
+        }
+
+        if (allowed) {
+            if (attributes.get(STRIKES) instanceof AtomicInteger strikes) {
+                strikes.set(0);
+            }
+            return Verdict.ALLOW;
+        }
+        AtomicInteger strikes = (AtomicInteger) attributes.computeIfAbsent(STRIKES, k -> new AtomicInteger());
+        int n = strikes.incrementAndGet();
+        // 只在达到阈值的那一帧断开，之后已在途的帧静默丢弃
+        if (disconnectAfter > 0 && n == disconnectAfter) {
+            disconnects.increment();
+            LOG.warn("请求过于频繁，断开连接", "sessionId", session.getId(), "user", username, "ip", ip, "action", action);
+            return Verdict.DISCONNECT;
+        }
+        return n == 1 ? Verdict.THROTTLE : Verdict.DROP;
+    }
+
+    private void checkCost(String name, int cost) {
+        if (cost > userBurst || cost > ipBurst) {
+            throw new IllegalArgumentException(name + "=" + cost + " 超过桶容量 (user.burst=" + userBurst
+                    + ", ip.burst=" + ipBurst + ")，该请求永远无法放行");
+        }
+    }
+
+    public int getTrackedUsers() {
+        return users.size();
+    }
+
+    public int getTrackedIps() {
+        return ips.size();
+    }
+
+    public long getUserThrottled() {
+        return userThrottled.sum();
+    }
+
+    public long getIpThrottled() {
+        return ipThrottled.sum();
+    }
+
+    public long getDisconnects() {
+        return disconnects.sum();
+    }
+}
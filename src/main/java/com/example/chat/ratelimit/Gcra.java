@@ -0,0 +1,86 @@
+package com.example.chat.ratelimit;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 按 key 限流的令牌桶，用 GCRA（Generic Cell Rate Algorithm）实现
+ *
+ * 1. 每个 key 只存一个 long：理论到达时间 TAT。令牌桶"还剩多少令牌"等价于 TAT 比当前时刻超前多少，
+ *    不需要定时补充令牌，也不需要记录上次补充时间，内存 O(1)。
+ * 2. 取令牌是对这个 long 的一次 CAS，无锁；竞争失败就按新值重算。
+ * 3. TAT 不晚于当前时刻的 key 桶是满的，与不存在等价，sweep 时删除，空闲 key 不会累积。
+ *    删除与并发取令牌交错时最多少记一次扣减，桶本来就是满的，影响可以忽略。
+ */
+public class Gcra {
+
+    // 每个令牌的间隔（纳秒）
+    private final long interval;
+    // 允许超前的最大时长，即桶容量对应的时间
+    private final long tolerance;
+
+    private final Map<String, AtomicLong> tats = new ConcurrentHashMap<>();
+
+    /**
+     * @param ratePerSec 每秒补充的令牌数
+     * @param burst      桶容量，允许瞬间取走的令牌数
+     */
+    public Gcra(double ratePerSec, double burst) {
+        if (ratePerSec <= 0 || burst < 1) {
+            throw new IllegalArgumentException("限流参数错误: rate=" + ratePerSec + ", burst=" + burst);
+        }
+        this.interval = Math.max(1, (long) (TimeUnit.SECONDS.toNanos(1) / ratePerSec));
+        this.tolerance = (long) (interval * burst);
+    }
+
+    /**
+     * 取 cost 个令牌
+     *
+     * @param now System.nanoTime()
+     * @return 是否取到；取不到时不扣减
+     */
+    public boolean tryAcquire(String key, int cost, long now) {
+        if (cost <= 0) {
+            return true;
+        }
+        AtomicLong tat = tats.computeIfAbsent(key, k -> new AtomicLong(now));
+        long increment = interval * cost;
+        while (true) {
+            long current = tat.get();
+            long next = Math.max(current, now) + increment;
+            if (next - now > tolerance) {
+                return false;
+            }
+            if (tat.compareAndSet(current, next)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * 退还 tryAcquire 成功取走的 cost 个令牌
+     * 用于多个桶依次扣减、后面的桶拒绝时撤销前面的扣减
+     */
+    public void refund(String key, int cost) {
+        AtomicLong tat = tats.get(key);
+        if (tat != null && cost > 0) {
+            tat.addAndGet(-interval * cost);
+        }
+    }
+
+    /**
+     * 删除桶已满的 key
+     */
+    public void sweep(long now) {
+        tats.entrySet().removeIf(e -> e.getValue().get() - now <= 0);
+    }
+
+    /**
+     * 当前跟踪的 key 数
+     */
+    public int size() {
+        return tats.size();
+    }
+}
@@ -0,0 +1,150 @@
+package com.example.chat.ratelimit;
+
+import com.example.chat.logging.ChatLog;
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 握手准入：在 WebSocket 升级之前决定是否接受一个新连接
+ *
+ * 1. 先查 IP 黑白名单（见 IpAccessList）：deny 直接 403；显式 allow 的地址不受下面的限制。
+ * 2. 单 IP 并发连接数达到 max-per-ip 时 429。计数在连接建立/关闭时增减（见 ChatHandler），
+ *    并发握手之间可能多放进几个，由下一步的单 IP 建连速率兜住。
+ * 3. 新建连接速率：单 IP 一个 Gcra 桶（429），全局一个桶（503），挡住重连风暴和扫描。
+ *    被拒绝的握手不升级、不分配会话，代价只有一次 HTTP 请求。
+ */
+@Component
+public class HandshakeGuard {
+
+    private static final ChatLog LOG = ChatLog.of("firewall");
+
+    private static final long SWEEP_INTERVAL_NANOS = TimeUnit.SECONDS.toNanos(10);
+    private static final String GLOBAL = "*";
+
+    @Value("${chat.firewall.conn.enabled:true}")
+    private boolean enabled;
+
+    // 0 表示不限
+    @Value("${chat.firewall.conn.max-per-ip:50}")
+    private int maxPerIp;
+
+    @Value("${chat.firewall.conn.ip-rate:5}")
+    private double ipRate;
+
+    @Value("${chat.firewall.conn.ip-burst:20}")
+    private double ipBurst;
+
+    @Value("${chat.firewall.conn.global-rate:500}")
+    private double globalRate;
+
+    @Value("${chat.firewall.conn.global-burst:1000}")
+    private double globalBurst;
+
+    @Autowired
+    private IpAccessList accessList;
+
+    private Gcra ips;
+    private Gcra global;
+    private volatile long lastSweepNanos = System.nanoTime();
+
+    private final Map<String, AtomicInteger> connections = new ConcurrentHashMap<>();
+
+    private final LongAdder blocked = new LongAdder();
+    private final LongAdder ipLimited = new LongAdder();
+    private final LongAdder globalLimited = new LongAdder();
+    private final LongAdder tooManyConnections = new LongAdder();
+
+    @PostConstruct
+    public void init() {
+        ips = new Gcra(ipRate, ipBurst);
+        global = new Gcra(globalRate, globalBurst);
+    }
+
+    /**
+     * 握手前调用
+     *
+     * @return 放行时为 null，否则为拒绝握手的 HTTP 状态码
+     */
+    public HttpStatus admit(String ip) {
+        IpAccessList.Rule rule = accessList.check(ip);
+        if (rule == IpAccessList.Rule.DENY) {
+            blocked.increment();
+            LOG.warn("拦截黑名单 IP", "ip", ip);
+            return HttpStatus.FORBIDDEN;
+        }
+        if (!enabled || accessList.isAllowlisted(ip)) {
+            return null;
+        }
+        long now = System.nanoTime();
+        if (now - lastSweepNanos > SWEEP_INTERVAL_NANOS) {
+            lastSweepNanos = now;
+            ips.sweep(now);
+        }
+        AtomicInteger open = connections.get(ip);
+        if (maxPerIp > 0 && open != null && open.get() >= maxPerIp) {
+            tooManyConnections.increment();
+            return HttpStatus.TOO_MANY_REQUESTS;
+        }
+        if (!ips.tryAcquire(ip, 1, now)) {
+            ipLimited.increment();
+            return HttpStatus.TOO_MANY_REQUESTS;
+        }
+        if (!global.tryAcquire(GLOBAL, 1, now)) {
+            globalLimited.increment();
+            return HttpStatus.SERVICE_UNAVAILABLE;
+        }
+        return null;
+    }
+
+    /**
+     * 连接建立后调用
+     */
+    public void opened(String ip) {
+        if (ip != null) {
+            // 增减都在 compute 内完成，与 closed 的归零删除互斥
+            connections.compute(ip, (k, n) -> {
+                AtomicInteger count = n != null ? n : new AtomicInteger();
+                count.incrementAndGet();
+                return count;
+            });
+        }
+    }
+
+    /**
+     * 连接关闭后调用；计数归零的 IP 移除
+     */
+    public void closed(String ip) {
+        if (ip != null) {
+            connections.computeIfPresent(ip, (k, n) -> n.decrementAndGet() <= 0 ? null : n);
+        }
+    }
+
+    public int getTrackedIps() {
+        return connections.size();
+    }
+
+    public long getBlocked() {
+        return blocked.sum();
+    }
+
+    public long getIpLimited() {
+        return ipLimited.sum();
+    }
+
+    public long getGlobalLimited() {
+        return globalLimited.sum();
+    }
+
+    public long getTooManyConnections() {
+        return tooManyConnections.sum();
+    }
+}
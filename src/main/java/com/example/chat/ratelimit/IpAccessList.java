@@ -0,0 +1,170 @@
+package com.example.chat.ratelimit;
+
+import com.example.chat.logging.ChatLog;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * IP 黑白名单：CIDR 规则存进前缀树（见 CidrTrie），按最长前缀匹配
+ *
+ * 1. 规则来自配置项 chat.firewall.allow / deny，以及可选的规则文件；文件每行一条：
+ *    "deny 10.0.0.0/8"、"allow 2001:db8::/32"，只写 CIDR 视为 deny，# 开头为注释。
+ * 2. 最长前缀决定结果，例如 deny 10.0.0.0/8 + allow 10.1.0.0/16 表示放行 10.1.x.x、拦截其余 10.x.x.x；
+ *    同一前缀同时出现时后写的生效。没有匹配时按 default-action。
+ * 3. 显式 allow 的地址（默认本机）同时豁免握手限流（见 HandshakeGuard）。
+ * 4. 规则文件按修改时间轮询，变化时整棵树重建后替换引用，查找路径不加锁；
+ *    新规则有错误时记录日志并保留旧规则。
+ */
+@Component
+public class IpAccessList {
+
+    private static final ChatLog LOG = ChatLog.of("firewall");
+
+    public enum Rule {
+        ALLOW, DENY
+    }
+
+    @Value("${chat.firewall.allow:127.0.0.0/8,::1}")
+    private String allow;
+
+    @Value("${chat.firewall.deny:}")
+    private String deny;
+
+    // 为空表示不使用规则文件
+    @Value("${chat.firewall.rules-file:}")
+    private String rulesFile;
+
+    @Value("${chat.firewall.reload-sec:5}")
+    private long reloadSec;
+
+    // allow 或 deny；deny 即白名单模式，只有 allow 规则覆盖的地址能连接
+    @Value("${chat.firewall.default-action:allow}")
+    private String defaultAction;
+
+    private volatile CidrTrie<Rule> rules = new CidrTrie<>();
+    private Rule fallback;
+    private long loadedModified = Long.MIN_VALUE;
+    private ScheduledExecutorService watcher;
+
+    private final LongAdder reloads = new LongAdder();
+
+    @PostConstruct
+    public void init() throws IOException {
+        fallback = Rule.valueOf(defaultAction.trim().toUpperCase());
+        rules = build();
+        LOG.info("IP 规则已加载", "rules", rules.size(), "default", fallback);
+        if (!rulesFile.isBlank() && reloadSec > 0) {
+            watcher = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread t = new Thread(r, "Firewall-Reload");
+                t.setDaemon(true);
+                return t;
+            });
+            watcher.scheduleWithFixedDelay(this::reloadIfChanged, reloadSec, reloadSec, TimeUnit.SECONDS);
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        if (watcher != null) {
+            watcher.shutdownNow();
+        }
+    }
+
+    /**
+     * 地址适用的规则；没有匹配时返回 default-action
+     */
+    public Rule check(String ip) {
+        Rule rule = rules.match(ip);
+        return rule != null ? rule : fallback;
+    }
+
+    /**
+     * 是否被 allow 规则显式放行
+     */
+    public boolean isAllowlisted(String ip) {
+        return rules.match(ip) == Rule.ALLOW;
+    }
+
+    public int getRules() {
+        return rules.size();
+    }
+
+    public long getReloads() {
+        return reloads.sum();
+    }
+
+    // ================= 内部实现 =================
+
+    private void reloadIfChanged() {
+        try {
+            Path path = Path.of(rulesFile);
+            long modified = Files.exists(path) ? Files.getLastModifiedTime(path).toMillis() : -1;
+            if (modified == loadedModified) {
+                return;
+            }
+            rules = build();
+            reloads.increment();
+            LOG.info("IP 规则已重新加载", "rules", rules.size());
+        } catch (IOException | IllegalArgumentException e) {
+            LOG.error("IP 规则加载失败，保留旧规则", e, "file", rulesFile);
+        }
+    }
+
+    private CidrTrie<Rule> build() throws IOException {
+        CidrTrie<Rule> trie = new CidrTrie<>();
+        addAll(trie, deny, Rule.DENY);
+        addAll(trie, allow, Rule.ALLOW);
+        if (!rulesFile.isBlank()) {
+            Path path = Path.of(rulesFile);
+            if (Files.exists(path)) {
+                loadedModified = Files.getLastModifiedTime(path).toMillis();
+                List<String> lines = Files.readAllLines(path, StandardCharsets.UTF_8);
+                for (int i = 0; i < lines.size(); i++) {
+                    addLine(trie, lines.get(i).trim(), i + 1);
+                }
+            } else {
+                loadedModified = -1;
+                LOG.warn("IP 规则文件不存在", "file", rulesFile);
+            }
+        }
+        return trie;
+    }
+
+    private static void addLine(CidrTrie<Rule> trie, String line, int lineNo) {
+        if (line.isEmpty() || line.startsWith("#")) {
+            return;
+        }
+        String[] parts = line.split("\\s+");
+        try {
+            if (parts.length == 1) {
+                trie.put(parts[0], Rule.DENY);
+            } else if (parts.length == 2) {
+                trie.put(parts[1], Rule.valueOf(parts[0].toUpperCase()));
+            } else {
+                throw new IllegalArgumentException(line);
+            }
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("第 " + lineNo + " 行格式错误: " + line, e);
+        }
+    }
+
+    private static void addAll(CidrTrie<Rule> trie, String list, Rule rule) {
+        for (String cidr : list.split(",")) {
+            if (!cidr.isBlank()) {
+                trie.put(cidr.trim(), rule);
+            }
+        }
+    }
+}
@@ -0,0 +1,341 @@
+package com.example.chat.repository;
+
+import com.example.chat.common.model.Message;
+import com.example.chat.repository.persistence.BinaryCodec;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.stream.Stream;
+
+/**
+ * 冷消息存储：被换出的消息按 BinaryCodec 编码后追加到内存映射的段文件
+ *
+ * 1. 每条记录为 [长度 int | 编码后的消息]，索引保存 消息ID -> (段号 << 32 | 偏移)。
+ * 2. 只追加不覆盖：消息被覆盖或删除时旧记录只从索引移除，段内全部记录失效后整段删除。
+ *    段号（索引里的槽位）失效后回收复用，段文件名另行递增编号，槽位表不会随运行时间增长。
+ * 3. 映射在 GC 回收之前仍占用文件：Windows 上删除会失败，Linux 上空间要到那时才释放。
+ *    删除失败的段文件记下来，每次切段和 clear 时重试，直到删掉为止。
+ * 4. 冷段只是内存的溢出区，持久化仍由 WAL + 快照负责，所以启动时会清空旧的段文件。
+ */
+class ColdSegmentStore {
+
+    private static final String PREFIX = "cold-";
+    private static final String SUFFIX = ".seg";
+
+    private final Path dir;
+    private final int segmentBytes;
+
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+    private final LongLongMap index = new LongLongMap(1024);
+    // 下标即段号，失效的段置 null，槽位放入 freeSlots 复用
+    private final List<Segment> segments = new ArrayList<>();
+    private final Deque<Integer> freeSlots = new ArrayDeque<>();
+    // 已失效、还没删掉的段文件
+    private final List<Path> dead = new ArrayList<>();
+    private Segment active;
+    private long liveBytes;
+    private int nextFile;
+
+    ColdSegmentStore(Path dir, int segmentBytes) throws IOException {
+        this.dir = dir;
+        this.segmentBytes = segmentBytes;
+        Files.createDirectories(dir);
+        try (Stream<Path> files = Files.list(dir)) {
+            for (Path p : files.toList()) {
+                String name = p.getFileName().toString();
+                if (name.startsWith(PREFIX) && name.endsWith(SUFFIX)) {
+                    Files.delete(p);
+                }
+            }
+        }
+    }
+
+    /**
+     * 写入一条消息（已存在时覆盖索引，旧记录作废）
+     */
+    void append(long id, Message msg) {
+        byte[] bytes = encode(msg);
+        lock.writeLock().lock();
+        try {
+            write(id, bytes);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 仅当消息已在冷层时写入新状态
+     */
+    boolean replace(long id, Message msg) {
+        byte[] bytes = encode(msg);
+        lock.writeLock().lock();
+        try {
+            if (index.get(id) == LongLongMap.MISSING) {
+                return false;
+            }
+            write(id, bytes);
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * 读取一条消息，不存在时返回 null
+     */
+    Message read(long id) {
+        byte[] bytes;
+        lock.readLock().lock();
+        try {
+            long pointer = index.get(id);
+            if (pointer == LongLongMap.MISSING) {
+                return null;
+            }
+            bytes = bytesAt(pointer);
+        } finally {
+            lock.readLock().unlock();
+        }
+        return decode(bytes);
+    }
+
+    /**
+     * @return 是否确实删除了
+     */
+    boolean remove(long id) {
+        lock.writeLock().lock();
+        try {
+            long old = index.remove(id);
+            if (old == LongLongMap.MISSING) {
+                return false;
+            }
+            release(old);
+            return true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    boolean contains(long id) {
+        lock.readLock().lock();
+        try {
+            return index.get(id) != LongLongMap.MISSING;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * 遍历当前所有冷消息；遍历开始后新换出的消息不保证可见
+     */
+    void forEach(MessageStore.Visitor visitor) throws IOException {
+        long[] entries;
+        lock.readLock().lock();
+        try {
+            entries = index.toArray();
+        } finally {
+            lock.readLock().unlock();
+        }
+        for (int i = 0; i < entries.length; i += 2) {
+            Message msg = read(entries[i]);
+            if (msg != null) {
+                visitor.visit(msg);
+            }
+        }
+    }
+
+    void clear() {
+        lock.writeLock().lock();
+        try {
+            index.clear();
+            for (Segment segment : segments) {
+                if (segment != null) {
+                    dead.add(segment.path);
+                }
+            }
+            segments.clear();
+            freeSlots.clear();
+            active = null;
+            liveBytes = 0;
+            purgeDead();
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    int size() {
+        lock.readLock().lock();
+        try {
+            return index.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    long liveBytes() {
+        lock.readLock().lock();
+        try {
+            return liveBytes;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    int segmentCount() {
+        lock.readLock().lock();
+        try {
+            int count = 0;
+            for (Segment segment : segments) {
+                if (segment != null) {
+                    count++;
+                }
+            }
+            return count;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // ================= 内部实现 =================
+
+    /**
+     * 调用方必须持有写锁
+     */
+    private void write(long id, byte[] bytes) {
+        int needed = 4 + bytes.length;
+        if (active == null || active.buffer.capacity() - active.writePos < needed) {
+            active = newSegment(Math.max(segmentBytes, needed));
+        }
+        int offset = active.writePos;
+        active.buffer.putInt(offset, bytes.length);
+        active.buffer.put(offset + 4, bytes);
+        active.writePos += needed;
+        active.live++;
+        liveBytes += needed;
+
+        long old = index.put(id, ((long) active.no << 32) | offset);
+        if (old != LongLongMap.MISSING) {
+            release(old);
+        }
+    }
+
+    /**
+     * 调用方必须持有锁
+     */
+    private byte[] bytesAt(long pointer) {
+        Segment segment = segments.get((int) (pointer >>> 32));
+        int offset = (int) pointer;
+        byte[] bytes = new byte[segment.buffer.getInt(offset)];
+        segment.buffer.get(offset + 4, bytes);
+        return bytes;
+    }
+
+    /**
+     * 旧记录作废，调用方必须持有写锁
+     */
+    private void release(long pointer) {
+        int no = (int) (pointer >>> 32);
+        Segment segment = segments.get(no);
+        segment.live--;
+        liveBytes -= 4 + segment.buffer.getInt((int) pointer);
+        if (segment.live == 0 && segment != active) {
+            retire(segment);
+        }
+    }
+
+    /**
+     * 段内记录全部失效：回收槽位，删除段文件（失败时留待重试）。调用方必须持有写锁
+     */
+    private void retire(Segment segment) {
+        segments.set(segment.no, null);
+        freeSlots.push(segment.no);
+        dead.add(segment.path);
+        purgeDead();
+    }
+
+    /**
+     * 重试删除失效的段文件。调用方必须持有写锁
+     */
+    private void purgeDead() {
+        for (Iterator<Path> it = dead.iterator(); it.hasNext(); ) {
+            try {
+                Files.deleteIfExists(it.next());
+                it.remove();
+            } catch (IOException e) {
+                // 映射还没被回收（Windows），下次切段时再试
+            }
+        }
+    }
+
+    private Segment newSegment(int capacity) {
+        purgeDead();
+        Path path = dir.resolve(PREFIX + String.format("%08d", nextFile++) + SUFFIX);
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW,
+                StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, capacity);
+            Integer free = freeSlots.poll();
+            int no = free != null ? free : segments.size();
+            Segment segment = new Segment(no, path, buffer);
+            if (no == segments.size()) {
+                segments.add(segment);
+            } else {
+                segments.set(no, segment);
+            }
+
+            // 切段后，上一个段如果已经全部失效就可以删掉了
+            if (active != null && active.live == 0) {
+                retire(active);
+            }
+            return segment;
+        } catch (IOException e) {
+            throw new UncheckedIOException("创建冷存储段失败: " + path, e);
+        }
+    }
+
+    private static byte[] encode(Message msg) {
+        try {
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream(256);
+            BinaryCodec.writeMessage(new DataOutputStream(bytes), msg);
+            return bytes.toByteArray();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static Message decode(byte[] bytes) {
+        try {
+            return BinaryCodec.readMessage(new DataInputStream(new ByteArrayInputStream(bytes)));
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private static final class Segment {
+        private final int no;
+        private final Path path;
+        private final MappedByteBuffer buffer;
+        private int writePos;
+        private int live;
+
+        private Segment(int no, Path path, MappedByteBuffer buffer) {
+            this.no = no;
+            this.path = path;
+            this.buffer = buffer;
+        }
+    }
+}
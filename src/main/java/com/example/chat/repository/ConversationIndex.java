@@ -0,0 +1,153 @@
+package com.example.chat.repository;
+
+import com.example.chat.common.model.Message;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableSet;
+import java.util.PriorityQueue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.function.LongFunction;
+
+/**
+ * 会话索引：会话 Key -> 有序的消息ID集合
+ *
+ * 消息ID由 {@link IdGenerator} 生成，按时间单调递增，因此 ID 顺序即时间顺序，
+ * ID 本身也可以直接作为翻页游标。索引只保存 ID，消息本体在取页时从消息存储读取，
+ * 这样被换出到冷层的消息不会因为索引的引用而继续占用堆内存。
+ * 私聊 Key 由双方用户名排序后拼接，群聊 Key 为群ID。
+ * 翻页时只在当前用户相关的会话上做多路归并，
+ * 代价为 O(页大小 × log 会话数)，不再扫描整个 MSG_HISTORY。
+ */
+public class ConversationIndex {
+
+    // 会话 Key -> 有序消息ID
+    private final Map<String, ConcurrentSkipListSet<Long>> conversations = new ConcurrentHashMap<>();
+
+    // 用户名 -> 参与的私聊会话 Key
+    private final Map<String, Set<String>> privateKeys = new ConcurrentHashMap<>();
+
+    // 按 ID 读取消息
+    private final LongFunction<Message> resolver;
+
+    public ConversationIndex(LongFunction<Message> resolver) {
+        this.resolver = resolver;
+    }
+
+    /**
+     * 私聊会话 Key（与双方顺序无关）
+     */
+    public static String privateKey(String userA, String userB) {
+        return userA.compareTo(userB) <= 0
+                ? "P:" + userA + '\u0000' + userB
+                : "P:" + userB + '\u0000' + userA;
+    }
+
+    /**
+     * 群聊会话 Key
+     */
+    public static String groupKey(String groupId) {
+        return "G:" + groupId;
+    }
+
+    /**
+     * 消息所属的会话 Key
+     */
+    public static String keyOf(Message msg) {
+        return msg.isGroup() ? groupKey(msg.getToUser()) : privateKey(msg.getFromUser(), msg.getToUser());
+    }
+
+    /**
+     * 新消息入索引
+     */
+    public void add(Message msg) {
+        String key = keyOf(msg);
+        conversations.computeIfAbsent(key, k -> new ConcurrentSkipListSet<>())
+                .add(IdGenerator.parse(msg.getMsgId()));
+        if (!msg.isGroup()) {
+            privateKeys.computeIfAbsent(msg.getFromUser(), k -> ConcurrentHashMap.newKeySet()).add(key);
+            privateKeys.computeIfAbsent(msg.getToUser(), k -> ConcurrentHashMap.newKeySet()).add(key);
+        }
+    }
+
+    /**
+     * 消息移出索引（撤回）
+     */
+    public void remove(Message msg) {
+        ConcurrentSkipListSet<Long> ids = conversations.get(keyOf(msg));
+        if (ids != null) {
+            ids.remove(IdGenerator.parse(msg.getMsgId()));
+        }
+    }
+
+    /**
+     * 用户参与的所有私聊会话 Key
+     */
+    public Set<String> privateConversationsOf(String username) {
+        Set<String> keys = privateKeys.get(username);
+        return keys != null ? keys : Collections.emptySet();
+    }
+
+    /**
+     * 在多个会话上归并出 beforeId 之前最新的 limit 条消息
+     *
+     * @param keys     会话 Key 集合
+     * @param beforeId 只取 ID 严格小于该值的消息，null 表示从最新开始；
+     *                 按时间翻页时传 {@link IdGenerator#minIdAt(long)}
+     * @param limit    最多返回条数
+     * @return 按时间从新到旧排列的消息
+     */
+    public List<Message> pageBefore(Collection<String> keys, Long beforeId, int limit) {
+        // 每个会话一个游标，堆顶永远是所有会话中最新（ID 最大）的那条
+        PriorityQueue<Cursor> heap = new PriorityQueue<>(Math.max(1, keys.size()),
+                (a, b) -> Long.compare(b.id, a.id));
+        for (String key : keys) {
+            ConcurrentSkipListSet<Long> ids = conversations.get(key);
+            if (ids == null) {
+                continue;
+            }
+            NavigableSet<Long> view = beforeId == null
+                    ? ids.descendingSet()
+                    : ids.headSet(beforeId, false).descendingSet();
+            Iterator<Long> it = view.iterator();
+            if (it.hasNext()) {
+                Cursor cursor = new Cursor(it);
+                cursor.advance();
+                heap.add(cursor);
+            }
+        }
+
+        List<Message> page = new ArrayList<>(limit);
+        while (page.size() < limit && !heap.isEmpty()) {
+            Cursor cursor = heap.poll();
+            Message msg = resolver.apply(cursor.id);
+            if (msg != null) { // 取页期间被撤回的消息直接跳过
+                page.add(msg);
+            }
+            if (cursor.rest.hasNext()) {
+                cursor.advance();
+                heap.add(cursor);
+            }
+        }
+        return page;
+    }
+
+    private static final class Cursor {
+        private long id;
+        private final Iterator<Long> rest;
+
+        private Cursor(Iterator<Long> rest) {
+            this.rest = rest;
+        }
+
+        private void advance() {
+            id = rest.next();
+        }
+    }
+}
@@ -1,7 +1,6 @@
 package com.example.chat.repository;
 
 import com.example.chat.common.model.Group;
-import com.example.chat.common.model.Message;
 import com.example.chat.common.model.User;
 import org.springframework.web.socket.WebSocketSession;
 
@@ -18,6 +17,18 @@ public class DataCenter {
     // 3. 群组信息 (Key: GroupId)
     public static final Map<String, Group> GROUPS = new ConcurrentHashMap<>();
 
-    // 4. 历史消息缓存 (Key: MsgId)
-    public static final Map<String, Message> MSG_HISTORY = new ConcurrentHashMap<>();
+    // 4. 历史消息 (Key: 消息ID 的 long 值，见 IdGenerator；超出内存预算的旧消息换出到磁盘冷段)
+    public static final MessageStore MSG_HISTORY = new MessageStore();
+
+    // 5. 会话索引 (Key: 私聊双方/群ID，Value: 有序的消息ID，消息本体从 MSG_HISTORY 读取)
+    public static final ConversationIndex CONVERSATIONS = new ConversationIndex(MSG_HISTORY::get);
+
+    // 6. 各群在线成员 (Key: GroupId，Value: 在线的成员用户名)
+    public static final OnlineGroupMembers ONLINE_MEMBERS = new OnlineGroupMembers();
+
+    // 7. 用户所在的群 (Key: Username，Value: GroupId 集合)
+    public static final UserGroupIndex USER_GROUPS = new UserGroupIndex();
+
+    // 8. 离线收件箱 (Key: 接收者用户名，Value: 待投递的私聊消息ID，登录时一次取走)
+    public static final OfflineInbox OFFLINE_INBOX = new OfflineInbox();
 }
\ No newline at end of file
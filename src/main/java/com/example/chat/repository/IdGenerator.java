@@ -0,0 +1,113 @@
+package com.example.chat.repository;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.stereotype.Component;
+
+import jakarta.annotation.PostConstruct;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 可按时间排序的 64 位 ID 生成器 (Snowflake)
+ *
+ * 布局：1 位符号 | 41 位毫秒时间戳（自 EPOCH 起）| 10 位节点号 | 12 位毫秒内序号
+ * 1. 无锁分配：用 CAS 推进“上一个 ID”，不依赖 SecureRandom。
+ * 2. 同一节点上严格递增，所以同一会话内的消息 ID 单调，可以直接当翻页游标。
+ * 3. 时钟回拨或单毫秒内序号用完时，沿用/借用下一毫秒，保证不重复、不倒退。
+ * 4. 启动时从快照 + WAL 恢复出的最大消息ID续号，重启前后时钟回拨也不会重发已有 ID、覆盖旧消息。
+ * 对外仍以十进制字符串传输，兼容原来的 msgId 字段。
+ */
+@Component
+@DependsOn("writeAheadLog")
+public class IdGenerator {
+
+    // 2024-01-01T00:00:00Z
+    public static final long EPOCH = 1704067200000L;
+
+    private static final int NODE_BITS = 10;
+    private static final int SEQUENCE_BITS = 12;
+    private static final int TIMESTAMP_SHIFT = NODE_BITS + SEQUENCE_BITS;
+    private static final long MAX_NODE = (1L << NODE_BITS) - 1;
+    private static final long SEQUENCE_MASK = (1L << SEQUENCE_BITS) - 1;
+
+    @Value("${chat.node-id:0}")
+    private long nodeId;
+
+    private long nodeBits;
+
+    // 上一次分配出去的 ID
+    private final AtomicLong last = new AtomicLong();
+
+    @PostConstruct
+    public void init() {
+        if (nodeId < 0 || nodeId > MAX_NODE) {
+            throw new IllegalArgumentException("chat.node-id 必须在 0 ~ " + MAX_NODE + " 之间");
+        }
+        nodeBits = nodeId << SEQUENCE_BITS;
+        advanceTo(DataCenter.MSG_HISTORY.highestId());
+    }
+
+    /**
+     * 保证之后分配的 ID 都大于 id
+     */
+    public void advanceTo(long id) {
+        last.accumulateAndGet(id, Math::max);
+    }
+
+    /**
+     * 分配一个新 ID
+     */
+    public long nextId() {
+        while (true) {
+            long prev = last.get();
+            long prevTime = prev >>> TIMESTAMP_SHIFT;
+            long now = System.currentTimeMillis() - EPOCH;
+
+            long next;
+            if (now > prevTime) {
+                next = (now << TIMESTAMP_SHIFT) | nodeBits;
+            } else if ((prev & SEQUENCE_MASK) < SEQUENCE_MASK) {
+                // 同一毫秒（或时钟回拨）：序号 +1
+                next = prev + 1;
+            } else {
+                // 本毫秒序号用完：借用下一毫秒
+                next = ((prevTime + 1) << TIMESTAMP_SHIFT) | nodeBits;
+            }
+
+            if (last.compareAndSet(prev, next)) {
+                return next;
+            }
+        }
+    }
+
+    /**
+     * ID 中包含的毫秒时间戳
+     */
+    public static long timestampOf(long id) {
+        return (id >>> TIMESTAMP_SHIFT) + EPOCH;
+    }
+
+    /**
+     * 指定时刻能生成的最小 ID；id < minIdAt(t) 等价于 timestampOf(id) < t
+     */
+    public static long minIdAt(long timestamp) {
+        return Math.max(0, timestamp - EPOCH) << TIMESTAMP_SHIFT;
+    }
+
+    /**
+     * 解析字符串形式的 ID
+     *
+     * @return 非法时返回 -1
+     */
+    public static long parse(String id) {
+        if (id == null || id.isEmpty()) {
+            return -1;
+        }
+        try {
+            long value = Long.parseLong(id);
+            return value >= 0 ? value : -1;
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+}
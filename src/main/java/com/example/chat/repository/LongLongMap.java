@@ -0,0 +1,136 @@
+package com.example.chat.repository;
+
+import java.util.Arrays;
+
+/**
+ * long -> long 的开放寻址哈希表（线性探测，删除时向后移位，不留墓碑）
+ * 冷存储用它保存 消息ID -> 文件位置，避免每条消息一个 Long 装箱对象和 Entry。
+ * 键必须 >= 0，非线程安全，由调用方加锁。
+ */
+final class LongLongMap {
+
+    static final long MISSING = -1L;
+
+    private long[] keys;
+    private long[] values;
+    private int mask;
+    private int size;
+
+    LongLongMap(int expected) {
+        int capacity = Integer.highestOneBit(Math.max(16, expected * 2 - 1)) << 1;
+        allocate(capacity);
+    }
+
+    int size() {
+        return size;
+    }
+
+    long get(long key) {
+        int i = slot(key);
+        while (keys[i] != MISSING) {
+            if (keys[i] == key) {
+                return values[i];
+            }
+            i = (i + 1) & mask;
+        }
+        return MISSING;
+    }
+
+    /**
+     * @return 原来的值，不存在时返回 MISSING
+     */
+    long put(long key, long value) {
+        int i = slot(key);
+        while (keys[i] != MISSING) {
+            if (keys[i] == key) {
+                long old = values[i];
+                values[i] = value;
+                return old;
+            }
+            i = (i + 1) & mask;
+        }
+        keys[i] = key;
+        values[i] = value;
+        if (++size * 2 > keys.length) {
+            rehash(keys.length << 1);
+        }
+        return MISSING;
+    }
+
+    /**
+     * @return 被删除的值，不存在时返回 MISSING
+     */
+    long remove(long key) {
+        int i = slot(key);
+        while (keys[i] != key) {
+            if (keys[i] == MISSING) {
+                return MISSING;
+            }
+            i = (i + 1) & mask;
+        }
+        long old = values[i];
+        size--;
+
+        // 把后面探测链上的元素前移，填补空位
+        int j = i;
+        while (true) {
+            j = (j + 1) & mask;
+            if (keys[j] == MISSING) {
+                break;
+            }
+            int home = slot(keys[j]);
+            boolean between = i <= j ? (i < home && home <= j) : (i < home || home <= j);
+            if (!between) {
+                keys[i] = keys[j];
+                values[i] = values[j];
+                i = j;
+            }
+        }
+        keys[i] = MISSING;
+        return old;
+    }
+
+    void clear() {
+        Arrays.fill(keys, MISSING);
+        size = 0;
+    }
+
+    /**
+     * 拷贝出全部 [key, value]，按 key0, value0, key1, value1... 排列
+     */
+    long[] toArray() {
+        long[] result = new long[size * 2];
+        int n = 0;
+        for (int i = 0; i < keys.length; i++) {
+            if (keys[i] != MISSING) {
+                result[n++] = keys[i];
+                result[n++] = values[i];
+            }
+        }
+        return result;
+    }
+
+    private int slot(long key) {
+        long h = key * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32)) & mask;
+    }
+
+    private void allocate(int capacity) {
+        keys = new long[capacity];
+        values = new long[capacity];
+        Arrays.fill(keys, MISSING);
+        mask = capacity - 1;
+    }
+
+    private void rehash(int capacity) {
+        long[] oldKeys = keys;
+        long[] oldValues = values;
+        allocate(capacity);
+        size = 0;
+        for (int i = 0; i < oldKeys.length; i++) {
+            if (oldKeys[i] != MISSING) {
+                put(oldKeys[i], oldValues[i]);
+            }
+        }
+    }
+}
@@ -0,0 +1,325 @@
+package com.example.chat.repository;
+
+import com.example.chat.common.model.Message;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+
+/**
+ * 分层消息存储 (Key: 消息ID 的 long 值)
+ *
+ * 1. 热层：堆内按 ID 有序的跳表，ID 越小消息越旧。
+ * 2. 超出内存预算（条数或估算字节数）时，把最旧的消息换出到 {@link ColdSegmentStore}。
+ * 3. 淘汰顺序就是 ID 顺序，读冷层不做提升（提升回来的旧消息会立刻再次成为最旧的淘汰对象），
+ *    冷层消息被修改后通过 replace() 覆盖冷层副本。
+ * 4. 冷层读出的是独立副本，"读-改-写回"必须走 update()：按消息ID分段加锁，
+ *    同一条消息的并发修改串行执行；淘汰时同样持有该消息的分段锁，修改不会落在已写入冷层的旧副本上。
+ * 未调用 {@link #open} 之前没有冷层，也不做淘汰，行为与原来的 Map 一致。
+ */
+public class MessageStore {
+
+    /**
+     * 遍历回调，允许抛出 IOException（写快照时使用）
+     */
+    @FunctionalInterface
+    public interface Visitor {
+        void visit(Message msg) throws IOException;
+    }
+
+    private final ConcurrentSkipListMap<Long, Message> hot = new ConcurrentSkipListMap<>();
+    private final AtomicLong hotCount = new AtomicLong();
+    private final AtomicLong hotBytes = new AtomicLong();
+    // 放入过的最大消息ID，删除不回退（见 IdGenerator 启动时的续号）
+    private final AtomicLong highestId = new AtomicLong();
+
+    // 同一时刻只允许一个线程做淘汰；写快照时也持有它，保证遍历期间消息不会在两层之间移动
+    private final ReentrantLock evictLock = new ReentrantLock();
+
+    // 按消息ID分段的修改锁（见 update）；加锁顺序：evictLock -> 分段锁
+    private static final int UPDATE_STRIPES = 64;
+    private final Object[] updateLocks = new Object[UPDATE_STRIPES];
+
+    private volatile ColdSegmentStore cold;
+    private volatile long maxHotMessages;
+    private volatile long maxHotBytes;
+
+    private final LongAdder hotHits = new LongAdder();
+    private final LongAdder coldHits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    public MessageStore() {
+        for (int i = 0; i < UPDATE_STRIPES; i++) {
+            updateLocks[i] = new Object();
+        }
+    }
+
+    /**
+     * 启用冷层和内存预算
+     *
+     * @param maxHotMessages 热层最多保留的消息数，0 表示不限
+     * @param maxHotBytes    热层估算字节数上限，0 表示不限
+     * @param coldDir        冷段文件目录
+     * @param segmentBytes   单个冷段文件大小
+     */
+    public void open(long maxHotMessages, long maxHotBytes, Path coldDir, int segmentBytes) throws IOException {
+        this.cold = new ColdSegmentStore(coldDir, segmentBytes);
+        this.maxHotMessages = maxHotMessages;
+        this.maxHotBytes = maxHotBytes;
+        evictIfNeeded();
+    }
+
+    /**
+     * 读取消息
+     * 冷层命中返回的是解码出的独立副本，修改后需要通过 {@link #replace} 写回
+     */
+    public Message get(long id) {
+        Message msg = hot.get(id);
+        if (msg != null) {
+            hotHits.increment();
+            return msg;
+        }
+        // 淘汰时先写冷层再移出热层，所以热层未命中时消息若存在必定已在冷层
+        ColdSegmentStore c = cold;
+        msg = c != null ? c.read(id) : null;
+        if (msg != null) {
+            coldHits.increment();
+        } else {
+            misses.increment();
+        }
+        return msg;
+    }
+
+    public void put(long id, Message msg) {
+        highestId.accumulateAndGet(id, Math::max);
+        Message old = hot.put(id, msg);
+        if (old == null) {
+            addHot(msg);
+        } else {
+            hotBytes.addAndGet(estimateBytes(msg) - estimateBytes(old));
+        }
+        ColdSegmentStore c = cold;
+        if (c != null) {
+            c.remove(id);
+        }
+        evictIfNeeded();
+    }
+
+    /**
+     * 原子地修改一条消息：在该消息的分段锁内读取、执行 mutation，消息在冷层时再写回冷层
+     * mutation 内可以追加 WAL，保证日志中同一条消息的状态顺序与修改顺序一致
+     *
+     * @param mutation 返回 null 表示没有做修改，冷层不写回
+     * @return mutation 的返回值；消息不存在（已撤回）时不调用 mutation，返回 null
+     */
+    public <R> R update(long id, Function<Message, R> mutation) {
+        synchronized (updateLock(id)) {
+            Message msg = hot.get(id);
+            if (msg != null) {
+                hotHits.increment();
+                return mutation.apply(msg);
+            }
+            ColdSegmentStore c = cold;
+            msg = c != null ? c.read(id) : null;
+            if (msg == null) {
+                misses.increment();
+                return null;
+            }
+            coldHits.increment();
+            R result = mutation.apply(msg);
+            if (result != null) {
+                c.replace(id, msg);
+            }
+            return result;
+        }
+    }
+
+    /**
+     * 仅当消息仍然存在时用新状态覆盖（已撤回的消息不会被放回）
+     * 消息在冷层时直接覆盖冷层副本，不提升
+     *
+     * @return 是否覆盖成功
+     */
+    public boolean replace(long id, Message msg) {
+        Message old = hot.replace(id, msg);
+        if (old != null) {
+            hotBytes.addAndGet(estimateBytes(msg) - estimateBytes(old));
+            return true;
+        }
+        ColdSegmentStore c = cold;
+        return c != null && c.replace(id, msg);
+    }
+
+    /**
+     * 删除消息
+     *
+     * @return 被删除的消息，不存在时返回 null
+     */
+    public Message remove(long id) {
+        Message old = hot.remove(id);
+        if (old != null) {
+            removeHot(old);
+        }
+        ColdSegmentStore c = cold;
+        if (c != null) {
+            Message coldCopy = old == null ? c.read(id) : null;
+            if (c.remove(id) && old == null) {
+                old = coldCopy;
+            }
+        }
+        return old;
+    }
+
+    public boolean containsKey(long id) {
+        ColdSegmentStore c = cold;
+        return hot.containsKey(id) || (c != null && c.contains(id));
+    }
+
+    /**
+     * 放入过的最大消息ID（含已删除的），没有时为 0
+     */
+    public long highestId() {
+        return highestId.get();
+    }
+
+    public int size() {
+        ColdSegmentStore c = cold;
+        return hot.size() + (c != null ? c.size() : 0);
+    }
+
+    public void clear() {
+        evictLock.lock();
+        try {
+            hot.clear();
+            hotCount.set(0);
+            hotBytes.set(0);
+            highestId.set(0);
+            ColdSegmentStore c = cold;
+            if (c != null) {
+                c.clear();
+            }
+        } finally {
+            evictLock.unlock();
+        }
+    }
+
+    /**
+     * 遍历全部消息（先冷层后热层）
+     * 遍历期间暂停淘汰，消息只会从热层流向冷层，所以不会被漏掉
+     */
+    public void forEach(Visitor visitor) throws IOException {
+        evictLock.lock();
+        try {
+            ColdSegmentStore c = cold;
+            if (c != null) {
+                c.forEach(visitor);
+            }
+            for (Message msg : hot.values()) {
+                visitor.visit(msg);
+            }
+        } finally {
+            evictLock.unlock();
+        }
+    }
+
+    public MessageStoreStats getStats() {
+        ColdSegmentStore c = cold;
+        return MessageStoreStats.builder()
+                .hotMessages(hotCount.get())
+                .hotBytes(hotBytes.get())
+                .coldMessages(c != null ? c.size() : 0)
+                .coldBytes(c != null ? c.liveBytes() : 0)
+                .coldSegments(c != null ? c.segmentCount() : 0)
+                .maxHotMessages(maxHotMessages)
+                .maxHotBytes(maxHotBytes)
+                .hotHits(hotHits.sum())
+                .coldHits(coldHits.sum())
+                .misses(misses.sum())
+                .evictions(evictions.sum())
+                .build();
+    }
+
+    // ================= 内部实现 =================
+
+    private Object updateLock(long id) {
+        // ID 低位是毫秒内序号，大多为 0，先乘黄金比例常数打散再取高 6 位
+        return updateLocks[(int) ((id * 0x9E3779B97F4A7C15L) >>> 58)];
+    }
+
+    private void addHot(Message msg) {
+        hotCount.incrementAndGet();
+        hotBytes.addAndGet(estimateBytes(msg));
+    }
+
+    private void removeHot(Message msg) {
+        hotCount.decrementAndGet();
+        hotBytes.addAndGet(-estimateBytes(msg));
+    }
+
+    private boolean overBudget() {
+        long maxCount = maxHotMessages;
+        long maxBytes = maxHotBytes;
+        return (maxCount > 0 && hotCount.get() > maxCount) || (maxBytes > 0 && hotBytes.get() > maxBytes);
+    }
+
+    /**
+     * 把最旧的消息换出到冷层，直到回到预算以内
+     * 拿不到锁说明已有线程在淘汰，直接返回，不阻塞写入路径
+     */
+    private void evictIfNeeded() {
+        ColdSegmentStore c = cold;
+        if (c == null || !overBudget() || !evictLock.tryLock()) {
+            return;
+        }
+        try {
+            while (overBudget()) {
+                Map.Entry<Long, Message> oldest = hot.firstEntry();
+                if (oldest == null) {
+                    return;
+                }
+                // 先写冷层再移出热层；期间被撤回或覆盖的消息要把冷层副本删掉
+                // 持有分段锁，update() 不会在写入冷层与移出热层之间修改热层对象
+                synchronized (updateLock(oldest.getKey())) {
+                    c.append(oldest.getKey(), oldest.getValue());
+                    if (hot.remove(oldest.getKey(), oldest.getValue())) {
+                        removeHot(oldest.getValue());
+                        evictions.increment();
+                    } else {
+                        c.remove(oldest.getKey());
+                    }
+                }
+            }
+        } finally {
+            evictLock.unlock();
+        }
+    }
+
+    /**
+     * 估算消息占用的堆内存，只使用创建后不再变化的字段，保证加减对称
+     */
+    static long estimateBytes(Message msg) {
+        long bytes = 256; // 对象头、已读集合、反应 Map 等固定开销
+        bytes += lengthOf(msg.getMsgId());
+        bytes += lengthOf(msg.getFromUser());
+        bytes += lengthOf(msg.getToUser());
+        bytes += lengthOf(msg.getContent());
+        bytes += lengthOf(msg.getQuoteId());
+        bytes += lengthOf(msg.getQuoteContent());
+        List<String> atUsers = msg.getAtUsers();
+        if (atUsers != null) {
+            bytes += 16L * atUsers.size();
+        }
+        return bytes;
+    }
+
+    private static long lengthOf(String s) {
+        return s == null ? 0 : 40L + 2L * s.length();
+    }
+}
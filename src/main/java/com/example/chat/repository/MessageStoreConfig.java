@@ -0,0 +1,35 @@
+package com.example.chat.repository;
+
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+
+/**
+ * 按配置启用 MSG_HISTORY 的内存预算与冷存储
+ * WriteAheadLog 依赖本组件，保证回放之前冷层已经就绪
+ */
+@Component
+public class MessageStoreConfig {
+
+    @Value("${chat.store.max-hot-messages:100000}")
+    private long maxHotMessages;
+
+    @Value("${chat.store.max-hot-mb:256}")
+    private long maxHotMb;
+
+    @Value("${chat.store.cold-dir:data/cold}")
+    private String coldDir;
+
+    @Value("${chat.store.cold-segment-mb:64}")
+    private int coldSegmentMb;
+
+    @PostConstruct
+    public void init() throws IOException {
+        DataCenter.MSG_HISTORY.open(maxHotMessages, maxHotMb * 1024 * 1024, Paths.get(coldDir),
+                coldSegmentMb * 1024 * 1024);
+        System.out.println("消息存储: 热层上限 " + maxHotMessages + " 条 / " + maxHotMb + " MB, 冷层目录 " + coldDir);
+    }
+}
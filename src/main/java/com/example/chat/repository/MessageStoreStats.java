@@ -0,0 +1,23 @@
+package com.example.chat.repository;
+
+import lombok.Builder;
+import lombok.Data;
+
+/**
+ * 分层消息存储的统计快照
+ */
+@Data
+@Builder
+public class MessageStoreStats {
+    private long hotMessages;      // 热层消息数
+    private long hotBytes;         // 热层估算字节数
+    private long coldMessages;     // 冷层消息数
+    private long coldBytes;        // 冷层有效记录字节数
+    private int coldSegments;      // 冷层段文件数
+    private long maxHotMessages;   // 热层条数上限，0 表示不限
+    private long maxHotBytes;      // 热层字节上限，0 表示不限
+    private long hotHits;          // 热层命中次数
+    private long coldHits;         // 冷层命中次数
+    private long misses;           // 未命中次数
+    private long evictions;        // 换出到冷层的次数
+}
@@ -0,0 +1,130 @@
+package com.example.chat.repository;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * 离线收件箱：接收者不在线时暂存私聊消息ID，登录后一次取走
+ *
+ * 1. 只存消息ID（见 IdGenerator），消息本体仍在 MSG_HISTORY，取走时再解析；已撤回的消息自然被跳过。
+ * 2. 每个用户的队列有上限，满了丢弃最旧的一条，避免长期不登录的用户占满内存。
+ * 3. drain 把整个收件箱摘下并标记作废，与之并发的 offer 会重新建箱，消息不会丢进已取走的箱子。
+ * 4. 只在内存中，不写 WAL；重启后未投递的消息仍可通过历史记录拉取。
+ */
+public class OfflineInbox {
+
+    private static final long[] EMPTY = new long[0];
+
+    private final Map<String, Box> boxes = new ConcurrentHashMap<>();
+    private final AtomicInteger pending = new AtomicInteger();
+    private final LongAdder dropped = new LongAdder();
+
+    private volatile int maxPerUser = 200;
+
+    public void setMaxPerUser(int maxPerUser) {
+        this.maxPerUser = Math.max(1, maxPerUser);
+    }
+
+    /**
+     * 存入一条待投递消息
+     *
+     * @return 是否因队列已满丢弃了最旧的一条
+     */
+    public boolean offer(String username, long id) {
+        while (true) {
+            Box box = boxes.computeIfAbsent(username, k -> new Box());
+            synchronized (box) {
+                if (box.drained) {
+                    continue; // 刚被取走，重新建箱
+                }
+                int overflow = box.add(id, maxPerUser);
+                dropped.add(overflow);
+                pending.addAndGet(1 - overflow);
+                return overflow > 0;
+            }
+        }
+    }
+
+    /**
+     * 取走某个用户的全部待投递消息ID，按存入顺序
+     */
+    public long[] drain(String username) {
+        Box box = boxes.remove(username);
+        if (box == null) {
+            return EMPTY;
+        }
+        synchronized (box) {
+            box.drained = true;
+            long[] ids = box.toArray();
+            pending.addAndGet(-ids.length);
+            return ids;
+        }
+    }
+
+    public void clear() {
+        for (String username : boxes.keySet()) {
+            drain(username);
+        }
+    }
+
+    /**
+     * 所有用户待投递的消息总数
+     */
+    public int pending() {
+        return pending.get();
+    }
+
+    /**
+     * 因队列已满被丢弃的消息数
+     */
+    public long dropped() {
+        return dropped.sum();
+    }
+
+    /**
+     * 单个用户的环形队列，由自身的锁保护
+     */
+    private static final class Box {
+        private long[] ids = new long[4];
+        private int head;
+        private int size;
+        private boolean drained;
+
+        /**
+         * @return 为腾出位置丢弃的最旧消息数
+         */
+        int add(long id, int max) {
+            int overflow = 0;
+            while (size >= max) {
+                head = (head + 1) % ids.length;
+                size--;
+                overflow++;
+            }
+            if (size == ids.length) {
+                grow(Math.min(max, ids.length << 1));
+            }
+            ids[(head + size) % ids.length] = id;
+            size++;
+            return overflow;
+        }
+
+        long[] toArray() {
+            long[] out = new long[size];
+            for (int i = 0; i < size; i++) {
+                out[i] = ids[(head + i) % ids.length];
+            }
+            return out;
+        }
+
+        /**
+         * 按顺序搬到容量为 capacity 的新数组，head 归零
+         */
+        private void grow(int capacity) {
+            ids = Arrays.copyOf(toArray(), capacity);
+            head = 0;
+        }
+    }
+}
@@ -0,0 +1,20 @@
+package com.example.chat.repository;
+
+import jakarta.annotation.PostConstruct;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+/**
+ * 按配置设置 OFFLINE_INBOX 每个用户的队列上限
+ */
+@Component
+public class OfflineInboxConfig {
+
+    @Value("${chat.inbox.max-per-user:200}")
+    private int maxPerUser;
+
+    @PostConstruct
+    public void init() {
+        DataCenter.OFFLINE_INBOX.setMaxPerUser(maxPerUser);
+    }
+}
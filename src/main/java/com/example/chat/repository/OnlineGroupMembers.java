@@ -0,0 +1,91 @@
+package com.example.chat.repository;
+
+import com.example.chat.common.model.Group;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 每个群当前在线的成员（增量维护）
+ *
+ * 登录、断线、建群、解散群时更新，群消息推送只需遍历在线成员，不再扫描全部成员。
+ */
+public class OnlineGroupMembers {
+
+    // 群ID -> 在线成员
+    private final Map<String, Set<String>> online = new ConcurrentHashMap<>();
+
+    /**
+     * 用户上线：加入其所在各群的在线集合
+     */
+    public void userOnline(String username) {
+        for (String groupId : DataCenter.USER_GROUPS.groupsOf(username)) {
+            memberOnline(groupId, username);
+        }
+    }
+
+    /**
+     * 用户下线：从其所在各群的在线集合移除
+     */
+    public void userOffline(String username) {
+        for (String groupId : DataCenter.USER_GROUPS.groupsOf(username)) {
+            memberOffline(groupId, username);
+        }
+    }
+
+    /**
+     * 新建群：登记当前在线的成员
+     */
+    public void groupAdded(Group group) {
+        for (String member : group.getMembers()) {
+            if (DataCenter.ONLINE_USERS.containsKey(member)) {
+                memberOnline(group.getGroupId(), member);
+            }
+        }
+    }
+
+    public void groupRemoved(String groupId) {
+        online.remove(groupId);
+    }
+
+    /**
+     * 成员加入群
+     */
+    public void memberAdded(String groupId, String username) {
+        if (DataCenter.ONLINE_USERS.containsKey(username)) {
+            memberOnline(groupId, username);
+        }
+    }
+
+    /**
+     * 成员离开群
+     */
+    public void memberRemoved(String groupId, String username) {
+        memberOffline(groupId, username);
+    }
+
+    /**
+     * 群内在线成员（只读视图，随上下线实时变化）
+     */
+    public Set<String> of(String groupId) {
+        Set<String> members = online.get(groupId);
+        return members != null ? Collections.unmodifiableSet(members) : Collections.emptySet();
+    }
+
+    private void memberOnline(String groupId, String username) {
+        online.computeIfAbsent(groupId, k -> ConcurrentHashMap.newKeySet()).add(username);
+        // 与解散群并发时，不留下已解散群的集合
+        if (!DataCenter.GROUPS.containsKey(groupId)) {
+            online.remove(groupId);
+        }
+    }
+
+    private void memberOffline(String groupId, String username) {
+        Set<String> members = online.get(groupId);
+        if (members != null) {
+            members.remove(username);
+        }
+    }
+}
@@ -0,0 +1,67 @@
+package com.example.chat.repository;
+
+import com.example.chat.common.model.Group;
+
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 反向索引：用户名 -> 所在的群ID
+ *
+ * 由建群、解散群、成员变化以及启动恢复维护，
+ * 查询某个用户的群只与他加入的群数有关，不再遍历整个 GROUPS。
+ */
+public class UserGroupIndex {
+
+    private final Map<String, Set<String>> groupsByUser = new ConcurrentHashMap<>();
+
+    /**
+     * 群被创建或整体替换（回放 GROUP_PUT）
+     *
+     * @param old 被替换的旧状态，没有时传 null
+     */
+    public void groupPut(Group group, Group old) {
+        if (old != null) {
+            for (String member : old.getMembers()) {
+                if (!group.getMembers().contains(member)) {
+                    memberRemoved(old.getGroupId(), member);
+                }
+            }
+        }
+        for (String member : group.getMembers()) {
+            memberAdded(group.getGroupId(), member);
+        }
+    }
+
+    public void groupRemoved(Group group) {
+        for (String member : group.getMembers()) {
+            memberRemoved(group.getGroupId(), member);
+        }
+    }
+
+    public void memberAdded(String groupId, String username) {
+        groupsByUser.computeIfAbsent(username, k -> ConcurrentHashMap.newKeySet()).add(groupId);
+    }
+
+    public void memberRemoved(String groupId, String username) {
+        Set<String> groups = groupsByUser.get(username);
+        if (groups != null) {
+            groups.remove(groupId);
+        }
+    }
+
+    /**
+     * 用户所在的群（只读视图）
+     */
+    public Set<String> groupsOf(String username) {
+        Set<String> groups = groupsByUser.get(username);
+        return groups != null ? Collections.unmodifiableSet(groups) : Collections.emptySet();
+    }
+
+    public boolean isMember(String username, String groupId) {
+        Set<String> groups = groupsByUser.get(username);
+        return groups != null && groups.contains(groupId);
+    }
+}
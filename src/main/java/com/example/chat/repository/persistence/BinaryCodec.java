@@ -0,0 +1,179 @@
+package com.example.chat.repository.persistence;
+
+import com.example.chat.common.model.Group;
+import com.example.chat.common.model.Message;
+import com.example.chat.common.model.User;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * 模型对象的紧凑二进制编码（快照使用）
+ * 字段按固定顺序写出，字符串为 长度 + UTF-8 字节，长度 -1 表示 null
+ */
+public final class BinaryCodec {
+
+    private BinaryCodec() {
+    }
+
+    // ================= User =================
+
+    public static void writeUser(DataOutput out, User user) throws IOException {
+        writeString(out, user.getUserId());
+        writeString(out, user.getUsername());
+        writeString(out, user.getGender());
+        out.writeInt(user.getAge());
+        writeString(out, user.getPassword());
+        writeString(out, user.getAvatar());
+        writeString(out, user.getRole());
+        out.writeLong(user.getMuteEndTime());
+        writeStrings(out, user.getFriends());
+        writeStrings(out, user.getBlockList());
+        writeStrings(out, user.getFriendRequests());
+    }
+
+    public static User readUser(DataInput in) throws IOException {
+        User user = new User(readString(in));
+        user.setUsername(readString(in));
+        user.setGender(readString(in));
+        user.setAge(in.readInt());
+        user.setPassword(readString(in));
+        user.setAvatar(readString(in));
+        user.setRole(readString(in));
+        user.setMuteEndTime(in.readLong());
+        user.setFriends(readSet(in));
+        user.setBlockList(readSet(in));
+        user.setFriendRequests(readSet(in));
+        return user;
+    }
+
+    // ================= Group =================
+
+    public static void writeGroup(DataOutput out, Group group) throws IOException {
+        writeString(out, group.getGroupId());
+        writeString(out, group.getGroupName());
+        writeString(out, group.getOwner());
+        writeStrings(out, group.getMembers());
+        writeStrings(out, group.getAdmins());
+    }
+
+    public static Group readGroup(DataInput in) throws IOException {
+        Group group = new Group();
+        group.setGroupId(readString(in));
+        group.setGroupName(readString(in));
+        group.setOwner(readString(in));
+        group.setMembers(readSet(in));
+        group.setAdmins(new CopyOnWriteArrayList<>(readList(in)));
+        return group;
+    }
+
+    // ================= Message =================
+
+    public static void writeMessage(DataOutput out, Message msg) throws IOException {
+        writeString(out, msg.getMsgId());
+        writeString(out, msg.getFromUser());
+        writeString(out, msg.getToUser());
+        out.writeBoolean(msg.isGroup());
+        writeString(out, msg.getContent());
+        out.writeLong(msg.getTimestamp() != null ? msg.getTimestamp() : 0L);
+        writeString(out, msg.getQuoteId());
+        writeString(out, msg.getQuoteContent());
+        writeStrings(out, msg.getAtUsers());
+        writeStrings(out, msg.getReadBy());
+
+        List<Map.Entry<String, Set<String>>> reactions = msg.getReactions() != null
+                ? new ArrayList<>(msg.getReactions().entrySet())
+                : List.of();
+        out.writeInt(reactions.size());
+        for (Map.Entry<String, Set<String>> entry : reactions) {
+            writeString(out, entry.getKey());
+            writeStrings(out, entry.getValue());
+        }
+    }
+
+    public static Message readMessage(DataInput in) throws IOException {
+        Message msg = Message.builder()
+                .msgId(readString(in))
+                .fromUser(readString(in))
+                .toUser(readString(in))
+                .isGroup(in.readBoolean())
+                .content(readString(in))
+                .timestamp(in.readLong())
+                .quoteId(readString(in))
+                .quoteContent(readString(in))
+                .atUsers(readList(in))
+                .readBy(readSet(in))
+                .build();
+
+        int reactionCount = in.readInt();
+        for (int i = 0; i < reactionCount; i++) {
+            msg.getReactions().put(readString(in), readSet(in));
+        }
+        return msg;
+    }
+
+    // ================= 基础类型 =================
+
+    static void writeString(DataOutput out, String s) throws IOException {
+        if (s == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    static String readString(DataInput in) throws IOException {
+        int len = in.readInt();
+        if (len < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[len];
+        in.readFully(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void writeStrings(DataOutput out, Collection<String> values) throws IOException {
+        if (values == null) {
+            out.writeInt(-1);
+            return;
+        }
+        // 并发集合的 size() 与遍历结果可能不一致，先拷贝再写
+        List<String> copy = new ArrayList<>(values);
+        out.writeInt(copy.size());
+        for (String value : copy) {
+            writeString(out, value);
+        }
+    }
+
+    private static List<String> readList(DataInput in) throws IOException {
+        int size = in.readInt();
+        if (size < 0) {
+            return null;
+        }
+        List<String> list = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            list.add(readString(in));
+        }
+        return list;
+    }
+
+    private static Set<String> readSet(DataInput in) throws IOException {
+        Set<String> set = ConcurrentHashMap.newKeySet();
+        List<String> list = readList(in);
+        if (list != null) {
+            set.addAll(list);
+        }
+        return set;
+    }
+}
@@ -0,0 +1,13 @@
+package com.example.chat.repository.persistence;
+
+/**
+ * 日志持久化级别
+ */
+public enum Durability {
+    // 每条记录写入后立即 fsync，最安全也最慢
+    SYNC,
+    // 组提交：后台线程按批写入并 fsync，调用方不等待，最多丢失一个批次间隔的数据
+    BATCHED,
+    // 只写入操作系统缓冲区，由操作系统决定何时落盘
+    OS
+}
@@ -0,0 +1,52 @@
+package com.example.chat.repository.persistence;
+
+import com.example.chat.common.model.Group;
+import com.example.chat.common.model.Message;
+import com.example.chat.common.model.User;
+import com.example.chat.logging.ChatLog;
+import com.example.chat.repository.DataCenter;
+import com.example.chat.repository.IdGenerator;
+
+/**
+ * 把日志记录重放到 DataCenter（同时维护会话索引和用户-群反向索引）
+ * 所有记录都是幂等的，重复重放同一条记录结果不变
+ */
+public final class LogApplier {
+
+    private static final ChatLog LOG = ChatLog.of("persistence");
+
+    private LogApplier() {
+    }
+
+    public static void apply(LogRecord record) {
+        switch (record.getOp()) {
+            case USER_PUT -> DataCenter.USERS.put(record.getKey(), (User) record.getData());
+            case GROUP_PUT -> {
+                Group group = (Group) record.getData();
+                DataCenter.USER_GROUPS.groupPut(group, DataCenter.GROUPS.put(record.getKey(), group));
+            }
+            case GROUP_DEL -> {
+                Group old = DataCenter.GROUPS.remove(record.getKey());
+                if (old != null) {
+                    DataCenter.USER_GROUPS.groupRemoved(old);
+                }
+            }
+            case MSG_PUT -> {
+                long id = IdGenerator.parse(record.getKey());
+                if (id < 0) {
+                    LOG.warn("跳过无法识别的消息ID", "key", record.getKey());
+                    return;
+                }
+                Message msg = (Message) record.getData();
+                DataCenter.MSG_HISTORY.put(id, msg);
+                DataCenter.CONVERSATIONS.add(msg);
+            }
+            case MSG_DEL -> {
+                Message old = DataCenter.MSG_HISTORY.remove(IdGenerator.parse(record.getKey()));
+                if (old != null) {
+                    DataCenter.CONVERSATIONS.remove(old);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,130 @@
+package com.example.chat.repository.persistence;
+
+import com.example.chat.common.model.Group;
+import com.example.chat.common.model.Message;
+import com.example.chat.common.model.User;
+import com.fasterxml.jackson.annotation.JsonCreator;
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import com.fasterxml.jackson.annotation.JsonProperty;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+/**
+ * 日志编解码：一行一条 JSON 记录
+ *
+ * 使用独立的 ObjectMapper，通过 MixIn 让 password 写入日志。
+ * 注意不能复用 Spring 容器里的 ObjectMapper，否则密码会随 LOGIN_RESP 发给前端。
+ */
+public class LogCodec {
+
+    private static final byte[] LSN_ZERO = "{\"lsn\":0".getBytes(StandardCharsets.US_ASCII);
+
+    private final ObjectMapper mapper;
+
+    public LogCodec() {
+        mapper = new ObjectMapper();
+        mapper.configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+        mapper.addMixIn(User.class, UserMixIn.class);
+    }
+
+    /**
+     * 编码为一行（以换行符结尾）
+     */
+    public byte[] encode(LogRecord record) throws IOException {
+        return line(record.getLsn(), encodeBody(record.getOp(), record.getKey(), record.getData()));
+    }
+
+    /**
+     * 编码 lsn 之外的部分（以 ',' 开头，不含换行）
+     * 耗时的 JSON 序列化可以在分配 LSN 之前完成，拿到 LSN 后用 line() 拼成完整的一行
+     */
+    public byte[] encodeBody(LogOp op, String key, Object data) throws IOException {
+        byte[] json = mapper.writeValueAsBytes(new LogRecord(0, op, key, data));
+        return Arrays.copyOfRange(json, LSN_ZERO.length, json.length);
+    }
+
+    /**
+     * 拼接 lsn 与 encodeBody 的结果，得到以换行符结尾的一行
+     */
+    public static byte[] line(long lsn, byte[] body) {
+        byte[] prefix = ("{\"lsn\":" + lsn).getBytes(StandardCharsets.US_ASCII);
+        byte[] line = new byte[prefix.length + body.length + 1];
+        System.arraycopy(prefix, 0, line, 0, prefix.length);
+        System.arraycopy(body, 0, line, prefix.length, body.length);
+        line[line.length - 1] = '\n';
+        return line;
+    }
+
+    /**
+     * 解码一行，data 按记录类型还原为具体对象
+     */
+    public LogRecord decode(String line) throws IOException {
+        JsonNode node = mapper.readTree(line);
+        LogOp op = LogOp.valueOf(node.get("op").asText());
+        Object data = null;
+        JsonNode dataNode = node.get("data");
+        if (op.getDataType() != null && dataNode != null && !dataNode.isNull()) {
+            data = normalize(mapper.treeToValue(dataNode, op.getDataType()));
+        }
+        return new LogRecord(node.get("lsn").asLong(), op, node.get("key").asText(), data);
+    }
+
+    /**
+     * Jackson 还原出来的是 HashSet / ArrayList，这里换回模型里约定的线程安全容器
+     */
+    static Object normalize(Object data) {
+        if (data instanceof Message msg) {
+            msg.setReadBy(concurrentSet(msg.getReadBy()));
+            Map<String, Set<String>> reactions = new ConcurrentHashMap<>();
+            if (msg.getReactions() != null) {
+                msg.getReactions().forEach((type, users) -> reactions.put(type, concurrentSet(users)));
+            }
+            msg.setReactions(reactions);
+        } else if (data instanceof Group group) {
+            group.setMembers(concurrentSet(group.getMembers()));
+            group.setAdmins(new CopyOnWriteArrayList<>(group.getAdmins()));
+        } else if (data instanceof User user) {
+            user.setFriends(concurrentSet(user.getFriends()));
+            user.setBlockList(concurrentSet(user.getBlockList()));
+            user.setFriendRequests(concurrentSet(user.getFriendRequests()));
+        }
+        return data;
+    }
+
+    private static Set<String> concurrentSet(Collection<String> source) {
+        Set<String> set = ConcurrentHashMap.newKeySet();
+        if (source != null) {
+            set.addAll(source);
+        }
+        return set;
+    }
+
+    /**
+     * User 没有无参构造，且 password 对前端隐藏；日志里需要完整保存
+     */
+    abstract static class UserMixIn {
+        @JsonIgnore(false)
+        @JsonProperty
+        private String password;
+
+        @JsonCreator
+        UserMixIn(@JsonProperty("userId") String userId) {
+        }
+
+        @JsonIgnore
+        abstract boolean isAdmin();
+
+        @JsonIgnore
+        abstract boolean isMuted();
+    }
+}
@@ -0,0 +1,27 @@
+package com.example.chat.repository.persistence;
+
+import com.example.chat.common.model.Group;
+import com.example.chat.common.model.Message;
+import com.example.chat.common.model.User;
+
+/**
+ * 日志记录类型
+ * PUT 记录携带对象的完整状态（幂等覆盖），DEL 记录只携带 Key
+ */
+public enum LogOp {
+    USER_PUT(User.class),
+    GROUP_PUT(Group.class),
+    GROUP_DEL(null),
+    MSG_PUT(Message.class),
+    MSG_DEL(null);
+
+    private final Class<?> dataType;
+
+    LogOp(Class<?> dataType) {
+        this.dataType = dataType;
+    }
+
+    public Class<?> getDataType() {
+        return dataType;
+    }
+}
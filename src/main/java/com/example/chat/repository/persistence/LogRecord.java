@@ -0,0 +1,22 @@
+package com.example.chat.repository.persistence;
+
+import com.fasterxml.jackson.annotation.JsonPropertyOrder;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+/**
+ * 一条日志记录
+ *
+ * 字段顺序固定，lsn 必须在最前（见 LogCodec.encodeBody）
+ */
+@Data
+@JsonPropertyOrder({"lsn", "op", "key", "data"})
+@NoArgsConstructor
+@AllArgsConstructor
+public class LogRecord {
+    private long lsn;      // 日志序号，全局单调递增
+    private LogOp op;      // 记录类型
+    private String key;    // 用户名 / 群ID / 消息ID
+    private Object data;   // PUT 时为对象的完整状态，DEL 时为空
+}
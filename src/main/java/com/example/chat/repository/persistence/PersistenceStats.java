@@ -0,0 +1,20 @@
+package com.example.chat.repository.persistence;
+
+import lombok.Builder;
+import lombok.Data;
+
+/**
+ * 日志与快照的统计快照，启动恢复耗时见 recovery
+ */
+@Data
+@Builder
+public class PersistenceStats {
+    private boolean walEnabled;        // 是否开启 WAL
+    private Durability durability;     // 持久化级别
+    private long lastLsn;              // 最近一次分配的 LSN
+    private RecoveryStats recovery;    // 最近一次启动恢复的统计
+    private long snapshotCount;        // 启动以来生成的快照数
+    private long lastSnapshotLsn;      // 最近一次快照的 LSN
+    private long lastSnapshotBytes;    // 最近一次快照的大小
+    private long lastSnapshotMillis;   // 最近一次快照的耗时
+}
@@ -0,0 +1,15 @@
+package com.example.chat.repository.persistence;
+
+import lombok.Data;
+
+/**
+ * 最近一次启动恢复的统计，用于对比快照加载与 JSON 日志回放的耗时
+ */
+@Data
+public class RecoveryStats {
+    private long snapshotLsn;          // 加载的快照 LSN，0 表示没有快照
+    private long snapshotLoadMillis;   // 快照加载耗时
+    private long replayedRecords;      // 回放的日志条数
+    private long replayMillis;         // 日志回放耗时
+    private long totalMillis;          // 恢复总耗时
+}
@@ -0,0 +1,202 @@
+package com.example.chat.repository.persistence;
+
+import com.example.chat.common.model.Group;
+import com.example.chat.common.model.Message;
+import com.example.chat.common.model.User;
+import com.example.chat.logging.ChatLog;
+import com.example.chat.repository.DataCenter;
+import com.example.chat.repository.IdGenerator;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+import java.util.stream.Stream;
+
+/**
+ * 快照文件读写
+ *
+ * 文件格式：魔数 | 版本 | LSN | 生成时间 | USERS 段 | GROUPS 段 | MESSAGES 段 | CRC32
+ * 每段由若干 [1, 对象] 组成，以 0 结尾（并发写入期间 Map 的 size() 不可靠，所以不预先写数量）。
+ * 先写临时文件再原子改名，半截快照永远不会被加载。
+ */
+@Component
+public class SnapshotStore {
+
+    private static final ChatLog LOG = ChatLog.of("persistence");
+
+    private static final int MAGIC = 0x43485350; // "CHSP"
+    private static final int VERSION = 1;
+    private static final String PREFIX = "snapshot-";
+    private static final String SUFFIX = ".bin";
+
+    @Value("${chat.snapshot.dir:data/snapshot}")
+    private String dir;
+
+    /**
+     * 把 DataCenter 当前内容写成快照
+     *
+     * @param lsn 快照对应的日志位置：LSN 不超过它的修改一定已包含在快照中
+     * @return 快照文件大小（字节）
+     */
+    public long write(long lsn) throws IOException {
+        Path snapshotDir = Paths.get(dir);
+        Files.createDirectories(snapshotDir);
+        Path target = snapshotDir.resolve(fileName(lsn));
+        Path tmp = snapshotDir.resolve(fileName(lsn) + ".tmp");
+
+        try (FileOutputStream file = new FileOutputStream(tmp.toFile())) {
+            CRC32 crc = new CRC32();
+            DataOutputStream out = new DataOutputStream(
+                    new CheckedOutputStream(new BufferedOutputStream(file, 64 * 1024), crc));
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(lsn);
+            out.writeLong(System.currentTimeMillis());
+
+            for (User user : DataCenter.USERS.values()) {
+                out.writeBoolean(true);
+                BinaryCodec.writeUser(out, user);
+            }
+            out.writeBoolean(false);
+
+            for (Group group : DataCenter.GROUPS.values()) {
+                out.writeBoolean(true);
+                BinaryCodec.writeGroup(out, group);
+            }
+            out.writeBoolean(false);
+
+            // 冷层中的消息同样写入快照
+            DataCenter.MSG_HISTORY.forEach(msg -> {
+                out.writeBoolean(true);
+                BinaryCodec.writeMessage(out, msg);
+            });
+            out.writeBoolean(false);
+
+            out.flush();
+            long checksum = crc.getValue();
+            out.writeLong(checksum);
+            out.flush();
+            file.getFD().sync();
+        }
+
+        Files.move(tmp, target, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+        return Files.size(target);
+    }
+
+    /**
+     * 加载最新的可用快照到 DataCenter
+     * 最新的快照损坏时依次尝试更早的快照
+     *
+     * @return 加载成功的快照 LSN；没有可用快照时返回 0
+     */
+    public long loadLatest() throws IOException {
+        List<Path> snapshots = listSnapshots();
+        for (int i = snapshots.size() - 1; i >= 0; i--) {
+            Path path = snapshots.get(i);
+            try {
+                return load(path);
+            } catch (IOException e) {
+                LOG.error("快照损坏，尝试更早的快照", e, "snapshot", path.getFileName());
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * 只保留最新的 keep 个快照
+     *
+     * @return 仍保留的最早快照的 LSN，在它之前的日志段可以删除；没有快照时返回 0
+     */
+    public long prune(int keep) throws IOException {
+        List<Path> snapshots = listSnapshots();
+        for (int i = 0; i < snapshots.size() - keep; i++) {
+            Files.deleteIfExists(snapshots.get(i));
+        }
+        int oldest = Math.max(0, snapshots.size() - keep);
+        return oldest < snapshots.size() ? lsnOf(snapshots.get(oldest)) : 0;
+    }
+
+    private long load(Path path) throws IOException {
+        List<User> users = new ArrayList<>();
+        List<Group> groups = new ArrayList<>();
+        List<Message> messages = new ArrayList<>();
+        long lsn;
+
+        try (InputStream file = Files.newInputStream(path)) {
+            CRC32 crc = new CRC32();
+            DataInputStream in = new DataInputStream(
+                    new CheckedInputStream(new BufferedInputStream(file, 64 * 1024), crc));
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                throw new IOException("不是快照文件或版本不匹配");
+            }
+            lsn = in.readLong();
+            in.readLong(); // 生成时间，仅供排查
+
+            while (in.readBoolean()) {
+                users.add(BinaryCodec.readUser(in));
+            }
+            while (in.readBoolean()) {
+                groups.add(BinaryCodec.readGroup(in));
+            }
+            while (in.readBoolean()) {
+                messages.add(BinaryCodec.readMessage(in));
+            }
+
+            long expected = crc.getValue();
+            if (in.readLong() != expected) {
+                throw new IOException("CRC 校验失败");
+            }
+        }
+
+        // 校验通过后才写入 DataCenter
+        users.forEach(user -> DataCenter.USERS.put(user.getUserId(), user));
+        for (Group group : groups) {
+            DataCenter.USER_GROUPS.groupPut(group, DataCenter.GROUPS.put(group.getGroupId(), group));
+        }
+        for (Message msg : messages) {
+            DataCenter.MSG_HISTORY.put(IdGenerator.parse(msg.getMsgId()), msg);
+            DataCenter.CONVERSATIONS.add(msg);
+        }
+        return lsn;
+    }
+
+    private List<Path> listSnapshots() throws IOException {
+        Path snapshotDir = Paths.get(dir);
+        if (!Files.isDirectory(snapshotDir)) {
+            return List.of();
+        }
+        try (Stream<Path> files = Files.list(snapshotDir)) {
+            return files.filter(p -> {
+                        String name = p.getFileName().toString();
+                        return name.startsWith(PREFIX) && name.endsWith(SUFFIX);
+                    })
+                    .sorted(Comparator.comparingLong(SnapshotStore::lsnOf))
+                    .toList();
+        }
+    }
+
+    private static long lsnOf(Path path) {
+        String name = path.getFileName().toString();
+        return Long.parseLong(name.substring(PREFIX.length(), name.length() - SUFFIX.length()));
+    }
+
+    private static String fileName(long lsn) {
+        return PREFIX + String.format("%020d", lsn) + SUFFIX;
+    }
+}
@@ -0,0 +1,455 @@
+package com.example.chat.repository.persistence;
+
+import com.example.chat.logging.ChatLog;
+import com.example.chat.repository.DataCenter;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.stereotype.Component;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+import java.util.stream.Stream;
+
+/**
+ * 分段追加日志 (Write-Ahead Log)
+ *
+ * 1. 所有对 DataCenter 的修改都以一行 JSON 追加到当前段文件，段文件按首条记录的 LSN 命名。
+ * 2. 启动时先加载最新快照，再按顺序回放快照之后的日志，恢复 USERS / GROUPS / MSG_HISTORY。
+ * 3. 持久化级别见 {@link Durability}；BATCHED 模式下调用方只做编码和入队，
+ *    由后台提交线程按批写入并 fsync（组提交），发送路径不等待磁盘。
+ * 4. JSON 编码在全局锁之外完成，全局锁内只分配 LSN 和入队（或写入）；任何持久化级别下，
+ *    同一个 key 的编码与 LSN 分配都由分段锁串行，保证 LSN 更大的记录带的是更新的状态。
+ * 5. 宕机可能在最后一个段末尾留下半行，启动时截掉，否则新记录会接在半行后面一起被当作损坏跳过。
+ * 6. 运行中写入或 fsync 失败（如磁盘已满）时把段截回写入前的长度，整批放回待提交队列队首，
+ *    下一轮按原顺序重试；已分配 LSN 的记录不会被丢弃，段中间也不会留下半行。
+ */
+@Component
+@DependsOn("messageStoreConfig")
+public class WriteAheadLog {
+
+    private static final ChatLog LOG = ChatLog.of("persistence");
+
+    private static final String SEGMENT_PREFIX = "wal-";
+    private static final String SEGMENT_SUFFIX = ".log";
+
+    @Value("${chat.wal.enabled:true}")
+    private boolean enabled;
+
+    @Value("${chat.wal.dir:data/wal}")
+    private String dir;
+
+    @Value("${chat.wal.durability:BATCHED}")
+    private Durability durability;
+
+    @Value("${chat.wal.batch-interval-ms:5}")
+    private long batchIntervalMs;
+
+    @Value("${chat.wal.segment-size-mb:64}")
+    private long segmentSizeMb;
+
+    @Autowired
+    private SnapshotStore snapshotStore;
+
+    private final LogCodec codec = new LogCodec();
+    private final RecoveryStats recoveryStats = new RecoveryStats();
+
+    // 按 key 分段：同一个 key 的编码和 LSN 分配不能交错，否则旧状态可能拿到更大的 LSN
+    private static final int KEY_STRIPES = 64;
+    private final Object[] keyLocks = new Object[KEY_STRIPES];
+
+    // 保护 LSN 分配与待提交队列，保证文件中的顺序与 LSN 一致
+    private final Object lock = new Object();
+    private long lastLsn;
+    private List<Entry> pending = new ArrayList<>();
+
+    // 保护段文件的写入与切换
+    private final Object channelLock = new Object();
+    private Path walDir;
+    private FileChannel channel;
+    private long segmentBytes;
+    private long lastWrittenLsn;
+    // 上次失败后没能截回，段末尾可能有半行，下次写入前先截掉
+    private boolean tornTail;
+
+    private volatile boolean running;
+    private Thread committer;
+
+    public WriteAheadLog() {
+        for (int i = 0; i < KEY_STRIPES; i++) {
+            keyLocks[i] = new Object();
+        }
+    }
+
+    @PostConstruct
+    public void init() throws IOException {
+        if (!enabled) {
+            LOG.warn("WAL 已关闭，数据仅保存在内存中");
+            return;
+        }
+        walDir = Paths.get(dir);
+        Files.createDirectories(walDir);
+
+        long start = System.currentTimeMillis();
+        long snapshotLsn = snapshotStore.loadLatest();
+        long loaded = System.currentTimeMillis();
+        List<Path> segments = listSegments();
+        if (!segments.isEmpty()) {
+            repairTail(segments.get(segments.size() - 1));
+        }
+        long count = replay(snapshotLsn);
+        long end = System.currentTimeMillis();
+        lastLsn = Math.max(lastLsn, snapshotLsn);
+
+        recoveryStats.setSnapshotLsn(snapshotLsn);
+        recoveryStats.setSnapshotLoadMillis(loaded - start);
+        recoveryStats.setReplayedRecords(count);
+        recoveryStats.setReplayMillis(end - loaded);
+        recoveryStats.setTotalMillis(end - start);
+        LOG.info("数据恢复完成", "snapshotLsn", snapshotLsn, "snapshotLoadMs", loaded - start,
+                "replayedRecords", count, "replayMs", end - loaded, "totalMs", end - start,
+                "users", DataCenter.USERS.size(), "groups", DataCenter.GROUPS.size(),
+                "messages", DataCenter.MSG_HISTORY.size());
+
+        lastWrittenLsn = lastLsn;
+        openSegment(lastLsn + 1);
+
+        if (durability == Durability.BATCHED) {
+            running = true;
+            committer = new Thread(this::commitLoop, "WAL-Committer");
+            committer.setDaemon(true);
+            committer.start();
+        }
+    }
+
+    /**
+     * 追加一条记录
+     *
+     * @param op   记录类型
+     * @param key  用户名 / 群ID / 消息ID
+     * @param data PUT 时为对象当前的完整状态，DEL 时传 null
+     */
+    public void append(LogOp op, String key, Object data) {
+        if (!enabled) {
+            return;
+        }
+        try {
+            synchronized (keyLocks[Math.floorMod(key.hashCode(), KEY_STRIPES)]) {
+                byte[] body = codec.encodeBody(op, key, data);
+                if (durability == Durability.BATCHED) {
+                    synchronized (lock) {
+                        long lsn = ++lastLsn;
+                        pending.add(new Entry(lsn, LogCodec.line(lsn, body)));
+                    }
+                    return;
+                }
+                // 与 BATCHED 共用待提交队列：之前写入失败留下的记录排在前面，一起按 LSN 顺序写出
+                synchronized (channelLock) {
+                    synchronized (lock) {
+                        long lsn = ++lastLsn;
+                        pending.add(new Entry(lsn, LogCodec.line(lsn, body)));
+                    }
+                    commitBatch(durability == Durability.SYNC);
+                }
+            }
+        } catch (IOException e) {
+            LOG.error("写入 WAL 失败", e, "op", op, "key", key);
+        }
+    }
+
+    /**
+     * 把所有已追加的记录写入磁盘并 fsync
+     */
+    public void flush() throws IOException {
+        if (!enabled) {
+            return;
+        }
+        synchronized (channelLock) {
+            if (!commitBatch(true)) {
+                channel.force(false);
+            }
+        }
+    }
+
+    /**
+     * 检查点：把已追加的记录全部落盘并切换到新段
+     * 返回的 LSN 之前（含）的所有修改都已经反映在内存中，快照以它为起点
+     */
+    public long checkpoint() throws IOException {
+        synchronized (channelLock) {
+            if (!commitBatch(true)) {
+                channel.force(false);
+            }
+            long lsn = lastWrittenLsn;
+            if (segmentBytes > 0) {
+                channel.close();
+                openSegment(lsn + 1);
+            }
+            return lsn;
+        }
+    }
+
+    /**
+     * 删除所有记录都不超过 lsn 的旧段（已被快照覆盖），当前段永远保留
+     */
+    public void truncateBefore(long lsn) throws IOException {
+        synchronized (channelLock) {
+            List<Path> segments = listSegments();
+            for (int i = 0; i < segments.size() - 1; i++) {
+                if (firstLsnOf(segments.get(i + 1)) <= lsn + 1) {
+                    Files.deleteIfExists(segments.get(i));
+                }
+            }
+        }
+    }
+
+    /**
+     * 最近一次分配的 LSN
+     */
+    public long getLastLsn() {
+        synchronized (lock) {
+            return lastLsn;
+        }
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public RecoveryStats getRecoveryStats() {
+        return recoveryStats;
+    }
+
+    public Durability getDurability() {
+        return durability;
+    }
+
+    @PreDestroy
+    public void close() throws IOException {
+        if (!enabled) {
+            return;
+        }
+        running = false;
+        if (committer != null) {
+            LockSupport.unpark(committer);
+            try {
+                committer.join(TimeUnit.SECONDS.toMillis(5));
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+        synchronized (channelLock) {
+            flush();
+            channel.close();
+        }
+    }
+
+    // ================= 内部实现 =================
+
+    private void commitLoop() {
+        long intervalNanos = TimeUnit.MILLISECONDS.toNanos(batchIntervalMs);
+        while (running) {
+            LockSupport.parkNanos(intervalNanos);
+            try {
+                synchronized (channelLock) {
+                    commitBatch(true);
+                }
+            } catch (IOException e) {
+                LOG.error("WAL 批量提交失败", e);
+            }
+        }
+    }
+
+    /**
+     * 取走当前批次并写入段文件，调用方必须持有 channelLock
+     * 失败时整批放回队首，由下一次提交按原顺序重试
+     *
+     * @param force 写入后是否 fsync
+     * @return 本次是否写入了数据
+     */
+    private boolean commitBatch(boolean force) throws IOException {
+        List<Entry> batch;
+        synchronized (lock) {
+            if (pending.isEmpty()) {
+                return false;
+            }
+            batch = pending;
+            pending = new ArrayList<>(batch.size());
+        }
+        try {
+            write(batch, force);
+        } catch (IOException e) {
+            synchronized (lock) {
+                batch.addAll(pending);
+                pending = batch;
+            }
+            throw e;
+        }
+        rollIfFull();
+        return true;
+    }
+
+    /**
+     * 写入（并 fsync）一批记录；失败时把段截回写入前的长度再抛出。调用方必须持有 channelLock
+     */
+    private void write(List<Entry> entries, boolean force) throws IOException {
+        if (tornTail) {
+            channel.truncate(segmentBytes);
+            tornTail = false;
+        }
+        ByteBuffer[] buffers = new ByteBuffer[entries.size()];
+        long total = 0;
+        for (int i = 0; i < buffers.length; i++) {
+            buffers[i] = ByteBuffer.wrap(entries.get(i).line);
+            total += entries.get(i).line.length;
+        }
+        try {
+            long written = 0;
+            while (written < total) {
+                written += channel.write(buffers);
+            }
+            if (force) {
+                channel.force(false);
+            }
+        } catch (IOException e) {
+            try {
+                channel.truncate(segmentBytes);
+            } catch (IOException truncateFailed) {
+                tornTail = true;
+                e.addSuppressed(truncateFailed);
+            }
+            throw e;
+        }
+        segmentBytes += total;
+        lastWrittenLsn = entries.get(entries.size() - 1).lsn;
+    }
+
+    /**
+     * 当前段写满时切换到新段；新段打开成功后才关闭旧段。调用方必须持有 channelLock
+     */
+    private void rollIfFull() throws IOException {
+        if (segmentBytes < segmentSizeMb * 1024 * 1024) {
+            return;
+        }
+        FileChannel full = channel;
+        full.force(false);
+        openSegment(lastWrittenLsn + 1);
+        full.close();
+    }
+
+    private void openSegment(long firstLsn) throws IOException {
+        Path path = walDir.resolve(segmentName(firstLsn));
+        channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.APPEND);
+        segmentBytes = channel.size();
+    }
+
+    /**
+     * 截掉段末尾不完整的一行（宕机时写了一半）
+     */
+    private void repairTail(Path segment) throws IOException {
+        try (FileChannel ch = FileChannel.open(segment, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            long size = ch.size();
+            long end = size;
+            ByteBuffer buf = ByteBuffer.allocate(8192);
+            // 从文件末尾向前找最后一个换行符
+            while (end > 0) {
+                long from = Math.max(0, end - buf.capacity());
+                buf.clear().limit((int) (end - from));
+                while (buf.hasRemaining()) {
+                    if (ch.read(buf, from + buf.position()) < 0) {
+                        break;
+                    }
+                }
+                int i = buf.position() - 1;
+                while (i >= 0 && buf.get(i) != '\n') {
+                    i--;
+                }
+                if (i >= 0) {
+                    end = from + i + 1;
+                    break;
+                }
+                end = from;
+            }
+            if (end < size) {
+                ch.truncate(end);
+                ch.force(false);
+                LOG.warn("截断 WAL 末尾不完整的记录", "segment", segment.getFileName(), "bytes", size - end);
+            }
+        }
+    }
+
+    /**
+     * 回放 LSN 大于 fromLsn 的记录
+     */
+    private long replay(long fromLsn) throws IOException {
+        long count = 0;
+        List<Path> segments = listSegments();
+        for (int i = 0; i < segments.size(); i++) {
+            // 整段都已被快照覆盖，直接跳过
+            if (i + 1 < segments.size() && firstLsnOf(segments.get(i + 1)) <= fromLsn + 1) {
+                continue;
+            }
+            Path segment = segments.get(i);
+            try (BufferedReader reader = Files.newBufferedReader(segment, StandardCharsets.UTF_8)) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    if (line.isBlank()) {
+                        continue;
+                    }
+                    LogRecord record;
+                    try {
+                        record = codec.decode(line);
+                    } catch (Exception e) {
+                        // 一般是宕机时写了半行，跳过即可
+                        LOG.warn("跳过损坏的 WAL 记录", "segment", segment.getFileName());
+                        continue;
+                    }
+                    if (record.getLsn() <= fromLsn) {
+                        continue;
+                    }
+                    LogApplier.apply(record);
+                    lastLsn = Math.max(lastLsn, record.getLsn());
+                    count++;
+                }
+            }
+        }
+        return count;
+    }
+
+    private List<Path> listSegments() throws IOException {
+        try (Stream<Path> files = Files.list(walDir)) {
+            return files.filter(p -> {
+                        String name = p.getFileName().toString();
+                        return name.startsWith(SEGMENT_PREFIX) && name.endsWith(SEGMENT_SUFFIX);
+                    })
+                    .sorted()
+                    .toList();
+        }
+    }
+
+    private static long firstLsnOf(Path segment) {
+        String name = segment.getFileName().toString();
+        return Long.parseLong(name.substring(SEGMENT_PREFIX.length(), name.length() - SEGMENT_SUFFIX.length()));
+    }
+
+    private static String segmentName(long firstLsn) {
+        return SEGMENT_PREFIX + String.format("%020d", firstLsn) + SEGMENT_SUFFIX;
+    }
+
+    private record Entry(long lsn, byte[] line) {
+    }
+}
@@ -2,8 +2,12 @@ package com.example.chat.service;
 
 import com.example.chat.common.model.Message;
 
+import java.util.function.Function;
+
 public interface MessageService {
     // 修改这个方法的签名，多加一个 atUsers 参数
     Message processAndSaveMsg(String fromUser, String toUser, String content, boolean isGroup, java.util.List<String> atUsers);
     boolean recallMessage(String msgId, String operator);
+    // 修改消息的已读/反应状态并持久化；同一条消息的修改串行执行。mutation 返回 null 表示未修改，不写日志；消息不存在时返回 null
+    <R> R updateMessage(String msgId, Function<Message, R> mutation);
 }
\ No newline at end of file
@@ -5,9 +5,13 @@ import com.example.chat.common.model.Group;
 import org.springframework.web.socket.WebSocketSession;
 
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
 
 public interface UserService {
-    User login(String userId, String password, WebSocketSession session);
+    // 校验密码，用户不存在时自动注册；哈希在独立线程池上进行，密码错误时以 IllegalArgumentException 结束
+    CompletableFuture<User> authenticate(String userId, String password);
+    // 密码已校验（或握手时已出示有效的续传令牌）后上线：多端顶号并加入在线列表
+    User online(String userId, WebSocketSession session);
     void logout(String userId);
 
     Group createGroup(String groupName, String owner, List<String> initialMembers);
@@ -2,22 +2,34 @@ package com.example.chat.service.impl;
 
 import com.example.chat.common.model.Message;
 import com.example.chat.repository.DataCenter;
+import com.example.chat.repository.IdGenerator;
+import com.example.chat.repository.persistence.LogOp;
+import com.example.chat.repository.persistence.WriteAheadLog;
 import com.example.chat.service.MessageService;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
 import java.util.List;
+import java.util.function.Function;
 
 @Service
 public class MessageServiceImpl implements MessageService {
     
     // 撤回时间限制：2分钟（毫秒）
     private static final long RECALL_TIME_LIMIT = 2 * 60 * 1000;
+
+    @Autowired
+    private WriteAheadLog writeAheadLog;
+
+    @Autowired
+    private IdGenerator idGenerator;
     
     @Override
     public Message processAndSaveMsg(String fromUser, String toUser, String content, 
                                    boolean isGroup, List<String> atUsers) {
-        // 生成唯一ID
-        String msgId = java.util.UUID.randomUUID().toString();
+        // 生成唯一ID（按时间递增），消息时间取自 ID，保证时间顺序与 ID 顺序一致
+        long id = idGenerator.nextId();
+        String msgId = Long.toString(id);
 
         Message msg = Message.builder()
                 .msgId(msgId)
@@ -25,19 +37,22 @@ public class MessageServiceImpl implements MessageService {
                 .toUser(toUser)
                 .content(content)
                 .isGroup(isGroup)
-                .timestamp(System.currentTimeMillis())
+                .timestamp(IdGenerator.timestampOf(id))
                 .atUsers(atUsers)
                 .build();
 
-        // 存入历史记录 (DataCenter)
-        DataCenter.MSG_HISTORY.put(msgId, msg);
+        // 存入历史记录 (DataCenter)，同步更新会话索引
+        DataCenter.MSG_HISTORY.put(id, msg);
+        DataCenter.CONVERSATIONS.add(msg);
+        writeAheadLog.append(LogOp.MSG_PUT, msgId, msg);
 
         return msg;
     }
 
     @Override
     public boolean recallMessage(String msgId, String operator) {
-        Message message = DataCenter.MSG_HISTORY.get(msgId);
+        long id = IdGenerator.parse(msgId);
+        Message message = DataCenter.MSG_HISTORY.get(id);
         
         if (message == null) {
             return false; // 消息不存在
@@ -57,10 +72,24 @@ public class MessageServiceImpl implements MessageService {
         }
         
         // 从历史记录中移除消息（实现"删除"效果）
-        DataCenter.MSG_HISTORY.remove(msgId);
+        DataCenter.MSG_HISTORY.remove(id);
+        DataCenter.CONVERSATIONS.remove(message);
+        writeAheadLog.append(LogOp.MSG_DEL, msgId, null);
         
         return true;
     }
+
+    @Override
+    public <R> R updateMessage(String msgId, Function<Message, R> mutation) {
+        // 在消息的分段锁内修改并写日志，冷层消息由 MessageStore 写回；已撤回的消息不会被放回
+        return DataCenter.MSG_HISTORY.update(IdGenerator.parse(msgId), message -> {
+            R result = mutation.apply(message);
+            if (result != null) {
+                writeAheadLog.append(LogOp.MSG_PUT, msgId, message);
+            }
+            return result;
+        });
+    }
     
     /**
      * 检查操作者是否有权限撤回消息
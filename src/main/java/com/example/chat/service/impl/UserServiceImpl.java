@@ -1,59 +1,103 @@
 package com.example.chat.service.impl;
 
+import com.example.chat.auth.PasswordHasher;
+import com.example.chat.auth.ResumeTokens;
 import com.example.chat.common.model.Group;
 import com.example.chat.common.model.User;
+import com.example.chat.common.packet.WsResponse;
 import com.example.chat.repository.DataCenter;
+import com.example.chat.repository.IdGenerator;
+import com.example.chat.repository.persistence.LogOp;
+import com.example.chat.repository.persistence.WriteAheadLog;
 import com.example.chat.service.UserService;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 import org.springframework.web.socket.TextMessage;
 import org.springframework.web.socket.WebSocketSession;
 
 import java.util.List;
-import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 
 @Service
 public class UserServiceImpl implements UserService {
-    @Override
-    public User login(String userId, String password, WebSocketSession session) {
-        User user = DataCenter.USERS.get(userId);
 
-        // ===== 1. 注册 or 校验密码 =====
-        if (user == null) {
-            user = new User(userId);
-            user.setPassword(password);
+    @Autowired
+    private WriteAheadLog writeAheadLog;
 
-            // 钦定管理员
-            if ("admin".equals(userId)) {
-                user.setRole("ADMIN");
-            }
+    @Autowired
+    private IdGenerator idGenerator;
 
-            DataCenter.USERS.put(userId, user);
-        } else {
-            if (!user.getPassword().equals(password)) {
+    @Autowired
+    private ResumeTokens resumeTokens;
+
+    @Autowired
+    private PasswordHasher passwordHasher;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Override
+    public CompletableFuture<User> authenticate(String userId, String password) {
+        User existing = DataCenter.USERS.get(userId);
+
+        // ===== 1. 注册 =====
+        if (existing == null) {
+            return passwordHasher.encode(password).thenApply(hash -> {
+                User user = new User(userId);
+                user.setPassword(hash);
+
+                // 钦定管理员
+                if ("admin".equals(userId)) {
+                    user.setRole("ADMIN");
+                }
+
+                // 哈希期间可能有同名用户抢先注册
+                if (DataCenter.USERS.putIfAbsent(userId, user) != null) {
+                    throw new IllegalArgumentException("用户名已被注册，请重新登录");
+                }
+                writeAheadLog.append(LogOp.USER_PUT, userId, user);
+                return user;
+            });
+        }
+
+        // ===== 2. 校验密码，明文或低 cost 的旧哈希顺带升级 =====
+        return passwordHasher.verify(password, existing.getPassword()).thenApply(result -> {
+            if (!result.matches()) {
                 throw new IllegalArgumentException("密码错误");
             }
+            if (result.upgraded() != null) {
+                existing.setPassword(result.upgraded());
+                writeAheadLog.append(LogOp.USER_PUT, userId, existing);
+            }
+            return existing;
+        });
+    }
+
+    @Override
+    public User online(String userId, WebSocketSession session) {
+        User user = DataCenter.USERS.get(userId);
+        if (user == null) {
+            throw new IllegalArgumentException("用户不存在");
         }
 
-        // ===== 2. 多端顶号 =====
+        // ===== 多端顶号 =====
         WebSocketSession oldSession = DataCenter.ONLINE_USERS.get(userId);
         if (oldSession != null && oldSession.isOpen()) {
-            try {
-                oldSession.sendMessage(
-                        new TextMessage("账号在别处登录，你已被下线")
-                );
-                oldSession.close();
-            } catch (Exception ignored) {}
+            noticeAndClose(oldSession, "您的账号在另一地点登录，您已被强制下线");
         }
 
-        // ===== 3. 记录新会话 =====
+        // ===== 记录新会话，加入所在群的在线成员 =====
         DataCenter.ONLINE_USERS.put(userId, session);
-
+        DataCenter.ONLINE_MEMBERS.userOnline(userId);
         return user;
     }
+
     @Override
     public void logout(String userId) {
-        if (userId != null) {
-            DataCenter.ONLINE_USERS.remove(userId);
+        if (userId != null && DataCenter.ONLINE_USERS.remove(userId) != null) {
+            DataCenter.ONLINE_MEMBERS.userOffline(userId);
         }
     }
 
@@ -66,29 +110,31 @@ public class UserServiceImpl implements UserService {
             throw new IllegalArgumentException("群主不能为空");
         }
 
-        // 生成唯一群ID（UUID）
-        String groupId = java.util.UUID.randomUUID().toString();
+        // 生成唯一群ID（按时间递增）
+        String groupId = Long.toString(idGenerator.nextId());
 
         Group group = new Group();
         group.setGroupId(groupId);
         group.setGroupName(groupName);
         group.setOwner(owner);
 
-        // 初始化成员列表
-        List<String> members = new CopyOnWriteArrayList<>();
+        // 初始化成员集合（集合本身去重）
+        Set<String> members = group.getMembers();
         members.add(owner); // 群主必须加入成员列表
         if (initialMembers != null) {
             for (String member : initialMembers) {
-                // 过滤空值、重复的用户名（简单判断）
-                if (member != null && !member.isEmpty() && !members.contains(member)) {
+                // 过滤空值
+                if (member != null && !member.isEmpty()) {
                     members.add(member);
                 }
             }
         }
-        group.setMembers(members);
 
         // 保存到内存群组集合
         DataCenter.GROUPS.put(groupId, group);
+        DataCenter.USER_GROUPS.groupPut(group, null);
+        DataCenter.ONLINE_MEMBERS.groupAdded(group);
+        writeAheadLog.append(LogOp.GROUP_PUT, groupId, group);
 
         return group;
     }
@@ -107,6 +153,7 @@ public class UserServiceImpl implements UserService {
         }
 
         group.setGroupName(newGroupName.trim());
+        writeAheadLog.append(LogOp.GROUP_PUT, groupId, group);
         return true;
     }
     @Override
@@ -125,6 +172,7 @@ public class UserServiceImpl implements UserService {
             return false;
         }
         group.getAdmins().add(targetUser);
+        writeAheadLog.append(LogOp.GROUP_PUT, groupId, group);
         return true;
     }
     @Override
@@ -140,6 +188,7 @@ public class UserServiceImpl implements UserService {
             return false;
         }
         group.getAdmins().remove(targetUser);
+        writeAheadLog.append(LogOp.GROUP_PUT, groupId, group);
         return true;
     }
     @Override
@@ -156,6 +205,9 @@ public class UserServiceImpl implements UserService {
             return false;
         }
         DataCenter.GROUPS.remove(groupId);
+        DataCenter.USER_GROUPS.groupRemoved(group);
+        DataCenter.ONLINE_MEMBERS.groupRemoved(groupId);
+        writeAheadLog.append(LogOp.GROUP_DEL, groupId, null);
         return true;
     }
 
@@ -164,6 +216,7 @@ public class UserServiceImpl implements UserService {
         User user = DataCenter.USERS.get(userId);
         if (user != null) {
             user.setAvatar(newAvatar);
+            writeAheadLog.append(LogOp.USER_PUT, userId, user);
         } else {
             throw new IllegalArgumentException("用户不存在");
         }
@@ -173,6 +226,7 @@ public class UserServiceImpl implements UserService {
         User user = DataCenter.USERS.get(userId);
         if (user != null) {
             user.setUsername(newUsername);
+            writeAheadLog.append(LogOp.USER_PUT, userId, user);
         } else {
             throw new IllegalArgumentException("用户不存在");
         }
@@ -195,6 +249,7 @@ public class UserServiceImpl implements UserService {
         }
 
         to.getFriendRequests().add(fromUser);
+        writeAheadLog.append(LogOp.USER_PUT, toUser, to);
         return true;
     }
     @Override
@@ -216,6 +271,8 @@ public class UserServiceImpl implements UserService {
 
         // 移除申请
         to.getFriendRequests().remove(fromUser);
+        writeAheadLog.append(LogOp.USER_PUT, toUser, to);
+        writeAheadLog.append(LogOp.USER_PUT, fromUser, from);
         return true;
     }
     @Override
@@ -225,7 +282,11 @@ public class UserServiceImpl implements UserService {
         User to = DataCenter.USERS.get(toUser);
         if (to == null) return false;
 
-        return to.getFriendRequests().remove(fromUser);
+        if (!to.getFriendRequests().remove(fromUser)) {
+            return false;
+        }
+        writeAheadLog.append(LogOp.USER_PUT, toUser, to);
+        return true;
     }
     @Override
 
@@ -235,15 +296,17 @@ public class UserServiceImpl implements UserService {
             throw new SecurityException("无权限操作");
         }
 
+        // 被踢的用户不能凭续传令牌直接重连
+        resumeTokens.revoke(targetUserId);
+
         WebSocketSession session = DataCenter.ONLINE_USERS.get(targetUserId);
         if (session == null) return false;
 
-        try {
-            session.sendMessage(new TextMessage("你已被管理员踢下线"));
-            session.close();
-        } catch (Exception ignored) {}
+        noticeAndClose(session, "你已被管理员踢下线");
 
-        DataCenter.ONLINE_USERS.remove(targetUserId);
+        if (DataCenter.ONLINE_USERS.remove(targetUserId, session)) {
+            DataCenter.ONLINE_MEMBERS.userOffline(targetUserId);
+        }
         return true;
     }
     @Override
@@ -257,8 +320,24 @@ public class UserServiceImpl implements UserService {
         if (target == null) return false;
 
         target.setMuteEndTime(System.currentTimeMillis() + durationMillis);
+        writeAheadLog.append(LogOp.USER_PUT, targetUserId, target);
         return true;
     }
 
-
-}
\ No newline at end of file
+    /**
+     * 给被顶号 / 被踢的连接发一条 SYS_NOTICE，然后关闭
+     * 通知发不出去也必须关闭，否则连接会带着 username 属性继续以该用户身份收发消息
+     */
+    private void noticeAndClose(WebSocketSession session, String msg) {
+        try {
+            WsResponse notice = WsResponse.builder().type("SYS_NOTICE").code(400).msg(msg).build();
+            session.sendMessage(new TextMessage(objectMapper.writeValueAsString(notice)));
+        } catch (Exception ignored) {
+        } finally {
+            try {
+                session.close();
+            } catch (Exception ignored) {
+            }
+        }
+    }
+}
@@ -3,7 +3,11 @@ package com.example.chat;
 import org.junit.jupiter.api.Test;
 import org.springframework.boot.test.context.SpringBootTest;
 
-@SpringBootTest
+@SpringBootTest(properties = {
+        "chat.wal.dir=target/test-data/wal",
+        "chat.snapshot.dir=target/test-data/snapshot",
+        "chat.store.cold-dir=target/test-data/cold"
+})
 class ChatApplicationTests {
 
     @Test
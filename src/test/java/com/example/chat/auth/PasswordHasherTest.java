@@ -0,0 +1,62 @@
+package com.example.chat.auth;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PasswordHasherTest {
+
+    private PasswordHasher hasher;
+
+    private PasswordHasher hasher(int cost) {
+        PasswordHasher hasher = new PasswordHasher();
+        ReflectionTestUtils.setField(hasher, "cost", cost);
+        ReflectionTestUtils.setField(hasher, "threads", 1);
+        ReflectionTestUtils.setField(hasher, "queueCapacity", 16);
+        ReflectionTestUtils.setField(hasher, "maxWaitMs", 5000L);
+        hasher.init();
+        return hasher;
+    }
+
+    @AfterEach
+    void shutdown() {
+        hasher.shutdown();
+    }
+
+    @Test
+    void encodedPasswordVerifiesWithoutUpgrade() {
+        hasher = hasher(4);
+        String hash = hasher.encode("pw").join();
+        assertTrue(hash.startsWith("$2a$04$"));
+
+        PasswordHasher.Result ok = hasher.verify("pw", hash).join();
+        assertTrue(ok.matches());
+        assertNull(ok.upgraded());
+        assertFalse(hasher.verify("wrong", hash).join().matches());
+        assertEquals(3, hasher.getHashTime().getCount());
+        assertEquals(3, hasher.getQueueWait().getCount());
+    }
+
+    @Test
+    void plaintextAndWeakerHashesAreUpgraded() {
+        hasher = hasher(5);
+        PasswordHasher.Result legacy = hasher.verify("pw", "pw").join();
+        assertTrue(legacy.matches());
+        assertTrue(legacy.upgraded().startsWith("$2a$05$"));
+        assertNull(hasher.verify("wrong", "pw").join().upgraded());
+
+        PasswordHasher weak = hasher(4);
+        String oldHash = weak.encode("pw").join();
+        weak.shutdown();
+        PasswordHasher.Result upgraded = hasher.verify("pw", oldHash).join();
+        assertTrue(upgraded.matches());
+        assertNotNull(upgraded.upgraded());
+        assertTrue(hasher.verify("pw", upgraded.upgraded()).join().matches());
+    }
+}
@@ -0,0 +1,51 @@
+package com.example.chat.auth;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class ResumeTokensTest {
+
+    private static ResumeTokens tokens(String secret, long ttlSec) {
+        ResumeTokens tokens = new ResumeTokens();
+        ReflectionTestUtils.setField(tokens, "secret", secret);
+        ReflectionTestUtils.setField(tokens, "ttlSec", ttlSec);
+        tokens.init();
+        return tokens;
+    }
+
+    @Test
+    void tokenVerifiesUntilExpiry() {
+        ResumeTokens tokens = tokens("s3cret", 600);
+        long now = 1_700_000_000_000L;
+        String token = tokens.issue("张三", now);
+
+        assertEquals("张三", tokens.parse(token, now));
+        assertEquals("张三", tokens.parse(token, now + 599_999));
+        assertNull(tokens.parse(token, now + 600_000));
+    }
+
+    @Test
+    void tamperedOrForeignTokensAreRejected() {
+        ResumeTokens tokens = tokens("s3cret", 600);
+        long now = System.currentTimeMillis();
+        String token = tokens.issue("bob", now);
+
+        // 改用户名、改签发时刻、换密钥签发都不能通过
+        String alice = tokens.issue("alice", now);
+        assertNull(tokens.parse(alice.substring(0, alice.indexOf('.')) + token.substring(token.indexOf('.')), now));
+        String[] parts = token.split("\\.");
+        assertNull(tokens.parse(parts[0] + '.' + Long.toString(now + 60_000, 36) + '.' + parts[2], now));
+        assertNull(tokens.parse(tokens("other", 600).issue("bob", now), now));
+        assertNull(tokens.parse("bob", now));
+        assertNull(tokens.parse("a.b.!!", now));
+
+        assertEquals("bob", tokens.verify(token));
+        tokens.revoke("bob");
+        assertNull(tokens.verify(token));
+        assertEquals(1, tokens.getAccepted());
+        assertEquals(1, tokens.getRejected());
+    }
+}
@@ -0,0 +1,89 @@
+package com.example.chat.handler;
+
+import com.example.chat.common.packet.WsRequest;
+import com.example.chat.common.packet.params.ChatMsgParams;
+import com.example.chat.common.packet.params.LoginParams;
+import com.example.chat.handler.codec.BinaryProtocol;
+import com.example.chat.handler.action.impl.HeartbeatHandler;
+import com.example.chat.handler.action.impl.LoginHandler;
+import com.example.chat.handler.action.impl.Send_PrivateHandler;
+import com.example.chat.metrics.DispatchMetrics;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class RequestDecoderTest {
+
+    private RequestDecoder decoder;
+
+    @BeforeEach
+    void setUp() {
+        ObjectMapper mapper = new ObjectMapper();
+        HandlerRegistry registry = new HandlerRegistry();
+        ReflectionTestUtils.setField(registry, "dispatchMetrics", new DispatchMetrics());
+        ReflectionTestUtils.setField(registry, "objectMapper", mapper);
+        registry.registerHandler("LOGIN", new LoginHandler());
+        registry.registerHandler("SEND_PRIVATE", new Send_PrivateHandler());
+        registry.registerHandler("HEARTBEAT", new HeartbeatHandler());
+
+        decoder = new RequestDecoder();
+        ReflectionTestUtils.setField(decoder, "jsonMapper", mapper);
+        ReflectionTestUtils.setField(decoder, "handlerRegistry", registry);
+    }
+
+    @Test
+    void bindsParamsToTheActionType() throws IOException {
+        WsRequest<Object> request = decoder.decode(
+                "{\"action\":\"SEND_PRIVATE\",\"params\":{\"targetUser\":\"bob\",\"content\":\"hi\",\"atUsers\":[\"bob\"],\"extra\":{\"x\":[1]}}}");
+
+        assertEquals("SEND_PRIVATE", request.getAction());
+        ChatMsgParams params = (ChatMsgParams) request.getParams();
+        assertEquals("bob", params.getTargetUser());
+        assertEquals("hi", params.getContent());
+        assertEquals(List.of("bob"), params.getAtUsers());
+    }
+
+    @Test
+    void paramsBeforeActionAreBufferedThenBound() throws IOException {
+        WsRequest<Object> request = decoder.decode(
+                "{\"seq\":1,\"params\":{\"username\":\"alice\",\"password\":\"pw\"},\"action\":\"LOGIN\"}");
+
+        LoginParams params = (LoginParams) request.getParams();
+        assertEquals("alice", params.getUsername());
+        assertEquals("pw", params.getPassword());
+    }
+
+    @Test
+    void cborFramesDecodeLikeJson() throws IOException {
+        String json = "{\"params\":{\"targetUser\":\"bob\",\"content\":\"你好 😀\",\"atUsers\":[]},\"action\":\"SEND_PRIVATE\"}";
+        WsRequest<Object> request = decoder.decode(ByteBuffer.wrap(BinaryProtocol.transcode(json)));
+
+        assertEquals("SEND_PRIVATE", request.getAction());
+        assertEquals(decoder.decode(json).getParams(), request.getParams());
+        assertThrows(IOException.class, () -> decoder.decode(ByteBuffer.wrap(new byte[]{(byte) 0xff})));
+    }
+
+    @Test
+    void skipsParamsOfUnknownOrParameterlessActions() throws IOException {
+        assertNull(decoder.decode("{\"action\":\"HEARTBEAT\",\"params\":{\"x\":1}}").getParams());
+        assertNull(decoder.decode("{\"action\":\"NOPE\",\"params\":{\"x\":[1,2]}}").getParams());
+        assertNull(decoder.decode("{\"action\":\"LOGIN\",\"params\":null}").getParams());
+        assertNull(decoder.decode("{\"params\":{}}").getAction());
+    }
+
+    @Test
+    void rejectsMalformedFrames() {
+        assertThrows(IOException.class, () -> decoder.decode("[\"LOGIN\"]"));
+        assertThrows(IOException.class, () -> decoder.decode("{\"action\":\"LOGIN\""));
+        assertThrows(IOException.class, () -> decoder.decode("{\"action\":\"LOGIN\",\"params\":[1]}"));
+    }
+}
@@ -0,0 +1,29 @@
+package com.example.chat.handler.action.impl;
+
+import org.junit.jupiter.api.Test;
+
+import static com.example.chat.handler.action.impl.HeartbeatHandler.isHeartbeat;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class HeartbeatHandlerTest {
+
+    @Test
+    void recognizesHeartbeatFrames() {
+        assertTrue(isHeartbeat("{\"action\":\"HEARTBEAT\",\"params\":{}}")); // ChatClient (Gson) 的格式
+        assertTrue(isHeartbeat("{\"action\":\"HEARTBEAT\"}"));
+        assertTrue(isHeartbeat(" { \"params\" : null , \"action\" : \"HEARTBEAT\" } \n"));
+    }
+
+    @Test
+    void leavesEverythingElseToTheNormalPath() {
+        assertFalse(isHeartbeat("{\"action\":\"SEND_PRIVATE\",\"params\":{\"content\":\"{\\\"action\\\":\\\"HEARTBEAT\\\"}\"}}"));
+        assertFalse(isHeartbeat("{\"action\":\"HEARTBEAT\",\"action\":\"LOGOUT\"}"));
+        assertFalse(isHeartbeat("{\"action\":\"HEARTBEAT\",\"params\":{\"x\":1}}"));
+        assertFalse(isHeartbeat("{\"action\":\"heartbeat\"}"));
+        assertFalse(isHeartbeat("{\"action\":\"HEARTBEAT\"} trailing"));
+        assertFalse(isHeartbeat("{\"params\":{}}"));
+        assertFalse(isHeartbeat("{\"action\":\"HEARTBEAT\""));
+        assertFalse(isHeartbeat(""));
+    }
+}
@@ -0,0 +1,126 @@
+package com.example.chat.handler.codec;
+
+import com.example.chat.common.model.Message;
+import com.example.chat.common.packet.WsResponse;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.socket.TextMessage;
+
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * 手写编码器的输出必须与原来 ObjectMapper 序列化 WsResponse 的结果逐字节一致
+ */
+class EventEncoderTest {
+
+    private final ObjectMapper mapper = new ObjectMapper();
+    private EventEncoder encoder;
+
+    @BeforeEach
+    void setUp() {
+        encoder = new EventEncoder();
+        ReflectionTestUtils.setField(encoder, "objectMapper", mapper);
+        encoder.init();
+    }
+
+    @Test
+    void chatMessageMatchesObjectMapper() throws Exception {
+        Message full = Message.builder()
+                .msgId("7212334455667788").fromUser("alice").toUser("g1").isGroup(true)
+                .content("引号\" 反斜杠\\ 换行\n 控制\u0001 表情😀 </script>")
+                .timestamp(1_700_000_000_000L)
+                .quoteId("1").quoteContent("被引用")
+                .atUsers(List.of("bob", "carol"))
+                .build();
+        full.getReadBy().add("bob");
+        full.getReadBy().add("carol");
+        Set<String> likes = ConcurrentHashMap.newKeySet();
+        likes.add("bob");
+        full.getReactions().put("like", likes);
+        full.getReactions().put("heart", ConcurrentHashMap.newKeySet());
+
+        Message sparse = Message.builder().msgId("1").fromUser("a").toUser("b").content("").build();
+        sparse.setReadBy(null);
+        sparse.setReactions(null);
+
+        for (Message message : List.of(full, sparse, new Message())) {
+            String expected = mapper.writeValueAsString(
+                    WsResponse.builder().type("EVENT_CHAT_MSG").data(message).build());
+            assertEquals(expected, encoder.chatMessage(message).getPayload());
+        }
+    }
+
+    @Test
+    void offlineBatchMatchesObjectMapper() throws Exception {
+        Message a = Message.builder().msgId("1").fromUser("alice").toUser("bob").content("在吗").timestamp(1L).build();
+        Message b = Message.builder().msgId("2").fromUser("carol").toUser("bob").content("hi").timestamp(2L).build();
+        for (List<Message> batch : List.of(List.of(a, b), List.<Message>of())) {
+            assertEquals(json("EVENT_OFFLINE_MSGS", batch), encoder.offlineMessages(batch).getPayload());
+        }
+    }
+
+    @Test
+    void seqIsPrependedInBothWireFormats() throws Exception {
+        Message message = Message.builder().msgId("1").fromUser("alice").toUser("bob").content("hi").build();
+        TextMessage frame = encoder.chatMessage(message);
+        ObjectMapper cbor = new ObjectMapper(new CBORFactory());
+        for (long seq : new long[]{0, 23, 24, 255, 256, 65_536, 1L << 32}) {
+            String json = EventEncoder.withSeq(frame, seq).getPayload();
+            assertTrue(json.startsWith("{\"seq\":" + seq + ",\"type\":\"EVENT_CHAT_MSG\""));
+
+            byte[] bytes = BinaryProtocol.toBinary(frame, seq).getPayload().array();
+            JsonNode decoded = cbor.readTree(bytes);
+            assertEquals(mapper.readTree(json), decoded);
+            assertEquals("seq", decoded.fieldNames().next());
+        }
+    }
+
+    @Test
+    void readAndReactEventsMatchTheOldObjectNodes() throws Exception {
+        ObjectNode read = mapper.createObjectNode();
+        read.put("msgId", "42");
+        read.put("reader", "bob");
+        read.put("readCount", 3);
+        assertEquals(json("EVENT_MSG_READ", read), encoder.msgRead("42", "bob", 3).getPayload());
+
+        ObjectNode react = mapper.createObjectNode();
+        react.put("msgId", "42");
+        react.put("reactType", "like");
+        react.put("operator", "bob");
+        react.put("isAdd", false);
+        react.put("count", 0);
+        assertEquals(json("EVENT_MSG_REACT", react), encoder.msgReact("42", "like", "bob", false, 0).getPayload());
+
+        ObjectNode ack = mapper.createObjectNode();
+        ack.put("msgId", (String) null);
+        ack.put("reactType", "heart");
+        ack.put("isAdd", true);
+        ack.put("count", 12);
+        assertEquals(json("SUCCESS", ack), encoder.reactAck(null, "heart", true, 12).getPayload());
+    }
+
+    @Test
+    void bufferIsReusedAcrossFramesAndAfterLargeOnes() throws Exception {
+        Message big = Message.builder().msgId("1").content("x".repeat(200_000)).build();
+        Message small = Message.builder().msgId("2").content("y").build();
+        for (Message message : List.of(small, big, small, small)) {
+            String expected = mapper.writeValueAsString(
+                    WsResponse.builder().type("EVENT_CHAT_MSG").data(message).build());
+            assertEquals(expected, encoder.chatMessage(message).getPayload());
+        }
+    }
+
+    private String json(String type, Object data) throws Exception {
+        return mapper.writeValueAsString(WsResponse.builder().type(type).data(data).build());
+    }
+}
@@ -0,0 +1,120 @@
+package com.example.chat.handler.session;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class EventSequencerTest {
+
+    private static final AtomicInteger IDS = new AtomicInteger();
+
+    private static EventSequencer sequencer(int maxEvents, long retainSec) {
+        EventSequencer sequencer = new EventSequencer();
+        ReflectionTestUtils.setField(sequencer, "maxEvents", maxEvents);
+        ReflectionTestUtils.setField(sequencer, "retainSec", retainSec);
+        sequencer.init();
+        return sequencer;
+    }
+
+    private static WebSocketSession client(List<String> sent) throws Exception {
+        WebSocketSession session = mock(WebSocketSession.class);
+        when(session.getId()).thenReturn("s" + IDS.incrementAndGet());
+        doAnswer(inv -> sent.add(((TextMessage) inv.getArgument(0)).getPayload())).when(session).sendMessage(any());
+        return session;
+    }
+
+    private static TextMessage event(int n) {
+        return new TextMessage("{\"type\":\"EVENT_CHAT_MSG\",\"data\":" + n + "}");
+    }
+
+    @Test
+    void reconnectReplaysOnlyTheGap() throws Exception {
+        EventSequencer sequencer = sequencer(256, 60);
+        List<String> first = new CopyOnWriteArrayList<>();
+        WebSocketSession s1 = client(first);
+        assertEquals(0, sequencer.attach("alice", s1, null));
+        for (int i = 1; i <= 3; i++) {
+            assertTrue(sequencer.send("alice", event(i)));
+        }
+        assertEquals("{\"seq\":3,\"type\":\"EVENT_CHAT_MSG\",\"data\":3}", first.get(2));
+
+        // 客户端只收到了 seq 2，随后断线；断线期间的事件进入缓冲
+        sequencer.detach("alice", s1);
+        assertTrue(sequencer.send("alice", event(4)));
+        assertTrue(sequencer.send("alice", event(5)));
+        assertEquals(3, first.size());
+
+        List<String> second = new CopyOnWriteArrayList<>();
+        assertEquals(5, sequencer.attach("alice", client(second), 2L));
+        assertEquals(List.of(
+                "{\"seq\":3,\"type\":\"EVENT_CHAT_MSG\",\"data\":3}",
+                "{\"seq\":4,\"type\":\"EVENT_CHAT_MSG\",\"data\":4}",
+                "{\"seq\":5,\"type\":\"EVENT_CHAT_MSG\",\"data\":5}"), second);
+        assertEquals(3, sequencer.getReplayedEvents());
+    }
+
+    @Test
+    void evictedGapAsksClientToResync() throws Exception {
+        EventSequencer sequencer = sequencer(4, 60);
+        WebSocketSession s1 = client(new CopyOnWriteArrayList<>());
+        sequencer.attach("bob", s1, null);
+        for (int i = 1; i <= 6; i++) {
+            sequencer.send("bob", event(i));
+        }
+        sequencer.ack("bob", 4);
+        assertEquals(2, sequencer.getBufferedEvents());
+        sequencer.detach("bob", s1);
+
+        List<String> sent = new CopyOnWriteArrayList<>();
+        assertEquals(6, sequencer.attach("bob", client(sent), 1L));
+        assertEquals(1, sent.size());
+        assertTrue(sent.get(0).startsWith("{\"type\":\"EVENT_RESYNC\""));
+        assertEquals(1, sequencer.getResyncs());
+    }
+
+    @Test
+    void nothingIsBufferedAfterTheResumeWindow() throws Exception {
+        EventSequencer sequencer = sequencer(256, 0);
+        WebSocketSession s1 = client(new CopyOnWriteArrayList<>());
+        sequencer.attach("carol", s1, null);
+        sequencer.send("carol", event(1));
+        sequencer.detach("carol", s1);
+        assertFalse(sequencer.send("carol", event(2)));
+
+        // 序号不回退
+        List<String> sent = new CopyOnWriteArrayList<>();
+        assertEquals(1, sequencer.attach("carol", client(sent), null));
+        sequencer.send("carol", event(3));
+        assertEquals("{\"seq\":2,\"type\":\"EVENT_CHAT_MSG\",\"data\":3}", sent.get(0));
+    }
+
+    @Test
+    void idleReapedSessionIsStillResumable() throws Exception {
+        EventSequencer sequencer = sequencer(256, 60);
+        WebSocketSession raw = client(new CopyOnWriteArrayList<>());
+        // 登录时绑定的是包装后的会话
+        sequencer.attach("dave", new ManagedSession(raw, null), null);
+
+        // 空闲回收已注销包装，关闭回调只能拿到底层连接
+        sequencer.detach("dave", raw);
+        assertEquals(1, sequencer.getDetached());
+        assertTrue(sequencer.send("dave", event(1)));
+
+        List<String> sent = new CopyOnWriteArrayList<>();
+        assertEquals(1, sequencer.attach("dave", client(sent), 0L));
+        assertEquals(List.of("{\"seq\":1,\"type\":\"EVENT_CHAT_MSG\",\"data\":1}"), sent);
+    }
+}
@@ -0,0 +1,115 @@
+package com.example.chat.handler.session;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class ManagedSessionTest {
+
+    private final CountDownLatch release = new CountDownLatch(1);
+    private final List<String> sent = new CopyOnWriteArrayList<>();
+    private SessionRegistry registry;
+
+    private WebSocketSession slowClient() throws Exception {
+        WebSocketSession raw = mock(WebSocketSession.class);
+        when(raw.getId()).thenReturn("s1");
+        when(raw.isOpen()).thenReturn(true);
+        doAnswer(inv -> {
+            sent.add(((TextMessage) inv.getArgument(0)).getPayload());
+            release.await(5, TimeUnit.SECONDS); // 客户端不读数据，发送卡住
+            return null;
+        }).when(raw).sendMessage(any());
+        return raw;
+    }
+
+    private ManagedSession open(WebSocketSession raw) {
+        return open(raw, 60_000L);
+    }
+
+    private ManagedSession open(WebSocketSession raw, long sendTimeLimitMs) {
+        registry = new SessionRegistry();
+        ReflectionTestUtils.setField(registry, "maxQueueFrames", 3);
+        ReflectionTestUtils.setField(registry, "bufferSizeKb", 1024);
+        ReflectionTestUtils.setField(registry, "sendTimeLimitMs", sendTimeLimitMs);
+        ReflectionTestUtils.setField(registry, "closeThreads", 1);
+        ReflectionTestUtils.setField(registry, "threads", 1);
+        registry.init();
+        return registry.register(raw);
+    }
+
+    @AfterEach
+    void shutdown() {
+        release.countDown();
+        registry.shutdown();
+    }
+
+    @Test
+    void droppableFramesAreDroppedOldestFirst() throws Exception {
+        WebSocketSession raw = slowClient();
+        ManagedSession session = open(raw);
+
+        session.sendMessage(new TextMessage("chat-1"));
+        verify(raw, timeout(1000)).sendMessage(any()); // chat-1 正在发送
+        session.send(new TextMessage("typing-1"), Delivery.DROPPABLE);
+        session.send(new TextMessage("typing-2"), Delivery.DROPPABLE);
+        session.sendMessage(new TextMessage("chat-2"));
+        session.send(new TextMessage("typing-3"), Delivery.DROPPABLE);
+
+        // 队列上限 3：typing-3 入队时丢掉最旧的 typing-1，chat 帧保持原有顺序
+        assertEquals(1, session.getDroppedFrames());
+        assertTrue(session.isOpen());
+
+        release.countDown();
+        verify(raw, timeout(1000).times(4)).sendMessage(any());
+        assertEquals(List.of("chat-1", "typing-2", "chat-2", "typing-3"), sent);
+    }
+
+    @Test
+    void reliableOverflowDisconnects() throws Exception {
+        WebSocketSession raw = slowClient();
+        ManagedSession session = open(raw);
+
+        session.sendMessage(new TextMessage("chat-0"));
+        verify(raw, timeout(1000)).sendMessage(any());
+        for (int i = 1; i <= 4; i++) {
+            session.sendMessage(new TextMessage("chat-" + i));
+        }
+
+        assertFalse(session.isOpen());
+        assertEquals(1, registry.getSlowDisconnects());
+        // 唯一的出站线程仍卡在发送上，关闭不排在它后面
+        verify(raw, timeout(1000)).close(CloseStatus.SESSION_NOT_RELIABLE);
+    }
+
+    @Test
+    void watchdogDisconnectsStuckSendWithoutFurtherTraffic() throws Exception {
+        WebSocketSession raw = slowClient();
+        ManagedSession session = open(raw, 200);
+
+        session.sendMessage(new TextMessage("chat-0"));
+        verify(raw, timeout(1000)).sendMessage(any());
+
+        // 之后没有任何入队，看门狗发现发送超时后直接断开
+        verify(raw, timeout(2000)).close(CloseStatus.SESSION_NOT_RELIABLE);
+        assertFalse(session.isOpen());
+        assertEquals(1, registry.getSlowDisconnects());
+    }
+}
@@ -0,0 +1,64 @@
+package com.example.chat.handler.session;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TimingWheelTest {
+
+    private static final long TICK = 1_000;
+
+    @Test
+    void firesWithinOneTickAfterDeadlineAcrossRounds() {
+        // 8 个槽，截止时间跨越多圈
+        TimingWheel<Long> wheel = new TimingWheel<>(8, TICK, 0);
+        long[] deadlines = {500, 3_000, 7_999, 8_000, 25_500, 100_000};
+        for (long d : deadlines) {
+            wheel.schedule(d, d);
+        }
+
+        List<long[]> fired = new ArrayList<>();
+        for (long now = 0; now <= 110_000; now += 100) {
+            wheel.advance(now, (deadline, t) -> {
+                fired.add(new long[]{deadline, t});
+                return -1;
+            });
+        }
+
+        assertEquals(deadlines.length, fired.size());
+        for (long[] f : fired) {
+            assertTrue(f[1] >= f[0], "提前触发: " + f[0] + " @ " + f[1]);
+            assertTrue(f[1] - f[0] <= TICK, "触发过晚: " + f[0] + " @ " + f[1]);
+        }
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    void renewedEntryStaysUntilHandlerRemovesIt() {
+        TimingWheel<String> wheel = new TimingWheel<>(4, TICK, 0);
+        wheel.schedule("s", 2_000);
+
+        // 每次到期续期 3 个 tick，第 3 次到期时移除
+        int[] calls = {0};
+        for (long now = 0; now <= 20_000; now += TICK) {
+            wheel.advance(now, (item, t) -> ++calls[0] < 3 ? t + 3 * TICK : -1);
+        }
+
+        assertEquals(3, calls[0]);
+        assertEquals(0, wheel.size());
+    }
+
+    @Test
+    void pastDeadlineFiresOnNextTick() {
+        TimingWheel<String> wheel = new TimingWheel<>(4, TICK, 10_000);
+        wheel.advance(15_000, (item, t) -> -1);
+        wheel.schedule("late", 1_000);
+
+        assertEquals(0, wheel.advance(15_500, (item, t) -> -1));
+        assertEquals(1, wheel.advance(16_000, (item, t) -> -1));
+    }
+}
@@ -0,0 +1,78 @@
+package com.example.chat.logging;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LogRingTest {
+
+    private static LogEvent event(int producer, int seq) {
+        return new LogEvent(null, LogEvent.Level.INFO, "e", null, new Object[]{producer, seq});
+    }
+
+    @Test
+    void rejectsWhenFullAndReusesSlots() {
+        LogRing ring = new LogRing(4);
+        for (int i = 0; i < 4; i++) {
+            assertTrue(ring.offer(event(0, i)));
+        }
+        assertFalse(ring.offer(event(0, 4)));
+        assertEquals(0, ring.poll().fields()[1]);
+        assertTrue(ring.offer(event(0, 4)));
+        for (int i = 1; i <= 4; i++) {
+            assertEquals(i, ring.poll().fields()[1]);
+        }
+        assertNull(ring.poll());
+    }
+
+    @Test
+    void concurrentProducersKeepPerProducerOrder() throws Exception {
+        int producers = 4;
+        int perProducer = 50_000;
+        LogRing ring = new LogRing(1024);
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> threads = new ArrayList<>();
+        for (int p = 0; p < producers; p++) {
+            int id = p;
+            Thread t = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for (int i = 0; i < perProducer; i++) {
+                    while (!ring.offer(event(id, i))) {
+                        Thread.onSpinWait();
+                    }
+                }
+            });
+            t.start();
+            threads.add(t);
+        }
+        start.countDown();
+
+        int[] next = new int[producers];
+        int received = 0;
+        while (received < producers * perProducer) {
+            LogEvent e = ring.poll();
+            if (e == null) {
+                Thread.onSpinWait();
+                continue;
+            }
+            int producer = (int) e.fields()[0];
+            assertEquals(next[producer]++, e.fields()[1]);
+            received++;
+        }
+        for (Thread t : threads) {
+            t.join();
+        }
+        assertNull(ring.poll());
+    }
+}
@@ -0,0 +1,46 @@
+package com.example.chat.metrics;
+
+import com.example.chat.common.packet.WsRequest;
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class InstrumentedActionHandlerTest {
+
+    @Test
+    void countsCallsErrorsAndLatency() {
+        DispatchMetrics metrics = new DispatchMetrics();
+        ActionStats stats = metrics.forAction("SEND_PRIVATE");
+
+        new InstrumentedActionHandler<Object>((session, request) -> { }, stats).handle(null, new WsRequest<>());
+        // 处理器自己捕获异常后 sendError，也算一次错误
+        new InstrumentedActionHandler<Object>((session, request) -> InstrumentedActionHandler.markError(), stats)
+                .handle(null, new WsRequest<>());
+        InstrumentedActionHandler<Object> failing = new InstrumentedActionHandler<>((session, request) -> {
+            throw new IllegalStateException("boom");
+        }, stats);
+        assertThrows(IllegalStateException.class, () -> failing.handle(null, new WsRequest<>()));
+
+        assertEquals(3, stats.getCalls());
+        assertEquals(2, stats.getErrors());
+        assertEquals(0, stats.getInFlight());
+        assertEquals(3, stats.getLatency().getCount());
+
+        // 分发线程之外的 sendError 不计入任何 action
+        InstrumentedActionHandler.markError();
+        assertEquals(2, stats.getErrors());
+    }
+
+    @Test
+    void quantilesStayWithinBucketError() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 1; i <= 10_000; i++) {
+            histogram.record(i * 1_000L);
+        }
+        long p99 = histogram.quantile(0.99);
+        assertTrue(p99 >= 9_900_000 && p99 <= 9_900_000 + 9_900_000 / 32, "p99 = " + p99);
+        assertEquals(10_000_000, histogram.quantile(1.0));
+    }
+}
@@ -0,0 +1,32 @@
+package com.example.chat.metrics;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class LatencyHistogramTest {
+
+    @Test
+    void bucketsCoverEveryValueWithBoundedError() {
+        for (long v = 0; v < 1_000_000; v += 7) {
+            long upper = LatencyHistogram.upperBound(LatencyHistogram.indexOf(v));
+            assertTrue(upper >= v, "上界小于样本: " + v);
+            assertTrue(upper - v <= Math.max(1, v / 32), "误差超过 1/32: " + v);
+        }
+    }
+
+    @Test
+    void quantilesOfUniformSamples() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 1; i <= 10_000; i++) {
+            histogram.record(i);
+        }
+        assertEquals(10_000, histogram.getCount());
+        assertEquals(10_000, histogram.getMax());
+        assertEquals(50_005_000, histogram.getSum());
+        assertEquals(5_000, histogram.quantile(0.5), 5_000 / 32.0);
+        assertEquals(9_900, histogram.quantile(0.99), 9_900 / 32.0);
+        assertEquals(10_000, histogram.quantile(1));
+    }
+}
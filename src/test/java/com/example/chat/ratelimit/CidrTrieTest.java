@@ -0,0 +1,72 @@
+package com.example.chat.ratelimit;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class CidrTrieTest {
+
+    @Test
+    void longestPrefixWinsForIpv4() {
+        CidrTrie<String> trie = new CidrTrie<>();
+        trie.put("10.0.0.0/8", "deny");
+        trie.put("10.1.0.0/16", "allow");
+        trie.put("10.1.2.3", "host");
+        trie.put("192.168.1.100", "deny");
+
+        assertEquals("deny", trie.match("10.200.0.1"));
+        assertEquals("allow", trie.match("10.1.9.9"));
+        assertEquals("host", trie.match("10.1.2.3"));
+        assertEquals("deny", trie.match("192.168.1.100"));
+        assertNull(trie.match("192.168.1.101"));
+        assertNull(trie.match("11.0.0.1"));
+        assertEquals(4, trie.size());
+
+        // 同一前缀后写覆盖，不增加条数
+        trie.put("10.1.0.0/16", "deny");
+        assertEquals("deny", trie.match("10.1.9.9"));
+        assertEquals(4, trie.size());
+    }
+
+    @Test
+    void ipv6AndMappedIpv4ShareOneTree() {
+        CidrTrie<String> trie = new CidrTrie<>();
+        trie.put("2001:db8::/32", "net");
+        trie.put("2001:db8:1::/48", "sub");
+        trie.put("::1", "loopback");
+        trie.put("127.0.0.0/8", "v4-loopback");
+
+        assertEquals("net", trie.match("2001:db8:ffff::1"));
+        assertEquals("sub", trie.match("2001:db8:1:2::3"));
+        assertEquals("loopback", trie.match("0:0:0:0:0:0:0:1"));
+        assertNull(trie.match("2001:db9::1"));
+        // IPv4 映射地址按 IPv4 规则匹配，IPv4 规则不会误中其他 IPv6 地址
+        assertEquals("v4-loopback", trie.match("::ffff:127.0.0.1"));
+        assertNull(trie.match("7f00::1"));
+    }
+
+    @Test
+    void zeroLengthPrefixMatchesEverythingOfItsFamily() {
+        CidrTrie<String> trie = new CidrTrie<>();
+        trie.put("0.0.0.0/0", "any-v4");
+        assertEquals("any-v4", trie.match("8.8.8.8"));
+        assertNull(trie.match("2001:db8::1"));
+        trie.put("::/0", "any");
+        assertEquals("any", trie.match("2001:db8::1"));
+        assertEquals("any-v4", trie.match("8.8.8.8"));
+    }
+
+    @Test
+    void rejectsInvalidInputWithoutDnsLookup() {
+        CidrTrie<String> trie = new CidrTrie<>();
+        assertThrows(IllegalArgumentException.class, () -> trie.put("10.0.0.0/33", "x"));
+        assertThrows(IllegalArgumentException.class, () -> trie.put("2001:db8::/129", "x"));
+        assertThrows(IllegalArgumentException.class, () -> trie.put("10.0.0.0/abc", "x"));
+        assertThrows(IllegalArgumentException.class, () -> trie.put("example.com", "x"));
+        assertThrows(IllegalArgumentException.class, () -> trie.put("300.1.1.1", "x"));
+        assertNull(trie.match("localhost"));
+        assertNull(trie.match(""));
+    }
+}
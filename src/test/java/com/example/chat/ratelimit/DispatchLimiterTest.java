@@ -0,0 +1,77 @@
+package com.example.chat.ratelimit;
+
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class DispatchLimiterTest {
+
+    private static DispatchLimiter limiter(String costs) {
+        DispatchLimiter limiter = new DispatchLimiter();
+        ReflectionTestUtils.setField(limiter, "enabled", true);
+        // 速率很低，测试期间几乎不补充令牌
+        ReflectionTestUtils.setField(limiter, "userRate", 0.001);
+        ReflectionTestUtils.setField(limiter, "userBurst", 5.0);
+        ReflectionTestUtils.setField(limiter, "ipRate", 0.001);
+        ReflectionTestUtils.setField(limiter, "ipBurst", 10.0);
+        ReflectionTestUtils.setField(limiter, "ipExempt", "");
+        ReflectionTestUtils.setField(limiter, "defaultCost", 1);
+        ReflectionTestUtils.setField(limiter, "costsSpec", costs);
+        ReflectionTestUtils.setField(limiter, "disconnectAfter", 0);
+        limiter.init();
+        return limiter;
+    }
+
+    private static WebSocketSession session(String username, String ip) {
+        Map<String, Object> attributes = new ConcurrentHashMap<>();
+        attributes.put("username", username);
+        attributes.put("clientIp", ip);
+        WebSocketSession session = mock(WebSocketSession.class);
+        when(session.getAttributes()).thenReturn(attributes);
+        return session;
+    }
+
+    @Test
+    void throttledUserDoesNotDrainTheSharedIpBucket() {
+        DispatchLimiter limiter = limiter("");
+        WebSocketSession flooder = session("mallory", "10.0.0.1");
+        WebSocketSession neighbour = session("alice", "10.0.0.1");
+
+        for (int i = 0; i < 5; i++) {
+            assertEquals(DispatchLimiter.Verdict.ALLOW, limiter.check(flooder, "SEND_GROUP"));
+        }
+        // 用户桶已空：之后的帧全部丢弃，不再扣 IP 桶
+        for (int i = 0; i < 100; i++) {
+            limiter.check(flooder, "SEND_GROUP");
+        }
+        assertEquals(100, limiter.getUserThrottled());
+        assertEquals(0, limiter.getIpThrottled());
+
+        // 同一 IP 还剩 5 个令牌
+        for (int i = 0; i < 5; i++) {
+            assertEquals(DispatchLimiter.Verdict.ALLOW, limiter.check(neighbour, "SEND_GROUP"));
+        }
+        assertEquals(DispatchLimiter.Verdict.THROTTLE, limiter.check(session("bob", "10.0.0.1"), "SEND_GROUP"));
+        assertEquals(1, limiter.getIpThrottled());
+        // IP 桶拒绝时退还了 bob 的用户令牌，换个地址仍有完整的 5 个
+        WebSocketSession bob = session("bob", "10.0.0.2");
+        for (int i = 0; i < 5; i++) {
+            assertEquals(DispatchLimiter.Verdict.ALLOW, limiter.check(bob, "SEND_GROUP"));
+        }
+        assertEquals(DispatchLimiter.Verdict.THROTTLE, limiter.check(bob, "SEND_GROUP"));
+    }
+
+    @Test
+    void costLargerThanBurstIsRejectedAtStartup() {
+        assertThrows(IllegalArgumentException.class, () -> limiter("GET_HISTORY:6"));
+        limiter("GET_HISTORY:5");
+    }
+}
@@ -0,0 +1,46 @@
+package com.example.chat.ratelimit;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class GcraTest {
+
+    private static final long SECOND = 1_000_000_000L;
+
+    @Test
+    void burstThenSteadyRate() {
+        Gcra gcra = new Gcra(10, 5);
+        long now = 42 * SECOND;
+        for (int i = 0; i < 5; i++) {
+            assertTrue(gcra.tryAcquire("bob", 1, now));
+        }
+        assertFalse(gcra.tryAcquire("bob", 1, now));
+        // 其他 key 互不影响
+        assertTrue(gcra.tryAcquire("alice", 1, now));
+
+        // 每 100ms 补充一个令牌
+        assertFalse(gcra.tryAcquire("bob", 1, now + SECOND / 20));
+        assertTrue(gcra.tryAcquire("bob", 1, now + SECOND / 10));
+        assertFalse(gcra.tryAcquire("bob", 1, now + SECOND / 10));
+    }
+
+    @Test
+    void costIsChargedAtomicallyAndFullBucketsAreSwept() {
+        Gcra gcra = new Gcra(10, 5);
+        long now = -7 * SECOND; // nanoTime 可以是负数
+        assertTrue(gcra.tryAcquire("bob", 3, now));
+        // 剩 2 个令牌，取 3 个失败且不扣减
+        assertFalse(gcra.tryAcquire("bob", 3, now));
+        assertTrue(gcra.tryAcquire("bob", 2, now));
+        assertTrue(gcra.tryAcquire("bob", 0, now));
+
+        gcra.tryAcquire("alice", 1, now);
+        gcra.sweep(now + SECOND / 5);
+        assertEquals(1, gcra.size());
+        gcra.sweep(now + SECOND);
+        assertEquals(0, gcra.size());
+    }
+}
@@ -0,0 +1,73 @@
+package com.example.chat.repository;
+
+import com.example.chat.common.model.Message;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ColdSegmentStoreTest {
+
+    @TempDir
+    Path dir;
+
+    private static Message msg(long id) {
+        return Message.builder().msgId(Long.toString(id)).fromUser("tom").toUser("jerry").content("hi " + id)
+                .timestamp(IdGenerator.timestampOf(id)).build();
+    }
+
+    private long files() throws Exception {
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.count();
+        }
+    }
+
+    @Test
+    void deadSegmentSlotsAreReused() throws Exception {
+        // 每段只放得下少量记录，反复写入再删除会不断切段
+        ColdSegmentStore store = new ColdSegmentStore(dir, 256);
+        long id = 0;
+        for (int round = 0; round < 200; round++) {
+            for (int i = 0; i < 10; i++) {
+                store.append(++id, msg(id));
+            }
+            for (long old = id - 9; old <= id; old++) {
+                assertTrue(store.remove(old));
+            }
+        }
+        List<?> segments = (List<?>) ReflectionTestUtils.getField(store, "segments");
+        assertTrue(segments.size() <= 8, "槽位表应复用: " + segments.size());
+        assertTrue(files() <= 2, "失效段文件应被删除: " + files());
+        assertEquals(0, store.size());
+        assertEquals(0, store.liveBytes());
+    }
+
+    @Test
+    void failedDeleteIsRetriedOnNextRoll() throws Exception {
+        ColdSegmentStore store = new ColdSegmentStore(dir, 256);
+        // 非空目录删除会失败，模拟 Windows 上仍被映射的段文件
+        Path stuck = Files.createDirectories(dir.resolve("cold-stuck.seg"));
+        Path pin = Files.createFile(stuck.resolve("pin"));
+        @SuppressWarnings("unchecked")
+        List<Path> dead = (List<Path>) ReflectionTestUtils.getField(store, "dead");
+        dead.add(stuck);
+
+        store.append(1, msg(1));
+        assertTrue(Files.exists(stuck));
+
+        Files.delete(pin);
+        for (long id = 2; id <= 20; id++) {
+            store.append(id, msg(id));
+        }
+        assertFalse(Files.exists(stuck));
+        assertTrue(dead.isEmpty());
+    }
+}
@@ -0,0 +1,97 @@
+package com.example.chat.repository;
+
+import com.example.chat.common.model.Message;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ConversationIndexTest {
+
+    private static Message msg(long id, String from, String to, boolean group) {
+        return Message.builder().msgId(Long.toString(id)).fromUser(from).toUser(to).isGroup(group)
+                .timestamp(IdGenerator.timestampOf(id)).build();
+    }
+
+    private final Map<Long, Message> store = new HashMap<>();
+
+    private ConversationIndex newIndex() {
+        return new ConversationIndex(store::get) {
+            @Override
+            public void add(Message msg) {
+                store.put(IdGenerator.parse(msg.getMsgId()), msg);
+                super.add(msg);
+            }
+        };
+    }
+
+    @Test
+    void pageMergesConversationsNewestFirst() {
+        ConversationIndex index = newIndex();
+        index.add(msg(10, "tom", "jerry", false));
+        index.add(msg(30, "jerry", "tom", false));
+        index.add(msg(20, "tom", "g1", true));
+        index.add(msg(40, "spike", "g1", true));
+        index.add(msg(50, "spike", "jerry", false)); // 与 tom 无关
+
+        Set<String> privateKeys = index.privateConversationsOf("tom");
+        assertEquals(1, privateKeys.size());
+
+        List<String> keys = new java.util.ArrayList<>(privateKeys);
+        keys.add(ConversationIndex.groupKey("g1"));
+
+        List<Message> page = index.pageBefore(keys, null, 3);
+        assertEquals(List.of("40", "30", "20"), page.stream().map(Message::getMsgId).toList());
+
+        // beforeId 严格小于
+        List<Message> next = index.pageBefore(keys, 20L, 3);
+        assertEquals(List.of("10"), next.stream().map(Message::getMsgId).toList());
+    }
+
+    @Test
+    void removeDropsMessageFromItsConversation() {
+        ConversationIndex index = newIndex();
+        Message m = msg(10, "tom", "jerry", false);
+        index.add(m);
+        index.remove(m);
+
+        List<Message> page = index.pageBefore(index.privateConversationsOf("jerry"), null, 20);
+        assertTrue(page.isEmpty());
+    }
+
+    @Test
+    void idsAreMonotonicAndCarryTimestamp() {
+        IdGenerator generator = new IdGenerator();
+        generator.init();
+        long before = System.currentTimeMillis();
+        long prev = generator.nextId();
+        for (int i = 0; i < 10_000; i++) {
+            long next = generator.nextId();
+            assertTrue(next > prev);
+            prev = next;
+        }
+        assertTrue(IdGenerator.timestampOf(prev) >= before);
+        assertTrue(prev < IdGenerator.minIdAt(IdGenerator.timestampOf(prev) + 1));
+        assertEquals(-1, IdGenerator.parse("not-a-number"));
+    }
+
+    @Test
+    void idsContinueAfterRecoveredHighestId() {
+        // 恢复出的消息 ID 比当前时钟还新（例如重启前后时钟回拨了一分钟）
+        long recovered = IdGenerator.minIdAt(System.currentTimeMillis() + 60_000) + 7;
+        DataCenter.MSG_HISTORY.put(recovered, Message.builder().msgId(String.valueOf(recovered)).build());
+        try {
+            IdGenerator generator = new IdGenerator();
+            generator.init();
+            assertEquals(recovered + 1, generator.nextId());
+            assertTrue(generator.nextId() > recovered + 1);
+        } finally {
+            DataCenter.MSG_HISTORY.clear();
+        }
+    }
+}
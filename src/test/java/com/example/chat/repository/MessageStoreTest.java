@@ -0,0 +1,109 @@
+package com.example.chat.repository;
+
+import com.example.chat.common.model.Message;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MessageStoreTest {
+
+    @TempDir
+    Path dir;
+
+    private static Message msg(long id) {
+        return Message.builder().msgId(Long.toString(id)).fromUser("tom").toUser("jerry").content("hi " + id)
+                .timestamp(IdGenerator.timestampOf(id)).build();
+    }
+
+    @Test
+    void evictsOldestToColdAndReadsThrough() throws Exception {
+        MessageStore store = new MessageStore();
+        store.open(3, 0, dir, 4096);
+        for (long id = 1; id <= 10; id++) {
+            store.put(id, msg(id));
+        }
+
+        MessageStoreStats stats = store.getStats();
+        assertEquals(3, stats.getHotMessages());
+        assertEquals(7, stats.getColdMessages());
+        assertEquals(7, stats.getEvictions());
+        assertEquals(10, store.size());
+
+        assertEquals("hi 1", store.get(1).getContent());
+        assertEquals("hi 10", store.get(10).getContent());
+        assertEquals(1, store.getStats().getColdHits());
+        assertEquals(1, store.getStats().getHotHits());
+
+        // 冷层消息修改后写回
+        Message cold = store.get(2);
+        cold.getReadBy().add("jerry");
+        assertTrue(store.replace(2, cold));
+        assertTrue(store.get(2).getReadBy().contains("jerry"));
+        assertEquals("hi 5", store.remove(5).getContent());
+        assertNull(store.get(5));
+        assertEquals(1, store.getStats().getMisses());
+
+        Set<String> seen = new HashSet<>();
+        store.forEach(m -> seen.add(m.getMsgId()));
+        assertEquals(9, seen.size());
+    }
+
+    @Test
+    void concurrentUpdatesAreNotLostAcrossTiers() throws Exception {
+        MessageStore store = new MessageStore();
+        store.open(8, 0, dir, 1 << 16);
+        int messages = 3000;
+
+        // 写线程不断写入新消息触发淘汰；读线程紧跟其后给刚写入的消息追加已读，
+        // 修改会落在热层、冷层以及正在被换出的消息上
+        int readers = 4;
+        CountDownLatch start = new CountDownLatch(1);
+        List<Thread> threads = new ArrayList<>();
+        for (int r = 0; r < readers; r++) {
+            String reader = "u" + r;
+            threads.add(new Thread(() -> {
+                await(start);
+                for (long id = 1; id <= messages; id++) {
+                    while (!store.containsKey(id)) {
+                        Thread.onSpinWait();
+                    }
+                    assertEquals(Boolean.TRUE, store.update(id, m -> m.getReadBy().add(reader)));
+                }
+            }));
+        }
+        threads.add(new Thread(() -> {
+            await(start);
+            for (long id = 1; id <= messages; id++) {
+                store.put(id, msg(id));
+            }
+        }));
+        threads.forEach(Thread::start);
+        start.countDown();
+        for (Thread t : threads) {
+            t.join();
+        }
+
+        for (long id = 1; id <= messages; id++) {
+            assertEquals(readers, store.get(id).getReadBy().size(), "msg " + id);
+        }
+        assertNull(store.update(100_000, m -> true));
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package com.example.chat.repository;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class OfflineInboxTest {
+
+    @Test
+    void drainReturnsMessagesInOrderOnce() {
+        OfflineInbox inbox = new OfflineInbox();
+        for (long id = 1; id <= 10; id++) {
+            assertFalse(inbox.offer("bob", id));
+        }
+        inbox.offer("carol", 99);
+        assertEquals(11, inbox.pending());
+
+        assertArrayEquals(new long[]{1, 2, 3, 4, 5, 6, 7, 8, 9, 10}, inbox.drain("bob"));
+        assertEquals(0, inbox.drain("bob").length);
+        assertEquals(1, inbox.pending());
+
+        // 取走后再存入会重新建箱
+        inbox.offer("bob", 11);
+        assertArrayEquals(new long[]{11}, inbox.drain("bob"));
+    }
+
+    @Test
+    void fullInboxDropsOldest() {
+        OfflineInbox inbox = new OfflineInbox();
+        inbox.setMaxPerUser(3);
+        for (long id = 1; id <= 7; id++) {
+            inbox.offer("bob", id);
+        }
+        assertEquals(4, inbox.dropped());
+        assertEquals(3, inbox.pending());
+        assertArrayEquals(new long[]{5, 6, 7}, inbox.drain("bob"));
+
+        // 上限调小后，已有的队列在下次存入时收紧
+        inbox.setMaxPerUser(8);
+        for (long id = 1; id <= 8; id++) {
+            inbox.offer("bob", id);
+        }
+        inbox.setMaxPerUser(2);
+        assertTrue(inbox.offer("bob", 9));
+        assertEquals(2, inbox.pending());
+        assertArrayEquals(new long[]{8, 9}, inbox.drain("bob"));
+    }
+}
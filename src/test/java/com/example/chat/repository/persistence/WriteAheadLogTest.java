@@ -0,0 +1,320 @@
+package com.example.chat.repository.persistence;
+
+import com.example.chat.common.model.Message;
+import com.example.chat.common.model.User;
+import com.example.chat.repository.DataCenter;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.AbstractSet;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class WriteAheadLogTest {
+
+    @TempDir
+    Path dir;
+
+    @AfterEach
+    void clear() {
+        DataCenter.USERS.clear();
+        DataCenter.MSG_HISTORY.clear();
+    }
+
+    private static Message msg(String id, long ts) {
+        return Message.builder().msgId(id).fromUser("tom").toUser("jerry").content("hi").timestamp(ts).build();
+    }
+
+    private SnapshotStore snapshotStore() {
+        SnapshotStore store = new SnapshotStore();
+        ReflectionTestUtils.setField(store, "dir", dir.resolve("snapshot").toString());
+        return store;
+    }
+
+    private WriteAheadLog open(Durability durability) throws Exception {
+        WriteAheadLog wal = new WriteAheadLog();
+        ReflectionTestUtils.setField(wal, "snapshotStore", snapshotStore());
+        ReflectionTestUtils.setField(wal, "enabled", true);
+        ReflectionTestUtils.setField(wal, "dir", dir.toString());
+        ReflectionTestUtils.setField(wal, "durability", durability);
+        ReflectionTestUtils.setField(wal, "batchIntervalMs", 5L);
+        ReflectionTestUtils.setField(wal, "segmentSizeMb", 64L);
+        wal.init();
+        return wal;
+    }
+
+    @Test
+    void replayRestoresStateAfterRestart() throws Exception {
+        WriteAheadLog wal = open(Durability.BATCHED);
+
+        User tom = new User("tom");
+        tom.setPassword("123");
+        wal.append(LogOp.USER_PUT, "tom", tom);
+
+        Message kept = Message.builder().msgId("1").fromUser("tom").toUser("jerry").content("hi").timestamp(1L).build();
+        kept.getReadBy().add("jerry");
+        wal.append(LogOp.MSG_PUT, "1", kept);
+        wal.append(LogOp.MSG_PUT, "2", Message.builder().msgId("2").fromUser("tom").toUser("jerry").timestamp(2L).build());
+        wal.append(LogOp.MSG_DEL, "2", null);
+        wal.close();
+
+        DataCenter.USERS.clear();
+        DataCenter.MSG_HISTORY.clear();
+
+        WriteAheadLog reopened = open(Durability.BATCHED);
+        assertEquals(4, reopened.getLastLsn());
+        assertEquals("123", DataCenter.USERS.get("tom").getPassword());
+        assertTrue(DataCenter.MSG_HISTORY.get(1L).getReadBy().contains("jerry"));
+        assertFalse(DataCenter.MSG_HISTORY.containsKey(2L));
+        reopened.close();
+    }
+
+    @Test
+    void snapshotPlusLogTailRestoresState() throws Exception {
+        WriteAheadLog wal = open(Durability.SYNC);
+        DataCenter.MSG_HISTORY.put(1L, msg("1", 1));
+        wal.append(LogOp.MSG_PUT, "1", DataCenter.MSG_HISTORY.get(1L));
+
+        long checkpoint = wal.checkpoint();
+        snapshotStore().write(checkpoint);
+        wal.truncateBefore(checkpoint);
+
+        // 快照之后的修改只存在于日志尾部
+        wal.append(LogOp.MSG_PUT, "2", msg("2", 2));
+        wal.append(LogOp.MSG_DEL, "1", null);
+        wal.close();
+
+        DataCenter.MSG_HISTORY.clear();
+        WriteAheadLog reopened = open(Durability.SYNC);
+        assertEquals(checkpoint, reopened.getRecoveryStats().getSnapshotLsn());
+        assertEquals(2, reopened.getRecoveryStats().getReplayedRecords());
+        assertFalse(DataCenter.MSG_HISTORY.containsKey(1L));
+        assertTrue(DataCenter.MSG_HISTORY.containsKey(2L));
+        assertEquals(3, reopened.getLastLsn());
+        reopened.close();
+    }
+
+    @Test
+    void tornTailIsTruncatedBeforeNewAppends() throws Exception {
+        WriteAheadLog wal = open(Durability.SYNC);
+        wal.append(LogOp.MSG_PUT, "1", msg("1", 1));
+        wal.close();
+
+        // 模拟宕机：刚切换出的新段里，第一条记录只写了一半；重启后会以追加方式重新打开这个段
+        Path segment = dir.resolve(String.format("wal-%020d.log", 2));
+        Files.write(segment, "{\"lsn\":2,\"op\":\"MSG_PU".getBytes(StandardCharsets.UTF_8));
+
+        DataCenter.MSG_HISTORY.clear();
+        WriteAheadLog reopened = open(Durability.SYNC);
+        assertEquals(1, reopened.getLastLsn());
+        reopened.append(LogOp.MSG_PUT, "2", msg("2", 2));
+        reopened.close();
+
+        DataCenter.MSG_HISTORY.clear();
+        WriteAheadLog again = open(Durability.SYNC);
+        assertTrue(DataCenter.MSG_HISTORY.containsKey(1L));
+        assertTrue(DataCenter.MSG_HISTORY.containsKey(2L));
+        assertEquals(2, again.getLastLsn());
+        List<String> lines = Files.readAllLines(segment, StandardCharsets.UTF_8);
+        assertEquals(1, lines.size());
+        again.close();
+    }
+
+    @Test
+    void sameKeyUpdatesReplayToTheNewestStateInSyncMode() throws Exception {
+        WriteAheadLog wal = open(Durability.SYNC);
+        CountDownLatch encoding = new CountDownLatch(1);
+        CountDownLatch newerAppended = new CountDownLatch(1);
+        User tom = new User("tom");
+        tom.setMuteEndTime(1);
+        // 第一次编码走到好友列表时停下，此时 muteEndTime=1 已经写进编码结果
+        tom.setFriends(new AbstractSet<>() {
+            private final AtomicBoolean first = new AtomicBoolean(true);
+
+            @Override
+            public Iterator<String> iterator() {
+                if (first.getAndSet(false)) {
+                    encoding.countDown();
+                    try {
+                        newerAppended.await(500, TimeUnit.MILLISECONDS);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                    }
+                }
+                return Collections.emptyIterator();
+            }
+
+            @Override
+            public int size() {
+                return 0;
+            }
+        });
+
+        Thread stale = new Thread(() -> wal.append(LogOp.USER_PUT, "tom", tom));
+        stale.start();
+        assertTrue(encoding.await(5, TimeUnit.SECONDS));
+        // 旧状态还在编码时写入新状态；同一个 key 必须等旧记录拿到 LSN 之后才能编码
+        tom.setMuteEndTime(2);
+        Thread newer = new Thread(() -> {
+            wal.append(LogOp.USER_PUT, "tom", tom);
+            newerAppended.countDown();
+        });
+        newer.start();
+        stale.join();
+        newer.join();
+        wal.close();
+
+        DataCenter.USERS.clear();
+        WriteAheadLog reopened = open(Durability.SYNC);
+        assertEquals(2, DataCenter.USERS.get("tom").getMuteEndTime());
+        reopened.close();
+    }
+
+    @Test
+    void failedWriteIsRolledBackAndRetriedInOrder() throws Exception {
+        WriteAheadLog wal = open(Durability.SYNC);
+        wal.append(LogOp.MSG_PUT, "1", msg("1", 1));
+        FileChannel real = (FileChannel) ReflectionTestUtils.getField(wal, "channel");
+        ReflectionTestUtils.setField(wal, "channel", new DiskFullOnce(real));
+
+        // 第一次写入只写出半行就失败：记录不能丢，段里也不能留下半行
+        wal.append(LogOp.MSG_PUT, "2", msg("2", 2));
+        wal.append(LogOp.MSG_PUT, "3", msg("3", 3));
+        wal.close();
+
+        DataCenter.MSG_HISTORY.clear();
+        WriteAheadLog reopened = open(Durability.SYNC);
+        assertEquals(3, reopened.getRecoveryStats().getReplayedRecords());
+        assertTrue(DataCenter.MSG_HISTORY.containsKey(2L));
+        assertTrue(DataCenter.MSG_HISTORY.containsKey(3L));
+        List<String> lines = Files.readAllLines(dir.resolve(String.format("wal-%020d.log", 1)), StandardCharsets.UTF_8);
+        assertEquals(3, lines.size());
+        reopened.close();
+    }
+
+    /**
+     * 第一次批量写入只写出半个缓冲区后抛出异常，其余操作转给真实的 FileChannel
+     */
+    private static final class DiskFullOnce extends FileChannel {
+        private final FileChannel delegate;
+        private boolean failed;
+
+        DiskFullOnce(FileChannel delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public long write(ByteBuffer[] srcs, int offset, int length) throws IOException {
+            if (!failed) {
+                failed = true;
+                ByteBuffer half = srcs[offset].duplicate();
+                half.limit(half.position() + half.remaining() / 2);
+                delegate.write(half);
+                throw new IOException("No space left on device");
+            }
+            return delegate.write(srcs, offset, length);
+        }
+
+        @Override
+        public int read(ByteBuffer dst) throws IOException {
+            return delegate.read(dst);
+        }
+
+        @Override
+        public long read(ByteBuffer[] dsts, int offset, int length) throws IOException {
+            return delegate.read(dsts, offset, length);
+        }
+
+        @Override
+        public int write(ByteBuffer src) throws IOException {
+            return delegate.write(src);
+        }
+
+        @Override
+        public long position() throws IOException {
+            return delegate.position();
+        }
+
+        @Override
+        public FileChannel position(long newPosition) throws IOException {
+            delegate.position(newPosition);
+            return this;
+        }
+
+        @Override
+        public long size() throws IOException {
+            return delegate.size();
+        }
+
+        @Override
+        public FileChannel truncate(long size) throws IOException {
+            delegate.truncate(size);
+            return this;
+        }
+
+        @Override
+        public void force(boolean metaData) throws IOException {
+            delegate.force(metaData);
+        }
+
+        @Override
+        public long transferTo(long position, long count, WritableByteChannel target) throws IOException {
+            return delegate.transferTo(position, count, target);
+        }
+
+        @Override
+        public long transferFrom(ReadableByteChannel src, long position, long count) throws IOException {
+            return delegate.transferFrom(src, position, count);
+        }
+
+        @Override
+        public int read(ByteBuffer dst, long position) throws IOException {
+            return delegate.read(dst, position);
+        }
+
+        @Override
+        public int write(ByteBuffer src, long position) throws IOException {
+            return delegate.write(src, position);
+        }
+
+        @Override
+        public MappedByteBuffer map(MapMode mode, long position, long size) throws IOException {
+            return delegate.map(mode, position, size);
+        }
+
+        @Override
+        public FileLock lock(long position, long size, boolean shared) throws IOException {
+            return delegate.lock(position, size, shared);
+        }
+
+        @Override
+        public FileLock tryLock(long position, long size, boolean shared) throws IOException {
+            return delegate.tryLock(position, size, shared);
+        }
+
+        @Override
+        protected void implCloseChannel() throws IOException {
+            delegate.close();
+        }
+    }
+}